@@ -0,0 +1,69 @@
+package benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import completion.Completion;
+import completion.CompletionEngine;
+import editor.EZEditorController;
+
+/**
+ * Measures the queries behind Ctrl+Space against a completion engine that knows every
+ * label of a generated document: an instruction prefix, a label operand by prefix and
+ * by fuzzy match, and a whole line typed into the document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompletionBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int lines;
+
+    private CompletionEngine engine;
+    private int lineCount;
+
+    @Setup
+    public void setup() {
+        List<String> document = Arrays.asList(SourceGenerator.generate(lines).split("\n", -1));
+        engine = EZEditorController.createCompletionEngine();
+        engine.replaceLines(0, 1, document);
+        lineCount = document.size();
+    }
+
+    @Benchmark
+    public List<Completion> instruction() {
+        return engine.complete("    AD", 6);
+    }
+
+    @Benchmark
+    public List<Completion> labelPrefix() {
+        return engine.complete("    LEA R0, SUB1", 16);
+    }
+
+    @Benchmark
+    public List<Completion> labelFuzzy() {
+        return engine.complete("    LEA R0, SD0", 15);
+    }
+
+    @Benchmark
+    public List<Completion> typeLine() {
+        engine.replaceLines(lineCount / 2, 1, List.of("NEW_LABEL ADD R1, R1, #1"));
+        engine.replaceLines(lineCount / 2, 1, List.of(""));
+        return engine.complete("    BR", 6);
+    }
+}
@@ -0,0 +1,44 @@
+package benchmark;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import editor.EZEditorController;
+
+/**
+ * Measures syntax highlighting of a whole generated document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HighlightingBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int lines;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        text = SourceGenerator.generate(lines);
+    }
+
+    @Benchmark
+    public StyleSpans<Collection<String>> computeHighlighting() {
+        return EZEditorController.computeHighlighting(text);
+    }
+}
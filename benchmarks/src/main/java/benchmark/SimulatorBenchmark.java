@@ -0,0 +1,84 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import assembler.Assembler;
+import assembler.Assembly;
+import simulator.Console;
+import simulator.Machine;
+
+/**
+ * Measures the simulator in instructions per second on a loop mixing arithmetic,
+ * loads, stores, branches and subroutine calls. The score is reported in ops/s, where
+ * one op is one executed instruction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimulatorBenchmark {
+
+    private static final int INSTRUCTIONS = 10_000_000;
+
+    private static final String PROGRAM = String.join("\n",
+                    ".ORIG x3000",
+                    "        LEA R4, DATA",
+                    "OUTER   AND R1, R1, #0",
+                    "        ADD R1, R1, #15",
+                    "INNER   LDR R2, R4, #0",
+                    "        ADD R2, R2, R1",
+                    "        STR R2, R4, #1",
+                    "        NOT R5, R2",
+                    "        ADD R1, R1, #-1",
+                    "        BRp INNER",
+                    "        JSR COUNT",
+                    "        BR OUTER",
+                    "COUNT   LD R3, TOTAL",
+                    "        ADD R3, R3, #1",
+                    "        ST R3, TOTAL",
+                    "        RET",
+                    "TOTAL   .FILL #0",
+                    "DATA    .BLKW 2",
+                    ".END");
+
+    private Machine machine;
+
+    @Setup
+    public void setup() {
+        Assembly assembly = Assembler.assemble(PROGRAM);
+        machine = new Machine(new Console() {
+            @Override
+            public boolean hasInput() {
+                return false;
+            }
+
+            @Override
+            public char read() {
+                return 0;
+            }
+
+            @Override
+            public void write(char c) {
+            }
+        });
+        machine.load(assembly.getOrigin(), assembly.getWords());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public long run() {
+        return machine.run(INSTRUCTIONS);
+    }
+}
@@ -0,0 +1,79 @@
+package benchmark;
+
+import java.util.Random;
+
+/**
+ * Generates LC-3 sources that look like real programs: subroutines with labels,
+ * commented instructions, branches, TRAP calls and data blocks. The output only
+ * depends on the number of lines, so every run measures the same input.
+ */
+public final class SourceGenerator {
+
+    private static final String[] REGISTERS = {"R0", "R1", "R2", "R3", "R4", "R5", "R6", "R7"};
+    private static final String[] BRANCHES = {"BR", "BRn", "BRz", "BRp", "BRnz", "BRnp", "BRzp", "BRnzp"};
+    private static final String[] TRAPS = {"GETC", "OUT", "PUTS", "IN", "HALT"};
+
+    private SourceGenerator() {
+    }
+
+    /**
+     * Generates a program of exactly the given number of lines, each ending in '\n'
+     * @param lines Number of lines to generate, at least 2
+     * @return The program text
+     */
+    public static String generate(int lines) {
+        Random random = new Random(lines);
+        StringBuilder out = new StringBuilder(lines * 24);
+        out.append(".ORIG x3000\n");
+        int written = 1;
+        int routine = 0;
+        while(written < lines - 1) {
+            String name = "SUB" + routine++;
+            out.append("; ").append(name).append(" - generated subroutine, clobbers R0-R3\n");
+            out.append(name).append("\n");
+            written += 2;
+            int body = 6 + random.nextInt(20);
+            for(int i = 0; i < body && written < lines - 1; i++, written++) {
+                out.append("    ").append(instruction(random, name, i));
+                if(random.nextInt(3) == 0)
+                    out.append("    ; step ").append(i);
+                out.append('\n');
+            }
+            if(written < lines - 1) {
+                out.append("    RET\n");
+                written++;
+            }
+            int data = random.nextInt(4);
+            for(int i = 0; i < data && written < lines - 1; i++, written++)
+                out.append(data(random, name, i)).append('\n');
+        }
+        out.append(".END\n");
+        return out.toString();
+    }
+
+    private static String instruction(Random random, String routine, int index) {
+        String a = REGISTERS[random.nextInt(4)];
+        String b = REGISTERS[random.nextInt(4)];
+        switch(random.nextInt(10)) {
+            case 0: return "ADD " + a + ", " + b + ", #" + (random.nextInt(31) - 15);
+            case 1: return "AND " + a + ", " + b + ", " + REGISTERS[random.nextInt(8)];
+            case 2: return "LD " + a + ", " + routine + "_D0";
+            case 3: return "LDR " + a + ", R6, #" + random.nextInt(8);
+            case 4: return "STR " + a + ", R6, #" + random.nextInt(8);
+            case 5: return "NOT " + a + ", " + b;
+            case 6: return BRANCHES[random.nextInt(BRANCHES.length)] + " " + routine;
+            case 7: return "LEA R0, " + routine + "_D0";
+            case 8: return TRAPS[random.nextInt(TRAPS.length)];
+            default: return "ADD " + a + ", " + a + ", x" + Integer.toHexString(random.nextInt(16)).toUpperCase();
+        }
+    }
+
+    private static String data(Random random, String routine, int index) {
+        String label = routine + "_D" + index;
+        switch(random.nextInt(3)) {
+            case 0: return label + "    .FILL x" + Integer.toHexString(random.nextInt(0x10000)).toUpperCase();
+            case 1: return label + "    .BLKW #" + (1 + random.nextInt(8));
+            default: return label + "    .STRINGZ \"Message " + index + " from " + routine + "\"";
+        }
+    }
+}
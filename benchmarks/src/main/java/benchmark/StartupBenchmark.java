@@ -0,0 +1,97 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures how long the editor takes to start, from launching the JVM to the first frame
+ * and to the first keystroke shown on screen. Every run is a fresh JVM started with
+ * --startup-report, which types one key once the editor is ready and then exits, so this
+ * is a plain main rather than a JMH benchmark.
+ *
+ * With --cds the first run is a training run that writes an AppCDS archive, and the
+ * measured runs load their classes from it.
+ *
+ * Other arguments are passed on to the editor's JVM, e.g. -Dprism.order=sw.
+ *
+ * java -cp benchmarks/target/benchmarks.jar benchmark.StartupBenchmark [--runs n] [--cds [archive]] [jvm options]
+ */
+public class StartupBenchmark {
+
+    // One milestone in the startup report, e.g. "firstFrame": 812
+    private static final Pattern MILESTONE = Pattern.compile("\"(\\w+)\": (\\d+)");
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int runs = 10;
+        Path archive = null;
+        List<String> options = new ArrayList<>();
+        for(int i = 0; i < args.length; i++) {
+            if(args[i].equals("--runs") && i + 1 < args.length)
+                runs = Integer.parseInt(args[++i]);
+            else if(args[i].equals("--cds"))
+                archive = i + 1 < args.length && !args[i + 1].startsWith("-") ? Paths.get(args[++i]) : Paths.get("lc3ezedit.jsa");
+            else
+                options.add(args[i]);
+        }
+
+        Path report = Files.createTempFile("startup", ".json");
+        if(archive != null) {
+            List<String> training = new ArrayList<>(options);
+            training.add("-XX:ArchiveClassesAtExit=" + archive);
+            Files.deleteIfExists(archive);
+            run(training, report);
+            System.out.println("Wrote " + archive + " (" + Files.size(archive) / 1024 + " KB)");
+            options.add("-XX:SharedArchiveFile=" + archive);
+        } else {
+            run(options, report); // Warms the disk cache
+        }
+
+        Map<String, List<Long>> milestones = new LinkedHashMap<>();
+        for(int run = 0; run < runs; run++) {
+            Matcher found = MILESTONE.matcher(run(options, report));
+            while(found.find())
+                milestones.computeIfAbsent(found.group(1), name -> new ArrayList<>()).add(Long.parseLong(found.group(2)));
+        }
+        Files.deleteIfExists(report);
+
+        System.out.printf("%-16s %8s %8s %8s%n", "ms since launch", "min", "median", "max");
+        for(Map.Entry<String, List<Long>> milestone : milestones.entrySet()) {
+            List<Long> times = milestone.getValue();
+            Collections.sort(times);
+            System.out.printf("%-16s %8d %8d %8d%n", milestone.getKey(), times.get(0), times.get(times.size() / 2), times.get(times.size() - 1));
+        }
+    }
+
+    /**
+     * Starts the editor in a new JVM on this class path and waits for its report
+     * @param options JVM options
+     * @param report Where the editor writes its milestones
+     * @return The report
+     */
+    private static String run(List<String> options, Path report) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(options);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("application.Launcher");
+        command.add("--startup-report");
+        command.add(report.toString());
+        Files.deleteIfExists(report);
+        Process editor = new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(new File(System.getProperty("java.io.tmpdir"), "startup-benchmark.log")).start();
+        if(editor.waitFor() != 0 || !Files.isRegularFile(report))
+            throw new IllegalStateException("The editor did not report its startup, see startup-benchmark.log in " + System.getProperty("java.io.tmpdir"));
+        return new String(Files.readAllBytes(report), "UTF-8");
+    }
+}
@@ -0,0 +1,346 @@
+package benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import com.sun.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
+import application.Main;
+import javafx.application.Application;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyCode;
+import javafx.stage.Stage;
+import metrics.Metrics;
+import org.fxmisc.richtext.CodeArea;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.testfx.api.FxRobot;
+import org.testfx.api.FxToolkit;
+import org.testfx.util.WaitForAsyncUtils;
+
+/**
+ * Runs the real editor headlessly on Monocle and drives it with TestFX the way a user
+ * would: opens a generated program, types with Enter auto-indent, Tab and Shift + Tab and
+ * Ctrl + Space completion, pastes a large block and saves. Every step records its wall
+ * time, the CPU time the FX thread was busy, how much the heap grew and, for typing, the
+ * median time from a key press to a laid out frame.
+ *
+ * The test fails when a step's FX thread time, that time over the time it takes on the
+ * smallest file, its key latency or its heap growth exceeds its baseline by more than the
+ * tolerance. Times depend on the machine, so their baselines are generous limits that
+ * still catch every keystroke getting slower, whether it spends the time computing or
+ * waiting. The ratios catch a step that turns linear in the size of the file on any
+ * machine; their keys name the file they are relative to, such as enter.200000.over1000.
+ * A step ends once the editor is idle, so highlighting and checking it sets off in the
+ * background count towards it. The first file is run through once unmeasured, so the
+ * smallest file is not also paying for class loading and compiling.
+ *
+ * mvn install
+ * mvn -f benchmarks/pom.xml test -Pui-perf [-Duiperf.lines=1000,10000] [-Duiperf.tolerance=1.5] [-Duiperf.record=true]
+ *
+ * Baselines are in src/test/resources/ui-baselines.properties; -Duiperf.record=true writes
+ * the measured values there instead of checking them. Values without a baseline, such as
+ * ratios over a size the baselines were not recorded with, are only reported. The editor
+ * runs with its home folder in a temporary folder, so it never touches the journals or
+ * index of a real session.
+ */
+class EditorUiPerformanceTest {
+
+    // Sizes of the generated files, in lines
+    private static final String LINES = System.getProperty("uiperf.lines", "1000,10000,200000");
+    // How much worse than its baseline a step may get, as a factor
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("uiperf.tolerance", "1.5"));
+    // Rewrites the baselines instead of checking them
+    private static final boolean RECORD = Boolean.getBoolean("uiperf.record");
+    private static final Path BASELINES = Paths.get(System.getProperty("uiperf.baselines", "src/test/resources/ui-baselines.properties"));
+    private static final Path REPORT = Paths.get(System.getProperty("uiperf.report", "target/ui-performance.json"));
+
+    // Noise allowed on top of the tolerance, so fast steps do not fail on a hiccup
+    private static final long SLACK_MS = 100;
+    private static final long SLACK_KEY_MS = 20;
+    private static final double SLACK_RATIO = 0.5;
+    private static final long SLACK_MB = 16;
+    // Least FX thread time a ratio is taken over, as a step hardly using the thread is noise
+    private static final long FLOOR_MS = 50;
+    // Fewest key presses a step needs for its median key latency to be checked
+    private static final int MIN_KEYS = 10;
+    // Lines of the block pasted in the paste step
+    private static final int PASTE_LINES = 20_000;
+    // How long opening and saving a file may take at all
+    private static final long TIMEOUT_SECONDS = 120;
+    // A step is done once the process used less than this much CPU time over the interval
+    private static final long QUIET_MILLIS = 250;
+    private static final long QUIET_CPU_MILLIS = 25;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+    private static final OperatingSystemMXBean SYSTEM = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+    // Every measurement of the run, e.g. "paste.10000.wallMs" -> 250
+    private static final Map<String, Number> measured = new TreeMap<>();
+    // FX thread time of each step on the smallest file, which the others are compared to
+    private static final Map<String, Long> reference = new TreeMap<>();
+    private static final int SMALLEST = lines().min().orElse(0);
+    private static boolean warmedUp;
+    private static Stage stage;
+
+    // Stands in for the home folder, where the editor keeps its journals and index
+    @TempDir
+    static Path home;
+
+    private final FxRobot robot = new FxRobot();
+    // Steps over their baseline in the current run
+    private final List<String> failures = new ArrayList<>();
+    private final Properties baselines = new Properties();
+    private long fxThread;
+    private CodeArea area;
+    // Whether the steps running now are measured, or only warming up
+    private boolean measuring;
+
+    @BeforeAll
+    static void startToolkit() throws Exception {
+        // Before the editor reads it, so it neither recovers nor deletes real journals
+        System.setProperty("user.home", home.toString());
+        stage = FxToolkit.registerPrimaryStage();
+    }
+
+    @AfterAll
+    static void writeResults() throws IOException {
+        if(RECORD)
+            writeBaselines();
+        writeReport();
+    }
+
+    static IntStream lines() {
+        // Smallest first, as the others are compared to it
+        return Arrays.stream(LINES.split(",")).map(String::trim).mapToInt(Integer::parseInt).distinct().sorted();
+    }
+
+    @ParameterizedTest(name = "{0} lines")
+    @MethodSource("lines")
+    void editFile(int lines, @TempDir Path folder) throws Exception {
+        if(Files.exists(BASELINES)) {
+            try(var in = Files.newBufferedReader(BASELINES, StandardCharsets.UTF_8)) {
+                baselines.load(in);
+            }
+        }
+        if(!warmedUp) {
+            edit(lines, Files.createDirectory(folder.resolve("warmup")), false);
+            warmedUp = true;
+        }
+        edit(lines, folder, true);
+        assertTrue(failures.isEmpty(), String.join("\n", failures));
+    }
+
+    /**
+     * Opens a generated file, edits and saves it, measuring every step if asked to
+     */
+    private void edit(int lines, Path folder, boolean measuring) throws Exception {
+        this.measuring = measuring;
+        Path file = folder.resolve("generated.asm");
+        String program = SourceGenerator.generate(lines);
+        Files.writeString(file, program, StandardCharsets.UTF_8);
+        fxThread = onFx(() -> Thread.currentThread().getId());
+
+        Application[] application = new Application[1];
+        measure("open", lines, () -> {
+            application[0] = FxToolkit.setupApplication(Main.class, file.toString());
+            FxToolkit.showStage();
+            WaitForAsyncUtils.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS, () -> {
+                CodeArea editor = (CodeArea) stage.getScene().lookup("#editor");
+                return editor != null && onFx(() -> editor.getLength() == program.length() && editor.getText().equals(program));
+            });
+            area = (CodeArea) stage.getScene().lookup("#editor");
+        });
+        try {
+            // Type in the middle of the file, at the end of an indented instruction
+            int line = lines / 2;
+            onFx(() -> {
+                int paragraph = line;
+                while(!area.getParagraph(paragraph).getText().startsWith("    "))
+                    paragraph++;
+                area.moveTo(paragraph, area.getParagraph(paragraph).length());
+                area.requestFocus();
+                return null;
+            });
+
+            measure("enter", lines, () -> {
+                for(int i = 0; i < 20; i++) {
+                    robot.push(KeyCode.ENTER);
+                    robot.write("ADD R1, R1, #1", 0);
+                }
+            });
+            measure("tab", lines, () -> {
+                for(int i = 0; i < 20; i++) {
+                    robot.push(KeyCode.TAB);
+                    robot.push(KeyCode.SHIFT, KeyCode.TAB);
+                }
+            });
+            measure("complete", lines, () -> {
+                for(int i = 0; i < 10; i++) {
+                    robot.push(KeyCode.ENTER);
+                    robot.write("PU", 0);
+                    robot.push(KeyCode.CONTROL, KeyCode.SPACE);
+                    robot.push(KeyCode.ENTER);
+                }
+            });
+
+            StringBuilder block = new StringBuilder();
+            String pasted = SourceGenerator.generate(PASTE_LINES);
+            block.append(pasted, pasted.indexOf('\n') + 1, pasted.lastIndexOf(".END"));
+            onFx(() -> {
+                ClipboardContent content = new ClipboardContent();
+                content.putString(block.toString());
+                return Clipboard.getSystemClipboard().setContent(content);
+            });
+            measure("paste", lines, () -> {
+                robot.push(KeyCode.ENTER);
+                robot.push(KeyCode.SHORTCUT, KeyCode.V);
+            });
+            String edited = onFx(area::getText);
+            assertTrue(edited.contains(block), "The block was not pasted");
+
+            measure("save", lines, () -> {
+                robot.push(KeyCode.SHORTCUT, KeyCode.S);
+                WaitForAsyncUtils.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                                () -> Files.readString(file, StandardCharsets.UTF_8).equals(edited));
+            });
+        } finally {
+            FxToolkit.cleanupApplication(application[0]);
+        }
+    }
+
+    /**
+     * Runs one step, waits for the editor to finish what it started and compares its FX
+     * thread time, how that time scaled, its key latency and the memory it took with the
+     * step's baselines
+     */
+    private void measure(String step, int lines, Step action) throws Exception {
+        if(!measuring) {
+            action.run();
+            settle();
+            return;
+        }
+        long heapBefore = usedHeap();
+        Metrics.reset();
+        long busyBefore = THREADS.getThreadCpuTime(fxThread);
+        long started = System.nanoTime();
+        action.run();
+        settle();
+        long wallMs = (System.nanoTime() - started) / 1_000_000;
+        long fxMs = (THREADS.getThreadCpuTime(fxThread) - busyBefore) / 1_000_000;
+        long heapMb = (usedHeap() - heapBefore) / (1024 * 1024);
+        long keys = Metrics.count(Metrics.Probe.KEY_TO_FRAME);
+        double keyMs = Math.round(Metrics.percentile(Metrics.Probe.KEY_TO_FRAME, 0.5) / 100.0) / 10.0;
+        System.out.printf("%-8s %7d lines  wall %6d ms  FX busy %6d ms  key %6.1f ms  heap %+5d MB%n", step, lines, wallMs, fxMs, keyMs, heapMb);
+
+        measured.put(step + "." + lines + ".wallMs", wallMs);
+        check(step + "." + lines + ".fxMs", fxMs, SLACK_MS);
+        if(lines == SMALLEST)
+            reference.put(step, fxMs);
+        else if(reference.containsKey(step))
+            check(step + "." + lines + ".over" + SMALLEST, Math.round(100.0 * fxMs / Math.max(reference.get(step), FLOOR_MS)) / 100.0, SLACK_RATIO);
+        else
+            failures.add(step + " was not measured on the " + SMALLEST + " line file to compare " + lines + " lines to");
+        if(keys >= MIN_KEYS)
+            check(step + "." + lines + ".keyMs", keyMs, SLACK_KEY_MS);
+        check(step + "." + lines + ".heapMB", heapMb, SLACK_MB);
+    }
+
+    private void check(String key, double value, double slack) {
+        measured.put(key, value == Math.rint(value) ? (Number) Math.round(value) : (Number) value);
+        String baseline = baselines.getProperty(key);
+        if(RECORD || baseline == null)
+            return;
+        double limit = Double.parseDouble(baseline) * TOLERANCE + slack;
+        if(value > limit)
+            failures.add(key + " is " + value + ", over the limit of " + limit + " from baseline " + baseline);
+    }
+
+    /**
+     * Waits for the editor to finish what a step set off, including the highlighting and
+     * checking it hands to background threads, so that work counts towards the step that
+     * caused it rather than whichever step is running when it lands
+     */
+    private static void settle() throws InterruptedException, TimeoutException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        long before = SYSTEM.getProcessCpuTime();
+        do {
+            WaitForAsyncUtils.waitForFxEvents();
+            Thread.sleep(QUIET_MILLIS);
+            long after = SYSTEM.getProcessCpuTime();
+            if(after - before < TimeUnit.MILLISECONDS.toNanos(QUIET_CPU_MILLIS))
+                return;
+            before = after;
+        } while(System.nanoTime() < deadline);
+        throw new TimeoutException("The editor was still busy after " + TIMEOUT_SECONDS + " seconds");
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for(int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+
+    private static <T> T onFx(Callable<T> callable) throws Exception {
+        return WaitForAsyncUtils.asyncFx(callable).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static void writeBaselines() throws IOException {
+        Files.createDirectories(BASELINES.toAbsolutePath().getParent());
+        try(Writer out = Files.newBufferedWriter(BASELINES, StandardCharsets.UTF_8)) {
+            out.write("# Baselines of EditorUiPerformanceTest, written with -Duiperf.record=true\n");
+            out.write("# <step>.<lines>.fxMs (FX thread CPU time), .over<lines> (that time over the time on the file of\n");
+            out.write("# that many lines), .keyMs (median key press to frame) and .heapMB (heap growth)\n");
+            for(Map.Entry<String, Number> entry : measured.entrySet()) {
+                if(!entry.getKey().endsWith(".wallMs"))
+                    out.write(entry.getKey() + "=" + entry.getValue() + "\n");
+            }
+        }
+    }
+
+    private static void writeReport() throws IOException {
+        Files.createDirectories(REPORT.toAbsolutePath().getParent());
+        try(Writer out = Files.newBufferedWriter(REPORT, StandardCharsets.UTF_8)) {
+            out.write("{\n");
+            out.write("  \"java\": \"" + System.getProperty("java.version") + "\",\n");
+            out.write("  \"tolerance\": " + TOLERANCE + ",\n");
+            out.write("  \"measurements\": {\n");
+            int i = 0;
+            for(Map.Entry<String, Number> entry : measured.entrySet())
+                out.write("    \"" + entry.getKey() + "\": " + entry.getValue() + (++i < measured.size() ? ",\n" : "\n"));
+            out.write("  }\n");
+            out.write("}\n");
+        }
+    }
+
+    /**
+     * A step of the scenario, which may throw like the TestFX calls in it
+     */
+    private interface Step {
+        void run() throws Exception;
+    }
+}
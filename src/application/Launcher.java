@@ -0,0 +1,27 @@
+package application;
+
+import batch.BatchAssembler;
+import javafx.application.Application;
+import metrics.Startup;
+
+/**
+ * Entry point of the jar. Unlike @see Main it does not extend Application, so the Java
+ * launcher does not demand JavaFX before main runs, and batch mode works on a plain
+ * classpath without ever loading the toolkit.
+ */
+public class Launcher {
+
+    /**
+     * Starts batch mode for --batch, otherwise the editor
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        if(BatchAssembler.isBatch(args)) {
+            BatchAssembler.main(args);
+            return;
+        }
+        Application.launch(Main.class, args);
+        if(Startup.exitStatus() != 0)
+            System.exit(Startup.exitStatus());
+    }
+}
@@ -1,11 +1,32 @@
 package application;
 
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import batch.BatchAssembler;
+import console.EZConsole;
 import editor.EZEditor;
+import editor.EZEditorController;
 import javafx.application.Application;
+import javafx.geometry.Orientation;
 import javafx.scene.Scene;
+import javafx.scene.control.SplitPane;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.StackPane;
 import javafx.stage.Stage;
 import menu.EZMenu;
+import metrics.EZMetricsHud;
+import metrics.Metrics;
+import metrics.Startup;
+import outline.EZOutline;
+import search.EZSearch;
+import status.EZStatusBar;
+import tabs.EZTabs;
+import usages.EZUsages;
 
 
 /**
@@ -14,6 +35,7 @@ import menu.EZMenu;
 public class Main extends Application {
 
     private Scene scene;  // Main scene of entire application
+    private EZMenu menu;  // Menus of the application, null until the editor is ready
 
     /**
      * JavaFx launch method call
@@ -21,7 +43,14 @@ public class Main extends Application {
      * @param args
      */
     public static void main(String[] args) {
+        // Batch mode assembles a directory from the command line without starting JavaFX
+        if(BatchAssembler.isBatch(args)) {
+            BatchAssembler.main(args);
+            return;
+        }
         launch(args);
+        if(Startup.exitStatus() != 0)
+            System.exit(Startup.exitStatus());
     }
 
     /**
@@ -30,22 +59,103 @@ public class Main extends Application {
      */
     @Override
     public void start(Stage primaryStage) {
+        Startup.reached("fxStarted");
         try {
+            // Writes the latencies measured during the session as JSON on exit
+            List<String> args = getParameters().getRaw();
+            int metricsOut = args.indexOf("--metrics-out");
+            if(metricsOut >= 0 && metricsOut + 1 < args.size())
+                Metrics.dumpOnExit(Paths.get(args.get(metricsOut + 1)));
+
+            // Load the lexer and completion tables while the window is being built
+            Thread warmUp = new Thread(EZEditorController::warmUp, "warm-up");
+            warmUp.setDaemon(true);
+            warmUp.start();
+
+            // Only what the first frame shows is built before the window opens
             BorderPane layout = new BorderPane();
             scene = new Scene(layout, 600, 400);
-
             EZEditor edit = new EZEditor(scene);
-            layout.setCenter(edit.getScrollPane());
-
-            EZMenu menu = new EZMenu(scene, edit);
-            layout.setTop(menu.getMenuBar());
-
+            EZTabs tabs = new EZTabs(scene, edit.getScrollPane());
+            // Stands in for the first document until the menus set up the documents
+            tabs.select(tabs.add("untitled"));
+            StackPane bottom = new StackPane();
+            SplitPane split = new SplitPane(tabs.getPane(), bottom);
+            split.setOrientation(Orientation.VERTICAL);
+            split.setDividerPositions(0.75);
+            layout.setCenter(split);
 
             primaryStage.setScene(scene);
             primaryStage.setTitle("LC-3 EZ Edit");
             primaryStage.show();
+            Startup.reached("shown");
+
+            // The rest is built once the editor has painted
+            int startupReport = args.indexOf("--startup-report");
+            Startup.afterNextFrame(scene, () -> {
+                Startup.reached("firstFrame");
+                edit.initialize();
+                EZConsole console = new EZConsole(scene);
+                EZUsages usages = new EZUsages(scene);
+                EZSearch search = new EZSearch(scene);
+                // The outline sits beside the tabs, and jumps to the entry clicked
+                EZOutline outline = new EZOutline(scene);
+                outline.setOnOpen(entry -> edit.goTo(entry.getLine(), 0));
+                edit.outlineProperty().addListener((obs, before, entries) -> outline.show(entries));
+                split.getItems().remove(tabs.getPane());
+                SplitPane sides = new SplitPane(outline.getPanel(), tabs.getPane());
+                sides.setDividerPositions(0.2);
+                SplitPane.setResizableWithParent(outline.getPanel(), false);
+                split.getItems().add(0, sides);
+                split.setDividerPositions(0.75);
+                Tab consoleTab = new Tab("Console", console.getArea());
+                Tab usagesTab = new Tab("Usages", usages.getPanel());
+                Tab searchTab = new Tab("Search", search.getPanel());
+                TabPane bottomTabs = new TabPane(consoleTab, usagesTab, searchTab);
+                bottomTabs.setTabClosingPolicy(TabPane.TabClosingPolicy.UNAVAILABLE);
+                bottom.getChildren().add(bottomTabs);
+                // Bring the usages or the search results forward whenever they fill in
+                usages.setOnShow(() -> bottomTabs.getSelectionModel().select(usagesTab));
+                search.setOnShow(() -> bottomTabs.getSelectionModel().select(searchTab));
+                EZMetricsHud hud = new EZMetricsHud(scene, split);
+                layout.setCenter(hud.getPane());
+                Metrics.watch(scene);
+
+                EZStatusBar status = new EZStatusBar(scene);
+                layout.setBottom(status.getBar());
+
+                menu = new EZMenu(scene, edit, status, console, usages, search, hud, tabs);
+                layout.setTop(menu.getMenuBar());
+                Startup.reached("ready");
+
+                // Opens the files named on the command line, skipping options and their values
+                List<File> files = new ArrayList<>();
+                for(int i = 0; i < args.size(); i++) {
+                    if(args.get(i).startsWith("--"))
+                        i++;
+                    else
+                        files.add(new File(args.get(i)));
+                }
+                if(!files.isEmpty())
+                    menu.open(files);
+
+                // Measures typing into the editor once it is ready, then exits
+                if(startupReport >= 0 && startupReport + 1 < args.size()) {
+                    Path report = Paths.get(args.get(startupReport + 1));
+                    Startup.afterNextFrame(scene, () -> Startup.typeAndReport(scene, edit.getEditArea(), report));
+                }
+            });
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Ends the session cleanly once the last window closed or the application exits
+     */
+    @Override
+    public void stop() {
+        if(menu != null)
+            menu.close();
+    }
 }
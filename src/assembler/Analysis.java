@@ -0,0 +1,424 @@
+package assembler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import lexer.Mnemonic;
+import lexer.TokenType;
+
+/**
+ * Incremental version of the @see Assembler checks, for flagging problems while the
+ * program is being typed. Keeps one parsed statement per line together with an index
+ * from every label to the lines that define and use it. An edit re-parses only the
+ * lines it replaced, moves addresses only as far as they actually changed, and then
+ * re-checks just the statements that depend on what moved. The outline of the program
+ * is kept the same way, from the labels, .ORIGs, .ENDs and RETs of the lines replaced.
+ *
+ * Not thread safe: all calls are expected to come from one thread.
+ */
+public class Analysis {
+
+    // Parsed statement of every line, null for lines with nothing on them
+    private final ArrayList<Statement> lines = new ArrayList<>();
+
+    // Statements defining and using each label
+    private final HashMap<String, List<Statement>> definitions = new HashMap<>();
+    private final HashMap<String, List<Statement>> references = new HashMap<>();
+
+    // The first .ORIG and the first .END after it, or null
+    private Statement origin;
+    private Statement end;
+
+    // Incremented by every update, so a statement reached several ways is resolved once
+    private int epoch;
+
+    // Statements that shape the outline: labels, .ORIG, .END and RET, in line order
+    private final TreeSet<Statement> landmarks = new TreeSet<>(Comparator.comparingInt(Statement::getLine));
+    // The outline, rebuilt only once an update changed or moved a landmark or a JSR
+    private List<OutlineEntry> outline = List.of();
+    private boolean outlineChanged;
+
+    /**
+     * Creates an analysis of an empty document
+     */
+    public Analysis() {
+        lines.add(null);
+    }
+
+    /**
+     * Getter for the number of lines analysed
+     * @return line count
+     */
+    public int getLineCount() {
+        return lines.size();
+    }
+
+    /**
+     * Replaces a run of lines and re-checks everything that depends on them
+     * @param first First line replaced
+     * @param last Last line replaced (inclusive), in the numbering before the edit
+     * @param text The new text of the lines, without a trailing line break
+     */
+    public void update(int first, int last, CharSequence text) {
+        Set<String> labels = new HashSet<>();
+        boolean layout = false;
+
+        List<Statement> replaced = lines.subList(first, last + 1);
+        for(Statement statement : replaced) {
+            if(statement != null) {
+                layout |= unindex(statement, labels);
+                outlineChanged |= landmarks.remove(statement) || statement.mnemonic == Mnemonic.JSR;
+            }
+        }
+        replaced.clear();
+
+        List<Statement> parsed = new ArrayList<>();
+        Parser parser = new Parser(text, 0, text.length(), first);
+        Statement statement = new Statement();
+        while(parser.parseLine(statement)) {
+            if(statement.isEmpty() && statement.problems.isEmpty()) {
+                parsed.add(null);
+                continue;
+            }
+            Instructions.check(statement);
+            statement.ownProblems = statement.problems.size();
+            layout |= index(statement, labels);
+            parsed.add(statement);
+            statement = new Statement();
+        }
+        lines.addAll(first, parsed);
+
+        if(parsed.size() != last + 1 - first) {
+            // Landmarks after the edit move, and keep their order while they do
+            outlineChanged |= !landmarks.isEmpty() && landmarks.last().line > last;
+            for(int i = first + parsed.size(); i < lines.size(); i++) {
+                Statement moved = lines.get(i);
+                if(moved == null)
+                    continue;
+                moved.line = i;
+                // Duplicate label messages mention the line of the definition
+                if(moved.label != null && definitions.get(moved.label).size() > 1)
+                    labels.add(moved.label);
+            }
+        }
+        for(Statement line : parsed) {
+            if(line != null && isLandmark(line))
+                landmarks.add(line);
+            outlineChanged |= line != null && (line.mnemonic == Mnemonic.JSR || isLandmark(line));
+        }
+
+        List<Statement> changed = new ArrayList<>();
+        if(layout) {
+            findBlock();
+            place(0, lines.size(), changed);
+            changed.clear();
+            for(Statement line : lines) {
+                if(line != null)
+                    changed.add(line);
+            }
+        } else {
+            place(first, first + parsed.size(), changed);
+            for(Statement line : parsed) {
+                if(line != null)
+                    changed.add(line);
+            }
+        }
+
+        for(String label : labels) {
+            changed.addAll(definitions.getOrDefault(label, List.of()));
+            changed.addAll(references.getOrDefault(label, List.of()));
+        }
+        epoch++;
+        for(Statement line : changed) {
+            if(line.epoch != epoch) {
+                line.epoch = epoch;
+                resolve(line);
+            }
+        }
+    }
+
+    /**
+     * Every problem in the document, in line order
+     * @return A new list of diagnostics
+     */
+    public List<Diagnostic> getDiagnostics() {
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        for(Statement statement : lines) {
+            if(statement == null)
+                continue;
+            for(Diagnostic problem : statement.problems) {
+                diagnostics.add(new Diagnostic(statement.line, problem.getStart(), problem.getEnd(),
+                                problem.getMessage()));
+            }
+        }
+        if(origin != null && end == null)
+            diagnostics.add(new Diagnostic(lines.size() - 1, 0, 0, "Missing .END"));
+        return diagnostics;
+    }
+
+    /**
+     * The outline of the program: its .ORIG sections, subroutines, blocks of data and
+     * other labels, in line order. Takes time proportional to the number of labels when
+     * the last update changed one, and none otherwise.
+     * @return An unmodifiable list, the same one as last time if nothing changed
+     */
+    public List<OutlineEntry> getOutline() {
+        if(outlineChanged) {
+            outline = Collections.unmodifiableList(buildOutline());
+            outlineChanged = false;
+        }
+        return outline;
+    }
+
+    /**
+     * Line a label is defined on
+     * @param label The label to look up
+     * @return Zero based line of the definition in use, or -1 if there is none
+     */
+    public int getDefinitionLine(String label) {
+        Statement definition = definition(label);
+        return definition == null ? -1 : definition.line;
+    }
+
+    /**
+     * Walks the landmarks in order. A section runs from its .ORIG to its .END, a
+     * subroutine from its label to the first RET, unless another subroutine or the end
+     * of the section comes first, and a block of data up to the next landmark.
+     */
+    private List<OutlineEntry> buildOutline() {
+        List<Statement> marks = new ArrayList<>(landmarks);
+        List<OutlineEntry> entries = new ArrayList<>();
+        // Whether the walk is inside a section, and the last line of the current subroutine
+        boolean inSection = false;
+        int subroutineEnd = -1;
+        for(int i = 0; i < marks.size(); i++) {
+            Statement mark = marks.get(i);
+            if(mark.mnemonic == Mnemonic.ORIG) {
+                int lastLine = lines.size() - 1;
+                for(int j = i + 1; j < marks.size(); j++) {
+                    if(marks.get(j).mnemonic == Mnemonic.END || marks.get(j).mnemonic == Mnemonic.ORIG) {
+                        lastLine = marks.get(j).mnemonic == Mnemonic.END ? marks.get(j).line : trimmed(marks.get(j).line - 1);
+                        break;
+                    }
+                }
+                boolean address = mark.operandCount > 0 && mark.operandTypes[0] == TokenType.NUMBER;
+                String name = address ? String.format(".ORIG x%04X", mark.operandValues[0] & 0xFFFF) : ".ORIG";
+                entries.add(new OutlineEntry(OutlineEntry.Kind.SECTION, name, mark.line, lastLine, 0));
+                inSection = true;
+                subroutineEnd = -1;
+            }
+            if(mark.label != null) {
+                int depth = inSection ? 1 : 0;
+                if(isCalled(mark.label)) {
+                    subroutineEnd = mark.line;
+                    for(int j = mark.mnemonic == Mnemonic.RET ? i : i + 1; j < marks.size(); j++) {
+                        Statement next = marks.get(j);
+                        if(next.mnemonic == Mnemonic.RET) {
+                            subroutineEnd = next.line;
+                            break;
+                        }
+                        if(next.mnemonic == Mnemonic.END || next.mnemonic == Mnemonic.ORIG
+                                        || next.label != null && isCalled(next.label))
+                            break;
+                    }
+                    entries.add(new OutlineEntry(OutlineEntry.Kind.SUBROUTINE, mark.label, mark.line, subroutineEnd, depth));
+                } else if(mark.line <= subroutineEnd) {
+                    entries.add(new OutlineEntry(OutlineEntry.Kind.LABEL, mark.label, mark.line, mark.line, depth + 1));
+                } else if(mark.mnemonic == Mnemonic.FILL || mark.mnemonic == Mnemonic.BLKW || mark.mnemonic == Mnemonic.STRINGZ) {
+                    int lastLine = i + 1 < marks.size() ? trimmed(marks.get(i + 1).line - 1) : trimmed(lines.size() - 1);
+                    entries.add(new OutlineEntry(OutlineEntry.Kind.DATA, mark.label, mark.line, Math.max(lastLine, mark.line), depth));
+                } else {
+                    entries.add(new OutlineEntry(OutlineEntry.Kind.LABEL, mark.label, mark.line, mark.line, depth));
+                }
+            }
+            if(mark.mnemonic == Mnemonic.END)
+                inSection = false;
+        }
+        return entries;
+    }
+
+    /**
+     * @return true if a JSR calls the label
+     */
+    private boolean isCalled(String label) {
+        for(Statement reference : references.getOrDefault(label, List.of())) {
+            if(reference.mnemonic == Mnemonic.JSR)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return The last line at or before the given one that has a statement, so a block
+     * does not take in the blank lines and comments before the next one
+     */
+    private int trimmed(int line) {
+        while(line > 0 && lines.get(line) == null)
+            line--;
+        return line;
+    }
+
+    private static boolean isLandmark(Statement statement) {
+        return statement.label != null || statement.mnemonic == Mnemonic.ORIG || statement.mnemonic == Mnemonic.END
+                        || statement.mnemonic == Mnemonic.RET;
+    }
+
+    /**
+     * Adds a statement's label and label operands to the index
+     * @return true if the statement is a .ORIG or .END, which can move every address
+     */
+    private boolean index(Statement statement, Set<String> labels) {
+        if(statement.label != null) {
+            definitions.computeIfAbsent(statement.label, k -> new ArrayList<>(1)).add(statement);
+            labels.add(statement.label);
+        }
+        for(int i = 0; i < statement.operandCount; i++) {
+            if(statement.operandTypes[i] == TokenType.LABEL)
+                references.computeIfAbsent(statement.operandTexts[i], k -> new ArrayList<>()).add(statement);
+        }
+        return statement.mnemonic == Mnemonic.ORIG || statement.mnemonic == Mnemonic.END;
+    }
+
+    /**
+     * Removes a statement's label and label operands from the index
+     * @return true if the statement is a .ORIG or .END, which can move every address
+     */
+    private boolean unindex(Statement statement, Set<String> labels) {
+        if(statement.label != null) {
+            remove(definitions, statement.label, statement);
+            labels.add(statement.label);
+        }
+        for(int i = 0; i < statement.operandCount; i++) {
+            if(statement.operandTypes[i] == TokenType.LABEL)
+                remove(references, statement.operandTexts[i], statement);
+        }
+        return statement.mnemonic == Mnemonic.ORIG || statement.mnemonic == Mnemonic.END;
+    }
+
+    private static void remove(HashMap<String, List<Statement>> index, String label, Statement statement) {
+        List<Statement> statements = index.get(label);
+        if(statements == null)
+            return;
+        statements.remove(statement);
+        if(statements.isEmpty())
+            index.remove(label);
+    }
+
+    /**
+     * Finds the .ORIG that starts the program and the .END that closes it
+     */
+    private void findBlock() {
+        origin = null;
+        end = null;
+        for(Statement statement : lines) {
+            if(statement == null)
+                continue;
+            if(origin == null && statement.mnemonic == Mnemonic.ORIG) {
+                origin = statement;
+            } else if(origin != null && statement.mnemonic == Mnemonic.END) {
+                end = statement;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Whether a line is inside the .ORIG/.END block and so takes up memory
+     */
+    private boolean isPlaced(int line) {
+        return origin != null && line > origin.line && (end == null || line <= end.line);
+    }
+
+    /**
+     * Assigns addresses and sizes from a line onwards, stopping at the first statement
+     * past the edited lines whose address did not change
+     * @param from First line to place
+     * @param edited Line just past the edited ones
+     * @param moved Collects every statement whose address changed, and every statement
+     * that uses a label whose address changed
+     */
+    private void place(int from, int edited, List<Statement> moved) {
+        int address = 0;
+        for(int i = from - 1; i >= 0; i--) {
+            Statement statement = lines.get(i);
+            if(statement != null) {
+                address = statement.address + statement.size;
+                break;
+            }
+        }
+        for(int i = from; i < lines.size(); i++) {
+            Statement statement = lines.get(i);
+            if(statement == null)
+                continue;
+            if(statement == origin)
+                address = origin.operandValues[0] & 0xFFFF;
+            int size = isPlaced(i) ? Instructions.size(statement) : 0;
+            if(i >= edited && statement.address == address && statement.size == size)
+                return;
+            if(statement.address != address) {
+                moved.add(statement);
+                if(statement.label != null)
+                    moved.addAll(references.getOrDefault(statement.label, List.of()));
+            }
+            statement.address = address;
+            statement.size = size;
+            address += size;
+        }
+    }
+
+    /**
+     * The definition of a label that is in use: the first one inside the block
+     */
+    private Statement definition(String label) {
+        Statement first = null;
+        for(Statement statement : definitions.getOrDefault(label, List.of())) {
+            if(isPlaced(statement.line) && (first == null || statement.line < first.line))
+                first = statement;
+        }
+        return first;
+    }
+
+    /**
+     * Recomputes the problems of a statement that depend on the rest of the program
+     */
+    private void resolve(Statement statement) {
+        List<Diagnostic> problems = statement.problems;
+        problems.subList(statement.ownProblems, problems.size()).clear();
+        if(statement.isEmpty())
+            return;
+
+        int line = statement.line;
+        if(end != null && line > end.line) {
+            statement.lineProblem("Code after .END is ignored");
+            return;
+        }
+        if(statement.mnemonic == Mnemonic.ORIG) {
+            if(statement != origin)
+                statement.mnemonicProblem("Only one .ORIG block is allowed per file");
+            return;
+        }
+        if(!isPlaced(line)) {
+            statement.lineProblem("Expected .ORIG before the first instruction");
+            return;
+        }
+
+        if(statement.label != null) {
+            Statement definition = definition(statement.label);
+            if(definition != statement) {
+                statement.problem(statement.labelStart, statement.labelEnd, "Label '" + statement.label
+                                + "' is already defined on line " + (definition.line + 1));
+            }
+        }
+        if(statement.size > 0 && statement.address <= 0x10000 && statement.address + statement.size > 0x10000)
+            statement.lineProblem("Program does not fit in memory");
+        Instructions.checkLabels(statement, label -> {
+            Statement definition = definition(label);
+            return definition == null ? -1 : definition.address;
+        });
+    }
+}
@@ -0,0 +1,101 @@
+package assembler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import lexer.Mnemonic;
+
+/**
+ * Two pass LC-3 assembler. The first pass parses every line once, assigns addresses,
+ * fills the symbol table and stores each placed statement in a compact @see Program.
+ * The second pass encodes from the program without looking at the source text again.
+ */
+public class Assembler {
+
+    private Assembler() {
+    }
+
+    /**
+     * Assembles a program made of a single .ORIG ... .END block
+     * @param text The program source
+     * @return The assembled program and any problems found
+     */
+    public static Assembly assemble(CharSequence text) {
+        Program program = new Program();
+        List<Diagnostic> diagnostics = new ArrayList<>();
+        SymbolTable symbols = new SymbolTable();
+
+        // Pass 1: parse, check, assign addresses and define labels
+        Parser parser = new Parser(text);
+        Statement statement = new Statement();
+        int origin = -1;
+        int address = 0;
+        boolean ended = false;
+        boolean overflowed = false;
+        int lastLine = 0;
+        while(parser.parseLine(statement)) {
+            lastLine = statement.line;
+            if(statement.isEmpty()) {
+                if(!statement.problems.isEmpty())
+                    diagnostics.addAll(statement.problems);
+                continue;
+            }
+            Instructions.check(statement);
+
+            Mnemonic mnemonic = statement.mnemonic;
+            boolean placed = false;
+            if(ended) {
+                statement.lineProblem("Code after .END is ignored");
+            } else if(mnemonic == Mnemonic.ORIG) {
+                if(origin >= 0) {
+                    statement.mnemonicProblem("Only one .ORIG block is allowed per file");
+                } else {
+                    origin = statement.operandValues[0] & 0xFFFF;
+                    address = origin;
+                }
+            } else if(origin < 0) {
+                statement.lineProblem("Expected .ORIG before the first instruction");
+            } else {
+                placed = true;
+                ended = mnemonic == Mnemonic.END;
+            }
+
+            statement.address = address;
+            statement.size = placed ? Instructions.size(statement) : 0;
+            if(placed && statement.label != null && !symbols.define(statement.label, address, statement.line)) {
+                statement.problem(statement.labelStart, statement.labelEnd, "Label '" + statement.label
+                                + "' is already defined on line " + (symbols.get(statement.label).getLine() + 1));
+            }
+            address += statement.size;
+            if(address > 0x10000 && !overflowed) {
+                statement.lineProblem("Program does not fit in memory");
+                overflowed = true;
+            }
+
+            if(!statement.problems.isEmpty())
+                diagnostics.addAll(statement.problems);
+            if(placed && statement.mnemonic != null)
+                program.add(statement);
+        }
+        if(origin >= 0 && !ended)
+            diagnostics.add(new Diagnostic(lastLine, 0, 0, "Missing .END"));
+
+        // Pass 2: encode
+        int size = Math.max(0, Math.min(address, 0x10000) - Math.max(origin, 0));
+        char[] words = new char[size];
+        int[] wordLines = new int[size];
+        for(int i = 0; i < program.count; i++) {
+            program.load(i, statement);
+            if(statement.size > 0 && statement.address + statement.size <= 0x10000) {
+                int at = statement.address - origin;
+                Instructions.encode(statement, symbols, words, at);
+                for(int j = 0; j < statement.size; j++)
+                    wordLines[at + j] = statement.line;
+                if(!statement.problems.isEmpty())
+                    diagnostics.addAll(statement.problems);
+            }
+        }
+        diagnostics.sort(Comparator.comparingInt(Diagnostic::getLine));
+        return new Assembly(Math.max(origin, 0), words, wordLines, symbols, diagnostics);
+    }
+}
@@ -0,0 +1,74 @@
+package assembler;
+
+import java.util.List;
+
+/**
+ * The result of assembling a program: the memory image, which source line each word
+ * came from, the symbol table and every problem that was found.
+ */
+public class Assembly {
+
+    // Address the first word is loaded at
+    private final int origin;
+    // The memory image, one 16 bit word per char
+    private final char[] words;
+    // Zero based source line of each word
+    private final int[] wordLines;
+    private final SymbolTable symbols;
+    private final List<Diagnostic> diagnostics;
+
+    Assembly(int origin, char[] words, int[] wordLines, SymbolTable symbols, List<Diagnostic> diagnostics) {
+        this.origin = origin;
+        this.words = words;
+        this.wordLines = wordLines;
+        this.symbols = symbols;
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * Getter for the load address of the first word
+     * @return origin
+     */
+    public int getOrigin() {
+        return this.origin;
+    }
+
+    /**
+     * Getter for the memory image
+     * @return words, one per char
+     */
+    public char[] getWords() {
+        return this.words;
+    }
+
+    /**
+     * Getter for the zero based source line of each word
+     * @return lines, parallel to the words
+     */
+    public int[] getWordLines() {
+        return this.wordLines;
+    }
+
+    /**
+     * Getter for the symbol table
+     * @return symbols
+     */
+    public SymbolTable getSymbols() {
+        return this.symbols;
+    }
+
+    /**
+     * Getter for the problems found, in line order
+     * @return diagnostics
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return this.diagnostics;
+    }
+
+    /**
+     * @return true if any problem was found, in which case the image should not be used
+     */
+    public boolean hasErrors() {
+        return !diagnostics.isEmpty();
+    }
+}
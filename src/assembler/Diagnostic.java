@@ -0,0 +1,68 @@
+package assembler;
+
+/**
+ * A problem found in LC-3 source, pinned to a line and a range of columns on that line.
+ */
+public class Diagnostic {
+
+    // Zero based line the problem is on
+    private final int line;
+    // Columns the problem covers, start inclusive and end exclusive
+    private final int start;
+    private final int end;
+    // Human readable description of the problem
+    private final String message;
+
+    /**
+     * @param line Zero based line the problem is on
+     * @param start First column of the problem (inclusive)
+     * @param end Last column of the problem (exclusive)
+     * @param message Description of the problem
+     */
+    public Diagnostic(int line, int start, int end, String message) {
+        this.line = line;
+        this.start = start;
+        this.end = end;
+        this.message = message;
+    }
+
+    /**
+     * Getter for the zero based line number
+     * @return line
+     */
+    public int getLine() {
+        return this.line;
+    }
+
+    /**
+     * Getter for the first column of the problem
+     * @return start column
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * Getter for the column just past the problem
+     * @return end column
+     */
+    public int getEnd() {
+        return this.end;
+    }
+
+    /**
+     * Getter for the description of the problem
+     * @return message
+     */
+    public String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * @return The problem in "line N: message" form, with a one based line number
+     */
+    @Override
+    public String toString() {
+        return "line " + (line + 1) + ": " + message;
+    }
+}
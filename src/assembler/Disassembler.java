@@ -0,0 +1,340 @@
+package assembler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import lexer.Mnemonic;
+
+/**
+ * Turns a memory image back into assembly, the reverse of @see OutputWriter. Reads the
+ * big-endian .obj format and the .hex and .bin text formats, all of which start with the
+ * origin. Every word is decoded as an instruction through a table indexed by opcode, and
+ * words that are not valid instructions become .FILL. PC relative targets inside the
+ * image get labels named after their address, so the output assembles back into the same
+ * image. Each line ends with a comment giving the address and the word.
+ */
+public final class Disassembler {
+
+    // Origin plus every word of LC-3 memory
+    private static final int MAX_WORDS = 0x10001;
+    // Column the instruction starts in, and the column its comment starts in
+    private static final int INDENT = 8;
+    private static final int COMMENT = 36;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Decodes one word with a known opcode
+     */
+    private interface Decoder {
+        /**
+         * @param word The word
+         * @param pc Address of the next word, which PC offsets are relative to
+         * @param labels Which addresses have labels
+         * @param out Where to write the instruction
+         * @return false if the word is not a valid instruction
+         */
+        boolean decode(int word, int pc, boolean[] labels, StringBuilder out);
+    }
+
+    // One decoder per opcode
+    private static final Decoder[] OPCODES = new Decoder[16];
+    // Width of the PC offset of each opcode, 0 for opcodes without one
+    private static final int[] PC_OFFSET = {9, 0, 9, 9, 11, 0, 0, 0, 0, 0, 9, 9, 0, 0, 9, 0};
+    // BR spelling for each combination of the n, z and p bits
+    private static final String[] BRANCHES = new String[8];
+    // TRAP alias for each trap vector, null where there is none
+    private static final String[] TRAPS = new String[256];
+
+    static {
+        for(Mnemonic mnemonic : Mnemonic.values()) {
+            if(mnemonic.isBranch() && BRANCHES[mnemonic.getConditionBits()] == null)
+                BRANCHES[mnemonic.getConditionBits()] = mnemonic.getText();
+            if(mnemonic.isTrapAlias())
+                TRAPS[mnemonic.getTrapVector()] = mnemonic.getText();
+        }
+
+        OPCODES[0x0] = (word, pc, labels, out) -> {
+            int conditions = word >> 9 & 7;
+            if(conditions == 0)
+                return false;
+            out.append(BRANCHES[conditions]).append(' ');
+            target(out, pc, signed(word, 9), labels);
+            return true;
+        };
+        OPCODES[0x1] = (word, pc, labels, out) -> arithmetic("ADD", word, out);
+        OPCODES[0x2] = (word, pc, labels, out) -> pcRelative("LD", word, pc, labels, out);
+        OPCODES[0x3] = (word, pc, labels, out) -> pcRelative("ST", word, pc, labels, out);
+        OPCODES[0x4] = (word, pc, labels, out) -> {
+            if((word & 0x800) != 0) {
+                out.append("JSR ");
+                target(out, pc, signed(word, 11), labels);
+                return true;
+            }
+            if((word & 0x63F) != 0)
+                return false;
+            out.append("JSRR R").append(word >> 6 & 7);
+            return true;
+        };
+        OPCODES[0x5] = (word, pc, labels, out) -> arithmetic("AND", word, out);
+        OPCODES[0x6] = (word, pc, labels, out) -> baseOffset("LDR", word, out);
+        OPCODES[0x7] = (word, pc, labels, out) -> baseOffset("STR", word, out);
+        OPCODES[0x8] = (word, pc, labels, out) -> {
+            if((word & 0xFFF) != 0)
+                return false;
+            out.append("RTI");
+            return true;
+        };
+        OPCODES[0x9] = (word, pc, labels, out) -> {
+            if((word & 0x3F) != 0x3F)
+                return false;
+            out.append("NOT R").append(word >> 9 & 7).append(", R").append(word >> 6 & 7);
+            return true;
+        };
+        OPCODES[0xA] = (word, pc, labels, out) -> pcRelative("LDI", word, pc, labels, out);
+        OPCODES[0xB] = (word, pc, labels, out) -> pcRelative("STI", word, pc, labels, out);
+        OPCODES[0xC] = (word, pc, labels, out) -> {
+            if((word & 0xE3F) != 0)
+                return false;
+            int base = word >> 6 & 7;
+            out.append(base == 7 ? "RET" : "JMP R" + base);
+            return true;
+        };
+        OPCODES[0xD] = (word, pc, labels, out) -> false; // Reserved
+        OPCODES[0xE] = (word, pc, labels, out) -> pcRelative("LEA", word, pc, labels, out);
+        OPCODES[0xF] = (word, pc, labels, out) -> {
+            if((word & 0xF00) != 0)
+                return false;
+            int vector = word & 0xFF;
+            if(TRAPS[vector] != null)
+                out.append(TRAPS[vector]);
+            else
+                out.append("TRAP x").append(Integer.toHexString(vector).toUpperCase(Locale.ROOT));
+            return true;
+        };
+    }
+
+    private Disassembler() {
+    }
+
+    /**
+     * @param file A file
+     * @return true if the file's extension is one of the image formats
+     */
+    public static boolean isImage(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".obj") || name.endsWith(".hex") || name.endsWith(".bin");
+    }
+
+    /**
+     * Reads a memory image, memory mapping .obj files and streaming the text formats
+     * @param file An .obj, .hex or .bin file
+     * @return The origin followed by the words
+     * @throws IOException If the file cannot be read or is not an image
+     */
+    public static char[] read(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        char[] image;
+        if(name.endsWith(".obj"))
+            image = readObject(file);
+        else
+            image = readText(file, name.endsWith(".bin") ? 2 : 16);
+        if(image.length == 0)
+            throw new IOException(file.getFileName() + " is empty");
+        return image;
+    }
+
+    /**
+     * Reads a memory image and disassembles it
+     * @param file An .obj, .hex or .bin file
+     * @return The assembly
+     * @throws IOException If the file cannot be read or is not an image
+     */
+    public static String disassemble(Path file) throws IOException {
+        return disassemble(read(file), file.getFileName().toString());
+    }
+
+    /**
+     * Disassembles a memory image
+     * @param image The origin followed by the words
+     * @param name Where the image came from, for the heading comment
+     * @return The assembly
+     */
+    public static String disassemble(char[] image, String name) {
+        int origin = image[0];
+        int count = image.length - 1;
+
+        // First pass: find the addresses inside the image that are jumped to or referenced
+        boolean[] labels = new boolean[0x10000];
+        for(int i = 0; i < count; i++) {
+            int target = target(image[i + 1], origin + i);
+            if(target >= origin && target < origin + count && target <= 0xFFFF)
+                labels[target] = true;
+        }
+
+        // Second pass: one line per word
+        StringBuilder out = new StringBuilder(64 * (count + 3));
+        out.append("; Disassembled from ").append(name).append('\n');
+        indent(out, out.length());
+        out.append(".ORIG x");
+        hex(out, origin);
+        out.append('\n');
+        for(int i = 0; i < count; i++) {
+            int address = (origin + i) & 0xFFFF;
+            int word = image[i + 1];
+            int start = out.length();
+            if(labels[address])
+                label(out, address);
+            indent(out, start);
+            if(!OPCODES[word >> 12].decode(word, address + 1, labels, out)) {
+                out.setLength(start);
+                if(labels[address])
+                    label(out, address);
+                indent(out, start);
+                out.append(".FILL x");
+                hex(out, word);
+            }
+            do {
+                out.append(' ');
+            } while(out.length() - start < COMMENT);
+            out.append("; x");
+            hex(out, address);
+            out.append("  x");
+            hex(out, word);
+            out.append('\n');
+        }
+        indent(out, out.length());
+        out.append(".END\n");
+        return out.toString();
+    }
+
+    /**
+     * The address a word refers to relative to the PC
+     * @return The target, outside 0 to xFFFF if it wraps around memory, or -1 if the word
+     * has no PC relative operand
+     */
+    private static int target(int word, int address) {
+        int opcode = word >> 12;
+        int bits = PC_OFFSET[opcode];
+        if(bits == 0 || opcode == 0x0 && (word & 0xE00) == 0 || opcode == 0x4 && (word & 0x800) == 0)
+            return -1;
+        return address + 1 + signed(word, bits);
+    }
+
+    private static char[] readObject(Path file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size % 2 != 0)
+                throw new IOException(file.getFileName() + " has an odd number of bytes, it is not an LC-3 object file");
+            if(size / 2 > MAX_WORDS)
+                throw new IOException(file.getFileName() + " is larger than LC-3 memory");
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size); // Big-endian
+            char[] image = new char[(int) size / 2];
+            bytes.asCharBuffer().get(image);
+            return image;
+        }
+    }
+
+    /**
+     * Reads one number per line, ignoring blank lines
+     */
+    private static char[] readText(Path file, int radix) throws IOException {
+        int digits = radix == 2 ? 16 : 4;
+        char[] image = new char[4096];
+        int count = 0;
+        int line = 0;
+        try(BufferedReader in = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+            String text;
+            while((text = in.readLine()) != null) {
+                line++;
+                text = text.trim();
+                if(text.isEmpty())
+                    continue;
+                int word;
+                try {
+                    word = text.length() == digits ? Integer.parseInt(text, radix) : -1;
+                } catch(NumberFormatException e) {
+                    word = -1;
+                }
+                if(word < 0) {
+                    throw new IOException("Line " + line + " of " + file.getFileName() + " is not a " + digits
+                                    + " digit " + (radix == 2 ? "binary" : "hexadecimal") + " number");
+                }
+                if(count == MAX_WORDS)
+                    throw new IOException(file.getFileName() + " is larger than LC-3 memory");
+                if(count == image.length)
+                    image = Arrays.copyOf(image, Math.min(2 * count, MAX_WORDS));
+                image[count++] = (char) word;
+            }
+        }
+        return Arrays.copyOf(image, count);
+    }
+
+    private static boolean arithmetic(String mnemonic, int word, StringBuilder out) {
+        out.append(mnemonic).append(" R").append(word >> 9 & 7).append(", R").append(word >> 6 & 7).append(", ");
+        if((word & 0x20) != 0) {
+            out.append('#').append(signed(word, 5));
+            return true;
+        }
+        if((word & 0x18) != 0)
+            return false;
+        out.append('R').append(word & 7);
+        return true;
+    }
+
+    private static boolean pcRelative(String mnemonic, int word, int pc, boolean[] labels, StringBuilder out) {
+        out.append(mnemonic).append(" R").append(word >> 9 & 7).append(", ");
+        target(out, pc, signed(word, 9), labels);
+        return true;
+    }
+
+    private static boolean baseOffset(String mnemonic, int word, StringBuilder out) {
+        out.append(mnemonic).append(" R").append(word >> 9 & 7).append(", R").append(word >> 6 & 7)
+                        .append(", #").append(signed(word, 6));
+        return true;
+    }
+
+    /**
+     * Writes a PC relative operand as the label of its target, or as the offset if the
+     * target is outside the image or wraps around memory
+     */
+    private static void target(StringBuilder out, int pc, int offset, boolean[] labels) {
+        int target = pc + offset;
+        if(target >= 0 && target <= 0xFFFF && labels[target])
+            label(out, target);
+        else
+            out.append('#').append(offset);
+    }
+
+    private static void label(StringBuilder out, int address) {
+        out.append('L');
+        hex(out, address);
+    }
+
+    /**
+     * Pads a line with spaces up to the instruction column
+     * @param start Where the line starts in out
+     */
+    private static void indent(StringBuilder out, int start) {
+        while(out.length() - start < INDENT)
+            out.append(' ');
+    }
+
+    /**
+     * Sign extends the low bits of a word
+     */
+    private static int signed(int word, int bits) {
+        return word << (32 - bits) >> (32 - bits);
+    }
+
+    private static void hex(StringBuilder out, int value) {
+        for(int i = 0; i < 4; i++)
+            out.append(HEX[(value >> (12 - 4 * i)) & 0xF]);
+    }
+}
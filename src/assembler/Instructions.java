@@ -0,0 +1,306 @@
+package assembler;
+
+import java.util.function.ToIntFunction;
+import lexer.Mnemonic;
+import lexer.TokenType;
+
+/**
+ * What every LC-3 instruction and directive looks like: which operands it takes, how
+ * many words it occupies and how it is encoded. Problems are recorded on the statement
+ * being checked or encoded.
+ */
+public final class Instructions {
+
+    // Operand kinds, combined into a bit set for operands that accept several
+    private static final int REG = 1, NUM = 2, LBL = 4, STR = 8;
+
+    private static final int[] NONE = {};
+    private static final int[] THREE_REG_OR_IMM = {REG, REG, REG | NUM};
+    private static final int[] TARGET = {LBL | NUM};
+    private static final int[] BASE = {REG};
+    private static final int[] REG_TARGET = {REG, LBL | NUM};
+    private static final int[] REG_BASE_OFFSET = {REG, REG, NUM};
+    private static final int[] TWO_REG = {REG, REG};
+    private static final int[] NUMBER = {NUM};
+    private static final int[] VALUE = {NUM | LBL};
+    private static final int[] TEXT = {STR};
+
+    private Instructions() {
+    }
+
+    /**
+     * Checks operand counts, operand kinds and the range of literal operands
+     * @param statement The statement to check, problems are added to it
+     */
+    public static void check(Statement statement) {
+        Mnemonic mnemonic = statement.mnemonic;
+        if(mnemonic == null)
+            return;
+        int[] signature = signature(mnemonic);
+        if(statement.operandCount != signature.length) {
+            statement.mnemonicProblem(mnemonic.getText() + " expects " + signature.length
+                            + (signature.length == 1 ? " operand" : " operands")
+                            + ", found " + statement.operandCount);
+        }
+        int count = Math.min(statement.operandCount, signature.length);
+        for(int i = 0; i < count; i++) {
+            if((kind(statement.operandTypes[i]) & signature[i]) == 0) {
+                statement.operandProblem(i, "Operand " + (i + 1) + " of " + mnemonic.getText()
+                                + " must be " + describe(signature[i]));
+            } else if(statement.operandTypes[i] == TokenType.NUMBER) {
+                checkRange(statement, i, statement.operandValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Checks that every label operand is defined and that PC relative targets are in reach
+     * @param statement A checked statement with its address filled in, problems are added to it
+     * @param addresses Address of a label, or -1 if it is not defined
+     */
+    public static void checkLabels(Statement statement, ToIntFunction<String> addresses) {
+        Mnemonic mnemonic = statement.mnemonic;
+        if(mnemonic == null)
+            return;
+        int[] signature = signature(mnemonic);
+        int count = Math.min(statement.operandCount, signature.length);
+        for(int i = 0; i < count; i++) {
+            if(statement.operandTypes[i] != TokenType.LABEL || (signature[i] & LBL) == 0)
+                continue;
+            int target = target(statement, i, addresses);
+            if(target >= 0 && mnemonic != Mnemonic.FILL)
+                checkRange(statement, i, target - (statement.address + 1));
+        }
+    }
+
+    /**
+     * Number of words a statement occupies in memory
+     * @param statement A statement that has been checked
+     * @return Size in words
+     */
+    public static int size(Statement statement) {
+        Mnemonic mnemonic = statement.mnemonic;
+        if(mnemonic == null || mnemonic == Mnemonic.ORIG || mnemonic == Mnemonic.END)
+            return 0;
+        if(mnemonic == Mnemonic.BLKW) {
+            boolean valid = statement.operandCount > 0 && statement.operandTypes[0] == TokenType.NUMBER;
+            return valid ? Math.max(0, Math.min(statement.operandValues[0], 0xFFFF)) : 0;
+        }
+        if(mnemonic == Mnemonic.STRINGZ) {
+            boolean valid = statement.operandCount > 0 && statement.operandTypes[0] == TokenType.STRING;
+            return valid ? statement.operandTexts[0].length() + 1 : 1;
+        }
+        return 1;
+    }
+
+    /**
+     * Encodes a statement into memory words, resolving labels through the symbol table
+     * @param statement A checked statement with its address and size filled in
+     * @param symbols Every label in the program
+     * @param out Where to put the words
+     * @param at Index of the statement's first word in out
+     */
+    public static void encode(Statement statement, SymbolTable symbols, char[] out, int at) {
+        Mnemonic mnemonic = statement.mnemonic;
+        switch(mnemonic) {
+            case ADD:
+            case AND: {
+                int word = (mnemonic == Mnemonic.ADD ? 0x1000 : 0x5000)
+                                | register(statement, 0) << 9 | register(statement, 1) << 6;
+                if(statement.operandTypes[2] == TokenType.REGISTER)
+                    word |= register(statement, 2);
+                else
+                    word |= 0x20 | (number(statement, 2) & 0x1F);
+                out[at] = (char) word;
+                break;
+            }
+            case BR: case BRN: case BRZ: case BRP: case BRNZ: case BRNP: case BRZP: case BRNZP:
+                out[at] = (char) (mnemonic.getConditionBits() << 9 | offset(statement, 0, symbols, 9));
+                break;
+            case JMP:
+                out[at] = (char) (0xC000 | register(statement, 0) << 6);
+                break;
+            case RET:
+                out[at] = (char) 0xC1C0;
+                break;
+            case JSR:
+                out[at] = (char) (0x4800 | offset(statement, 0, symbols, 11));
+                break;
+            case JSRR:
+                out[at] = (char) (0x4000 | register(statement, 0) << 6);
+                break;
+            case LD:
+            case LDI:
+            case LEA:
+            case ST:
+            case STI:
+                out[at] = (char) (opcode(mnemonic) << 12 | register(statement, 0) << 9 | offset(statement, 1, symbols, 9));
+                break;
+            case LDR:
+            case STR:
+                out[at] = (char) (opcode(mnemonic) << 12 | register(statement, 0) << 9
+                                | register(statement, 1) << 6 | (number(statement, 2) & 0x3F));
+                break;
+            case NOT:
+                out[at] = (char) (0x903F | register(statement, 0) << 9 | register(statement, 1) << 6);
+                break;
+            case RTI:
+                out[at] = (char) 0x8000;
+                break;
+            case TRAP:
+                out[at] = (char) (0xF000 | (number(statement, 0) & 0xFF));
+                break;
+            case GETC: case OUT: case PUTS: case IN: case PUTSP: case HALT:
+                out[at] = (char) (0xF000 | mnemonic.getTrapVector());
+                break;
+            case FILL:
+                out[at] = (char) value(statement, 0, symbols);
+                break;
+            case BLKW:
+                for(int i = 0; i < statement.size; i++)
+                    out[at + i] = 0;
+                break;
+            case STRINGZ: {
+                String text = statement.operandTexts[0] == null ? "" : statement.operandTexts[0];
+                for(int i = 0; i < text.length(); i++)
+                    out[at + i] = text.charAt(i);
+                out[at + text.length()] = 0;
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    /**
+     * The 4 bit opcode of a load, store or LEA instruction
+     */
+    private static int opcode(Mnemonic mnemonic) {
+        switch(mnemonic) {
+            case LD: return 0x2;
+            case LDI: return 0xA;
+            case LEA: return 0xE;
+            case ST: return 0x3;
+            case STI: return 0xB;
+            case LDR: return 0x6;
+            default: return 0x7;
+        }
+    }
+
+    /**
+     * The operand kinds each operand of a mnemonic accepts
+     */
+    private static int[] signature(Mnemonic mnemonic) {
+        switch(mnemonic) {
+            case ADD: case AND: return THREE_REG_OR_IMM;
+            case BR: case BRN: case BRZ: case BRP: case BRNZ: case BRNP: case BRZP: case BRNZP: return TARGET;
+            case JMP: case JSRR: return BASE;
+            case JSR: return TARGET;
+            case LD: case LDI: case LEA: case ST: case STI: return REG_TARGET;
+            case LDR: case STR: return REG_BASE_OFFSET;
+            case NOT: return TWO_REG;
+            case TRAP: case ORIG: case BLKW: return NUMBER;
+            case FILL: return VALUE;
+            case STRINGZ: return TEXT;
+            default: return NONE;
+        }
+    }
+
+    /**
+     * Checks a literal or PC offset against the field it is encoded into
+     */
+    private static boolean checkRange(Statement statement, int i, int value) {
+        String field;
+        int min;
+        int max;
+        Mnemonic mnemonic = statement.mnemonic;
+        if(mnemonic.isBranch() || mnemonic == Mnemonic.LD || mnemonic == Mnemonic.LDI || mnemonic == Mnemonic.LEA
+                        || mnemonic == Mnemonic.ST || mnemonic == Mnemonic.STI) {
+            field = "PCoffset9"; min = -256; max = 255;
+        } else if(mnemonic == Mnemonic.JSR) {
+            field = "PCoffset11"; min = -1024; max = 1023;
+        } else if(mnemonic == Mnemonic.ADD || mnemonic == Mnemonic.AND) {
+            field = "imm5"; min = -16; max = 15;
+        } else if(mnemonic == Mnemonic.LDR || mnemonic == Mnemonic.STR) {
+            field = "offset6"; min = -32; max = 31;
+        } else if(mnemonic == Mnemonic.TRAP) {
+            field = "trapvector8"; min = 0; max = 0xFF;
+        } else if(mnemonic == Mnemonic.ORIG) {
+            field = ".ORIG address"; min = 0; max = 0xFFFF;
+        } else if(mnemonic == Mnemonic.BLKW) {
+            field = ".BLKW size"; min = 0; max = 0xFFFF;
+        } else {
+            field = ".FILL value"; min = -0x8000; max = 0xFFFF;
+        }
+        if(value >= min && value <= max)
+            return true;
+        statement.operandProblem(i, field + " must be between " + min + " and " + max + ", found " + value);
+        return false;
+    }
+
+    /**
+     * PC relative offset to a label, or a literal offset, masked to the field width
+     */
+    private static int offset(Statement statement, int i, SymbolTable symbols, int bits) {
+        int offset;
+        if(statement.operandTypes[i] == TokenType.LABEL) {
+            int target = target(statement, i, symbols::getAddress);
+            if(target < 0)
+                return 0;
+            offset = target - (statement.address + 1);
+            if(!checkRange(statement, i, offset))
+                return 0;
+        } else {
+            offset = number(statement, i);
+        }
+        return offset & ((1 << bits) - 1);
+    }
+
+    /**
+     * A literal or the address of a label
+     */
+    private static int value(Statement statement, int i, SymbolTable symbols) {
+        if(statement.operandTypes[i] == TokenType.LABEL)
+            return Math.max(target(statement, i, symbols::getAddress), 0);
+        return number(statement, i);
+    }
+
+    /**
+     * Address of a label operand, reporting it if the label is not defined
+     */
+    private static int target(Statement statement, int i, ToIntFunction<String> addresses) {
+        int target = addresses.applyAsInt(statement.operandTexts[i]);
+        if(target < 0)
+            statement.operandProblem(i, "Undefined label '" + statement.operandTexts[i] + "'");
+        return target;
+    }
+
+    private static int register(Statement statement, int i) {
+        return i < statement.operandCount && statement.operandTypes[i] == TokenType.REGISTER
+                        ? Math.max(statement.operandValues[i], 0) : 0;
+    }
+
+    private static int number(Statement statement, int i) {
+        return i < statement.operandCount && statement.operandTypes[i] == TokenType.NUMBER
+                        ? statement.operandValues[i] : 0;
+    }
+
+    private static int kind(TokenType type) {
+        switch(type) {
+            case REGISTER: return REG;
+            case NUMBER: return NUM;
+            case LABEL: return LBL;
+            default: return STR;
+        }
+    }
+
+    private static String describe(int kinds) {
+        switch(kinds) {
+            case REG: return "a register";
+            case NUM: return "a number";
+            case STR: return "a string";
+            case REG | NUM: return "a register or a number";
+            default: return "a label or a number";
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package assembler;
+
+/**
+ * One entry of a program's outline: a .ORIG section, a subroutine, a block of data or a
+ * plain label, together with the lines it spans, see @see Analysis#getOutline.
+ */
+public class OutlineEntry {
+
+    /**
+     * What an entry is
+     */
+    public enum Kind {
+        // A .ORIG up to its .END
+        SECTION,
+        // A label that JSR calls, up to its RET
+        SUBROUTINE,
+        // A label on .FILL, .BLKW or .STRINGZ, up to the next label
+        DATA,
+        // Any other label, such as a loop
+        LABEL
+    }
+
+    private final Kind kind;
+    // The label, or the .ORIG with its address
+    private final String name;
+    // Zero based lines the entry starts and ends on (inclusive)
+    private final int line;
+    private final int lastLine;
+    // How deep the entry is nested: sections 0, their labels 1, labels in a subroutine 2
+    private final int depth;
+
+    /**
+     * @param kind What the entry is
+     * @param name The label, or the .ORIG with its address
+     * @param line Zero based line the entry starts on
+     * @param lastLine Zero based line the entry ends on (inclusive)
+     * @param depth How deep the entry is nested
+     */
+    public OutlineEntry(Kind kind, String name, int line, int lastLine, int depth) {
+        this.kind = kind;
+        this.name = name;
+        this.line = line;
+        this.lastLine = lastLine;
+        this.depth = depth;
+    }
+
+    /**
+     * Getter for what the entry is
+     * @return kind
+     */
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Getter for the label, or the .ORIG with its address
+     * @return name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Getter for the zero based line the entry starts on
+     * @return line
+     */
+    public int getLine() {
+        return this.line;
+    }
+
+    /**
+     * Getter for the zero based line the entry ends on
+     * @return last line (inclusive)
+     */
+    public int getLastLine() {
+        return this.lastLine;
+    }
+
+    /**
+     * Getter for how deep the entry is nested
+     * @return depth, 0 for sections
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+
+    /**
+     * @return true if the entry spans more than its own line, and so can be folded
+     */
+    public boolean isFoldable() {
+        return lastLine > line;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(!(other instanceof OutlineEntry))
+            return false;
+        OutlineEntry entry = (OutlineEntry) other;
+        return kind == entry.kind && name.equals(entry.name) && line == entry.line && lastLine == entry.lastLine
+                        && depth == entry.depth;
+    }
+
+    @Override
+    public int hashCode() {
+        return (name.hashCode() * 31 + line) * 31 + lastLine;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
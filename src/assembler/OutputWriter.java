@@ -0,0 +1,191 @@
+package assembler;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Writes an @see Assembly out in the formats other LC-3 tools understand. Every format
+ * starts with the origin, followed by one entry per word.
+ */
+public final class OutputWriter {
+
+    // Buffer size for every output stream
+    private static final int BUFFER = 64 * 1024;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private OutputWriter() {
+    }
+
+    /**
+     * Writes a big-endian binary object file
+     * @param path File to write
+     * @param assembly The assembled program
+     * @throws IOException If the file cannot be written
+     */
+    public static void writeObject(Path path, Assembly assembly) throws IOException {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER))) {
+            out.writeShort(assembly.getOrigin());
+            for(char word : assembly.getWords())
+                out.writeShort(word);
+        }
+    }
+
+    /**
+     * Writes one 16 digit binary number per line
+     * @param path File to write
+     * @param assembly The assembled program
+     * @throws IOException If the file cannot be written
+     */
+    public static void writeBinary(Path path, Assembly assembly) throws IOException {
+        try(Writer out = writer(path)) {
+            char[] line = new char[17];
+            line[16] = '\n';
+            binary(line, assembly.getOrigin());
+            out.write(line);
+            for(char word : assembly.getWords()) {
+                binary(line, word);
+                out.write(line);
+            }
+        }
+    }
+
+    /**
+     * Writes one 4 digit hexadecimal number per line
+     * @param path File to write
+     * @param assembly The assembled program
+     * @throws IOException If the file cannot be written
+     */
+    public static void writeHex(Path path, Assembly assembly) throws IOException {
+        try(Writer out = writer(path)) {
+            char[] line = new char[5];
+            line[4] = '\n';
+            hex(line, 0, assembly.getOrigin());
+            out.write(line);
+            for(char word : assembly.getWords()) {
+                hex(line, 0, word);
+                out.write(line);
+            }
+        }
+    }
+
+    /**
+     * Writes the symbol table in the same layout as the classic lc3as tool
+     * @param path File to write
+     * @param assembly The assembled program
+     * @throws IOException If the file cannot be written
+     */
+    public static void writeSymbols(Path path, Assembly assembly) throws IOException {
+        try(Writer out = writer(path)) {
+            out.write("// Symbol table\n");
+            out.write("// Scope level 0:\n");
+            out.write("//\tSymbol Name       Page Address\n");
+            out.write("//\t----------------  ------------\n");
+            char[] address = new char[4];
+            for(SymbolTable.Symbol symbol : assembly.getSymbols().getSymbols()) {
+                out.write("//\t");
+                out.write(symbol.getName());
+                for(int i = symbol.getName().length(); i < 18; i++)
+                    out.write(' ');
+                hex(address, 0, symbol.getAddress());
+                out.write(address);
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Writes a listing: address, hex and binary of each word next to the source line it
+     * came from. Lines that produce several words list the extra words underneath.
+     * @param path File to write
+     * @param source The program source
+     * @param assembly The assembled program
+     * @throws IOException If the file cannot be written
+     */
+    public static void writeListing(Path path, CharSequence source, Assembly assembly) throws IOException {
+        char[] words = assembly.getWords();
+        int[] wordLines = assembly.getWordLines();
+        char[] prefix = "(0000) 0000  0000000000000000 ".toCharArray();
+        char[] blank = new char[prefix.length];
+        Arrays.fill(blank, ' ');
+        char[] number = new char[16];
+
+        try(Writer out = writer(path)) {
+            int word = 0;
+            int line = 0;
+            int start = 0;
+            while(start <= source.length()) {
+                int end = start;
+                while(end < source.length() && source.charAt(end) != '\n')
+                    end++;
+
+                boolean first = true;
+                do {
+                    boolean hasWord = word < words.length && wordLines[word] == line;
+                    if(hasWord) {
+                        hex(prefix, 1, assembly.getOrigin() + word);
+                        hex(prefix, 7, words[word]);
+                        binary(prefix, 13, words[word]);
+                        out.write(prefix);
+                        word++;
+                    } else {
+                        out.write(blank);
+                    }
+                    if(first) {
+                        out.write(number, 0, lineNumber(number, line + 1));
+                        out.append(source, start, end);
+                        first = false;
+                    }
+                    out.write('\n');
+                } while(word < words.length && wordLines[word] == line);
+
+                if(end >= source.length())
+                    break;
+                start = end + 1;
+                line++;
+            }
+        }
+    }
+
+    private static Writer writer(Path path) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8), BUFFER);
+    }
+
+    /**
+     * Formats a line number as "(    5) ", wider if the number needs it
+     * @return Number of characters written
+     */
+    private static int lineNumber(char[] out, int value) {
+        String digits = Integer.toString(value);
+        int width = Math.max(5, digits.length());
+        if(width + 3 > out.length)
+            return 0;
+        out[0] = '(';
+        Arrays.fill(out, 1, 1 + width - digits.length(), ' ');
+        digits.getChars(0, digits.length(), out, 1 + width - digits.length());
+        out[1 + width] = ')';
+        out[2 + width] = ' ';
+        return width + 3;
+    }
+
+    private static void hex(char[] out, int at, int value) {
+        for(int i = 0; i < 4; i++)
+            out[at + i] = HEX[(value >> (12 - 4 * i)) & 0xF];
+    }
+
+    private static void binary(char[] out, int value) {
+        binary(out, 0, value);
+    }
+
+    private static void binary(char[] out, int at, int value) {
+        for(int i = 0; i < 16; i++)
+            out[at + i] = (value & (0x8000 >> i)) != 0 ? '1' : '0';
+    }
+}
@@ -0,0 +1,210 @@
+package assembler;
+
+import lexer.Lexer;
+import lexer.TokenType;
+
+/**
+ * Turns LC-3 source into @see Statement objects one line at a time, reading every token
+ * exactly once. Only syntax is checked here; operand shapes, ranges and labels are
+ * checked by the @see Assembler.
+ */
+public class Parser {
+
+    private final Lexer lexer;
+    // Zero based number of the line being parsed
+    private int line;
+    // Offset of the first character of the line being parsed
+    private int lineStart;
+    // Set once the last line was parsed
+    private boolean done;
+
+    /**
+     * Creates a parser over a whole piece of source
+     * @param text The source
+     */
+    public Parser(CharSequence text) {
+        this(text, 0, text.length(), 0);
+    }
+
+    /**
+     * Creates a parser over part of a piece of source
+     * @param text The source
+     * @param start Offset of the first line to parse
+     * @param end Offset to stop parsing at
+     * @param firstLine Zero based number of the first line
+     */
+    public Parser(CharSequence text, int start, int end, int firstLine) {
+        lexer = new Lexer().reset(text, start, end);
+        line = firstLine;
+        lineStart = start;
+    }
+
+    /**
+     * Parses the next line into a statement, replacing everything the statement held
+     * @param statement The statement to fill in
+     * @return false once there are no more lines
+     */
+    public boolean parseLine(Statement statement) {
+        if(done)
+            return false;
+        reset(statement);
+
+        TokenType type = lexer.next();
+        if(type == TokenType.LABEL) {
+            statement.label = lexer.getText();
+            statement.labelStart = column(lexer.getStart());
+            statement.labelEnd = column(lexer.getEnd());
+            type = lexer.next();
+        }
+        if(type == TokenType.KEYWORD || type == TokenType.DIRECTIVE) {
+            statement.mnemonic = lexer.getMnemonic();
+            statement.mnemonicStart = column(lexer.getStart());
+            statement.mnemonicEnd = column(lexer.getEnd());
+            type = operands(statement, lexer.next());
+        }
+        // Only operands follow a mnemonic, so anything left here means the line did not
+        // start with one. Report the first stray token and skip the rest of the line.
+        boolean reported = false;
+        while(type != null && type != TokenType.NEWLINE) {
+            if(type != TokenType.COMMENT && !reported) {
+                unexpected(statement, lexer.getType() == TokenType.INCOMPLETE ? null
+                                : "Expected an instruction or directive, found '" + lexer.getText() + "'");
+                reported = true;
+            }
+            type = lexer.next();
+        }
+
+        if(type == null) {
+            done = true;
+        } else {
+            line++;
+            lineStart = lexer.getEnd();
+        }
+        return true;
+    }
+
+    /**
+     * Reads the operands following a mnemonic. Commas between operands are optional.
+     * @return The first token after the operands
+     */
+    private TokenType operands(Statement statement, TokenType type) {
+        boolean afterComma = false;
+        while(type != null && type != TokenType.NEWLINE && type != TokenType.COMMENT) {
+            switch(type) {
+                case COMMA:
+                    if(statement.operandCount == 0 || afterComma)
+                        unexpected(statement, null);
+                    afterComma = true;
+                    break;
+                case REGISTER:
+                case NUMBER:
+                case LABEL:
+                case STRING:
+                    afterComma = false;
+                    operand(statement, type);
+                    break;
+                default:
+                    unexpected(statement, null);
+                    break;
+            }
+            type = lexer.next();
+        }
+        if(afterComma && statement.operandCount > 0)
+            statement.problem(statement.operandEnds[statement.operandCount - 1],
+                            statement.operandEnds[statement.operandCount - 1] + 1, "Missing operand after ','");
+        return type;
+    }
+
+    /**
+     * Adds the current token as an operand
+     */
+    private void operand(Statement statement, TokenType type) {
+        int start = column(lexer.getStart());
+        int end = column(lexer.getEnd());
+        if(statement.operandCount == Statement.MAX_OPERANDS) {
+            statement.problem(start, end, "Too many operands");
+            return;
+        }
+        int i = statement.operandCount++;
+        statement.operandTypes[i] = type;
+        statement.operandStarts[i] = start;
+        statement.operandEnds[i] = end;
+        switch(type) {
+            case REGISTER:
+                statement.operandValues[i] = lexer.getRegister();
+                if(lexer.getRegister() < 0)
+                    statement.operandProblem(i, lexer.getText() + " is not a general purpose register, use R0-R7");
+                break;
+            case NUMBER:
+                statement.operandValues[i] = lexer.getValue();
+                break;
+            case LABEL:
+                statement.operandTexts[i] = lexer.getText();
+                break;
+            default:
+                statement.operandTexts[i] = string(statement, i);
+                break;
+        }
+    }
+
+    /**
+     * Decodes the current string token, handling \n, \t, \r, \0, \" and \\ escapes
+     */
+    private String string(Statement statement, int operand) {
+        String raw = lexer.getText();
+        boolean closed = raw.length() > 1 && raw.charAt(raw.length() - 1) == '"'
+                        && raw.charAt(raw.length() - 2) != '\\';
+        if(!closed)
+            statement.operandProblem(operand, "Unterminated string");
+        int stop = closed ? raw.length() - 1 : raw.length();
+        StringBuilder decoded = new StringBuilder(stop);
+        for(int i = 1; i < stop; i++) {
+            char c = raw.charAt(i);
+            if(c == '\\' && i + 1 < stop) {
+                c = raw.charAt(++i);
+                switch(c) {
+                    case 'n': c = '\n'; break;
+                    case 't': c = '\t'; break;
+                    case 'r': c = '\r'; break;
+                    case '0': c = '\0'; break;
+                    default: break;
+                }
+            }
+            decoded.append(c);
+        }
+        return decoded.toString();
+    }
+
+    /**
+     * Reports the current token as out of place
+     * @param message The message to use, or null for a generic one
+     */
+    private void unexpected(Statement statement, String message) {
+        if(message == null) {
+            message = lexer.getType() == TokenType.INCOMPLETE
+                            ? "Replace the placeholder '" + lexer.getText() + "'"
+                            : "Unexpected '" + lexer.getText() + "'";
+        }
+        statement.problem(column(lexer.getStart()), column(lexer.getEnd()), message);
+    }
+
+    private int column(int offset) {
+        return offset - lineStart;
+    }
+
+    private void reset(Statement statement) {
+        statement.line = line;
+        statement.label = null;
+        statement.labelStart = statement.labelEnd = 0;
+        statement.mnemonic = null;
+        statement.mnemonicStart = statement.mnemonicEnd = 0;
+        statement.operandCount = 0;
+        statement.address = 0;
+        statement.size = 0;
+        statement.problems.clear();
+        for(int i = 0; i < Statement.MAX_OPERANDS; i++) {
+            statement.operandTypes[i] = null;
+            statement.operandTexts[i] = null;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package assembler;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import lexer.Mnemonic;
+import lexer.TokenType;
+
+/**
+ * Compact intermediate representation the assembler's passes share: every placed
+ * statement stored column-wise in primitive arrays, with label names interned so each
+ * distinct name is kept once. Statements are copied in and out of a reusable
+ * @see Statement so no per-line objects survive the first pass.
+ */
+class Program {
+
+    private static final Mnemonic[] MNEMONICS = Mnemonic.values();
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int N = Statement.MAX_OPERANDS;
+
+    int count;
+    private int[] lines = new int[256];
+    private int[] addresses = new int[256];
+    private int[] sizes = new int[256];
+    private byte[] mnemonics = new byte[256];
+    private byte[] operandCounts = new byte[256];
+    private byte[] operandTypes = new byte[256 * N];
+    private int[] operandValues = new int[256 * N];
+    private String[] operandTexts = new String[256 * N];
+    private int[] operandStarts = new int[256 * N];
+    private int[] operandEnds = new int[256 * N];
+
+    // One shared instance of every label name and string literal seen
+    private final HashMap<String, String> names = new HashMap<>();
+
+    /**
+     * Appends a statement that has a mnemonic
+     * @param statement The statement to copy
+     */
+    void add(Statement statement) {
+        if(count == lines.length)
+            grow();
+        int i = count++;
+        lines[i] = statement.line;
+        addresses[i] = statement.address;
+        sizes[i] = statement.size;
+        mnemonics[i] = (byte) statement.mnemonic.ordinal();
+        operandCounts[i] = (byte) statement.operandCount;
+        for(int j = 0; j < statement.operandCount; j++) {
+            int k = i * N + j;
+            operandTypes[k] = (byte) statement.operandTypes[j].ordinal();
+            operandValues[k] = statement.operandValues[j];
+            String text = statement.operandTexts[j];
+            operandTexts[k] = text == null ? null : names.computeIfAbsent(text, t -> t);
+            operandStarts[k] = statement.operandStarts[j];
+            operandEnds[k] = statement.operandEnds[j];
+        }
+    }
+
+    /**
+     * Copies a stored statement back out, clearing its problems
+     * @param i Index of the statement
+     * @param statement The statement to fill in
+     */
+    void load(int i, Statement statement) {
+        statement.line = lines[i];
+        statement.label = null;
+        statement.address = addresses[i];
+        statement.size = sizes[i];
+        statement.mnemonic = MNEMONICS[mnemonics[i]];
+        statement.operandCount = operandCounts[i];
+        statement.problems.clear();
+        for(int j = 0; j < statement.operandCount; j++) {
+            int k = i * N + j;
+            statement.operandTypes[j] = TYPES[operandTypes[k]];
+            statement.operandValues[j] = operandValues[k];
+            statement.operandTexts[j] = operandTexts[k];
+            statement.operandStarts[j] = operandStarts[k];
+            statement.operandEnds[j] = operandEnds[k];
+        }
+    }
+
+    private void grow() {
+        int capacity = lines.length * 2;
+        lines = Arrays.copyOf(lines, capacity);
+        addresses = Arrays.copyOf(addresses, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        mnemonics = Arrays.copyOf(mnemonics, capacity);
+        operandCounts = Arrays.copyOf(operandCounts, capacity);
+        operandTypes = Arrays.copyOf(operandTypes, capacity * N);
+        operandValues = Arrays.copyOf(operandValues, capacity * N);
+        operandTexts = Arrays.copyOf(operandTexts, capacity * N);
+        operandStarts = Arrays.copyOf(operandStarts, capacity * N);
+        operandEnds = Arrays.copyOf(operandEnds, capacity * N);
+    }
+}
@@ -0,0 +1,216 @@
+package assembler;
+
+import java.util.ArrayList;
+import java.util.List;
+import lexer.Mnemonic;
+import lexer.TokenType;
+
+/**
+ * One parsed line of LC-3 source: an optional label, an optional instruction or
+ * directive and up to three operands. Registers and numbers are already converted to
+ * ints, so the assembler never has to look at the source text again.
+ */
+public class Statement {
+
+    // No LC-3 instruction takes more operands than this
+    public static final int MAX_OPERANDS = 3;
+
+    // Zero based line the statement came from
+    int line;
+
+    // Label defined on this line, or null
+    String label;
+    int labelStart;
+    int labelEnd;
+
+    // Instruction or directive on this line, or null
+    Mnemonic mnemonic;
+    int mnemonicStart;
+    int mnemonicEnd;
+
+    // Operands: REGISTER, NUMBER, LABEL or STRING, see @see TokenType
+    int operandCount;
+    final TokenType[] operandTypes = new TokenType[MAX_OPERANDS];
+    // Register number or numeric value
+    final int[] operandValues = new int[MAX_OPERANDS];
+    // Label name or decoded string literal
+    final String[] operandTexts = new String[MAX_OPERANDS];
+    final int[] operandStarts = new int[MAX_OPERANDS];
+    final int[] operandEnds = new int[MAX_OPERANDS];
+
+    // Address and number of words, filled in by the assembler's first pass
+    int address;
+    int size;
+
+    // Problems found while parsing and checking the line
+    final List<Diagnostic> problems = new ArrayList<>(0);
+    // How many of the problems come from the line's own text, see @see Analysis
+    int ownProblems;
+    // Last update of the @see Analysis that re-checked this statement
+    int epoch;
+
+    /**
+     * Getter for the zero based line number
+     * @return line
+     */
+    public int getLine() {
+        return this.line;
+    }
+
+    /**
+     * Getter for the label defined on this line
+     * @return label, or null
+     */
+    public String getLabel() {
+        return this.label;
+    }
+
+    /**
+     * Getter for the column the label starts at
+     * @return label start
+     */
+    public int getLabelStart() {
+        return this.labelStart;
+    }
+
+    /**
+     * Getter for the column just past the label
+     * @return label end
+     */
+    public int getLabelEnd() {
+        return this.labelEnd;
+    }
+
+    /**
+     * Getter for the instruction or directive
+     * @return mnemonic, or null for a line with only a label
+     */
+    public Mnemonic getMnemonic() {
+        return this.mnemonic;
+    }
+
+    /**
+     * Getter for the column the mnemonic starts at
+     * @return mnemonic start
+     */
+    public int getMnemonicStart() {
+        return this.mnemonicStart;
+    }
+
+    /**
+     * Getter for the column just past the mnemonic
+     * @return mnemonic end
+     */
+    public int getMnemonicEnd() {
+        return this.mnemonicEnd;
+    }
+
+    /**
+     * Getter for the number of operands
+     * @return operand count
+     */
+    public int getOperandCount() {
+        return this.operandCount;
+    }
+
+    /**
+     * @param i Operand index
+     * @return REGISTER, NUMBER, LABEL or STRING
+     */
+    public TokenType getOperandType(int i) {
+        return operandTypes[i];
+    }
+
+    /**
+     * @param i Operand index
+     * @return Register number for registers, value for numbers
+     */
+    public int getOperandValue(int i) {
+        return operandValues[i];
+    }
+
+    /**
+     * @param i Operand index
+     * @return Label name for labels, decoded text for strings, null otherwise
+     */
+    public String getOperandText(int i) {
+        return operandTexts[i];
+    }
+
+    /**
+     * @param i Operand index
+     * @return Column the operand starts at
+     */
+    public int getOperandStart(int i) {
+        return operandStarts[i];
+    }
+
+    /**
+     * @param i Operand index
+     * @return Column just past the operand
+     */
+    public int getOperandEnd(int i) {
+        return operandEnds[i];
+    }
+
+    /**
+     * Getter for the address of the first word this statement assembles to
+     * @return address
+     */
+    public int getAddress() {
+        return this.address;
+    }
+
+    /**
+     * Getter for the number of words this statement assembles to
+     * @return size
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Getter for the problems found while parsing and checking the line
+     * @return problems
+     */
+    public List<Diagnostic> getProblems() {
+        return this.problems;
+    }
+
+    /**
+     * @return true if the line has neither a label nor an instruction
+     */
+    public boolean isEmpty() {
+        return label == null && mnemonic == null;
+    }
+
+    /**
+     * Records a problem covering part of this line
+     */
+    void problem(int start, int end, String message) {
+        problems.add(new Diagnostic(line, start, end, message));
+    }
+
+    /**
+     * Records a problem with the line as a whole, covering its label and mnemonic
+     */
+    void lineProblem(String message) {
+        int start = label != null ? labelStart : mnemonicStart;
+        int end = mnemonic != null ? mnemonicEnd : labelEnd;
+        problem(start, end, message);
+    }
+
+    /**
+     * Records a problem covering an operand
+     */
+    void operandProblem(int i, String message) {
+        problem(operandStarts[i], operandEnds[i], message);
+    }
+
+    /**
+     * Records a problem covering the mnemonic
+     */
+    void mnemonicProblem(String message) {
+        problem(mnemonicStart, mnemonicEnd, message);
+    }
+}
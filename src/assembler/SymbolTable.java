@@ -0,0 +1,99 @@
+package assembler;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * Maps label names to the address and line they were defined on. Remembers the order
+ * labels were defined in so the table can be written out in source order.
+ */
+public class SymbolTable {
+
+    // Label name to its definition
+    private final HashMap<String, Symbol> symbols = new LinkedHashMap<>();
+
+    /**
+     * A single label definition
+     */
+    public static class Symbol {
+        private final String name;
+        private final int address;
+        private final int line;
+
+        Symbol(String name, int address, int line) {
+            this.name = name;
+            this.address = address;
+            this.line = line;
+        }
+
+        /**
+         * Getter for the label name
+         * @return name
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Getter for the address the label refers to
+         * @return address
+         */
+        public int getAddress() {
+            return this.address;
+        }
+
+        /**
+         * Getter for the zero based line the label was defined on
+         * @return line
+         */
+        public int getLine() {
+            return this.line;
+        }
+    }
+
+    /**
+     * Defines a label
+     * @param name Label name
+     * @param address Address the label refers to
+     * @param line Zero based line the label is defined on
+     * @return false if the label was already defined, the first definition is kept
+     */
+    public boolean define(String name, int address, int line) {
+        return symbols.putIfAbsent(name, new Symbol(name, address, line)) == null;
+    }
+
+    /**
+     * Looks up a label
+     * @param name Label name
+     * @return The definition, or null if the label is not defined
+     */
+    public Symbol get(String name) {
+        return symbols.get(name);
+    }
+
+    /**
+     * Looks up the address of a label
+     * @param name Label name
+     * @return The address, or -1 if the label is not defined
+     */
+    public int getAddress(String name) {
+        Symbol symbol = symbols.get(name);
+        return symbol == null ? -1 : symbol.address;
+    }
+
+    /**
+     * Getter for all definitions in the order they were defined
+     * @return symbols
+     */
+    public Collection<Symbol> getSymbols() {
+        return symbols.values();
+    }
+
+    /**
+     * @return Number of labels defined
+     */
+    public int size() {
+        return symbols.size();
+    }
+}
@@ -0,0 +1,168 @@
+package batch;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import assembler.Assembler;
+import assembler.Assembly;
+import assembler.OutputWriter;
+import file.FileLoader;
+
+/**
+ * Headless entry point that assembles every .asm file under a directory without ever
+ * starting JavaFX. Files are independent, so each one is a task on a fork-join pool
+ * with one worker per core, and no state is shared between them until the results are
+ * collected for the report.
+ *
+ * Usage: --batch &lt;dir&gt; --out &lt;dir&gt; [--jobs &lt;n&gt;]
+ */
+public final class BatchAssembler {
+
+    private static final String USAGE = "Usage: --batch <dir> --out <dir> [--jobs <n>]";
+
+    private BatchAssembler() {
+    }
+
+    /**
+     * @param args Command line arguments
+     * @return true if the arguments ask for batch mode
+     */
+    public static boolean isBatch(String[] args) {
+        for(String arg : args) {
+            if(arg.equals("--batch"))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Runs a batch, prints a summary table and writes report.json to the output
+     * directory. Exits with 0 if every file assembled, 1 if any did not and 2 if the
+     * arguments are wrong.
+     * @param args Command line arguments
+     */
+    public static void main(String[] args) {
+        Path in = null;
+        Path out = null;
+        int jobs = Runtime.getRuntime().availableProcessors();
+        try {
+            for(int i = 0; i < args.length; i++) {
+                switch(args[i]) {
+                    case "--batch": in = Paths.get(args[++i]); break;
+                    case "--out": out = Paths.get(args[++i]); break;
+                    case "--jobs": jobs = Integer.parseInt(args[++i]); break;
+                    default: throw new IllegalArgumentException("Unknown argument " + args[i]);
+                }
+            }
+        } catch(RuntimeException e) {
+            System.err.println(e.getMessage() == null ? USAGE : e.getMessage() + "\n" + USAGE);
+            System.exit(2);
+        }
+        if(in == null || out == null || jobs < 1 || !Files.isDirectory(in)) {
+            System.err.println(in != null && !Files.isDirectory(in) ? in + " is not a directory" : USAGE);
+            System.exit(2);
+        }
+
+        try {
+            long start = System.nanoTime();
+            List<FileResult> results = assembleAll(in, out, jobs);
+            long wallNanos = System.nanoTime() - start;
+            BatchReport.writeJson(out.resolve("report.json"), results, wallNanos, jobs);
+            BatchReport.printTable(System.out, results, wallNanos, jobs);
+            System.exit(results.stream().allMatch(FileResult::isOk) ? 0 : 1);
+        } catch(IOException e) {
+            System.err.println("Batch failed: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Assembles every .asm file under a directory in parallel, writing .obj and .hex
+     * files to the same relative paths under the output directory
+     * @param in Directory to search
+     * @param out Directory to write to
+     * @param jobs Number of files to work on at once
+     * @return One result per file, in path order
+     * @throws IOException If the directories cannot be read or created
+     */
+    public static List<FileResult> assembleAll(Path in, Path out, int jobs) throws IOException {
+        List<Path> sources;
+        try(Stream<Path> files = Files.walk(in)) {
+            sources = files.filter(f -> f.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".asm"))
+                            .filter(Files::isRegularFile)
+                            .sorted()
+                            .collect(Collectors.toList());
+        }
+        Files.createDirectories(out);
+
+        ForkJoinPool pool = new ForkJoinPool(jobs);
+        try {
+            List<ForkJoinTask<FileResult>> tasks = new ArrayList<>(sources.size());
+            for(Path source : sources)
+                tasks.add(pool.submit(() -> assemble(in, source, out)));
+            List<FileResult> results = new ArrayList<>(sources.size());
+            for(ForkJoinTask<FileResult> task : tasks)
+                results.add(task.join());
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Reads, assembles and writes one file. Never throws: problems end up in the result.
+     */
+    static FileResult assemble(Path root, Path source, Path out) {
+        String name = root.relativize(source).toString().replace('\\', '/');
+        long readStart = System.nanoTime();
+        String text;
+        try {
+            text = FileLoader.load(source, null).getText();
+        } catch(IOException e) {
+            return new FileResult(name, 0, 0, List.of(), "Could not read: " + e.getMessage(),
+                            System.nanoTime() - readStart, 0, 0);
+        }
+        int lines = countLines(text);
+        long assembleStart = System.nanoTime();
+        Assembly assembly = Assembler.assemble(text);
+        long writeStart = System.nanoTime();
+        if(assembly.hasErrors()) {
+            return new FileResult(name, lines, 0, assembly.getDiagnostics(), null,
+                            assembleStart - readStart, writeStart - assembleStart, 0);
+        }
+
+        String failure = null;
+        try {
+            Path target = out.resolve(root.relativize(source));
+            Files.createDirectories(target.getParent());
+            String base = target.getFileName().toString();
+            base = base.substring(0, base.length() - ".asm".length());
+            OutputWriter.writeObject(target.resolveSibling(base + ".obj"), assembly);
+            OutputWriter.writeHex(target.resolveSibling(base + ".hex"), assembly);
+        } catch(IOException e) {
+            failure = "Could not write: " + e.getMessage();
+        }
+        return new FileResult(name, lines, assembly.getWords().length, assembly.getDiagnostics(), failure,
+                        assembleStart - readStart, writeStart - assembleStart, System.nanoTime() - writeStart);
+    }
+
+    /**
+     * Counts lines as an editor shows them: a newline ending the file starts no new line
+     */
+    private static int countLines(String text) {
+        int lines = text.isEmpty() || text.endsWith("\n") ? 0 : 1;
+        for(int i = 0; i < text.length(); i++) {
+            if(text.charAt(i) == '\n')
+                lines++;
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,134 @@
+package batch;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import assembler.Diagnostic;
+
+/**
+ * Writes the summary of a batch run, as JSON for tools and as a table for people.
+ */
+final class BatchReport {
+
+    private BatchReport() {
+    }
+
+    /**
+     * Writes every file's result, diagnostics and timings as JSON
+     * @param path File to write
+     * @param results Results of the batch
+     * @param wallNanos Time the whole batch took
+     * @param jobs Number of files worked on at once
+     * @throws IOException If the file cannot be written
+     */
+    static void writeJson(Path path, List<FileResult> results, long wallNanos, int jobs) throws IOException {
+        try(Writer out = new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            out.write("{\n");
+            out.write("  \"jobs\": " + jobs + ",\n");
+            out.write("  \"files\": " + results.size() + ",\n");
+            out.write("  \"ok\": " + results.stream().filter(FileResult::isOk).count() + ",\n");
+            out.write("  \"wallMillis\": " + millis(wallNanos) + ",\n");
+            out.write("  \"cpuMillis\": " + millis(totalNanos(results)) + ",\n");
+            out.write("  \"results\": [");
+            for(int i = 0; i < results.size(); i++) {
+                FileResult result = results.get(i);
+                out.write(i == 0 ? "\n" : ",\n");
+                out.write("    {\"path\": " + quote(result.getPath()));
+                out.write(", \"ok\": " + result.isOk());
+                out.write(", \"lines\": " + result.getLines());
+                out.write(", \"words\": " + result.getWords());
+                out.write(", \"readMillis\": " + millis(result.getReadNanos()));
+                out.write(", \"assembleMillis\": " + millis(result.getAssembleNanos()));
+                out.write(", \"writeMillis\": " + millis(result.getWriteNanos()));
+                if(result.getFailure() != null)
+                    out.write(", \"failure\": " + quote(result.getFailure()));
+                out.write(", \"diagnostics\": [");
+                List<Diagnostic> diagnostics = result.getDiagnostics();
+                for(int j = 0; j < diagnostics.size(); j++) {
+                    Diagnostic diagnostic = diagnostics.get(j);
+                    out.write(j == 0 ? "" : ", ");
+                    out.write("{\"line\": " + (diagnostic.getLine() + 1) + ", \"column\": " + (diagnostic.getStart() + 1)
+                                    + ", \"message\": " + quote(diagnostic.getMessage()) + "}");
+                }
+                out.write("]}");
+            }
+            out.write(results.isEmpty() ? "]\n" : "\n  ]\n");
+            out.write("}\n");
+        }
+    }
+
+    /**
+     * Prints one row per file followed by totals
+     * @param out Where to print
+     * @param results Results of the batch
+     * @param wallNanos Time the whole batch took
+     * @param jobs Number of files worked on at once
+     */
+    static void printTable(PrintStream out, List<FileResult> results, long wallNanos, int jobs) {
+        int width = 4;
+        for(FileResult result : results)
+            width = Math.max(width, result.getPath().length());
+        String row = "%-" + width + "s  %-6s %8s %8s %7s %10s%n";
+
+        out.printf(Locale.ROOT, row, "File", "Status", "Lines", "Words", "Errors", "Time (ms)");
+        for(FileResult result : results) {
+            String status = result.getFailure() != null ? "FAILED" : result.isOk() ? "ok" : "ERRORS";
+            out.printf(Locale.ROOT, row, result.getPath(), status, result.getLines(), result.getWords(),
+                            result.getDiagnostics().size(), millis(result.getTotalNanos()));
+            if(result.getFailure() != null)
+                out.println("    " + result.getFailure());
+            else if(!result.getDiagnostics().isEmpty())
+                out.println("    " + result.getDiagnostics().get(0));
+        }
+
+        long ok = results.stream().filter(FileResult::isOk).count();
+        double seconds = wallNanos / 1e9;
+        long totalNanos = totalNanos(results);
+        out.printf(Locale.ROOT, "%n%d files, %d ok, %d with problems in %s ms on %d threads"
+                        + " (%.1f files/s, %.1fx parallel speedup)%n",
+                        results.size(), ok, results.size() - ok, millis(wallNanos), jobs,
+                        seconds > 0 ? results.size() / seconds : 0.0,
+                        wallNanos > 0 ? (double) totalNanos / wallNanos : 0.0);
+    }
+
+    private static long totalNanos(List<FileResult> results) {
+        long total = 0;
+        for(FileResult result : results)
+            total += result.getTotalNanos();
+        return total;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    /**
+     * Quotes and escapes a string for JSON
+     */
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+        for(int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch(c) {
+                case '"': quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if(c < 0x20)
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    else
+                        quoted.append(c);
+                    break;
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
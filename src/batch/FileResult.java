@@ -0,0 +1,124 @@
+package batch;
+
+import java.util.List;
+import assembler.Diagnostic;
+
+/**
+ * What happened to one file in a batch run: its size, its problems and how long each
+ * stage took.
+ */
+public class FileResult {
+
+    // Path of the source relative to the batch directory
+    private final String path;
+    private final int lines;
+    // Words of machine code written, 0 if the file did not assemble
+    private final int words;
+    private final List<Diagnostic> diagnostics;
+    // Set if the file could not be read or written
+    private final String failure;
+    // Time spent in each stage, in nanoseconds
+    private final long readNanos;
+    private final long assembleNanos;
+    private final long writeNanos;
+
+    /**
+     * @param path Path of the source relative to the batch directory
+     * @param lines Number of source lines
+     * @param words Words of machine code written
+     * @param diagnostics Problems found by the assembler
+     * @param failure Why the file could not be read or written, or null
+     * @param readNanos Time spent reading
+     * @param assembleNanos Time spent tokenizing and assembling
+     * @param writeNanos Time spent writing output
+     */
+    public FileResult(String path, int lines, int words, List<Diagnostic> diagnostics, String failure,
+                    long readNanos, long assembleNanos, long writeNanos) {
+        this.path = path;
+        this.lines = lines;
+        this.words = words;
+        this.diagnostics = diagnostics;
+        this.failure = failure;
+        this.readNanos = readNanos;
+        this.assembleNanos = assembleNanos;
+        this.writeNanos = writeNanos;
+    }
+
+    /**
+     * Getter for the path relative to the batch directory
+     * @return path
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Getter for the number of source lines
+     * @return lines
+     */
+    public int getLines() {
+        return this.lines;
+    }
+
+    /**
+     * Getter for the words of machine code written
+     * @return words
+     */
+    public int getWords() {
+        return this.words;
+    }
+
+    /**
+     * Getter for the problems found by the assembler
+     * @return diagnostics
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return this.diagnostics;
+    }
+
+    /**
+     * Getter for why the file could not be read or written
+     * @return failure, or null
+     */
+    public String getFailure() {
+        return this.failure;
+    }
+
+    /**
+     * Getter for the time spent reading
+     * @return nanoseconds
+     */
+    public long getReadNanos() {
+        return this.readNanos;
+    }
+
+    /**
+     * Getter for the time spent tokenizing and assembling
+     * @return nanoseconds
+     */
+    public long getAssembleNanos() {
+        return this.assembleNanos;
+    }
+
+    /**
+     * Getter for the time spent writing output
+     * @return nanoseconds
+     */
+    public long getWriteNanos() {
+        return this.writeNanos;
+    }
+
+    /**
+     * @return Time spent on the file in total, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return readNanos + assembleNanos + writeNanos;
+    }
+
+    /**
+     * @return true if the file assembled and its output was written
+     */
+    public boolean isOk() {
+        return failure == null && diagnostics.isEmpty();
+    }
+}
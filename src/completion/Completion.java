@@ -0,0 +1,72 @@
+package completion;
+
+/**
+ * One suggestion offered by the @see CompletionEngine
+ */
+public class Completion {
+
+    /**
+     * What a suggestion completes to
+     */
+    public enum Kind {
+        INSTRUCTION, DIRECTIVE, TRAP, REGISTER, LABEL
+    }
+
+    private final Kind kind;
+    // The word itself, e.g. ADD
+    private final String name;
+    // What to insert when the line has no operands yet, e.g. ADD DR, SR1, imm5
+    private final String template;
+    // How to use it, shown next to the suggestions
+    private final String detail;
+
+    /**
+     * @param kind What the suggestion completes to
+     * @param name The word itself
+     * @param template What to insert when the line has no operands yet
+     * @param detail How to use it
+     */
+    public Completion(Kind kind, String name, String template, String detail) {
+        this.kind = kind;
+        this.name = name;
+        this.template = template;
+        this.detail = detail;
+    }
+
+    /**
+     * Getter for what the suggestion completes to
+     * @return kind
+     */
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Getter for the word itself
+     * @return name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Getter for the text to insert when the line has no operands yet
+     * @return template, the name itself for registers and labels
+     */
+    public String getTemplate() {
+        return this.template;
+    }
+
+    /**
+     * Getter for how to use the suggestion
+     * @return detail
+     */
+    public String getDetail() {
+        return this.detail;
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
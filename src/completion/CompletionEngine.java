@@ -0,0 +1,350 @@
+package completion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import lexer.Lexer;
+import lexer.Mnemonic;
+import lexer.TokenType;
+
+/**
+ * Suggests instructions, directives, TRAP aliases, registers and the document's labels
+ * for the word under the caret. A query only looks at the caret's line: it works out
+ * whether the word is an instruction or an operand, and which kind of operand, then
+ * looks the word up in prefix trees by prefix and, failing enough hits, by fuzzy
+ * subsequence match.
+ *
+ * Instruction templates and descriptions are parsed once when the engine is built. The
+ * labels are kept up to date line by line through @see #replaceLines, so their cost
+ * follows the size of each edit. All methods must be called on the same thread.
+ */
+public class CompletionEngine {
+
+    // Most suggestions returned by a query
+    public static final int LIMIT = 50;
+    // Most trie nodes a fuzzy lookup may visit, so a query stays well under a frame
+    private static final int FUZZY_BUDGET = 50_000;
+
+    // How well a suggestion matches the typed word, best first
+    private static final int EXACT = 0, PREFIX = 1, FUZZY = 2;
+
+    // Instructions, directives, TRAP aliases and registers
+    private final Trie<Completion> words = new Trie<>();
+    // Labels defined in the document
+    private final Trie<Completion> labels = new Trie<>();
+    // Kinds of suggestion that fit each operand of each mnemonic
+    private final Map<Mnemonic, List<Set<Completion.Kind>>> operands = new EnumMap<>(Mnemonic.class);
+
+    // Label defined on each line of the document, or null
+    private final ArrayList<String> lineLabels = new ArrayList<>();
+    // Suggestion for each label and how many lines define it
+    private final Map<String, Completion> labelCompletions = new HashMap<>();
+    private final Map<String, int[]> labelCounts = new HashMap<>();
+
+    private final Lexer lexer = new Lexer();
+
+    /**
+     * Builds the dictionary from the keyword documentation. Each description starts
+     * with numbered templates such as "1: ADD DR, SR1, SR2", then a blank line and the
+     * explanation.
+     * @param keywords Documented keywords, branches under BR and TRAP aliases under TRAP
+     * @param descriptions Documentation of each keyword
+     */
+    public CompletionEngine(String[] keywords, String[] descriptions) {
+        Map<String, String> documentation = new HashMap<>();
+        for(int i = 0; i < keywords.length; i++)
+            documentation.put(keywords[i], descriptions[i]);
+
+        for(Mnemonic mnemonic : Mnemonic.values()) {
+            String keyword = mnemonic.isBranch() ? "BR"
+                            : mnemonic.isTrapAlias() ? "TRAP"
+                            : mnemonic.getText().replace(".", "");
+            String description = documentation.getOrDefault(keyword, "");
+            String key = mnemonic.getText().toUpperCase(Locale.ROOT);
+
+            if(mnemonic.isTrapAlias()) {
+                words.add(key, new Completion(Completion.Kind.TRAP, mnemonic.getText(), mnemonic.getText(),
+                                describeTrap(mnemonic, description)));
+                operands.put(mnemonic, List.of());
+                continue;
+            }
+
+            Completion.Kind kind = mnemonic.isDirective() ? Completion.Kind.DIRECTIVE : Completion.Kind.INSTRUCTION;
+            int split = description.indexOf("\n\n");
+            String detail = split < 0 ? "" : description.substring(split + 2);
+            List<Set<Completion.Kind>> expected = new ArrayList<>();
+            for(String template : templates(split < 0 ? description : description.substring(0, split))) {
+                // A template is written for the documented keyword, e.g. BR(n/z/p) for BRnz
+                if(!template.startsWith(mnemonic.getText())) {
+                    int space = template.indexOf(' ');
+                    template = mnemonic.getText() + (space < 0 ? "" : template.substring(space));
+                }
+                words.add(key, new Completion(kind, mnemonic.getText(), template, detail));
+                addOperands(template, expected);
+            }
+            operands.put(mnemonic, expected);
+        }
+
+        for(int r = 0; r < 8; r++)
+            words.add("R" + r, new Completion(Completion.Kind.REGISTER, "R" + r, "R" + r, "Register " + r));
+
+        lineLabels.add(null);
+    }
+
+    /**
+     * Suggests completions for the word under a column of a line
+     * @param line Text of the caret's line
+     * @param column Caret column
+     * @return Up to @see #LIMIT suggestions, best first
+     */
+    public List<Completion> complete(CharSequence line, int column) {
+        int start = wordStart(line, column);
+        int end = wordEnd(line, column);
+        // Nothing completes a number
+        if((start > 0 && line.charAt(start - 1) == '#') || (start < end && Character.isDigit(line.charAt(start))))
+            return List.of();
+
+        // Work out what belongs here from the tokens before the word
+        Mnemonic mnemonic = null;
+        int before = 0;
+        int operand = 0;
+        lexer.reset(line, 0, start);
+        TokenType type;
+        while((type = lexer.next()) != null) {
+            if(type == TokenType.COMMENT || type == TokenType.STRING)
+                return List.of();
+            if(mnemonic != null) {
+                if(type == TokenType.COMMA)
+                    operand++;
+            } else if(type == TokenType.KEYWORD || type == TokenType.DIRECTIVE) {
+                mnemonic = lexer.getMnemonic();
+            } else {
+                before++;
+            }
+        }
+
+        Set<Completion.Kind> allowed;
+        if(mnemonic == null) {
+            allowed = EnumSet.of(Completion.Kind.INSTRUCTION, Completion.Kind.DIRECTIVE, Completion.Kind.TRAP);
+            // The first word of a line may also be a label
+            if(before == 0)
+                allowed.add(Completion.Kind.LABEL);
+        } else {
+            List<Set<Completion.Kind>> expected = operands.get(mnemonic);
+            if(operand >= expected.size())
+                return List.of();
+            allowed = expected.get(operand);
+        }
+        if(allowed.isEmpty())
+            return List.of();
+
+        // A placeholder left by a template is replaced rather than completed
+        boolean placeholder = lexer.reset(line, start, end).next() != null && lexer.isPlaceholder();
+        String typed = placeholder ? "" : line.subSequence(start, column).toString();
+        String query = typed.toUpperCase(Locale.ROOT);
+        // The word being typed at the start of a line counts as a label definition itself
+        String own = mnemonic == null && before == 0 ? line.subSequence(start, end).toString() : null;
+
+        List<Completion> found = new ArrayList<>();
+        if(!Collections.disjoint(allowed, EnumSet.complementOf(EnumSet.of(Completion.Kind.LABEL)))) {
+            words.withPrefix(query, Integer.MAX_VALUE, found);
+            words.fuzzy(query, Integer.MAX_VALUE, FUZZY_BUDGET, found);
+        }
+        if(allowed.contains(Completion.Kind.LABEL)) {
+            List<Completion> matched = new ArrayList<>();
+            labels.withPrefix(query, LIMIT + 1, matched);
+            if(matched.size() <= LIMIT)
+                labels.fuzzy(query, LIMIT + 1 - matched.size(), FUZZY_BUDGET, matched);
+            for(Completion completion : matched) {
+                if(!completion.getName().equals(own) || labelCounts.get(own)[0] > 1)
+                    found.add(completion);
+            }
+        }
+
+        List<Completion> ranked = new ArrayList<>(found.size());
+        for(Completion completion : found) {
+            if(allowed.contains(completion.getKind()))
+                ranked.add(completion);
+        }
+        ranked.sort(Comparator.<Completion>comparingInt(c -> quality(c, query))
+                        .thenComparingInt(c -> c.getKind() == Completion.Kind.LABEL ? 1 : 0)
+                        .thenComparingInt(c -> c.getName().length())
+                        .thenComparing(Completion::getName));
+        return ranked.size() > LIMIT ? ranked.subList(0, LIMIT) : ranked;
+    }
+
+    /**
+     * Replaces a run of lines, keeping the document's labels up to date
+     * @param first First line replaced
+     * @param count Number of lines replaced
+     * @param lines The new lines
+     */
+    public void replaceLines(int first, int count, List<? extends CharSequence> lines) {
+        // Typing within a line is by far the most common edit, so avoid moving the list
+        if(count == 1 && lines.size() == 1) {
+            String label = labelOf(lines.get(0));
+            String old = lineLabels.set(first, label);
+            if(old != null && !old.equals(label))
+                release(old);
+            if(label != null && !label.equals(old))
+                retain(label);
+            return;
+        }
+
+        List<String> replaced = lineLabels.subList(first, first + count);
+        for(String old : replaced) {
+            if(old != null)
+                release(old);
+        }
+        replaced.clear();
+        List<String> added = new ArrayList<>(lines.size());
+        for(CharSequence line : lines) {
+            String label = labelOf(line);
+            if(label != null)
+                retain(label);
+            added.add(label);
+        }
+        lineLabels.addAll(first, added);
+    }
+
+    /**
+     * Getter for the number of distinct labels in the document
+     * @return label count
+     */
+    public int getLabelCount() {
+        return labelCounts.size();
+    }
+
+    /**
+     * @param line Text of a line
+     * @param column A column within the line
+     * @return Column the word under the column starts at
+     */
+    public static int wordStart(CharSequence line, int column) {
+        int start = column;
+        while(start > 0 && isWord(line.charAt(start - 1)))
+            start--;
+        if(start > 0 && line.charAt(start - 1) == '.')
+            start--;
+        return start;
+    }
+
+    /**
+     * @param line Text of a line
+     * @param column A column within the line
+     * @return Column just past the word under the column
+     */
+    public static int wordEnd(CharSequence line, int column) {
+        int end = column;
+        while(end < line.length() && isWord(line.charAt(end)))
+            end++;
+        return end;
+    }
+
+    /**
+     * Whether anything other than blanks or a comment follows a column, in which case a
+     * completed instruction should not bring its template along
+     * @param line Text of a line
+     * @param column A column within the line
+     * @return true if operands follow
+     */
+    public static boolean hasOperands(CharSequence line, int column) {
+        for(int i = column; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if(c == ';')
+                return false;
+            if(c != ' ' && c != '\t' && c != '\r')
+                return true;
+        }
+        return false;
+    }
+
+    private int quality(Completion completion, String query) {
+        String name = completion.getName().toUpperCase(Locale.ROOT);
+        return name.equals(query) ? EXACT : name.startsWith(query) ? PREFIX : FUZZY;
+    }
+
+    /**
+     * The label a line defines: its first token, if that is a label
+     */
+    private String labelOf(CharSequence line) {
+        return lexer.reset(line, 0, line.length()).next() == TokenType.LABEL ? lexer.getText() : null;
+    }
+
+    private void retain(String label) {
+        int[] count = labelCounts.get(label);
+        if(count != null) {
+            count[0]++;
+            return;
+        }
+        labelCounts.put(label, new int[] { 1 });
+        Completion completion = new Completion(Completion.Kind.LABEL, label, label, "Label");
+        labelCompletions.put(label, completion);
+        labels.add(label.toUpperCase(Locale.ROOT), completion);
+    }
+
+    private void release(String label) {
+        int[] count = labelCounts.get(label);
+        if(--count[0] > 0)
+            return;
+        labelCounts.remove(label);
+        labels.remove(label.toUpperCase(Locale.ROOT), labelCompletions.remove(label));
+    }
+
+    /**
+     * The numbered templates at the start of a description, without their numbers
+     */
+    private static List<String> templates(String block) {
+        List<String> templates = new ArrayList<>();
+        for(String line : block.split("\n")) {
+            int colon = line.indexOf(": ");
+            if(colon > 0 && Character.isDigit(line.charAt(0)))
+                templates.add(line.substring(colon + 2).trim());
+        }
+        return templates;
+    }
+
+    /**
+     * Adds the kinds of suggestion each operand of a template accepts
+     */
+    private static void addOperands(String template, List<Set<Completion.Kind>> expected) {
+        int space = template.indexOf(' ');
+        if(space < 0)
+            return;
+        String[] names = template.substring(space + 1).split(",");
+        for(int i = 0; i < names.length; i++) {
+            if(expected.size() <= i)
+                expected.add(EnumSet.noneOf(Completion.Kind.class));
+            String name = names[i].trim();
+            if(name.equals("LABEL"))
+                expected.get(i).add(Completion.Kind.LABEL);
+            else if(name.matches("(DR|SR|BaseR)\\d?"))
+                expected.get(i).add(Completion.Kind.REGISTER);
+        }
+    }
+
+    /**
+     * Finds a TRAP alias's entry in the TRAP description, e.g. "x25 HALT" followed by
+     * what it does
+     */
+    private static String describeTrap(Mnemonic alias, String description) {
+        String heading = String.format("x%02X %s\n", alias.getTrapVector(), alias.getText());
+        int at = description.indexOf(heading);
+        if(at < 0)
+            return String.format("TRAP x%02X", alias.getTrapVector());
+        int end = description.indexOf("\n\n", at);
+        String text = description.substring(at + heading.length(), end < 0 ? description.length() : end).trim();
+        return String.format("TRAP x%02X\n\n%s", alias.getTrapVector(), text);
+    }
+
+    private static boolean isWord(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
@@ -0,0 +1,190 @@
+package completion;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prefix tree from upper case keys to values. Several values may share a key, and a key
+ * disappears, along with any nodes only it used, once its last value is removed.
+ * Children are kept sorted so walks visit keys in alphabetical order.
+ * @param <T> Type of the values
+ */
+class Trie<T> {
+
+    private static final char[] NO_KEYS = new char[0];
+
+    private static class Node<T> {
+        char[] keys = NO_KEYS;
+        Object[] children = new Object[0];
+        // Values whose key ends here, null if none
+        List<T> values;
+
+        @SuppressWarnings("unchecked")
+        Node<T> child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i < 0 ? null : (Node<T>) children[i];
+        }
+
+        @SuppressWarnings("unchecked")
+        Node<T> childAt(int i) {
+            return (Node<T>) children[i];
+        }
+
+        Node<T> add(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if(i >= 0)
+                return childAt(i);
+            i = -i - 1;
+            Node<T> child = new Node<>();
+            char[] newKeys = new char[keys.length + 1];
+            Object[] newChildren = new Object[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            newKeys[i] = c;
+            newChildren[i] = child;
+            System.arraycopy(keys, i, newKeys, i + 1, keys.length - i);
+            System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+
+        void remove(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if(i < 0)
+                return;
+            char[] newKeys = new char[keys.length - 1];
+            Object[] newChildren = new Object[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+            System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+            keys = newKeys;
+            children = newChildren;
+        }
+
+        boolean isEmpty() {
+            return keys.length == 0 && values == null;
+        }
+    }
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * Adds a value under a key
+     * @param key Upper case key
+     * @param value The value
+     */
+    void add(String key, T value) {
+        Node<T> node = root;
+        for(int i = 0; i < key.length(); i++)
+            node = node.add(key.charAt(i));
+        if(node.values == null)
+            node.values = new ArrayList<>(1);
+        node.values.add(value);
+    }
+
+    /**
+     * Removes one value from under a key, pruning nodes nothing needs any more
+     * @param key Upper case key
+     * @param value The value
+     */
+    void remove(String key, T value) {
+        remove(root, key, 0, value);
+    }
+
+    private boolean remove(Node<T> node, String key, int depth, T value) {
+        if(depth == key.length()) {
+            if(node.values != null && node.values.remove(value) && node.values.isEmpty())
+                node.values = null;
+        } else {
+            Node<T> child = node.child(key.charAt(depth));
+            if(child != null && remove(child, key, depth + 1, value))
+                node.remove(key.charAt(depth));
+        }
+        return node != root && node.isEmpty();
+    }
+
+    /**
+     * Collects the values of keys starting with a prefix, shortest keys first and
+     * alphabetically among keys of the same length, by walking the subtree level by
+     * level. Stops as soon as enough values were found, so a short prefix over a huge
+     * tree costs no more than a long one.
+     * @param prefix Upper case prefix
+     * @param limit Most values to collect
+     * @param out Receives the values
+     */
+    void withPrefix(String prefix, int limit, List<T> out) {
+        Node<T> node = root;
+        for(int i = 0; i < prefix.length() && node != null; i++)
+            node = node.child(prefix.charAt(i));
+        if(node == null)
+            return;
+        ArrayDeque<Node<T>> level = new ArrayDeque<>();
+        level.add(node);
+        while(!level.isEmpty()) {
+            Node<T> next = level.poll();
+            if(next.values != null) {
+                for(T value : next.values) {
+                    if(out.size() >= limit)
+                        return;
+                    out.add(value);
+                }
+            }
+            for(int i = 0; i < next.keys.length; i++)
+                level.add(next.childAt(i));
+        }
+    }
+
+    /**
+     * Collects the values of keys that start with the query's first character and
+     * contain the rest of its characters in order, skipping the keys that start with
+     * the whole query, which @see #withPrefix already finds
+     * @param query Upper case query of at least two characters
+     * @param limit Most values to collect
+     * @param budget Most nodes to visit
+     * @param out Receives the values
+     */
+    void fuzzy(String query, int limit, int budget, List<T> out) {
+        if(query.length() < 2)
+            return;
+        Node<T> first = root.child(query.charAt(0));
+        if(first == null)
+            return;
+        int[] visits = { budget };
+        fuzzy(first, query, 1, true, limit, visits, out);
+    }
+
+    private void fuzzy(Node<T> node, String query, int matched, boolean contiguous, int limit, int[] visits, List<T> out) {
+        if(out.size() >= limit || visits[0]-- <= 0)
+            return;
+        if(matched == query.length()) {
+            // Everything under here matches; the contiguous ones are prefix matches
+            if(contiguous)
+                return;
+            collect(node, limit, visits, out);
+            return;
+        }
+        char wanted = query.charAt(matched);
+        for(int i = 0; i < node.keys.length; i++) {
+            boolean hit = node.keys[i] == wanted;
+            fuzzy(node.childAt(i), query, hit ? matched + 1 : matched, contiguous && hit, limit, visits, out);
+        }
+    }
+
+    private void collect(Node<T> node, int limit, int[] visits, List<T> out) {
+        if(visits[0]-- <= 0)
+            return;
+        if(node.values != null) {
+            for(T value : node.values) {
+                if(out.size() >= limit)
+                    return;
+                out.add(value);
+            }
+        }
+        for(int i = 0; i < node.keys.length; i++)
+            collect(node.childAt(i), limit, visits, out);
+    }
+}
@@ -0,0 +1,103 @@
+package console;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.TextArea;
+import javafx.scene.input.KeyEvent;
+import simulator.Console;
+
+/**
+ * Creates and styles the console a running program reads keys from and prints to. Keys
+ * typed into the console are queued for the program; output is collected off the FX
+ * thread and appended in batches so a chatty program cannot flood the UI.
+ */
+public class EZConsole implements Console {
+
+    // Most characters kept on screen, older output is dropped
+    private static final int MAX_LENGTH = 100_000;
+
+    // The text area showing the output
+    private TextArea area;
+    // Keys typed but not yet read by the program
+    private final LinkedBlockingQueue<Character> input = new LinkedBlockingQueue<>();
+    // Output waiting to be appended, guarded by itself
+    private final StringBuilder pending = new StringBuilder();
+    // Whether an append is already queued on the FX thread, guarded by pending
+    private boolean flushQueued;
+
+    /**
+     * Sets up the console
+     * @param parentScene The scene that the console will be applied to
+     */
+    public EZConsole(Scene parentScene) {
+        area = new TextArea();
+        area.setId("console");
+        area.setEditable(false);
+        area.setWrapText(true);
+        area.addEventFilter(KeyEvent.KEY_TYPED, e -> {
+            for(char c : e.getCharacter().toCharArray())
+                input.add(c == '\r' ? '\n' : c);
+            e.consume();
+        });
+
+        parentScene.getStylesheets().add(getClass().getResource("console.css").toExternalForm());
+    }
+
+    /**
+     * Clears the output and any keys not yet read
+     */
+    public void clear() {
+        input.clear();
+        synchronized(pending) {
+            pending.setLength(0);
+        }
+        area.clear();
+    }
+
+    @Override
+    public boolean hasInput() {
+        return !input.isEmpty();
+    }
+
+    @Override
+    public char read() throws InterruptedException {
+        return input.take();
+    }
+
+    @Override
+    public void write(char c) {
+        synchronized(pending) {
+            pending.append(c);
+            if(pending.length() > MAX_LENGTH)
+                pending.delete(0, pending.length() - MAX_LENGTH);
+            if(!flushQueued) {
+                flushQueued = true;
+                Platform.runLater(this::flush);
+            }
+        }
+    }
+
+    /**
+     * Appends the pending output, trimming the oldest text once there is too much
+     */
+    private void flush() {
+        String text;
+        synchronized(pending) {
+            text = pending.toString();
+            pending.setLength(0);
+            flushQueued = false;
+        }
+        area.appendText(text);
+        if(area.getLength() > MAX_LENGTH)
+            area.deleteText(0, area.getLength() - MAX_LENGTH);
+    }
+
+    /**
+     * Getter for the console node
+     * @return console text area
+     */
+    public TextArea getArea() {
+        return this.area;
+    }
+}
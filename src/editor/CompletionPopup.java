@@ -0,0 +1,167 @@
+package editor;
+
+import java.util.List;
+import completion.Completion;
+import completion.CompletionEngine;
+import javafx.geometry.Bounds;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.VBox;
+import javafx.stage.Popup;
+import org.fxmisc.richtext.CodeArea;
+
+/**
+ * The list of suggestions shown under the caret by Ctrl + Space. Typing word characters
+ * while it is open keeps narrowing the list; Enter or Tab, or the number of an entry,
+ * inserts the suggestion. The popup is built once and reused.
+ */
+class CompletionPopup {
+
+    private final CodeArea edit;
+    private final CompletionEngine engine;
+
+    private final Popup popup = new Popup();
+    private final ListView<Completion> list = new ListView<>();
+    // How to use the selected suggestion
+    private final Label detail = new Label();
+
+    /**
+     * @param edit The edit area to complete in
+     * @param engine Where the suggestions come from
+     */
+    CompletionPopup(CodeArea edit, CompletionEngine engine) {
+        this.edit = edit;
+        this.engine = engine;
+
+        list.setId("completions");
+        list.setCellFactory(view -> new ListCell<Completion>() {
+            @Override
+            protected void updateItem(Completion completion, boolean empty) {
+                super.updateItem(completion, empty);
+                if(empty || completion == null) {
+                    setText(null);
+                } else {
+                    int number = getIndex() + 1;
+                    setText((number <= 9 ? number + "  " : "   ") + completion.getTemplate());
+                }
+            }
+        });
+        list.getSelectionModel().selectedItemProperty().addListener((obs, old, selected) -> {
+            detail.setText(selected == null ? "" : selected.getDetail());
+        });
+        list.setOnMouseClicked(e -> {
+            if(e.getClickCount() == 2)
+                apply(list.getSelectionModel().getSelectedItem());
+        });
+
+        detail.setWrapText(true);
+        detail.setId("popupMessage");
+        VBox pane = new VBox(list, detail);
+        pane.setId("popup");
+        popup.getContent().add(pane);
+        popup.setAutoHide(true);
+
+        // Key events reach the popup while it is showing
+        list.addEventFilter(KeyEvent.KEY_PRESSED, this::keyPressed);
+        list.addEventFilter(KeyEvent.KEY_TYPED, this::keyTyped);
+    }
+
+    /**
+     * Shows the suggestions for the word under the caret, if there are any
+     */
+    void show() {
+        if(!refresh())
+            return;
+        Bounds caretBounds = edit.getCaretBounds().orElse(null);
+        if(caretBounds == null)
+            return;
+        popup.show(edit, caretBounds.getMaxX(), caretBounds.getMaxY());
+        list.requestFocus();
+    }
+
+    /**
+     * Queries the engine again for the caret's line, hiding the popup when nothing fits
+     * @return true if there are suggestions
+     */
+    private boolean refresh() {
+        String line = edit.getParagraph(edit.getCurrentParagraph()).getText();
+        List<Completion> completions = engine.complete(line, edit.getCaretColumn());
+        if(completions.isEmpty()) {
+            popup.hide();
+            return false;
+        }
+        list.getItems().setAll(completions);
+        list.getSelectionModel().selectFirst();
+        list.scrollTo(0);
+        return true;
+    }
+
+    /**
+     * Replaces the word under the caret with a suggestion. Instructions bring their
+     * operand template along unless the line already has operands.
+     */
+    private void apply(Completion completion) {
+        popup.hide();
+        if(completion == null)
+            return;
+        int paragraph = edit.getCurrentParagraph();
+        String line = edit.getParagraph(paragraph).getText();
+        int column = edit.getCaretColumn();
+        int start = CompletionEngine.wordStart(line, column);
+        int end = CompletionEngine.wordEnd(line, column);
+        String text = CompletionEngine.hasOperands(line, end) ? completion.getName() : completion.getTemplate();
+        int offset = edit.getAbsolutePosition(paragraph, 0);
+        new EditTransaction(edit)
+                        .replace(offset + start, offset + end, text)
+                        .moveCaret(offset + start + text.length())
+                        .commit();
+    }
+
+    private void keyPressed(KeyEvent e) {
+        KeyCode code = e.getCode();
+        if(code == KeyCode.ENTER || code == KeyCode.TAB) {
+            e.consume();
+            apply(list.getSelectionModel().getSelectedItem());
+        } else if(code == KeyCode.ESCAPE) {
+            e.consume();
+            popup.hide();
+        } else if(code == KeyCode.BACK_SPACE) {
+            e.consume();
+            int caret = edit.getCaretPosition();
+            if(edit.getCaretColumn() == 0) {
+                popup.hide();
+            } else {
+                edit.deleteText(caret - 1, caret);
+                refresh();
+            }
+        } else if(code.isDigitKey() && !e.isShiftDown()) {
+            e.consume();
+            int index = code.getChar().charAt(0) - '1';
+            if(index >= 0 && index < list.getItems().size())
+                apply(list.getItems().get(index));
+        } else if(code.isArrowKey() && (code == KeyCode.LEFT || code == KeyCode.RIGHT)) {
+            popup.hide();
+        }
+    }
+
+    private void keyTyped(KeyEvent e) {
+        String typed = e.getCharacter();
+        if(typed.length() != 1)
+            return;
+        char c = typed.charAt(0);
+        if(Character.isDigit(c))
+            return;
+        e.consume();
+        if(Character.isLetter(c) || c == '_' || c == '.') {
+            edit.insertText(edit.getCaretPosition(), typed);
+            refresh();
+        } else if(c >= ' ') {
+            // Anything else ends the word, so it ends the completion too
+            popup.hide();
+            edit.insertText(edit.getCaretPosition(), typed);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package editor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.richtext.model.PlainTextChange;
+import org.fxmisc.richtext.model.TwoDimensional.Bias;
+
+/**
+ * The lines with breakpoints and the line a paused program is at, shown in the gutter by
+ * @see DiagnosticGutter. Breakpoints move along with lines inserted or removed above
+ * them; the line a program is at is also marked with a paragraph style.
+ */
+class DebugMarkers {
+
+    // Paragraph style class of the line a paused program is at
+    private static final String EXECUTION_LINE = "execution-line";
+
+    private final CodeArea edit;
+
+    // Zero based lines with a breakpoint
+    private SortedSet<Integer> breakpoints = new TreeSet<>();
+    // The line a paused program is at, or -1
+    private int executionLine = -1;
+
+    // Incremented whenever the markers change, so the gutter knows to refresh
+    private final ReadOnlyIntegerWrapper revision = new ReadOnlyIntegerWrapper();
+
+    /**
+     * Starts following text changes on the edit area
+     * @param edit The edit area to mark
+     */
+    DebugMarkers(CodeArea edit) {
+        this.edit = edit;
+        edit.plainTextChanges().subscribe(this::shift);
+    }
+
+    /**
+     * Getter for the revision that changes every time the markers do
+     * @return revision
+     */
+    ReadOnlyIntegerProperty revisionProperty() {
+        return revision.getReadOnlyProperty();
+    }
+
+    /**
+     * Getter for the lines with breakpoints
+     * @return zero based lines, in order
+     */
+    SortedSet<Integer> getBreakpoints() {
+        return Collections.unmodifiableSortedSet(breakpoints);
+    }
+
+    /**
+     * @param paragraph The paragraph index
+     * @return true if the line has a breakpoint
+     */
+    boolean hasBreakpoint(int paragraph) {
+        return breakpoints.contains(paragraph);
+    }
+
+    /**
+     * Sets a breakpoint on a line, or clears the one it has
+     * @param paragraph The paragraph index
+     */
+    void toggleBreakpoint(int paragraph) {
+        if(!breakpoints.remove(paragraph))
+            breakpoints.add(paragraph);
+        revision.set(revision.get() + 1);
+    }
+
+    /**
+     * @param paragraph The paragraph index
+     * @return true if a paused program is at the line
+     */
+    boolean isExecutionLine(int paragraph) {
+        return paragraph == executionLine;
+    }
+
+    /**
+     * Marks the line a paused program is at
+     * @param paragraph The paragraph index, or -1 to clear the mark
+     */
+    void setExecutionLine(int paragraph) {
+        if(paragraph >= edit.getParagraphs().size())
+            paragraph = -1;
+        if(executionLine >= 0 && executionLine < edit.getParagraphs().size())
+            setStyle(executionLine, false);
+        executionLine = paragraph;
+        if(paragraph >= 0)
+            setStyle(paragraph, true);
+        revision.set(revision.get() + 1);
+    }
+
+    /**
+     * Adds or removes the execution line style, keeping the paragraph's other styles
+     */
+    private void setStyle(int paragraph, boolean executing) {
+        List<String> style = new ArrayList<>(edit.getParagraph(paragraph).getParagraphStyle());
+        style.remove(EXECUTION_LINE);
+        if(executing)
+            style.add(EXECUTION_LINE);
+        edit.setParagraphStyle(paragraph, style);
+    }
+
+    /**
+     * Moves the breakpoints along with any lines a change inserted or removed, dropping
+     * those on removed lines
+     */
+    private void shift(PlainTextChange change) {
+        int inserted = IncrementalHighlighter.countLines(change.getInserted());
+        int removed = IncrementalHighlighter.countLines(change.getRemoved());
+        if(inserted == removed || breakpoints.isEmpty() && executionLine < 0)
+            return;
+        int first = edit.offsetToPosition(change.getPosition(), Bias.Forward).getMajor();
+        SortedSet<Integer> shifted = new TreeSet<>();
+        for(int paragraph : breakpoints) {
+            if(paragraph <= first || paragraph > first + removed)
+                shifted.add(IncrementalHighlighter.shift(paragraph, first, inserted, removed));
+        }
+        breakpoints = shifted;
+        if(executionLine > first)
+            executionLine = executionLine > first + removed ? IncrementalHighlighter.shift(executionLine, first, inserted, removed) : -1;
+        revision.set(revision.get() + 1);
+    }
+}
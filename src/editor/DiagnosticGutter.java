@@ -0,0 +1,111 @@
+package editor;
+
+import java.util.function.IntFunction;
+import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.richtext.LineNumberFactory;
+import javafx.beans.binding.Bindings;
+import javafx.beans.binding.BooleanBinding;
+import javafx.beans.binding.StringBinding;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Polygon;
+
+/**
+ * Paragraph graphic showing the line number followed by a marker on lines with
+ * problems, and the breakpoint and the arrow of a paused program from
+ * @see DebugMarkers, and a toggle on the lines a region of the outline starts on, see
+ * @see Folding. Hovering the problem marker lists the problems; clicking the line
+ * number sets or clears a breakpoint, and clicking the toggle folds or unfolds.
+ */
+class DiagnosticGutter implements IntFunction<Node> {
+
+    // Draws the line numbers
+    private final IntFunction<Node> numbers;
+
+    // Where the problems come from
+    private final LiveDiagnostics diagnostics;
+    // Where the breakpoints and the line of a paused program come from
+    private final DebugMarkers markers;
+    // Which lines fold, and which are folded away
+    private final Folding folding;
+
+    /**
+     * @param edit The edit area to number
+     * @param diagnostics The problems to mark
+     * @param markers The breakpoints and the line of a paused program to mark
+     * @param folding The regions that fold
+     */
+    DiagnosticGutter(CodeArea edit, LiveDiagnostics diagnostics, DebugMarkers markers, Folding folding) {
+        this.numbers = LineNumberFactory.get(edit);
+        this.diagnostics = diagnostics;
+        this.markers = markers;
+        this.folding = folding;
+    }
+
+    /**
+     * Creates the graphic for one paragraph
+     * @param paragraph The paragraph index
+     * @return The line number, problem marker, breakpoint, execution arrow and fold toggle
+     */
+    @Override
+    public Node apply(int paragraph) {
+        StringBinding message = Bindings.createStringBinding(() -> diagnostics.getMessage(paragraph),
+                        diagnostics.revisionProperty());
+
+        Circle marker = new Circle(4);
+        marker.getStyleClass().add("error-marker");
+        marker.visibleProperty().bind(message.isNotNull());
+        Tooltip tooltip = new Tooltip();
+        tooltip.textProperty().bind(message);
+        Tooltip.install(marker, tooltip);
+
+        BooleanBinding breakpoint = Bindings.createBooleanBinding(() -> markers.hasBreakpoint(paragraph),
+                        markers.revisionProperty());
+        BooleanBinding executing = Bindings.createBooleanBinding(() -> markers.isExecutionLine(paragraph),
+                        markers.revisionProperty());
+        Circle dot = new Circle(5);
+        dot.getStyleClass().add("breakpoint-marker");
+        dot.visibleProperty().bind(breakpoint);
+        Polygon arrow = new Polygon(0, 0, 8, 5, 0, 10);
+        arrow.getStyleClass().add("execution-marker");
+        arrow.visibleProperty().bind(executing);
+        StackPane debug = new StackPane(dot, arrow);
+        debug.setMinWidth(10);
+
+        Node number = numbers.apply(paragraph);
+        number.addEventHandler(MouseEvent.MOUSE_CLICKED, e -> {
+            if(e.getButton() == MouseButton.PRIMARY)
+                markers.toggleBreakpoint(paragraph);
+        });
+
+        BooleanBinding canFold = Bindings.createBooleanBinding(() -> folding.canFold(paragraph),
+                        folding.revisionProperty());
+        BooleanBinding folded = Bindings.createBooleanBinding(() -> folding.isFolded(paragraph),
+                        folding.revisionProperty());
+        Polygon open = new Polygon(0, 2, 8, 2, 4, 8);
+        open.getStyleClass().add("fold-marker");
+        open.visibleProperty().bind(canFold);
+        Polygon closed = new Polygon(2, 0, 8, 4, 2, 8);
+        closed.getStyleClass().add("fold-marker");
+        closed.visibleProperty().bind(folded);
+        StackPane fold = new StackPane(open, closed);
+        fold.setMinWidth(8);
+        fold.addEventHandler(MouseEvent.MOUSE_CLICKED, e -> {
+            if(e.getButton() == MouseButton.PRIMARY)
+                folding.toggle(paragraph);
+        });
+
+        HBox graphic = new HBox(4, number, marker, debug, fold);
+        graphic.setAlignment(Pos.CENTER_LEFT);
+        // Folded lines have no height, so their graphic must not show either
+        graphic.visibleProperty().bind(Bindings.createBooleanBinding(() -> !folding.isHidden(paragraph),
+                        folding.revisionProperty()));
+        return graphic;
+    }
+}
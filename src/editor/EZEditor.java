@@ -5,6 +5,11 @@ import org.fxmisc.richtext.CodeArea;
 import javafx.scene.Scene;
 
 import java.io.File;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.function.IntConsumer;
+import assembler.OutlineEntry;
+import javafx.beans.property.ReadOnlyObjectProperty;
 
 /**
  * This class is responsible for the creation and styling of the editing area.
@@ -14,9 +19,16 @@ public class EZEditor {
     CodeArea editArea;
     Scene parentScene;
     VirtualizedScrollPane<CodeArea> pane;
+    // Called with a text position when Ctrl + Click asks for the definition there
+    IntConsumer onGoToDefinition = position -> {};
+    // Breakpoints and the line of a paused program, null until initialized
+    DebugMarkers markers;
+    // The outline and the folded regions, null until initialized
+    Folding folding;
 
     /**
-     * Creates an editing area and applies the appropriate styles to it.
+     * Creates an editing area and applies the appropriate styles to it, @see initialize
+     * for the rest.
      * @param parentScene The scene that the editing object will be applied to
      */
     public EZEditor (Scene parentScene) {
@@ -32,6 +44,15 @@ public class EZEditor {
         } else {
             parentScene.getStylesheets().add(getClass().getResource("colors.css").toExternalForm());
         }
+    }
+
+    /**
+     * Adds highlighting, completion, problem markers and key handling to the edit area.
+     * Left out of the constructor so the window can paint before they are set up.
+     */
+    public void initialize() {
+        markers = new DebugMarkers(editArea);
+        folding = new Folding(editArea);
         new EZEditorController(this);
     }
 
@@ -59,4 +80,97 @@ public class EZEditor {
         return this.editArea;
     }
 
+    /**
+     * Sets what happens when Ctrl + Click asks for the definition of a symbol
+     * @param onGoToDefinition Called with the text position that was clicked
+     */
+    public void setOnGoToDefinition(IntConsumer onGoToDefinition) {
+        this.onGoToDefinition = onGoToDefinition;
+    }
+
+    /**
+     * Moves the caret to a line and column and scrolls it into view
+     * @param line Zero based line
+     * @param column Zero based column
+     */
+    public void goTo(int line, int column) {
+        line = Math.min(line, editArea.getParagraphs().size() - 1);
+        folding.reveal(line);
+        column = Math.min(column, editArea.getParagraphLength(line));
+        editArea.moveTo(line, column);
+        editArea.requestFollowCaret();
+        editArea.requestFocus();
+    }
+
+    /**
+     * Selects text on a line and scrolls it into view
+     * @param line Zero based line
+     * @param column Zero based column the selection starts at
+     * @param length Number of characters to select
+     */
+    public void select(int line, int column, int length) {
+        goTo(line, column);
+        int start = editArea.getCaretPosition();
+        editArea.selectRange(start, Math.min(start + length, editArea.getLength()));
+    }
+
+    /**
+     * Getter for the lines with breakpoints
+     * @return zero based lines, in order
+     */
+    public SortedSet<Integer> getBreakpoints() {
+        return markers.getBreakpoints();
+    }
+
+    /**
+     * Sets a breakpoint on a line, or clears the one it has
+     * @param line Zero based line
+     */
+    public void toggleBreakpoint(int line) {
+        markers.toggleBreakpoint(line);
+    }
+
+    /**
+     * Marks the line a paused program is at and scrolls it into view
+     * @param line Zero based line, or -1 to clear the mark
+     */
+    public void showExecutionLine(int line) {
+        if(line >= 0)
+            folding.reveal(line);
+        markers.setExecutionLine(line);
+        if(line >= 0 && line < editArea.getParagraphs().size())
+            editArea.showParagraphInViewport(line);
+    }
+
+    /**
+     * Getter for the outline of the program in the edit area, which follows edits once
+     * they are analysed
+     * @return outline, in line order
+     */
+    public ReadOnlyObjectProperty<List<OutlineEntry>> outlineProperty() {
+        return folding.outlineProperty();
+    }
+
+    /**
+     * Folds the innermost subroutine, block of data or section around the caret, or
+     * unfolds the one folded on the caret's line
+     */
+    public void toggleFold() {
+        folding.toggle(editArea.getCurrentParagraph());
+    }
+
+    /**
+     * Folds every subroutine and block of data
+     */
+    public void foldAll() {
+        folding.foldAll();
+    }
+
+    /**
+     * Unfolds everything
+     */
+    public void unfoldAll() {
+        folding.unfoldAll();
+    }
+
 }
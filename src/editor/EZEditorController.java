@@ -1,21 +1,24 @@
 package editor;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.List;
+import completion.CompletionEngine;
+import lexer.Lexer;
+import lexer.TokenType;
+import metrics.Metrics;
 import org.fxmisc.richtext.CodeArea;
-import org.fxmisc.richtext.LineNumberFactory;
 import org.fxmisc.richtext.model.StyleSpans;
 import org.fxmisc.richtext.model.StyleSpansBuilder;
-import javafx.geometry.Bounds;
-import javafx.scene.control.Label;
-import javafx.scene.control.ScrollPane;
+import org.fxmisc.richtext.model.TwoDimensional.Bias;
+import javafx.scene.control.IndexRange;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyCodeCombination;
 import javafx.scene.input.KeyCombination;
 import javafx.scene.input.KeyEvent;
-import javafx.stage.Popup;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
 
 /**
  * Handles the action and behavior of the edit area.
@@ -27,7 +30,7 @@ public class EZEditorController {
                     "LD", "LDI", "LDR", "LEA", "NOT", "RET", "RTI", "ST", "STI", "STR", "TRAP",
                     "ORIG", "FILL", "BLKW", "STRINGZ", "END"};
 
-    // LC-3 ASM Keyword descriptions (how-to use)
+    // LC-3 ASM Keyword descriptions (how-to use), each starting with its numbered operand templates
     private static final String[] DESCRIPTIONS = new String[] {
                     "1: ADD DR, SR1, SR2\n2: ADD DR, SR1, imm5\n\n"
                                     + "Adds the values in SR1 and SR2/imm5 and sets DR to that value.",
@@ -41,14 +44,14 @@ public class EZEditorController {
                     "1: LD DR, LABEL\n\n" + "Load the value inidcated by LABEL into the DR register.",
                     "1: LDI DR, LABEL\n\n"
                                     + "Load the value indicated by the address at LABEL's memory location into the DR register.",
-                    "1: LDR LDR DR, SR1, offset6\n\n"
+                    "1: LDR DR, SR1, offset6\n\n"
                                     + "Load the value from the memory location found by adding the value of SR1 to offset6 into DR.",
                     "1: LEA DR, LABEL\n\n" + "Load the address of LABEL into DR.",
                     "1: NOT DR, SR1\n\n"
                                     + "Performs a bitwise not on SR1 and stores the result in DR.",
                     "1: RET\n\n" + "Return from a subroutine using the value in R7 as the base address.",
                     "1: RTI\n\n" + "Return from an  interrupt to the code that was interrupted. The address to return to is obtained by popping it off the supervisor stack, which is automatically done by RTI.",
-                    "1: ST STR1, LABEL\n\n"
+                    "1: ST SR1, LABEL\n\n"
                                     + "Store the value in SR1 into the memory location indicated by LABEL",
                     "1: STI SR1, LABEL\n\n"
                                     + "Store the value in SR1 into the memory location indicated by the value that LABEL's memory location contains.",
@@ -73,29 +76,11 @@ public class EZEditorController {
                     "1: .END\n\n"
                                     + "Tells the LC-3 assembler to stop assembling your code."};
 
-    // Tokens that need to be changed after autocomplete
-    private static final String[] INCOMPLETE = new String[] {
-                    "SR1", "SR2", "DR", "imm5", "trapvector8", "offset6", "LABEL", 
-                    "BR(n/z/p)", "#", "<String>"
-    };
+    // Shared style classes for each token type, so highlighting never allocates them per token
+    private static final List<Collection<String>> STYLES = styleTable();
 
-    // LC-3 ISA Register
-    private static final String[] REGISTERS = new String[] {
-                    "R0", "R1", "R2", "R3", "R4", "R5", "R6", "R7", "PC", "IR", "PSR", "CC"
-    };
-
-    // Regex filter for LC-3 ISA specific highlighting
-    private static final String KEYWORD_PATTERN = "\\b(" + String.join("|", KEYWORDS) + ")\\b";
-    private static final String COMMENT_PATTERN = ";.*";
-    private static final String INCOMPLETE_PATTERN = "\\b(" + String.join("|", INCOMPLETE) + ")\\b";
-    private static final String REGISTER_PATTERN = "\\b(" + String.join("|", REGISTERS) + ")\\b";
-
-    // Compile the Regex filters into one location
-    private static final Pattern PATTERN = Pattern.compile(
-                    "(?<KEYWORD>" + KEYWORD_PATTERN + ")"
-                    + "|(?<COMMENT>" + COMMENT_PATTERN + ")"
-                    + "|(?<INCOMPLETE>" + INCOMPLETE_PATTERN + ")"
-                    + "|(?<REGISTER>" + REGISTER_PATTERN + ")");
+    // Suggestion list for Ctrl + Space, null until it is first shown
+    private CompletionPopup completionPopup;
 
     /**
      * Setup the behavior of the controller
@@ -103,165 +88,157 @@ public class EZEditorController {
      */
     public EZEditorController(EZEditor editor) {
         CodeArea edit = editor.getEditArea();
+        // Suggestions for the word under the caret, from the caret's line and the document's labels
+        CompletionEngine completions = createCompletionEngine();
+        edit.plainTextChanges().subscribe(change -> {
+            int first = edit.offsetToPosition(change.getPosition(), Bias.Forward).getMajor();
+            int inserted = IncrementalHighlighter.countLines(change.getInserted());
+            int removed = IncrementalHighlighter.countLines(change.getRemoved());
+            List<String> lines = new ArrayList<>(inserted + 1);
+            for(int i = first; i <= first + inserted; i++)
+                lines.add(edit.getParagraph(i).getText());
+            completions.replaceLines(first, removed + 1, lines);
+        });
+
         // Key combination to open auto-complete
         // TODO: Make this changleable at runtime
         KeyCombination toolTipkeys = new KeyCodeCombination(KeyCode.SPACE, KeyCombination.CONTROL_DOWN);
+        // The popup is only built the first time it is asked for
         Runnable displayToolTip = () -> {
-            int[] info = findKeyWordInCaret(edit);
-            if(info != null) {
-                String toolTipText = DESCRIPTIONS[info[0]];
-                
-                Popup popup = new Popup();
-                Label popupMsg = new Label(toolTipText);
-                ScrollPane popupPane = new ScrollPane(popupMsg);
-                popupPane.setId("popup");
-               
-                popupMsg.minHeightProperty().bind(popup.heightProperty());
-                popupMsg.setWrapText(true);                 
-                popupMsg.setId("popupMessage");
-               
-                popup.getContent().add(popupPane);
-                Bounds caretBounds = edit.getCaretBounds().get();
-                popup.show(edit, caretBounds.getMaxX(), caretBounds.getMaxY());
-                popupPane.requestFocus();                    
-
-                // Auto-complete upon presisng selection option
-                popupPane.addEventFilter(KeyEvent.ANY, e -> {
-                    if(e.getCode() == KeyCode.DIGIT1 || e.getCode() == KeyCode.DIGIT2 || e.getCharacter().equals("1") || e.getCharacter().equals("2")) {
-                      e.consume();
-                      if(e.getEventType() == KeyEvent.KEY_PRESSED) {
-                          int keyPressed = !e.getText().equals("") ? Integer.parseInt(e.getText()) : Integer.parseInt(e.getCharacter());
-                          String definition = DESCRIPTIONS[info[0]].split("\n")[keyPressed - 1];
-                          definition = definition.replace(keyPressed + ": ", "");
-                          definition = definition.replace(".", "");
-                          edit.replaceText(info[1], info[2], definition);
-                          edit.setStyleSpans(0, computeHighlighting(edit.getText()));
-                      } else {
-                          popup.hide();  
-                      }
-                  } else if (!e.isControlDown() && !(e.getCode() == KeyCode.SPACE) && !(e.getCode() == KeyCode.CONTROL)) {
-                      popup.hide();
-                  }
-                });
-
-            }
+            if(completionPopup == null)
+                completionPopup = new CompletionPopup(edit, completions);
+            completionPopup.show();
         };
 
         // Add keycombination to scene
         editor.getScene().getAccelerators().put(toolTipkeys, displayToolTip);
 
-        // Add line numbers to edit area
-        edit.setParagraphGraphicFactory(LineNumberFactory.get(edit));
+        // Check only the lines touched by each edit, off the FX thread, which also keeps the outline
+        LiveDiagnostics diagnostics = new LiveDiagnostics(edit);
+        diagnostics.setOnOutline(editor.folding::setOutline);
+
+        // Add line numbers, problem markers and fold toggles to edit area
+        edit.setParagraphGraphicFactory(new DiagnosticGutter(edit, diagnostics, editor.markers, editor.folding));
         
-        // Compute highlighting each time a key is pressed
-        edit.setOnKeyPressed(e -> {
-              edit.setStyleSpans(0, computeHighlighting(edit.getText()));
+        // Re-highlight only the paragraphs touched by each edit, off the FX thread
+        IncrementalHighlighter highlighter = new IncrementalHighlighter(edit);
+        highlighter.setOnRestyled(diagnostics::underline);
+
+        // Ctrl + Click jumps to the definition of the label under the mouse
+        edit.addEventHandler(MouseEvent.MOUSE_CLICKED, e -> {
+            if(e.getButton() == MouseButton.PRIMARY && e.isShortcutDown() && e.isStillSincePress())
+                editor.onGoToDefinition.accept(edit.hit(e.getX(), e.getY()).getInsertionIndex());
         });
-        
 
-        // Tab behavior
+        // Tab behavior, each key is one edit and one undo step @see EditTransaction
         edit.addEventFilter(KeyEvent.ANY, e -> {
+            long started = Metrics.start();
             // Listener that makes Tabs into 4 space because we're civilized
             if(!e.isShiftDown() && e.getCode() == KeyCode.TAB || e.getCharacter().equals("\t")) {
                 e.consume();
-                if(e.getEventType() == KeyEvent.KEY_PRESSED)
-                    edit.insertText(edit.getCaretPosition(), "    ");
-                edit.setStyleSpans(0, computeHighlighting(edit.getText()));
+                if(e.getEventType() == KeyEvent.KEY_PRESSED) {
+                    IndexRange selection = edit.getSelection();
+                    new EditTransaction(edit)
+                                    .replace(selection.getStart(), selection.getEnd(), "    ")
+                                    .moveCaret(selection.getStart() + 4)
+                                    .commit();
+                }
             }
             
             // Listener that tab matches the previous line
             if(e.getCode() == KeyCode.ENTER || e.getCharacter().equals("\n")) {
                 e.consume();
                 if(e.getEventType() == KeyEvent.KEY_PRESSED) {
-                   String lastParagraph = edit.getParagraph(edit.getCurrentParagraph()).getText();
-                   edit.insertText(edit.getCaretPosition(), "\n");
-                   for(int i = 0; i < lastParagraph.length(); i++) {
-                       if(lastParagraph.charAt(i) == ' ') {
-                           edit.insertText(edit.getCaretPosition(), " ");
-                       } else {
-                           break;
-                       }
-                   }
+                    String lastParagraph = edit.getParagraph(edit.getCurrentParagraph()).getText();
+                    int indent = 0;
+                    while(indent < lastParagraph.length() && lastParagraph.charAt(indent) == ' ')
+                        indent++;
+                    IndexRange selection = edit.getSelection();
+                    new EditTransaction(edit)
+                                    .replace(selection.getStart(), selection.getEnd(), "\n" + lastParagraph.substring(0, indent))
+                                    .moveCaret(selection.getStart() + 1 + indent)
+                                    .commit();
                 }
-                edit.setStyleSpans(0, computeHighlighting(edit.getText()));
             }
             
             // Shift tab removes 4 spaces, once again we're civilized
             if(e.isShiftDown() && e.getCode() == KeyCode.TAB) {
                 e.consume();
                 if(e.getEventType() == KeyEvent.KEY_PRESSED) {
-                    Boolean proceed = true;
-                    String currentParagraph = edit.getText();
-                    try {
-                        for(int i = 1; i < 5; i++) {
-                            System.out.println(currentParagraph.charAt(edit.getCaretPosition() - i));
-                            if(currentParagraph.charAt(edit.getCaretPosition() - i) != ' ') {
-                                proceed = false;
-                            }
-                        }
-                    } catch (StringIndexOutOfBoundsException f) {
-                        // PROCEED SHOULD JUST KEEP ITS VALUE
-                        // This only happens on first line with less than 4 chars
-                        // Checking rules still apply, just don't throw error
+                    int column = edit.getCaretColumn();
+                    String currentParagraph = edit.getParagraph(edit.getCurrentParagraph()).getText();
+                    if(column >= 4 && currentParagraph.startsWith("    ", column - 4)) {
+                        int caret = edit.getCaretPosition();
+                        new EditTransaction(edit).delete(caret - 4, caret).moveCaret(caret - 4).commit();
                     }
-                    if(proceed)
-                        edit.replaceText(edit.getCaretPosition() - 4, edit.getCaretPosition(), "");
                 }
-                edit.setStyleSpans(0, computeHighlighting(edit.getText()));
             }
+            if(e.getEventType() != KeyEvent.KEY_RELEASED)
+                Metrics.record(Metrics.Probe.KEY_HANDLER, started);
         });
     }
 
     /**
-     * Takes in non-styled text each keystroke and updates syntax highlighting
-     * TODO: don't recompute highlighting, only on changed text
+     * Computes the syntax highlighting for a run of whole paragraphs. Called from the
+     * background highlighting thread, so it must not touch the edit area.
+     * @see IncrementalHighlighter
      * @param text Text to apply highlighting to
      * @return The styled text
      */
-    private StyleSpans<Collection<String>> computeHighlighting(String text) {
-        Matcher matcher = PATTERN.matcher(text);
+    public static StyleSpans<Collection<String>> computeHighlighting(String text) {
+        Lexer lexer = new Lexer(text);
         int lastKwEnd = 0;
         StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
-        while (matcher.find()) {
-            String styleClass = 
-                matcher.group("KEYWORD") != null ? "keyword" : 
-                matcher.group("COMMENT") != null ? "comment" : 
-                matcher.group("INCOMPLETE") != null ? "incomplete" :
-                matcher.group("REGISTER") != null ? "register" : null;
-            spansBuilder.add(Collections.emptyList(), matcher.start() - lastKwEnd);
-            spansBuilder.add(Collections.singleton(styleClass), matcher.end() - matcher.start());
-            lastKwEnd = matcher.end();
+        TokenType type;
+        while ((type = lexer.next()) != null) {
+            Collection<String> style = STYLES.get(type.ordinal());
+            if(style.isEmpty())
+                continue;
+            spansBuilder.add(Collections.emptyList(), lexer.getStart() - lastKwEnd);
+            spansBuilder.add(style, lexer.getEnd() - lexer.getStart());
+            lastKwEnd = lexer.getEnd();
         }
         spansBuilder.add(Collections.emptyList(), text.length() - lastKwEnd);
         return spansBuilder.create();
     }
 
     /**
-     * If they caret is currently on top or directly after an LC-3 ISA keyword @see KEYWORDS
-     * then return an array containing the index of the keyword in @see KEYWORDS as well as
-     * the start and end position of the keyword.
-     * @param edit The edit area
-     * @return Caret position and keyword hovered
+     * Runs the lexer and builds the completion tables once, so the classes and tables
+     * they need are loaded before the first edit. Safe to call from any thread.
      */
-    private int[] findKeyWordInCaret(CodeArea edit) {
-        int caretPos = edit.getCaretPosition();
-        // No keyword can ever be more than 6 characters from caret position
-        // e.g. .STRINGZ
-        int scanTo = edit.getText().length() > caretPos + 6 ? caretPos + 6
-                        : edit.getText().length();
-        String keyword = edit.getText().substring(0, scanTo);
-        Matcher matcher = PATTERN.matcher(keyword);
-        while (matcher.find()) {
-            int keywordIndex = -1;
-            if (caretPos >= matcher.start() && caretPos <= matcher.end()) {
-                for(int i = 0; i < KEYWORDS.length; i++) {
-                    if(KEYWORDS[i].equals(matcher.group())){
-                        keywordIndex = i;
-                    }
-                }
-                return new int[] { keywordIndex, matcher.start(), matcher.end() };
+    public static void warmUp() {
+        computeHighlighting(".ORIG x3000\nLOOP ADD R1, R1, #-1 ; count down\n BRp LOOP\n.STRINGZ \"done\"\n.END\n");
+        createCompletionEngine().complete("AD", 2);
+    }
+
+    /**
+     * Builds a completion engine from the keyword documentation, parsing the templates
+     * once rather than on every Ctrl + Space
+     * @return An engine that knows no labels yet
+     */
+    public static CompletionEngine createCompletionEngine() {
+        return new CompletionEngine(KEYWORDS, DESCRIPTIONS);
+    }
+
+    /**
+     * Builds the style class collection for every token type, empty for unstyled tokens
+     * @return Collections indexed by @see TokenType ordinal
+     */
+    private static List<Collection<String>> styleTable() {
+        List<Collection<String>> styles = new ArrayList<>(TokenType.values().length);
+        for(TokenType type : TokenType.values()) {
+            switch(type) {
+                case KEYWORD:    styles.add(Collections.singleton("keyword")); break;
+                case DIRECTIVE:  styles.add(Collections.singleton("directive")); break;
+                case REGISTER:   styles.add(Collections.singleton("register")); break;
+                case LABEL:      styles.add(Collections.singleton("asm-label")); break;
+                case NUMBER:     styles.add(Collections.singleton("number")); break;
+                case STRING:     styles.add(Collections.singleton("string")); break;
+                case COMMENT:    styles.add(Collections.singleton("comment")); break;
+                case INCOMPLETE: styles.add(Collections.singleton("incomplete")); break;
+                default:         styles.add(Collections.emptyList()); break;
             }
         }
-        return null;
+        return List.copyOf(styles);
     }
 }
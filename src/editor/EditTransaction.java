@@ -0,0 +1,146 @@
+package editor;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.richtext.MultiChangeBuilder;
+
+/**
+ * Buffers a group of edits to an edit area and applies them as one. Edits that lie
+ * close together, or that are too many to apply one by one, are folded into a single
+ * replaceText covering all of them; a few edits far apart become one multi-change.
+ * Either way listeners see the group at once, the highlighter restyles once, and undo
+ * takes the whole group back in one step.
+ *
+ * Positions given to a transaction refer to the text as it was when the transaction
+ * began, as if no edit of the transaction had happened yet. Edits may be buffered on any
+ * thread, but only committed on the FX thread.
+ */
+public class EditTransaction {
+
+    // Most unchanged text between edits still folded into one replaceText
+    private static final int MERGE_GAP = 4096;
+    // Most edits applied as one multi-change, more are always folded into one replaceText
+    // since the edit area applies a multi-change one edit at a time
+    private static final int MAX_MULTI_CHANGE = 64;
+
+    private static class Edit {
+        final int start;
+        final int end;
+        final String text;
+
+        Edit(int start, int end, String text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+        }
+    }
+
+    private final CodeArea area;
+    // Buffered edits, sorted by position and not overlapping
+    private final List<Edit> edits = new ArrayList<>(2);
+    // Where to put the caret afterwards, -1 to leave it where the edits put it
+    private int caret = -1;
+
+    /**
+     * Starts an empty transaction
+     * @param area The edit area to change
+     */
+    public EditTransaction(CodeArea area) {
+        this.area = area;
+    }
+
+    /**
+     * Replaces a range of the original text
+     * @param start Start of the range (inclusive)
+     * @param end End of the range (exclusive)
+     * @param text The replacement
+     * @return this transaction
+     */
+    public EditTransaction replace(int start, int end, String text) {
+        int i = edits.size();
+        while(i > 0 && edits.get(i - 1).start > start)
+            i--;
+        if((i > 0 && edits.get(i - 1).end > start) || (i < edits.size() && edits.get(i).start < end))
+            throw new IllegalArgumentException("Edits of one transaction must not overlap");
+        edits.add(i, new Edit(start, end, text));
+        return this;
+    }
+
+    /**
+     * Inserts text into the original text
+     * @param position Where to insert
+     * @param text The text to insert
+     * @return this transaction
+     */
+    public EditTransaction insert(int position, String text) {
+        return replace(position, position, text);
+    }
+
+    /**
+     * Deletes a range of the original text
+     * @param start Start of the range (inclusive)
+     * @param end End of the range (exclusive)
+     * @return this transaction
+     */
+    public EditTransaction delete(int start, int end) {
+        return replace(start, end, "");
+    }
+
+    /**
+     * Places the caret once the edits are applied
+     * @param position Position in the text after the edits
+     * @return this transaction
+     */
+    public EditTransaction moveCaret(int position) {
+        this.caret = position;
+        return this;
+    }
+
+    /**
+     * Applies the buffered edits as a single change with a single undo step
+     */
+    public void commit() {
+        if(edits.isEmpty() && caret < 0)
+            return;
+
+        // Keep the group from merging with the typing around it
+        area.getUndoManager().preventMerge();
+        if(edits.size() == 1) {
+            Edit edit = edits.get(0);
+            area.replaceText(edit.start, edit.end, edit.text);
+        } else if(edits.size() > MAX_MULTI_CHANGE || edits.size() > 1 && gap() <= MERGE_GAP) {
+            int start = edits.get(0).start;
+            int end = edits.get(edits.size() - 1).end;
+            String original = area.getText(start, end);
+            StringBuilder merged = new StringBuilder(end - start);
+            int at = start;
+            for(Edit edit : edits) {
+                merged.append(original, at - start, edit.start - start).append(edit.text);
+                at = edit.end;
+            }
+            area.replaceText(start, end, merged.toString());
+        } else if(edits.size() > 1) {
+            MultiChangeBuilder<?, ?, ?> change = area.createMultiChange(edits.size());
+            for(Edit edit : edits)
+                change.replaceText(edit.start, edit.end, edit.text);
+            change.commit();
+        }
+        area.getUndoManager().preventMerge();
+
+        if(caret >= 0)
+            area.moveTo(Math.min(caret, area.getLength()));
+        edits.clear();
+        caret = -1;
+    }
+
+    /**
+     * Unchanged characters between the first and the last edit
+     */
+    private int gap() {
+        int gap = 0;
+        for(int i = 1; i < edits.size(); i++)
+            gap += edits.get(i).start - edits.get(i - 1).end;
+        return gap;
+    }
+}
@@ -0,0 +1,323 @@
+package editor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.richtext.model.PlainTextChange;
+import org.fxmisc.richtext.model.ReadOnlyStyledDocument;
+import org.fxmisc.richtext.model.TwoDimensional.Bias;
+import assembler.OutlineEntry;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+
+/**
+ * The outline of the text in the edit area, and the regions of it that are folded. A
+ * folded region keeps its first line; the lines after it get the folded paragraph style,
+ * which collapses them to no height, so the edit area lays out nothing for them. Styles
+ * are changed in one edit per fold, and in one edit for all of them when folding or
+ * unfolding everything, as every change to the edit area's paragraphs costs a pass over
+ * them. Folds move along with lines inserted or removed above them,
+ * and an edit touching a folded region unfolds it. The caret steps over folded lines;
+ * @see #reveal unfolds the lines a jump lands on.
+ */
+class Folding {
+
+    // Paragraph style class of the lines a fold hides
+    private static final String FOLDED = "folded";
+
+    private final CodeArea edit;
+
+    // The outline of the text, as last analysed
+    private final ReadOnlyObjectWrapper<List<OutlineEntry>> outline = new ReadOnlyObjectWrapper<>(List.of());
+    // Last line of every region of the outline that can fold, by its first line
+    private Map<Integer, Integer> regions = new HashMap<>();
+
+    // Last line of every folded region by its first line; folded regions never overlap
+    private TreeMap<Integer, Integer> folds = new TreeMap<>();
+    // Lines that may still have the folded style after an edit unfolded them, cleared
+    // once the edit is over
+    private TreeMap<Integer, Integer> unfolded = new TreeMap<>();
+    // Set while lines are restyled, which moves the caret for a moment
+    private boolean restyling;
+
+    // Incremented whenever the folds or the outline change, so the gutter knows to refresh
+    private final ReadOnlyIntegerWrapper revision = new ReadOnlyIntegerWrapper();
+
+    /**
+     * Starts following text changes and the caret on the edit area
+     * @param edit The edit area to fold
+     */
+    Folding(CodeArea edit) {
+        this.edit = edit;
+        edit.plainTextChanges().subscribe(this::shift);
+        edit.currentParagraphProperty().addListener((obs, before, after) -> stepOver(before, after));
+    }
+
+    /**
+     * Getter for the revision that changes every time the folds or the outline do
+     * @return revision
+     */
+    ReadOnlyIntegerProperty revisionProperty() {
+        return revision.getReadOnlyProperty();
+    }
+
+    /**
+     * Getter for the outline of the text
+     * @return outline, in line order
+     */
+    ReadOnlyObjectProperty<List<OutlineEntry>> outlineProperty() {
+        return outline.getReadOnlyProperty();
+    }
+
+    /**
+     * Replaces the outline, once the text was analysed again
+     * @param entries The outline of the current text
+     */
+    void setOutline(List<OutlineEntry> entries) {
+        if(entries == outline.get())
+            return;
+        Map<Integer, Integer> foldable = new HashMap<>();
+        for(OutlineEntry entry : entries) {
+            if(entry.isFoldable())
+                foldable.put(entry.getLine(), entry.getLastLine());
+        }
+        regions = foldable;
+        outline.set(entries);
+        revision.set(revision.get() + 1);
+    }
+
+    /**
+     * @param paragraph The paragraph index
+     * @return true if a region of the outline that is not folded starts on the line
+     */
+    boolean canFold(int paragraph) {
+        return regions.containsKey(paragraph) && !folds.containsKey(paragraph);
+    }
+
+    /**
+     * @param paragraph The paragraph index
+     * @return true if a folded region starts on the line
+     */
+    boolean isFolded(int paragraph) {
+        return folds.containsKey(paragraph);
+    }
+
+    /**
+     * @param paragraph The paragraph index
+     * @return true if the line is hidden inside a folded region
+     */
+    boolean isHidden(int paragraph) {
+        Map.Entry<Integer, Integer> fold = folds.lowerEntry(paragraph);
+        return fold != null && fold.getValue() >= paragraph;
+    }
+
+    /**
+     * Folds the innermost region of the outline around a line, or unfolds the region
+     * folded on it
+     * @param paragraph The paragraph index
+     */
+    void toggle(int paragraph) {
+        if(folds.containsKey(paragraph)) {
+            unfold(paragraph);
+            return;
+        }
+        int first = -1;
+        for(OutlineEntry entry : outline.get()) {
+            if(entry.getLine() > paragraph)
+                break;
+            if(entry.isFoldable() && entry.getLastLine() >= paragraph && !isHidden(entry.getLine()))
+                first = entry.getLine();
+        }
+        if(first >= 0)
+            fold(first, regions.get(first));
+    }
+
+    /**
+     * Folds every subroutine and block of data, leaving the sections open
+     */
+    void foldAll() {
+        int last = edit.getParagraphs().size() - 1;
+        int from = -1;
+        int to = -1;
+        for(OutlineEntry entry : outline.get()) {
+            int end = Math.min(entry.getLastLine(), last);
+            if(entry.getKind() == OutlineEntry.Kind.SECTION || end <= entry.getLine() || folds.containsKey(entry.getLine())
+                            || isHidden(entry.getLine()))
+                continue;
+            folds.subMap(entry.getLine(), true, end, true).clear();
+            folds.put(entry.getLine(), end);
+            from = from < 0 ? entry.getLine() + 1 : from;
+            to = Math.max(to, end);
+        }
+        restyle(from, to);
+        leaveFolds();
+    }
+
+    /**
+     * Unfolds every folded region
+     */
+    void unfoldAll() {
+        if(folds.isEmpty())
+            return;
+        int from = folds.firstKey() + 1;
+        int to = Math.min(folds.lastEntry().getValue(), edit.getParagraphs().size() - 1);
+        folds.clear();
+        restyle(from, to);
+        revision.set(revision.get() + 1);
+    }
+
+    /**
+     * Unfolds whatever hides a line, before a jump to it
+     * @param paragraph The paragraph index
+     */
+    void reveal(int paragraph) {
+        Map.Entry<Integer, Integer> fold = folds.lowerEntry(paragraph);
+        if(fold != null && fold.getValue() >= paragraph)
+            unfold(fold.getKey());
+    }
+
+    /**
+     * Hides the lines of a region after its first, taking in folds inside it
+     */
+    private void fold(int first, int last) {
+        last = Math.min(last, edit.getParagraphs().size() - 1);
+        if(last <= first)
+            return;
+        folds.subMap(first, true, last, true).clear();
+        folds.put(first, last);
+        restyle(first + 1, last);
+        leaveFolds();
+    }
+
+    private void unfold(int first) {
+        Integer last = folds.remove(first);
+        if(last == null)
+            return;
+        restyle(first + 1, Math.min(last, edit.getParagraphs().size() - 1));
+        revision.set(revision.get() + 1);
+    }
+
+    /**
+     * Moves the caret off a line that folding just hid, to the end of the line the fold
+     * is on
+     */
+    private void leaveFolds() {
+        Map.Entry<Integer, Integer> fold = folds.lowerEntry(edit.getCurrentParagraph());
+        if(fold != null && fold.getValue() >= edit.getCurrentParagraph())
+            edit.moveTo(fold.getKey(), edit.getParagraphLength(fold.getKey()));
+        revision.set(revision.get() + 1);
+    }
+
+    /**
+     * Gives a run of lines the folded style if a fold hides them, and takes it off
+     * otherwise, in a single edit. The undo history and everything following the text
+     * ignore it, as the text stays the same.
+     */
+    private void restyle(int first, int last) {
+        if(last < first)
+            return;
+        int start = edit.getAbsolutePosition(first, 0);
+        int end = edit.getAbsolutePosition(last, edit.getParagraphLength(last));
+        ReadOnlyStyledDocument<Collection<String>, String, Collection<String>> lines
+                        = ReadOnlyStyledDocument.from(edit.subDocument(start, end));
+        int[] paragraph = {first};
+        int anchor = edit.getAnchor();
+        int caret = edit.getCaretPosition();
+        restyling = true;
+        try {
+            edit.replace(start, end, lines.mapParagraphs(line -> line.setParagraphStyle(styled(line.getParagraphStyle(), isHidden(paragraph[0]++)))));
+            edit.selectRange(anchor, caret);
+        } finally {
+            restyling = false;
+        }
+    }
+
+    private static Collection<String> styled(Collection<String> style, boolean folded) {
+        if(style.contains(FOLDED) == folded)
+            return style;
+        List<String> classes = new ArrayList<>(style);
+        if(folded)
+            classes.add(FOLDED);
+        else
+            classes.remove(FOLDED);
+        return classes;
+    }
+
+    /**
+     * Moves the folds along with any lines a change inserted or removed, and unfolds
+     * those the change touched. Their lines are restyled once the change is over, since
+     * the edit area cannot be edited while it reports a change.
+     */
+    private void shift(PlainTextChange change) {
+        if(folds.isEmpty() && unfolded.isEmpty())
+            return;
+        int first = edit.offsetToPosition(change.getPosition(), Bias.Forward).getMajor();
+        int inserted = IncrementalHighlighter.countLines(change.getInserted());
+        int removed = IncrementalHighlighter.countLines(change.getRemoved());
+        boolean wasEmpty = unfolded.isEmpty();
+
+        TreeMap<Integer, Integer> shifted = new TreeMap<>();
+        for(Map.Entry<Integer, Integer> fold : folds.entrySet()) {
+            int start = fold.getKey();
+            int end = fold.getValue();
+            if(end < first) {
+                shifted.put(start, end);
+            } else if(start > first + removed) {
+                shifted.put(start + inserted - removed, end + inserted - removed);
+            } else {
+                // Whatever is left of the region, with the lines the change put in it
+                unfolded.put(Math.min(start, first), Math.max(end + inserted - removed, first + inserted));
+            }
+        }
+        TreeMap<Integer, Integer> pending = new TreeMap<>();
+        for(Map.Entry<Integer, Integer> lines : unfolded.entrySet()) {
+            int start = lines.getKey();
+            int end = lines.getValue();
+            if(end < first)
+                pending.merge(start, end, Math::max);
+            else if(start > first + removed)
+                pending.merge(start + inserted - removed, end + inserted - removed, Math::max);
+            else
+                pending.merge(Math.min(start, first), Math.max(end + inserted - removed, first + inserted), Math::max);
+        }
+        boolean changed = shifted.size() != folds.size();
+        folds = shifted;
+        unfolded = pending;
+        if(wasEmpty && !unfolded.isEmpty())
+            Platform.runLater(this::clearUnfolded);
+        if(changed || inserted != removed)
+            revision.set(revision.get() + 1);
+    }
+
+    private void clearUnfolded() {
+        int paragraphs = edit.getParagraphs().size();
+        for(Map.Entry<Integer, Integer> lines : unfolded.entrySet()) {
+            if(lines.getKey() < paragraphs)
+                restyle(lines.getKey(), Math.min(lines.getValue(), paragraphs - 1));
+        }
+        unfolded.clear();
+    }
+
+    /**
+     * Moves the caret past folded lines it stepped onto: down to the line after them,
+     * or up to the line they fold into
+     */
+    private void stepOver(int before, int after) {
+        if(restyling)
+            return;
+        Map.Entry<Integer, Integer> fold = folds.lowerEntry(after);
+        if(fold == null || fold.getValue() < after)
+            return;
+        if(after > before && fold.getValue() + 1 < edit.getParagraphs().size())
+            edit.moveTo(fold.getValue() + 1, 0);
+        else
+            edit.moveTo(fold.getKey(), edit.getParagraphLength(fold.getKey()));
+    }
+}
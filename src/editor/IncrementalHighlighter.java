@@ -0,0 +1,318 @@
+package editor;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.richtext.model.PlainTextChange;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.TwoDimensional.Bias;
+import javafx.application.Platform;
+import metrics.Metrics;
+
+/**
+ * Keeps the syntax highlighting of an edit area up to date by restyling only the
+ * paragraphs an edit touched, so the cost of a keystroke follows the size of the
+ * edit rather than the size of the file.
+ *
+ * Edits only mark paragraphs dirty. Once a burst of edits settles, a snapshot of the
+ * dirty text is lexed on a background thread and the result is applied back on the
+ * FX thread, but only if the document has not changed in the meantime.
+ *
+ * Documents over a size threshold switch to large file mode. Opening them does not lex
+ * anything; instead only the paragraphs in the viewport, plus a margin on either side,
+ * are highlighted as they scroll into view. A bounded number of paragraphs stay
+ * highlighted, and the ones that were on screen longest ago lose their styles again.
+ */
+class IncrementalHighlighter {
+
+    // How long the document has to be quiet before the dirty paragraphs are re-lexed
+    private static final Duration DEBOUNCE = Duration.ofMillis(25);
+
+    // Shared background thread that does the lexing for every edit area
+    private static final ExecutorService LEXER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "highlighter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Documents with more characters than this are only highlighted around the viewport
+    static final int LARGE_FILE = Integer.getInteger("lc3ezedit.largeFileKB", 1024) * 1024;
+    // Paragraphs above and below the viewport highlighted ahead of scrolling
+    static final int MARGIN = 50;
+    // Most paragraphs kept highlighted in large file mode
+    static final int CAPACITY = 4096;
+
+    // The edit area being highlighted
+    private final CodeArea edit;
+
+    // Whether only the paragraphs around the viewport are highlighted
+    private boolean large;
+    // Paragraphs highlighted in large file mode, least recently on screen first
+    private LinkedHashMap<Integer, Boolean> highlighted = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Incremented on every text change, used to throw away results lexed from a stale snapshot
+    private long version;
+
+    // Range of paragraphs (inclusive) waiting to be restyled, -1 when nothing is dirty
+    private int dirtyFirst = -1;
+    private int dirtyLast = -1;
+
+    // The lexing job currently queued or running, if any
+    private Future<?> pending;
+
+    // Told the first and last paragraph each time highlighting is replaced
+    private BiConsumer<Integer, Integer> onRestyled = (first, last) -> { };
+
+    /**
+     * Starts listening for text changes on the edit area
+     * @param edit The edit area to highlight
+     */
+    IncrementalHighlighter(CodeArea edit) {
+        this.edit = edit;
+        edit.plainTextChanges().subscribe(this::markDirty);
+        edit.plainTextChanges().successionEnds(DEBOUNCE).subscribe(c -> schedule());
+        edit.getVisibleParagraphs().changes().successionEnds(DEBOUNCE).subscribe(c -> {
+            if(large) scheduleVisible();
+        });
+    }
+
+    /**
+     * Sets what to do after the highlighting of a range of paragraphs was replaced, such
+     * as putting back styles that other features layer on top of it
+     * @param onRestyled Called with the first and last (inclusive) paragraph restyled,
+     * including a paragraph that lost its highlighting in large file mode
+     */
+    void setOnRestyled(BiConsumer<Integer, Integer> onRestyled) {
+        this.onRestyled = onRestyled;
+    }
+
+    /**
+     * Records the paragraphs between the start of the change and the end of the
+     * inserted text as dirty, moving an already dirty range along with any lines the
+     * change inserted or removed. LC-3 tokens never span lines, so a paragraph's
+     * highlighting only depends on its own text and no neighbouring paragraph has to
+     * be re-lexed.
+     * @param change The change that was just applied to the edit area
+     */
+    private void markDirty(PlainTextChange change) {
+        version++;
+        if(pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+
+        int first = edit.offsetToPosition(change.getPosition(), Bias.Forward).getMajor();
+        int inserted = countLines(change.getInserted());
+        int removed = countLines(change.getRemoved());
+
+        // Leave large file mode only well below the threshold, so it does not flip back and forth
+        boolean wasLarge = large;
+        large = edit.getLength() > (large ? LARGE_FILE / 2 : LARGE_FILE);
+        if(large) {
+            if(!wasLarge)
+                highlighted.clear();
+            dirtyFirst = -1;
+            dirtyLast = -1;
+            forget(first, inserted, removed);
+            return;
+        }
+        if(wasLarge) {
+            // Paragraphs that were never on screen have no highlighting yet
+            highlighted.clear();
+            dirtyFirst = 0;
+            dirtyLast = edit.getParagraphs().size() - 1;
+            return;
+        }
+
+        if(dirtyFirst < 0) {
+            dirtyFirst = first;
+            dirtyLast = first + inserted;
+        } else {
+            dirtyFirst = Math.min(shift(dirtyFirst, first, inserted, removed), first);
+            dirtyLast = Math.max(shift(dirtyLast, first, inserted, removed), first + inserted);
+        }
+        dirtyLast = Math.min(dirtyLast, edit.getParagraphs().size() - 1);
+    }
+
+    /**
+     * Forgets the highlighting of the paragraphs a change touched in large file mode, and
+     * moves the remembered paragraphs after it along with the lines it inserted or removed
+     * @param first Paragraph the change starts in
+     * @param inserted Number of line breaks the change inserted
+     * @param removed Number of line breaks the change removed
+     */
+    private void forget(int first, int inserted, int removed) {
+        if(inserted == removed) {
+            for(int paragraph = first; paragraph <= first + inserted; paragraph++)
+                highlighted.remove(paragraph);
+            return;
+        }
+        LinkedHashMap<Integer, Boolean> shifted = new LinkedHashMap<>(highlighted.size() * 2, 0.75f, true);
+        for(Integer paragraph : highlighted.keySet()) {
+            if(paragraph < first || paragraph > first + removed)
+                shifted.put(shift(paragraph, first, inserted, removed), Boolean.TRUE);
+        }
+        highlighted = shifted;
+    }
+
+    /**
+     * Maps a paragraph index from before a change to its index after the change
+     * @param paragraph Paragraph index before the change
+     * @param first Paragraph the change starts in
+     * @param inserted Number of line breaks the change inserted
+     * @param removed Number of line breaks the change removed
+     * @return Paragraph index after the change
+     */
+    static int shift(int paragraph, int first, int inserted, int removed) {
+        if(paragraph <= first)
+            return paragraph;
+        if(paragraph <= first + removed)
+            return first;
+        return paragraph + inserted - removed;
+    }
+
+    /**
+     * Counts the line breaks in a piece of text
+     * @param text The text to scan
+     * @return Number of '\n' characters
+     */
+    static int countLines(String text) {
+        int lines = 0;
+        for(int i = 0; i < text.length(); i++) {
+            if(text.charAt(i) == '\n')
+                lines++;
+        }
+        return lines;
+    }
+
+    /**
+     * Snapshots the dirty paragraphs and hands them to the background lexer. Called on
+     * the FX thread once the edits have settled.
+     */
+    private void schedule() {
+        if(large) {
+            scheduleVisible();
+            return;
+        }
+        if(dirtyFirst < 0)
+            return;
+
+        int last = Math.min(dirtyLast, edit.getParagraphs().size() - 1);
+        int start = edit.getAbsolutePosition(dirtyFirst, 0);
+        int end = edit.getAbsolutePosition(last, edit.getParagraphLength(last));
+        String snapshot = edit.getText(start, end);
+        long snapshotVersion = version;
+        int first = dirtyFirst;
+
+        pending = LEXER.submit(() -> {
+            long started = Metrics.start();
+            StyleSpans<Collection<String>> spans = EZEditorController.computeHighlighting(snapshot);
+            Metrics.record(Metrics.Probe.HIGHLIGHT, started, spans.getSpanCount());
+            Platform.runLater(() -> apply(snapshotVersion, start, spans, first, last));
+        });
+    }
+
+    /**
+     * Hands the paragraphs around the viewport that are not highlighted yet to the
+     * background lexer, in large file mode. Called on the FX thread after edits and
+     * scrolling settle.
+     */
+    private void scheduleVisible() {
+        if(edit.getVisibleParagraphs().isEmpty())
+            return;
+        int top = paragraphAt(0);
+        int bottom = paragraphAt(edit.getHeight() - 1);
+        // Looking the visible paragraphs up makes them the most recently seen
+        for(int paragraph = top; paragraph <= bottom; paragraph++)
+            highlighted.get(paragraph);
+
+        int first = -1;
+        int last = -1;
+        int end = Math.min(bottom + MARGIN, edit.getParagraphs().size() - 1);
+        for(int paragraph = Math.max(0, top - MARGIN); paragraph <= end; paragraph++) {
+            if(!highlighted.containsKey(paragraph)) {
+                if(first < 0)
+                    first = paragraph;
+                last = paragraph;
+            }
+        }
+        if(first < 0)
+            return;
+
+        int start = edit.getAbsolutePosition(first, 0);
+        String snapshot = edit.getText(start, edit.getAbsolutePosition(last, edit.getParagraphLength(last)));
+        long snapshotVersion = version;
+        int from = first;
+        int to = last;
+
+        LEXER.submit(() -> {
+            long started = Metrics.start();
+            StyleSpans<Collection<String>> spans = EZEditorController.computeHighlighting(snapshot);
+            Metrics.record(Metrics.Probe.HIGHLIGHT, started, spans.getSpanCount());
+            Platform.runLater(() -> applyVisible(snapshotVersion, start, spans, from, to));
+        });
+    }
+
+    /**
+     * Finds the paragraph shown at a height in the viewport. The edit area's own
+     * firstVisibleParToAllParIndex searches the document from its first paragraph, which
+     * in a large file takes longer the further down the viewport is; asking the viewport
+     * takes the same time anywhere.
+     * @param y The height, from the top of the viewport
+     * @return The paragraph index
+     */
+    private int paragraphAt(double y) {
+        return edit.offsetToPosition(edit.hit(0, y).getInsertionIndex(), Bias.Forward).getMajor();
+    }
+
+    /**
+     * Applies spans lexed in large file mode and remembers the paragraphs as highlighted,
+     * clearing the styles of those that were on screen longest ago once there are too many
+     */
+    private void applyVisible(long snapshotVersion, int start, StyleSpans<Collection<String>> spans, int first, int last) {
+        if(snapshotVersion != version || !large)
+            return;
+        long started = Metrics.start();
+        edit.setStyleSpans(start, spans);
+        Metrics.record(Metrics.Probe.APPLY_STYLES, started, last - first + 1);
+        onRestyled.accept(first, last);
+        for(int paragraph = first; paragraph <= last; paragraph++)
+            highlighted.put(paragraph, Boolean.TRUE);
+
+        Iterator<Integer> oldest = highlighted.keySet().iterator();
+        while(highlighted.size() > CAPACITY) {
+            int paragraph = oldest.next();
+            oldest.remove();
+            edit.clearStyle(paragraph);
+            // Clearing took every style off, including the ones layered on top
+            onRestyled.accept(paragraph, paragraph);
+        }
+    }
+
+    /**
+     * Applies lexed spans in a single style change, unless the text was edited after the
+     * snapshot was taken, in which case a newer job is already on its way.
+     * @param snapshotVersion Document version the spans were computed from
+     * @param start Offset of the first character the spans cover
+     * @param spans The computed spans
+     * @param first First paragraph the spans cover
+     * @param last Last paragraph the spans cover
+     */
+    private void apply(long snapshotVersion, int start, StyleSpans<Collection<String>> spans, int first, int last) {
+        if(snapshotVersion != version)
+            return;
+        long started = Metrics.start();
+        edit.setStyleSpans(start, spans);
+        Metrics.record(Metrics.Probe.APPLY_STYLES, started, last - first + 1);
+        onRestyled.accept(first, last);
+        dirtyFirst = -1;
+        dirtyLast = -1;
+        pending = null;
+    }
+}
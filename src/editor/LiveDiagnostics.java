@@ -0,0 +1,338 @@
+package editor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.richtext.model.PlainTextChange;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
+import org.fxmisc.richtext.model.TwoDimensional.Bias;
+import assembler.Analysis;
+import assembler.Diagnostic;
+import assembler.OutlineEntry;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+
+/**
+ * Flags assembler problems while the program is being typed. Every edit is handed to an
+ * @see Analysis on a background thread, which re-checks only the lines the edit touched
+ * and whatever depends on them. The problems that come back are underlined in the text
+ * and shown in the gutter by @see DiagnosticGutter. The outline of the program comes
+ * back from the same analysis.
+ */
+class LiveDiagnostics {
+
+    // How long the document has to be quiet before the edits are analysed
+    private static final Duration DEBOUNCE = Duration.ofMillis(50);
+
+    // Style class added to text a problem covers
+    private static final String ERROR = "error";
+    // Paragraphs past which restyling them one by one costs more than one pass over all
+    private static final int BATCH = 16;
+
+    // Shared background thread that does the analysis for every edit area
+    private static final ExecutorService ANALYZER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "diagnostics");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The edit area being checked
+    private final CodeArea edit;
+
+    // Per line results and label index, only ever touched on the analyzer thread
+    private final Analysis analysis = new Analysis();
+
+    // Incremented on every text change, used to throw away results from a stale snapshot
+    private long version;
+
+    // Range of paragraphs (inclusive) edited since the last snapshot, -1 when nothing is dirty
+    private int dirtyFirst = -1;
+    private int dirtyLast = -1;
+
+    // Problems of each paragraph, kept in step with edits until fresh results arrive
+    private NavigableMap<Integer, List<Diagnostic>> problems = new TreeMap<>();
+
+    // Incremented whenever the problems change, so the gutter knows to refresh
+    private final ReadOnlyIntegerWrapper revision = new ReadOnlyIntegerWrapper();
+
+    // Told the outline each time fresh results arrive
+    private Consumer<List<OutlineEntry>> onOutline = outline -> { };
+
+    /**
+     * Starts listening for text changes on the edit area
+     * @param edit The edit area to check
+     */
+    LiveDiagnostics(CodeArea edit) {
+        this.edit = edit;
+        edit.plainTextChanges().subscribe(this::markDirty);
+        edit.plainTextChanges().successionEnds(DEBOUNCE).subscribe(c -> schedule());
+    }
+
+    /**
+     * Getter for the revision that changes every time the problems do
+     * @return revision
+     */
+    ReadOnlyIntegerProperty revisionProperty() {
+        return revision.getReadOnlyProperty();
+    }
+
+    /**
+     * Sets what to do with the outline of the program whenever it was analysed again
+     * @param onOutline Called on the FX thread with the outline, the same list as
+     * before if it did not change
+     */
+    void setOnOutline(Consumer<List<OutlineEntry>> onOutline) {
+        this.onOutline = onOutline;
+    }
+
+    /**
+     * Describes the problems on a paragraph
+     * @param paragraph The paragraph index
+     * @return One message per line, or null if the paragraph has no problems
+     */
+    String getMessage(int paragraph) {
+        List<Diagnostic> found = problems.get(paragraph);
+        if(found == null)
+            return null;
+        StringBuilder message = new StringBuilder();
+        for(Diagnostic problem : found) {
+            if(message.length() > 0)
+                message.append('\n');
+            message.append(problem.getMessage());
+        }
+        return message.toString();
+    }
+
+    /**
+     * Records the paragraphs touched by a change and moves the known problems along with
+     * any lines the change inserted or removed
+     * @param change The change that was just applied to the edit area
+     */
+    private void markDirty(PlainTextChange change) {
+        version++;
+
+        int first = edit.offsetToPosition(change.getPosition(), Bias.Forward).getMajor();
+        int inserted = IncrementalHighlighter.countLines(change.getInserted());
+        int removed = IncrementalHighlighter.countLines(change.getRemoved());
+
+        if(dirtyFirst < 0) {
+            dirtyFirst = first;
+            dirtyLast = first + inserted;
+        } else {
+            dirtyFirst = Math.min(IncrementalHighlighter.shift(dirtyFirst, first, inserted, removed), first);
+            dirtyLast = Math.max(IncrementalHighlighter.shift(dirtyLast, first, inserted, removed), first + inserted);
+        }
+        dirtyLast = Math.min(dirtyLast, edit.getParagraphs().size() - 1);
+
+        if(inserted != removed && !problems.isEmpty()) {
+            NavigableMap<Integer, List<Diagnostic>> shifted = new TreeMap<>();
+            for(Map.Entry<Integer, List<Diagnostic>> entry : problems.entrySet()) {
+                int paragraph = entry.getKey();
+                if(paragraph <= first || paragraph > first + removed)
+                    shifted.put(IncrementalHighlighter.shift(paragraph, first, inserted, removed), entry.getValue());
+            }
+            problems = shifted;
+            revision.set(revision.get() + 1);
+        }
+    }
+
+    /**
+     * Snapshots the edited paragraphs and hands them to the analyzer. Every edit ends up
+     * in exactly one snapshot, so the analysis always matches the document it was given.
+     */
+    private void schedule() {
+        if(dirtyFirst < 0)
+            return;
+
+        int first = dirtyFirst;
+        int last = Math.min(dirtyLast, edit.getParagraphs().size() - 1);
+        int paragraphs = edit.getParagraphs().size();
+        String snapshot = edit.getText(edit.getAbsolutePosition(first, 0),
+                        edit.getAbsolutePosition(last, edit.getParagraphLength(last)));
+        long snapshotVersion = version;
+        dirtyFirst = -1;
+        dirtyLast = -1;
+
+        ANALYZER.execute(() -> {
+            // Lines after the snapshot are unchanged, which tells us how many lines it replaced
+            int replacedLast = analysis.getLineCount() - paragraphs + last;
+            analysis.update(first, replacedLast, snapshot);
+            List<Diagnostic> found = analysis.getDiagnostics();
+            List<OutlineEntry> outline = analysis.getOutline();
+            Platform.runLater(() -> apply(snapshotVersion, first, last, found, outline));
+        });
+    }
+
+    /**
+     * Shows fresh results, unless the text was edited after they were computed, in which
+     * case newer results are already on their way.
+     * @param snapshotVersion Document version the results were computed from
+     * @param first First paragraph of the snapshot
+     * @param last Last paragraph of the snapshot (inclusive)
+     * @param found Every problem in the document
+     * @param outline The outline of the document
+     */
+    private void apply(long snapshotVersion, int first, int last, List<Diagnostic> found, List<OutlineEntry> outline) {
+        if(snapshotVersion != version)
+            return;
+
+        NavigableMap<Integer, List<Diagnostic>> fresh = new TreeMap<>();
+        for(Diagnostic problem : found)
+            fresh.computeIfAbsent(problem.getLine(), k -> new ArrayList<>(1)).add(problem);
+
+        // Only lines whose underline moved need restyling, and the edited ones, whose
+        // text may have taken the style of the characters next to it
+        TreeSet<Integer> restyle = new TreeSet<>(problems.subMap(first, true, last, true).keySet());
+        restyle.addAll(fresh.subMap(first, true, last, true).keySet());
+        for(Map.Entry<Integer, List<Diagnostic>> line : problems.entrySet()) {
+            if(!sameColumns(line.getValue(), fresh.get(line.getKey())))
+                restyle.add(line.getKey());
+        }
+        for(Integer paragraph : fresh.keySet()) {
+            if(!problems.containsKey(paragraph))
+                restyle.add(paragraph);
+        }
+        problems = fresh;
+        int paragraphs = edit.getParagraphs().size();
+        if(restyle.size() > BATCH && restyle.first() < paragraphs) {
+            restyle(restyle.first(), Math.min(restyle.last(), paragraphs - 1));
+        } else {
+            for(int paragraph : restyle) {
+                if(paragraph < paragraphs)
+                    restyle(paragraph);
+            }
+        }
+        revision.set(revision.get() + 1);
+        onOutline.accept(outline);
+    }
+
+    /**
+     * Puts the error style back on a range of paragraphs after their highlighting was
+     * replaced, which dropped it
+     * @param first First paragraph
+     * @param last Last paragraph (inclusive)
+     */
+    void underline(int first, int last) {
+        NavigableMap<Integer, List<Diagnostic>> found = problems.subMap(first, true, last, true);
+        if(found.size() > BATCH && found.firstKey() < edit.getParagraphs().size()) {
+            restyle(found.firstKey(), Math.min(found.lastKey(), edit.getParagraphs().size() - 1));
+            return;
+        }
+        for(int paragraph : found.keySet()) {
+            if(paragraph < edit.getParagraphs().size())
+                restyle(paragraph);
+        }
+    }
+
+    /**
+     * Replaces the error style on a paragraph with one matching its current problems
+     * @param paragraph The paragraph index
+     */
+    private void restyle(int paragraph) {
+        List<Diagnostic> found = problems.get(paragraph);
+        int length = edit.getParagraphLength(paragraph);
+        StyleSpans<Collection<String>> spans = edit.getStyleSpans(paragraph);
+        boolean styled = spans.styleStream().anyMatch(style -> style.contains(ERROR));
+        if(!styled && (found == null || length == 0))
+            return;
+
+        spans = spans.mapStyles(LiveDiagnostics::withoutError);
+        if(found != null && length > 0) {
+            boolean[] marked = new boolean[length];
+            mark(marked, 0, found, length);
+            spans = spans.overlay(errorSpans(marked), (style, error) -> error.isEmpty() ? style : withError(style));
+        }
+        edit.setStyleSpans(paragraph, 0, spans);
+    }
+
+    /**
+     * Replaces the error style on a range of paragraphs in a single change. Each change
+     * to the edit area's styles costs a pass over its paragraph list, so this is how many
+     * problems are shown at once, e.g. after a paste.
+     * @param first First paragraph
+     * @param last Last paragraph (inclusive)
+     */
+    private void restyle(int first, int last) {
+        int start = edit.getAbsolutePosition(first, 0);
+        int end = edit.getAbsolutePosition(last, edit.getParagraphLength(last));
+        if(end == start)
+            return;
+        boolean[] marked = new boolean[end - start];
+        for(Map.Entry<Integer, List<Diagnostic>> line : problems.subMap(first, true, last, true).entrySet()) {
+            int paragraph = line.getKey();
+            if(edit.getParagraphLength(paragraph) > 0)
+                mark(marked, edit.getAbsolutePosition(paragraph, 0) - start, line.getValue(), edit.getParagraphLength(paragraph));
+        }
+        StyleSpans<Collection<String>> spans = edit.getStyleSpans(start, end).mapStyles(LiveDiagnostics::withoutError)
+                        .overlay(errorSpans(marked), (style, error) -> error.isEmpty() ? style : withError(style));
+        edit.setStyleSpans(start, spans);
+    }
+
+    /**
+     * Marks the columns of a paragraph that have a problem. Problems that cover no columns
+     * mark the character they point at.
+     * @param marked Marks for the text, with the paragraph starting at offset
+     */
+    private static void mark(boolean[] marked, int offset, List<Diagnostic> found, int length) {
+        for(Diagnostic problem : found) {
+            int start = Math.max(0, Math.min(problem.getStart(), length - 1));
+            int end = Math.min(Math.max(problem.getEnd(), start + 1), length);
+            for(int i = start; i < end; i++)
+                marked[offset + i] = true;
+        }
+    }
+
+    /**
+     * Spans that put the error style on the marked characters
+     */
+    private static StyleSpans<Collection<String>> errorSpans(boolean[] marked) {
+        StyleSpansBuilder<Collection<String>> builder = new StyleSpansBuilder<>();
+        int run = 0;
+        for(int i = 1; i <= marked.length; i++) {
+            if(i == marked.length || marked[i] != marked[run]) {
+                builder.add(marked[run] ? List.of(ERROR) : List.of(), i - run);
+                run = i;
+            }
+        }
+        return builder.create();
+    }
+
+    /**
+     * @return true if both lists of problems underline the same columns
+     */
+    private static boolean sameColumns(List<Diagnostic> before, List<Diagnostic> after) {
+        if(after == null || before.size() != after.size())
+            return false;
+        for(int i = 0; i < before.size(); i++) {
+            if(before.get(i).getStart() != after.get(i).getStart() || before.get(i).getEnd() != after.get(i).getEnd())
+                return false;
+        }
+        return true;
+    }
+
+    private static Collection<String> withError(Collection<String> style) {
+        List<String> styled = new ArrayList<>(style.size() + 1);
+        styled.addAll(style);
+        styled.add(ERROR);
+        return styled;
+    }
+
+    private static Collection<String> withoutError(Collection<String> style) {
+        if(!style.contains(ERROR))
+            return style;
+        List<String> plain = new ArrayList<>(style);
+        plain.remove(ERROR);
+        return plain;
+    }
+}
@@ -0,0 +1,178 @@
+package file;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a text file in a single linear pass: the bytes are read through a file channel
+ * (memory mapped for big files), decoded chunk by chunk and appended to one presized
+ * buffer with line endings normalized to '\n'. Safe to call from any thread.
+ */
+public class FileLoader {
+
+    // Files at least this big are memory mapped instead of copied onto the heap
+    private static final long MAP_THRESHOLD = 4 << 20;
+    // Number of characters decoded between progress updates
+    private static final int CHUNK = 64 * 1024;
+
+    /**
+     * Receives progress updates while a file is decoded
+     */
+    public interface ProgressListener {
+        /**
+         * @param done Bytes decoded so far
+         * @param total Total size of the file in bytes
+         */
+        void progress(long done, long total);
+    }
+
+    private final StringBuilder text;
+    private final char[] chunk = new char[CHUNK];
+    // A '\r' ended the previous chunk and may be the first half of a "\r\n"
+    private boolean pendingReturn;
+    // The first line ending seen
+    private String lineSeparator;
+
+    private FileLoader(int capacity) {
+        text = new StringBuilder(capacity);
+    }
+
+    /**
+     * Reads and decodes a whole file. A byte order mark decides the charset if present,
+     * otherwise the file is read as UTF-8, falling back to ISO-8859-1 if it is not valid
+     * UTF-8.
+     * @param path The file to read
+     * @param listener Receives progress updates, may be null
+     * @return The decoded file
+     * @throws IOException If the file cannot be read, or the calling thread was interrupted
+     */
+    public static LoadedFile load(Path path, ProgressListener listener) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE)
+                throw new IOException("File is too large to edit: " + path);
+            ByteBuffer bytes = size >= MAP_THRESHOLD
+                            ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+                            : readFully(channel, (int) size);
+
+            Charset charset = StandardCharsets.UTF_8;
+            int bom = 0;
+            if(startsWith(bytes, 0xEF, 0xBB, 0xBF)) {
+                bom = 3;
+            } else if(startsWith(bytes, 0xFE, 0xFF)) {
+                charset = StandardCharsets.UTF_16BE;
+                bom = 2;
+            } else if(startsWith(bytes, 0xFF, 0xFE)) {
+                charset = StandardCharsets.UTF_16LE;
+                bom = 2;
+            }
+            bytes.position(bom);
+
+            if(bom > 0)
+                return new FileLoader((int) size).decode(bytes, charset, CodingErrorAction.REPLACE, true, listener);
+            try {
+                return new FileLoader((int) size).decode(bytes.duplicate(), charset, CodingErrorAction.REPORT, false, listener);
+            } catch(CharacterCodingException notUtf8) {
+                return new FileLoader((int) size).decode(bytes, StandardCharsets.ISO_8859_1, CodingErrorAction.REPLACE, false, listener);
+            }
+        }
+    }
+
+    /**
+     * Copies a small file onto the heap
+     */
+    private static ByteBuffer readFully(FileChannel channel, int size) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(size);
+        while(bytes.hasRemaining() && channel.read(bytes) >= 0);
+        bytes.flip();
+        return bytes;
+    }
+
+    private static boolean startsWith(ByteBuffer bytes, int... prefix) {
+        if(bytes.remaining() < prefix.length)
+            return false;
+        for(int i = 0; i < prefix.length; i++) {
+            if((bytes.get(i) & 0xFF) != prefix[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the remaining bytes one chunk at a time
+     */
+    private LoadedFile decode(ByteBuffer bytes, Charset charset, CodingErrorAction onError, boolean bom,
+                              ProgressListener listener) throws IOException {
+        CharsetDecoder decoder = charset.newDecoder()
+                        .onMalformedInput(onError)
+                        .onUnmappableCharacter(onError);
+        CharBuffer out = CharBuffer.wrap(chunk);
+        long total = bytes.limit();
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, out, true);
+            if(result.isError())
+                result.throwException();
+            drain(out);
+            if(listener != null)
+                listener.progress(bytes.position(), total);
+            if(Thread.currentThread().isInterrupted())
+                throw new InterruptedIOException("Loading was cancelled");
+        } while(result.isOverflow());
+
+        while(decoder.flush(out).isOverflow())
+            drain(out);
+        drain(out);
+        if(pendingReturn) {
+            text.append('\n');
+            separator("\r");
+        }
+        return new LoadedFile(text.toString(), charset, bom, lineSeparator == null ? "\n" : lineSeparator);
+    }
+
+    /**
+     * Appends the decoded characters to the text, turning "\r\n" and lone '\r' into '\n'
+     */
+    private void drain(CharBuffer out) {
+        int length = out.position();
+        int run = 0;
+        for(int i = 0; i < length; i++) {
+            char c = chunk[i];
+            if(pendingReturn) {
+                pendingReturn = false;
+                text.append('\n');
+                if(c == '\n') {
+                    separator("\r\n");
+                    run = i + 1;
+                    continue;
+                }
+                separator("\r");
+            }
+            if(c == '\r') {
+                text.append(chunk, run, i - run);
+                pendingReturn = true;
+                run = i + 1;
+            } else if(c == '\n' && lineSeparator == null) {
+                separator("\n");
+            }
+        }
+        text.append(chunk, run, length - run);
+        out.clear();
+    }
+
+    private void separator(String separator) {
+        if(lineSeparator == null)
+            lineSeparator = separator;
+    }
+}
@@ -0,0 +1,123 @@
+package file;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.security.SecureRandom;
+
+/**
+ * Writes text files so that a crash can never leave a half written file behind: the text
+ * is encoded into a temporary file next to the target, flushed to disk and then moved
+ * over the target in one atomic rename. A target that is a symbolic link is saved through
+ * the link, and the new file keeps the permissions, owner and group of the old one where
+ * the file system allows. Safe to call from any thread.
+ */
+public class FileSaver {
+
+    // Size of the buffer between the encoder and the file channel
+    private static final int BUFFER = 64 * 1024;
+    // Names the temporary files
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private FileSaver() {
+    }
+
+    /**
+     * Saves text to a file
+     * @param target The file to write
+     * @param text The text to write, with lines separated by '\n'
+     * @param charset Charset to encode with
+     * @param bom Whether to start the file with a byte order mark
+     * @param lineSeparator Line ending to write in place of each '\n'
+     * @throws IOException If the file could not be written, the target is then untouched
+     */
+    public static void save(Path target, String text, Charset charset, boolean bom, String lineSeparator)
+                    throws IOException {
+        // Renaming over a link would replace the link rather than the file it points to
+        if(Files.exists(target))
+            target = target.toRealPath();
+        Path directory = target.toAbsolutePath().getParent();
+        Path temp = null;
+        FileChannel channel = null;
+        // Created like any new file rather than with createTempFile, which would leave
+        // a new target readable only by its owner
+        while(channel == null) {
+            temp = directory.resolve("." + target.getFileName() + "." + Long.toUnsignedString(RANDOM.nextLong(), 36) + ".tmp");
+            try {
+                channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            } catch(FileAlreadyExistsException e) {
+                // Try another name
+            }
+        }
+        try {
+            try(FileChannel opened = channel) {
+                Writer out = new BufferedWriter(Channels.newWriter(opened, charset.newEncoder(), -1), BUFFER);
+                if(bom)
+                    out.write('\uFEFF');
+                writeLines(out, text, lineSeparator);
+                out.flush();
+                opened.force(true);
+            }
+            if(Files.exists(target))
+                copyAttributes(target, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch(AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Gives the temporary file the permissions of the file it replaces, which it would
+     * otherwise lose, as a new file gets the default permissions. The owner and
+     * group are kept too if allowed, which usually takes a privileged user.
+     */
+    private static void copyAttributes(Path target, Path temp) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(temp, PosixFileAttributeView.class);
+        if(view == null)
+            return;
+        PosixFileAttributes attributes = Files.readAttributes(target, PosixFileAttributes.class);
+        try {
+            if(!attributes.owner().equals(Files.getOwner(temp)))
+                view.setOwner(attributes.owner());
+            if(!attributes.group().equals(view.readAttributes().group()))
+                view.setGroup(attributes.group());
+        } catch(IOException e) {
+            // Not allowed to give the file away, it is then owned by whoever saved it
+        }
+        // Last, as changing the owner clears the set-user-ID and set-group-ID bits
+        view.setPermissions(attributes.permissions());
+    }
+
+    /**
+     * Writes the text, swapping each '\n' for the line separator
+     */
+    private static void writeLines(Writer out, String text, String lineSeparator) throws IOException {
+        if(lineSeparator.equals("\n")) {
+            out.write(text);
+            return;
+        }
+        int start = 0;
+        int newline;
+        while((newline = text.indexOf('\n', start)) >= 0) {
+            out.write(text, start, newline - start);
+            out.write(lineSeparator);
+            start = newline + 1;
+        }
+        out.write(text, start, text.length() - start);
+    }
+}
@@ -0,0 +1,64 @@
+package file;
+
+import java.nio.charset.Charset;
+
+/**
+ * The text of a file read by @see FileLoader, together with what is needed to write it
+ * back out the way it was found.
+ */
+public class LoadedFile {
+
+    // File contents with every line ending normalized to '\n'
+    private final String text;
+    // Charset the file was decoded with
+    private final Charset charset;
+    // Whether the file started with a byte order mark
+    private final boolean bom;
+    // The line ending the file used, "\n" if it had none
+    private final String lineSeparator;
+
+    /**
+     * @param text File contents with line endings normalized to '\n'
+     * @param charset Charset the file was decoded with
+     * @param bom Whether the file started with a byte order mark
+     * @param lineSeparator The line ending the file used
+     */
+    public LoadedFile(String text, Charset charset, boolean bom, String lineSeparator) {
+        this.text = text;
+        this.charset = charset;
+        this.bom = bom;
+        this.lineSeparator = lineSeparator;
+    }
+
+    /**
+     * Getter for the file contents
+     * @return text with line endings normalized to '\n'
+     */
+    public String getText() {
+        return this.text;
+    }
+
+    /**
+     * Getter for the charset the file was decoded with
+     * @return charset
+     */
+    public Charset getCharset() {
+        return this.charset;
+    }
+
+    /**
+     * Getter for whether the file started with a byte order mark
+     * @return true if a BOM was found
+     */
+    public boolean hasBom() {
+        return this.bom;
+    }
+
+    /**
+     * Getter for the line ending the file used
+     * @return "\n", "\r\n" or "\r"
+     */
+    public String getLineSeparator() {
+        return this.lineSeparator;
+    }
+}
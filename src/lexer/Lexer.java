@@ -0,0 +1,342 @@
+package lexer;
+
+/**
+ * Single pass, allocation free tokenizer for LC-3 assembly. The lexer is a cursor:
+ * call {@link #next()} until it returns null and read the current token through the
+ * getters. A lexer can be reused for many pieces of text with {@link #reset}.
+ *
+ * Opcodes, TRAP aliases, directives and registers are matched case-insensitively.
+ * Auto-complete placeholders (see {@link #isPlaceholder}) are matched exactly.
+ */
+public class Lexer {
+
+    // Placeholders auto-complete leaves behind that are made of ordinary word characters
+    private static final String[] PLACEHOLDERS = new String[] {
+                    "SR1", "SR2", "DR", "imm5", "trapvector8", "offset6", "LABEL"
+    };
+    private static final String BRANCH_PLACEHOLDER = "(n/z/p)";
+    private static final String STRING_PLACEHOLDER = "<String>";
+
+    // Character classes, indexed by ASCII value
+    private static final byte WORD = 1, HEX = 2, DIGIT = 4, SPACE = 8;
+    private static final byte[] CLASSES = new byte[128];
+
+    static {
+        for(char c = 'a'; c <= 'z'; c++) CLASSES[c] |= WORD;
+        for(char c = 'A'; c <= 'Z'; c++) CLASSES[c] |= WORD;
+        for(char c = '0'; c <= '9'; c++) CLASSES[c] |= WORD | HEX | DIGIT;
+        for(char c = 'a'; c <= 'f'; c++) CLASSES[c] |= HEX;
+        for(char c = 'A'; c <= 'F'; c++) CLASSES[c] |= HEX;
+        CLASSES['_'] |= WORD;
+        CLASSES[' '] |= SPACE;
+        CLASSES['\t'] |= SPACE;
+        CLASSES['\r'] |= SPACE;
+    }
+
+    private CharSequence text;
+    private int pos;
+    private int end;
+
+    // The current token
+    private TokenType type;
+    private int tokenStart;
+    private int tokenEnd;
+    private Mnemonic mnemonic;
+    private int register;
+
+    /**
+     * Creates a lexer over a whole piece of text
+     * @param text Text to tokenize
+     */
+    public Lexer(CharSequence text) {
+        reset(text, 0, text.length());
+    }
+
+    /**
+     * Creates a lexer that needs {@link #reset} before use
+     */
+    public Lexer() {
+        reset("", 0, 0);
+    }
+
+    /**
+     * Points the lexer at a new range of text
+     * @param text Text to tokenize
+     * @param start First character to tokenize (inclusive)
+     * @param end Last character to tokenize (exclusive)
+     * @return this lexer
+     */
+    public Lexer reset(CharSequence text, int start, int end) {
+        this.text = text;
+        this.pos = start;
+        this.end = end;
+        this.type = null;
+        this.tokenStart = start;
+        this.tokenEnd = start;
+        return this;
+    }
+
+    /**
+     * Advances to the next token, skipping blanks
+     * @return The type of the new token, or null at the end of the text
+     */
+    public TokenType next() {
+        mnemonic = null;
+        register = -1;
+        while(pos < end && is(text.charAt(pos), SPACE))
+            pos++;
+        tokenStart = pos;
+        if(pos >= end)
+            return type = null;
+
+        char c = text.charAt(pos);
+        if(is(c, WORD))
+            type = word();
+        else if(c == '.')
+            type = directive();
+        else if(c == '#')
+            type = literal(pos + 1, 10) ? TokenType.NUMBER : single(TokenType.INCOMPLETE);
+        else if(c == ';')
+            type = comment();
+        else if(c == '"')
+            type = string();
+        else if(c == '<' && startsWith(pos, STRING_PLACEHOLDER))
+            type = span(STRING_PLACEHOLDER.length(), TokenType.INCOMPLETE);
+        else if(c == ',')
+            type = single(TokenType.COMMA);
+        else if(c == '\n')
+            type = single(TokenType.NEWLINE);
+        else
+            type = single(TokenType.OTHER);
+        tokenEnd = pos;
+        return type;
+    }
+
+    /**
+     * Getter for the type of the current token
+     * @return type, or null before the first token and at the end of the text
+     */
+    public TokenType getType() {
+        return this.type;
+    }
+
+    /**
+     * Getter for the offset of the first character of the current token
+     * @return token start
+     */
+    public int getStart() {
+        return this.tokenStart;
+    }
+
+    /**
+     * Getter for the offset just past the current token
+     * @return token end
+     */
+    public int getEnd() {
+        return this.tokenEnd;
+    }
+
+    /**
+     * Getter for the mnemonic of a KEYWORD or DIRECTIVE token
+     * @return mnemonic, null for every other token type
+     */
+    public Mnemonic getMnemonic() {
+        return this.mnemonic;
+    }
+
+    /**
+     * Getter for the register number of a REGISTER token
+     * @return 0-7 for R0-R7, -1 for special registers and every other token type
+     */
+    public int getRegister() {
+        return this.register;
+    }
+
+    /**
+     * Parses the value of the current NUMBER token. Values that do not fit in an int
+     * saturate, which is far outside every LC-3 operand range anyway.
+     * @return The value of the literal
+     */
+    public int getValue() {
+        int i = tokenStart;
+        int radix = 10;
+        char c = text.charAt(i);
+        if(c == '#') {
+            i++;
+        } else if(c == 'x' || c == 'X') {
+            radix = 16;
+            i++;
+        } else if(c == 'b' || c == 'B') {
+            radix = 2;
+            i++;
+        }
+        boolean negative = text.charAt(i) == '-';
+        if(negative)
+            i++;
+        long value = 0;
+        for(; i < tokenEnd; i++) {
+            value = value * radix + Character.digit(text.charAt(i), radix);
+            if(value > Integer.MAX_VALUE)
+                return negative ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Copies the text of the current token. Allocates, so keep it off hot paths.
+     * @return token text
+     */
+    public String getText() {
+        return text.subSequence(tokenStart, tokenEnd).toString();
+    }
+
+    /**
+     * Whether the current token is an auto-complete placeholder made of word
+     * characters, such as SR1 or imm5
+     * @return true for those placeholders
+     */
+    public boolean isPlaceholder() {
+        return type == TokenType.INCOMPLETE && is(text.charAt(tokenStart), WORD);
+    }
+
+    /**
+     * Classifies a run of word characters: register, opcode, number, placeholder or label
+     */
+    private TokenType word() {
+        int start = pos;
+        char first = text.charAt(start);
+        if((first == 'x' || first == 'X') && literal(start + 1, 16))
+            return TokenType.NUMBER;
+        if((first == 'b' || first == 'B') && literal(start + 1, 2))
+            return TokenType.NUMBER;
+        if(literal(start, 10))
+            return TokenType.NUMBER;
+
+        int stop = start;
+        while(stop < end && is(text.charAt(stop), WORD))
+            stop++;
+        pos = stop;
+
+        int length = stop - start;
+        if(length == 2 && (first == 'R' || first == 'r')) {
+            char n = text.charAt(start + 1);
+            if(n >= '0' && n <= '7') {
+                register = n - '0';
+                return TokenType.REGISTER;
+            }
+        }
+        if(regionEquals(start, stop, "PC") || regionEquals(start, stop, "IR")
+                || regionEquals(start, stop, "PSR") || regionEquals(start, stop, "CC"))
+            return TokenType.REGISTER;
+
+        for(String placeholder : PLACEHOLDERS) {
+            if(regionEquals(start, stop, placeholder))
+                return TokenType.INCOMPLETE;
+        }
+
+        mnemonic = Mnemonic.lookup(text, start, stop, false);
+        if(mnemonic == Mnemonic.BR && startsWith(stop, BRANCH_PLACEHOLDER)) {
+            mnemonic = null;
+            pos = stop + BRANCH_PLACEHOLDER.length();
+            return TokenType.INCOMPLETE;
+        }
+        if(mnemonic != null)
+            return TokenType.KEYWORD;
+        return is(first, DIGIT) ? TokenType.OTHER : TokenType.LABEL;
+    }
+
+    /**
+     * A dot followed by a known directive name, otherwise a lone OTHER character
+     */
+    private TokenType directive() {
+        int stop = pos + 1;
+        while(stop < end && is(text.charAt(stop), WORD))
+            stop++;
+        mnemonic = Mnemonic.lookup(text, pos + 1, stop, true);
+        if(mnemonic == null)
+            return single(TokenType.OTHER);
+        pos = stop;
+        return TokenType.DIRECTIVE;
+    }
+
+    /**
+     * Everything up to, but not including, the end of the line
+     */
+    private TokenType comment() {
+        while(pos < end && text.charAt(pos) != '\n')
+            pos++;
+        return TokenType.COMMENT;
+    }
+
+    /**
+     * A quoted string with backslash escapes. An unterminated string ends at the end of
+     * the line.
+     */
+    private TokenType string() {
+        pos++;
+        while(pos < end) {
+            char c = text.charAt(pos);
+            if(c == '\n')
+                break;
+            pos++;
+            if(c == '\\' && pos < end && text.charAt(pos) != '\n')
+                pos++;
+            else if(c == '"')
+                break;
+        }
+        return TokenType.STRING;
+    }
+
+    /**
+     * Tries to read an optionally negative run of digits in the given radix that ends
+     * the word. Only moves the cursor on success.
+     * @param from Offset just after any radix prefix
+     * @param radix 2, 10 or 16
+     * @return true if a literal was consumed
+     */
+    private boolean literal(int from, int radix) {
+        int i = from;
+        if(i < end && text.charAt(i) == '-')
+            i++;
+        int digits = i;
+        byte digitClass = radix == 16 ? HEX : DIGIT;
+        while(i < end) {
+            char c = text.charAt(i);
+            if(radix == 2 ? (c != '0' && c != '1') : !is(c, digitClass))
+                break;
+            i++;
+        }
+        if(i == digits || (i < end && is(text.charAt(i), WORD)))
+            return false;
+        pos = i;
+        return true;
+    }
+
+    private TokenType single(TokenType type) {
+        pos++;
+        return type;
+    }
+
+    private TokenType span(int length, TokenType type) {
+        pos += length;
+        return type;
+    }
+
+    private boolean startsWith(int at, String prefix) {
+        return at + prefix.length() <= end && regionEquals(at, at + prefix.length(), prefix);
+    }
+
+    private boolean regionEquals(int start, int stop, String other) {
+        if(stop - start != other.length())
+            return false;
+        for(int i = start; i < stop; i++) {
+            if(text.charAt(i) != other.charAt(i - start))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean is(char c, byte charClass) {
+        return c < 128 && (CLASSES[c] & charClass) != 0;
+    }
+}
@@ -0,0 +1,146 @@
+package lexer;
+
+/**
+ * Every instruction, TRAP alias and directive the lexer recognizes. Lookups are case
+ * insensitive and never allocate, so the lexer can classify words on its hot path.
+ */
+public enum Mnemonic {
+    ADD("ADD"), AND("AND"),
+    BR("BR"), BRN("BRn"), BRZ("BRz"), BRP("BRp"), BRNZ("BRnz"), BRNP("BRnp"), BRZP("BRzp"), BRNZP("BRnzp"),
+    JMP("JMP"), JSR("JSR"), JSRR("JSRR"),
+    LD("LD"), LDI("LDI"), LDR("LDR"), LEA("LEA"),
+    NOT("NOT"), RET("RET"), RTI("RTI"),
+    ST("ST"), STI("STI"), STR("STR"),
+    TRAP("TRAP"),
+    GETC("GETC", 0x20), OUT("OUT", 0x21), PUTS("PUTS", 0x22), IN("IN", 0x23), PUTSP("PUTSP", 0x24), HALT("HALT", 0x25),
+    ORIG(".ORIG"), FILL(".FILL"), BLKW(".BLKW"), STRINGZ(".STRINGZ"), END(".END");
+
+    // Size of the open addressing lookup table, must be a power of two
+    private static final int TABLE_SIZE = 128;
+    private static final Mnemonic[] TABLE = new Mnemonic[TABLE_SIZE];
+
+    static {
+        for(Mnemonic m : values()) {
+            String key = m.isDirective() ? m.text.substring(1) : m.text;
+            int slot = hash(key, 0, key.length()) & (TABLE_SIZE - 1);
+            while(TABLE[slot] != null)
+                slot = (slot + 1) & (TABLE_SIZE - 1);
+            TABLE[slot] = m;
+        }
+    }
+
+    // How the mnemonic is conventionally written
+    private final String text;
+    // The trap vector for TRAP aliases, -1 for everything else
+    private final int trapVector;
+
+    Mnemonic(String text) {
+        this(text, -1);
+    }
+
+    Mnemonic(String text, int trapVector) {
+        this.text = text;
+        this.trapVector = trapVector;
+    }
+
+    /**
+     * Getter for the conventional spelling, directives include their leading dot
+     * @return text
+     */
+    public String getText() {
+        return this.text;
+    }
+
+    /**
+     * Getter for the trap vector of a TRAP alias
+     * @return trap vector, or -1 if this is not a TRAP alias
+     */
+    public int getTrapVector() {
+        return this.trapVector;
+    }
+
+    /**
+     * @return true if this is an assembler directive such as .ORIG
+     */
+    public boolean isDirective() {
+        return text.charAt(0) == '.';
+    }
+
+    /**
+     * @return true if this is a TRAP alias such as HALT
+     */
+    public boolean isTrapAlias() {
+        return trapVector >= 0;
+    }
+
+    /**
+     * @return true if this is one of the BR variants
+     */
+    public boolean isBranch() {
+        return ordinal() >= BR.ordinal() && ordinal() <= BRNZP.ordinal();
+    }
+
+    /**
+     * Condition code bits tested by a branch, in the instruction's n/z/p bit order.
+     * A bare BR tests all three.
+     * @return The nzp bits, 0 for anything that is not a branch
+     */
+    public int getConditionBits() {
+        if(!isBranch())
+            return 0;
+        if(this == BR)
+            return 0b111;
+        int bits = 0;
+        for(int i = 2; i < text.length(); i++) {
+            switch(text.charAt(i)) {
+                case 'n': bits |= 0b100; break;
+                case 'z': bits |= 0b010; break;
+                case 'p': bits |= 0b001; break;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Looks up a word case-insensitively without allocating
+     * @param text Text containing the word
+     * @param start Start of the word (inclusive), directives without their dot
+     * @param end End of the word (exclusive)
+     * @param directive true to look up a directive, false for instructions and TRAP aliases
+     * @return The matching mnemonic or null
+     */
+    public static Mnemonic lookup(CharSequence text, int start, int end, boolean directive) {
+        int slot = hash(text, start, end) & (TABLE_SIZE - 1);
+        Mnemonic m;
+        while((m = TABLE[slot]) != null) {
+            if(m.isDirective() == directive && m.matches(text, start, end))
+                return m;
+            slot = (slot + 1) & (TABLE_SIZE - 1);
+        }
+        return null;
+    }
+
+    /**
+     * Case insensitive comparison against a piece of text
+     */
+    private boolean matches(CharSequence other, int start, int end) {
+        int offset = isDirective() ? 1 : 0;
+        if(end - start != text.length() - offset)
+            return false;
+        for(int i = start; i < end; i++) {
+            if(Character.toUpperCase(other.charAt(i)) != Character.toUpperCase(text.charAt(i - start + offset)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Case insensitive hash of a piece of text
+     */
+    private static int hash(CharSequence text, int start, int end) {
+        int h = 0;
+        for(int i = start; i < end; i++)
+            h = 31 * h + Character.toUpperCase(text.charAt(i));
+        return h ^ (h >>> 7);
+    }
+}
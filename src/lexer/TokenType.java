@@ -0,0 +1,29 @@
+package lexer;
+
+/**
+ * The kinds of token the LC-3 lexer can produce.
+ */
+public enum TokenType {
+    // Instruction mnemonic or TRAP alias, e.g. ADD, BRnz, HALT
+    KEYWORD,
+    // Assembler directive including its leading dot, e.g. .ORIG
+    DIRECTIVE,
+    // R0-R7, or one of the special registers PC, IR, PSR, CC
+    REGISTER,
+    // Any other identifier
+    LABEL,
+    // Numeric literal, e.g. x3000, #-5, b1010, 10
+    NUMBER,
+    // Double quoted string literal
+    STRING,
+    // From a semicolon to the end of the line
+    COMMENT,
+    // Placeholder left behind by auto-complete, e.g. SR1, imm5, LABEL
+    INCOMPLETE,
+    // Operand separator
+    COMMA,
+    // Line break
+    NEWLINE,
+    // Anything the lexer does not understand
+    OTHER
+}
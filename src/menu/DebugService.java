@@ -0,0 +1,251 @@
+package menu;
+
+import java.util.TreeSet;
+import assembler.Assembler;
+import assembler.Assembly;
+import console.EZConsole;
+import editor.EZEditor;
+import javafx.application.Platform;
+import simulator.Machine;
+import status.EZStatusBar;
+
+/**
+ * Steps through the program in the edit area, forwards and backwards. The machine
+ * records what every instruction changes in a fixed size trace, so the last few million
+ * steps can be undone; the size is set with the lc3ezedit.traceSteps system property.
+ * Breakpoints are the editor's, watchpoints are addresses or labels. Commands run on a
+ * background thread, since a program may wait for a key, and one at a time. Editing the
+ * program ends the session. All methods must be called on the FX thread.
+ */
+class DebugService {
+
+    // Most instructions that can be undone
+    private static final int TRACE_STEPS = Integer.getInteger("lc3ezedit.traceSteps", 1 << 21);
+    // Instructions run between checks for a stop request
+    private static final long SLICE = 1_000_000;
+
+    private final EZEditor edit;
+    private final EZStatusBar status;
+    private final EZConsole console;
+    private final Machine machine;
+
+    // The program being debugged, null while not debugging
+    private Assembly assembly;
+    // Watched addresses
+    private final TreeSet<Integer> watches = new TreeSet<>();
+    // The thread running the current command, or null
+    private Thread runner;
+    // Set when the user asks to stop debugging
+    private volatile boolean stopping;
+
+    /**
+     * @param edit The editor holding the program and its breakpoints
+     * @param status The status bar to report on
+     * @param console The console the program reads from and writes to
+     */
+    DebugService(EZEditor edit, EZStatusBar status, EZConsole console) {
+        this.edit = edit;
+        this.status = status;
+        this.console = console;
+        this.machine = new Machine(console);
+        // Lines no longer match the addresses once the program is edited
+        edit.getEditArea().plainTextChanges().subscribe(change -> {
+            if(assembly != null)
+                end("Debugging stopped, the program changed");
+        });
+    }
+
+    /**
+     * @return true while a program is being debugged
+     */
+    boolean isDebugging() {
+        return assembly != null;
+    }
+
+    /**
+     * Assembles the program and pauses before its first instruction, or continues the
+     * program being debugged
+     */
+    void start() {
+        if(assembly != null) {
+            execute(() -> {
+                while(!machine.isHalted() && !stopping && machine.run(SLICE) == SLICE && !machine.isBreakpoint(machine.getPc()));
+            });
+            return;
+        }
+        if(runner != null)
+            return;
+        String source = edit.getEditArea().getText();
+        console.clear();
+        stopping = false;
+        status.showMessage("Assembling...");
+
+        runner = new Thread(() -> {
+            Assembly assembled = Assembler.assemble(source);
+            if(assembled.hasErrors()) {
+                int more = assembled.getDiagnostics().size() - 1;
+                String message = assembled.getDiagnostics().get(0) + (more > 0 ? " (and " + more + " more)" : "");
+                Platform.runLater(() -> {
+                    runner = null;
+                    status.showMessage(message);
+                });
+                return;
+            }
+            machine.setTraceCapacity(TRACE_STEPS);
+            machine.reset();
+            machine.load(assembled.getOrigin(), assembled.getWords());
+            String state = describe("Paused");
+            Platform.runLater(() -> {
+                runner = null;
+                assembly = assembled;
+                paused(state);
+            });
+        }, "debugger");
+        runner.setDaemon(true);
+        runner.start();
+    }
+
+    /**
+     * Executes one instruction
+     */
+    void step() {
+        execute(machine::step);
+    }
+
+    /**
+     * Undoes one instruction
+     */
+    void stepBack() {
+        execute(machine::stepBack);
+    }
+
+    /**
+     * Runs backwards to the previous breakpoint or store to a watched address
+     */
+    void reverse() {
+        execute(() -> machine.reverse(Long.MAX_VALUE));
+    }
+
+    /**
+     * Sets or clears the breakpoint on the caret's line
+     */
+    void toggleBreakpoint() {
+        edit.toggleBreakpoint(edit.getEditArea().getCurrentParagraph());
+    }
+
+    /**
+     * Hands the editor's breakpoints to the machine, on the first word of each line
+     */
+    private void applyBreakpoints() {
+        machine.clearBreakpoints();
+        int[] lines = assembly.getWordLines();
+        for(int i = 0; i < lines.length; i++) {
+            if((i == 0 || lines[i - 1] != lines[i]) && edit.getBreakpoints().contains(lines[i]))
+                machine.setBreakpoint(assembly.getOrigin() + i, true);
+        }
+    }
+
+    /**
+     * Watches an address for stores, or stops watching it
+     * @param target An address such as x3100, or a label of the program being debugged
+     * @return What was done, for the status bar
+     */
+    String toggleWatch(String target) {
+        String text = target.trim();
+        int address = -1;
+        if(text.matches("[xX][0-9a-fA-F]{1,4}"))
+            address = Integer.parseInt(text.substring(1), 16);
+        else if(assembly != null)
+            address = assembly.getSymbols().getAddress(text);
+        if(address < 0)
+            return assembly == null ? "Enter an address such as x3100, labels can be watched while debugging" : "No label " + text;
+        boolean watched = watches.add(address) || !watches.remove(address);
+        return String.format(watched ? "Watching x%04X" : "No longer watching x%04X", address);
+    }
+
+    /**
+     * Ends the session, stopping a command that is running
+     */
+    void stop() {
+        if(runner != null) {
+            stopping = true;
+            machine.stop();
+            runner.interrupt();
+        } else if(assembly != null) {
+            end("Debugging stopped");
+        }
+    }
+
+    /**
+     * Runs a command on the debugger thread, unless one is running, then shows where the
+     * program is
+     */
+    private void execute(Runnable command) {
+        if(assembly == null) {
+            status.showMessage("Start debugging first");
+            return;
+        }
+        if(runner != null)
+            return;
+        // Breakpoints and watchpoints may have changed since the last command
+        applyBreakpoints();
+        applyWatches();
+        stopping = false;
+        status.showMessage("Running...");
+        runner = new Thread(() -> {
+            command.run();
+            String state = describe(machine.getError() != null ? machine.getError()
+                            : machine.isHalted() ? "Halted"
+                            : machine.getWatchpointHit() >= 0 ? String.format("Watchpoint x%04X", machine.getWatchpointHit())
+                            : machine.isAtBreakpoint() ? "Breakpoint" : "Paused");
+            Platform.runLater(() -> {
+                runner = null;
+                if(stopping)
+                    end("Debugging stopped");
+                else
+                    paused(state);
+            });
+        }, "debugger");
+        runner.setDaemon(true);
+        runner.start();
+    }
+
+    /**
+     * Shows the line the program is at and its registers
+     */
+    private void paused(String state) {
+        if(assembly == null)
+            return;
+        int index = (machine.getPc() - assembly.getOrigin()) & 0xFFFF;
+        int[] lines = assembly.getWordLines();
+        edit.showExecutionLine(index < lines.length ? lines[index] : -1);
+        status.showMessage(state);
+    }
+
+    /**
+     * Describes where the program is, called where the machine is not running
+     */
+    private String describe(String reason) {
+        StringBuilder state = new StringBuilder(reason);
+        state.append(String.format(" at x%04X  ", machine.getPc()));
+        for(int i = 0; i < 8; i++)
+            state.append(String.format("R%d x%04X  ", i, machine.getRegister(i)));
+        int cc = machine.getPsr() & 7;
+        state.append("CC ").append(cc == 4 ? 'N' : cc == 2 ? 'Z' : 'P');
+        state.append(String.format("  (%,d steps back)", machine.getTraceSize()));
+        return state.toString();
+    }
+
+    private void applyWatches() {
+        machine.clearWatchpoints();
+        for(int address : watches)
+            machine.setWatchpoint(address, true);
+    }
+
+    private void end(String message) {
+        assembly = null;
+        machine.setTraceCapacity(0);
+        edit.showExecutionLine(-1);
+        status.showMessage(message);
+    }
+}
@@ -0,0 +1,247 @@
+package menu;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import javafx.scene.control.Tab;
+import javafx.scene.control.Tooltip;
+import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.richtext.model.PlainTextChange;
+import org.fxmisc.richtext.model.TextChange;
+import org.fxmisc.richtext.util.UndoUtils;
+import org.fxmisc.undo.UndoManager;
+import org.fxmisc.undo.impl.MultiChangeUndoManagerImpl;
+import org.reactfx.EventStream;
+import status.EZStatusBar;
+
+/**
+ * One document open in a tab. Only the showing document lives in the shared edit area;
+ * the others keep their text, caret, scroll position and undo history here. Under
+ * memory pressure @see Documents has them give that up step by step: first the text is
+ * compressed, then the undo history is dropped, and a document that is saved drops its
+ * text as well and reads it again when it is shown.
+ */
+class Document {
+
+    // The tab showing this document
+    final Tab tab;
+    // Tracks unsaved changes and writes the document
+    final SaveService saver;
+    // The document's own undo history, only fed while it is showing
+    final UndoManager<List<PlainTextChange>> undo;
+
+    // The edit area while showing
+    private final CodeArea area;
+    // The steps undo goes through, kept under a byte budget
+    private final UndoHistory<List<PlainTextChange>> history = new UndoHistory<>();
+    // Whether the document is the one in the edit area
+    private boolean showing;
+    // The file the document is saved to, or null until its first save
+    private Path file;
+    // What to call the document while it has no file
+    private final String name;
+
+    // Text while not showing, null once compressed or unloaded
+    private String text;
+    // The text as deflated UTF-8 once compressed
+    private byte[] compressed;
+    // Selection and scroll position while not showing
+    private int anchor;
+    private int caret;
+    private double scrollY;
+
+    /**
+     * Creates a document that is not showing yet
+     * @param area The shared edit area
+     * @param tab The tab showing this document
+     * @param file The file the document is saved to, or null for a new document
+     * @param name What to call the document while it has no file
+     * @param text The text, or null to read it from the file when the document is shown
+     * @param status The status bar to report saves on
+     */
+    Document(CodeArea area, Tab tab, Path file, String name, String text, EZStatusBar status) {
+        this.area = area;
+        this.tab = tab;
+        this.name = name;
+        this.text = text;
+        // Changes made while another document is showing are not this document's
+        EventStream<List<PlainTextChange>> changes = area.multiPlainChanges().filter(change -> showing);
+        undo = new MultiChangeUndoManagerImpl<>(history, PlainTextChange::invert, UndoUtils.applyMultiPlainTextChange(area),
+                        UndoHistory::mergeRun, TextChange::isIdentity, changes, UndoUtils.DEFAULT_PREVENT_MERGE_DELAY);
+        saver = new SaveService(this::getText, changes, new EditJournal(name), status);
+        saver.dirtyProperty().addListener((obs, wasDirty, isDirty) -> updateTitle());
+        setFile(file);
+    }
+
+    /**
+     * Getter for the file the document is saved to
+     * @return file, or null if it was never saved
+     */
+    Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * Getter for the document's name, the file name once it has a file
+     * @return name
+     */
+    String getName() {
+        return file == null ? name : file.getFileName().toString();
+    }
+
+    /**
+     * Changes the file the document is saved to
+     * @param file The file to save to
+     */
+    void setFile(Path file) {
+        this.file = file == null ? null : file.toAbsolutePath().normalize();
+        tab.setTooltip(this.file == null ? null : new Tooltip(this.file.toString()));
+        updateTitle();
+    }
+
+    /**
+     * @return The document's text, wherever it is kept
+     * @throws IllegalStateException If the text is unloaded
+     */
+    String getText() {
+        if(showing)
+            return area.getText();
+        if(text != null)
+            return text;
+        if(compressed != null)
+            return inflate(compressed);
+        throw new IllegalStateException(getName() + " is not loaded");
+    }
+
+    /**
+     * @return true if the text has to be read from the file before the document is shown
+     */
+    boolean isUnloaded() {
+        return !showing && text == null && compressed == null;
+    }
+
+    /**
+     * @return true for a new document nobody typed in yet, which opening a file replaces
+     */
+    boolean isPristine() {
+        return file == null && !saver.dirtyProperty().get() && !isUnloaded() && getText().isEmpty();
+    }
+
+    /**
+     * Takes the text read from the file of an unloaded document
+     * @param loaded The text as it is on disk
+     */
+    void loaded(String loaded) {
+        text = loaded;
+    }
+
+    /**
+     * Puts the document into the edit area. No document may be showing.
+     */
+    void show() {
+        // Replace the text while no document is showing, so it is nobody's change
+        area.replaceText(getText());
+        text = null;
+        compressed = null;
+        showing = true;
+        area.selectRange(Math.min(anchor, area.getLength()), Math.min(caret, area.getLength()));
+        area.estimatedScrollYProperty().setValue(scrollY);
+    }
+
+    /**
+     * Takes the document out of the edit area, keeping its text, selection and scroll
+     * position
+     */
+    void hide() {
+        text = area.getText();
+        anchor = area.getAnchor();
+        caret = area.getCaretPosition();
+        scrollY = area.getEstimatedScrollY();
+        showing = false;
+    }
+
+    /**
+     * Compresses the text while the document is not showing
+     * @return true if there was text to compress
+     */
+    boolean compress() {
+        if(showing || text == null)
+            return false;
+        compressed = deflate(text);
+        text = null;
+        return true;
+    }
+
+    /**
+     * Drops the undo history, and the text as well if the file has all of it
+     * @return true if anything was dropped
+     */
+    boolean unload() {
+        if(showing)
+            return false;
+        boolean dropped = history.getBytes() > 0;
+        undo.forgetHistory();
+        if(file != null && !saver.dirtyProperty().get() && !saver.isSaving() && !isUnloaded()) {
+            text = null;
+            compressed = null;
+            dropped = true;
+        }
+        return dropped;
+    }
+
+    /**
+     * Roughly how much memory the document holds while not showing
+     * @return bytes
+     */
+    long estimateSize() {
+        if(showing)
+            return 0;
+        long size = history.getBytes();
+        if(text != null)
+            size += 2L * text.length();
+        if(compressed != null)
+            size += compressed.length;
+        return size;
+    }
+
+    /**
+     * Stops tracking changes, once the tab is closed
+     */
+    void close() {
+        saver.close();
+        undo.close();
+    }
+
+    private void updateTitle() {
+        tab.setText(saver.dirtyProperty().get() ? "*" + getName() : getName());
+    }
+
+    private static byte[] deflate(String text) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(text.length() / 4 + 64);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try(DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String inflate(byte[] compressed) {
+        try(InputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package menu;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import assembler.Disassembler;
+import file.FileLoader;
+import file.LoadedFile;
+import javafx.concurrent.Task;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Tab;
+import metrics.Metrics;
+import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.undo.UndoManager;
+import org.fxmisc.undo.UndoManagerFactory;
+import status.EZStatusBar;
+import tabs.EZTabs;
+
+/**
+ * Keeps the documents open in tabs. One edit area is shared by all of them: selecting a
+ * tab swaps its document into the edit area and everything else keeps only compact state.
+ * Files are read when their tab is first shown, not when it is opened.
+ *
+ * What the hidden documents hold is kept under a cap, set in megabytes with the
+ * lc3ezedit.tabCacheMB system property. Over the cap the documents shown longest ago are
+ * first compressed, then drop their undo history, and saved ones drop their text too, to
+ * read it again from disk when they are shown.
+ *
+ * Unsaved changes are journaled as they are made. Documents left with unsaved changes by
+ * an earlier run, whether it crashed or quit without saving them, are recovered into new
+ * tabs on startup.
+ */
+class Documents {
+
+    // Bytes hidden documents may hold before the least recently shown give some of it up
+    private static final long CAP = Long.getLong("lc3ezedit.tabCacheMB", 64) * 1024 * 1024;
+
+    private final CodeArea area;
+    private final EZTabs tabs;
+    private final EZStatusBar status;
+    // Passes the edit area's undo and redo on to the showing document
+    private final SwitchingUndoManager undo;
+    // Keeps no history, for while no document is showing
+    private final UndoManager<?> noUndo;
+
+    // Every open document
+    private final List<Document> documents = new ArrayList<>();
+    // Unloaded documents whose files are being read
+    private final Set<Document> loading = new HashSet<>();
+    // Hidden documents, shown longest ago first
+    private final LinkedHashSet<Document> recent = new LinkedHashSet<>();
+    // The document in the edit area, null while the selected one is being read
+    private Document showing;
+    // Run once a document is showing, e.g. to move the caret to a definition
+    private Document waiting;
+    private Runnable whenShown = () -> {};
+    // Called with the file after every successful save of any document
+    private Consumer<Path> onSaved = path -> {};
+
+    /**
+     * Takes over the edit area and the tabs, and starts with one new document while
+     * looking for documents to recover in the background
+     * @param area The edit area shared by the documents
+     * @param tabs The tabs the documents are shown in
+     * @param status The status bar to report reading and saving on
+     */
+    Documents(CodeArea area, EZTabs tabs, EZStatusBar status) {
+        this.area = area;
+        this.tabs = tabs;
+        this.status = status;
+        noUndo = UndoManagerFactory.zeroHistorySingleChangeUM(area.plainTextChanges());
+        undo = new SwitchingUndoManager(noUndo);
+        area.setUndoManager(undo);
+        // Tabs the window was first painted with stand in for documents, and go
+        tabs.getPane().getTabs().clear();
+        tabs.selectedTabProperty().addListener((obs, previous, selected) -> selected(selected));
+        show(create(null, "untitled", ""), () -> {});
+        recover();
+    }
+
+    /**
+     * Getter for the document in the edit area
+     * @return showing document, or null while the selected one is being read
+     */
+    Document getShowing() {
+        return this.showing;
+    }
+
+    /**
+     * Sets what happens after every successful save
+     * @param onSaved Called on the FX thread with the file that was written
+     */
+    void setOnSaved(Consumer<Path> onSaved) {
+        this.onSaved = onSaved;
+    }
+
+    /**
+     * Opens a new document in a tab and shows it
+     */
+    void openNew() {
+        show(create(null, "untitled", ""), () -> {});
+    }
+
+    /**
+     * Shows a file, opening it in a new tab unless it is open already
+     * @param file The file to show
+     * @param then Run once the file is in the edit area
+     */
+    void open(Path file, Runnable then) {
+        Path normalized = file.toAbsolutePath().normalize();
+        for(Document document : documents) {
+            if(normalized.equals(document.getFile())) {
+                show(document, then);
+                return;
+            }
+        }
+        showInstead(create(normalized, null, null), then);
+    }
+
+    /**
+     * Disassembles a memory image in the background and shows the assembly in a new
+     * document. The document has no file, so saving it never writes over the image.
+     * @param file An .obj, .hex or .bin file
+     */
+    void openImage(Path file) {
+        long started = Metrics.start();
+        Task<String> disassemble = new Task<String>() {
+            @Override
+            protected String call() throws IOException {
+                return Disassembler.disassemble(file);
+            }
+        };
+        disassemble.setOnSucceeded(done -> {
+            String name = file.getFileName().toString();
+            String text = disassemble.getValue();
+            showInstead(create(null, name.substring(0, name.lastIndexOf('.')) + ".asm", text), () -> {});
+            status.showMessage("Disassembled " + file.getFileName());
+            Metrics.record(Metrics.Probe.FILE_OPEN, started, text.length());
+        });
+        disassemble.setOnFailed(failed -> {
+            status.showMessage("Could not disassemble " + file.getFileName() + ": " + disassemble.getException().getMessage());
+        });
+        status.showProgress("Disassembling " + file.getFileName() + "...", disassemble.progressProperty());
+
+        Thread disassembler = new Thread(disassemble, "disassembler");
+        disassembler.setDaemon(true);
+        disassembler.start();
+    }
+
+    /**
+     * Opens a file in a new tab without reading it, unless it is open already
+     * @param file The file to open
+     */
+    void openLater(Path file) {
+        Path normalized = file.toAbsolutePath().normalize();
+        for(Document document : documents) {
+            if(normalized.equals(document.getFile()))
+                return;
+        }
+        create(normalized, null, null);
+    }
+
+    /**
+     * Ends the session once the editor exits: the journals of saved documents are
+     * deleted, and those of documents with unsaved changes are kept for the next start
+     */
+    void exit() {
+        for(Document document : documents)
+            document.saver.exit();
+        EditJournal.endSession();
+    }
+
+    /**
+     * Closes the showing document's tab, asking first if it has unsaved changes
+     */
+    void closeShowing() {
+        Tab tab = tabs.selectedTabProperty().get();
+        for(Document document : documents) {
+            if(document.tab == tab && confirmClose(document)) {
+                close(document);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Makes a document and its tab, without showing it
+     * @param name What to call the document while it has no file
+     */
+    private Document create(Path file, String name, String text) {
+        Tab tab = tabs.add(file == null ? name : file.getFileName().toString());
+        Document document = new Document(area, tab, file, name, text, status);
+        document.saver.setOnSaved(path -> onSaved.accept(path));
+        document.saver.dirtyProperty().addListener((obs, wasDirty, isDirty) -> {
+            if(isDirty && document == showing) status.showMessage("Modified");
+        });
+        tab.setOnCloseRequest(e -> {
+            if(!confirmClose(document))
+                e.consume();
+        });
+        tab.setOnClosed(e -> closed(document));
+        documents.add(document);
+        if(!document.isUnloaded())
+            recent.add(document);
+        trim();
+        return document;
+    }
+
+    /**
+     * Shows a new document, closing the showing one if it is a new document nobody typed
+     * in, which was only a placeholder
+     */
+    private void showInstead(Document document, Runnable then) {
+        Document placeholder = showing != null && showing.isPristine() ? showing : null;
+        show(document, then);
+        if(placeholder != null)
+            close(placeholder);
+    }
+
+    /**
+     * Selects a document's tab, which puts the document into the edit area
+     */
+    private void show(Document document, Runnable then) {
+        waiting = document;
+        whenShown = then;
+        if(document == showing)
+            shown(document);
+        else if(tabs.selectedTabProperty().get() == document.tab)
+            selected(document.tab); // The first tab of an empty tab pane selects itself
+        else
+            tabs.select(document.tab);
+    }
+
+    /**
+     * Swaps the document of a newly selected tab into the edit area, reading it first if
+     * it is unloaded
+     */
+    private void selected(Tab tab) {
+        Document document = null;
+        for(Document candidate : documents) {
+            if(candidate.tab == tab)
+                document = candidate;
+        }
+        if(document == null || document == showing)
+            return;
+
+        if(showing != null) {
+            showing.hide();
+            recent.add(showing);
+            showing = null;
+            undo.switchTo(noUndo);
+        }
+        if(document.isUnloaded()) {
+            // Nothing is showing until the file is read, so nothing typed meanwhile is kept
+            area.clear();
+            area.setEditable(false);
+            if(loading.add(document))
+                load(document);
+            return;
+        }
+        recent.remove(document);
+        document.show();
+        undo.switchTo(document.undo);
+        area.setEditable(true);
+        showing = document;
+        trim();
+        shown(document);
+    }
+
+    /**
+     * Runs what was waiting for a document to show, once it is showing
+     */
+    private void shown(Document document) {
+        area.requestFollowCaret();
+        area.requestFocus();
+        if(document != waiting)
+            return;
+        Runnable then = whenShown;
+        waiting = null;
+        whenShown = () -> {};
+        then.run();
+    }
+
+    /**
+     * Reads the file of an unloaded document in the background, then shows the document
+     * if its tab is still selected
+     */
+    private void load(Document document) {
+        long started = Metrics.start();
+        Path file = document.getFile();
+        Task<LoadedFile> load = new Task<LoadedFile>() {
+            @Override
+            protected LoadedFile call() throws IOException {
+                return FileLoader.load(file, this::updateProgress);
+            }
+        };
+        load.setOnSucceeded(done -> {
+            loading.remove(document);
+            if(!documents.contains(document) || !document.isUnloaded())
+                return;
+            LoadedFile opened = load.getValue();
+            document.loaded(opened.getText());
+            document.saver.opened(file, opened);
+            status.showMessage("Opened " + file.getFileName());
+            if(tabs.selectedTabProperty().get() == document.tab) {
+                selected(document.tab);
+                Metrics.record(Metrics.Probe.FILE_OPEN, started, opened.getText().length());
+            } else {
+                recent.add(document);
+                trim();
+            }
+        });
+        load.setOnFailed(failed -> {
+            loading.remove(document);
+            status.showMessage("Could not open " + file.getFileName() + ": " + load.getException().getMessage());
+            close(document);
+        });
+        status.showProgress("Opening " + file.getFileName() + "...", load.progressProperty());
+
+        Thread loader = new Thread(load, "file-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Replays the journals left by an earlier run in the background, and opens what they
+     * held as documents with unsaved changes
+     */
+    private void recover() {
+        Task<List<EditJournal.Recovered>> recover = new Task<List<EditJournal.Recovered>>() {
+            @Override
+            protected List<EditJournal.Recovered> call() {
+                return EditJournal.recover();
+            }
+        };
+        recover.setOnSucceeded(done -> {
+            Document first = null;
+            int count = 0;
+            for(EditJournal.Recovered recovered : recover.getValue()) {
+                if(recovered.problem != null) {
+                    status.showMessage("Could not recover unsaved changes: " + recovered.problem + "; the journal is kept as " + recovered.journal);
+                    continue;
+                }
+                Path file = recovered.file;
+                String name = recovered.name != null ? recovered.name : "untitled";
+                for(Document document : documents) {
+                    if(file != null && file.equals(document.getFile())) {
+                        // Opened meanwhile, so the recovered text gets a tab of its own
+                        name = file.getFileName() + " (recovered)";
+                        file = null;
+                    }
+                }
+                Document document = create(file, name, recovered.text.getText());
+                document.saver.recovered(recovered);
+                if(first == null)
+                    first = document;
+                count++;
+            }
+            if(first != null) {
+                showInstead(first, () -> {});
+                status.showMessage("Recovered unsaved changes to " + count + (count == 1 ? " document" : " documents"));
+            }
+        });
+
+        Thread recoverer = new Thread(recover, "journal-recovery");
+        recoverer.setDaemon(true);
+        recoverer.start();
+    }
+
+    /**
+     * Asks before a document with unsaved changes is closed
+     * @return true if the document may be closed
+     */
+    private boolean confirmClose(Document document) {
+        if(!document.saver.dirtyProperty().get())
+            return true;
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION,
+                        "Close " + document.getName() + " without saving?", ButtonType.OK, ButtonType.CANCEL);
+        alert.setHeaderText(null);
+        return alert.showAndWait().filter(ButtonType.OK::equals).isPresent();
+    }
+
+    private void close(Document document) {
+        tabs.getPane().getTabs().remove(document.tab);
+        closed(document);
+    }
+
+    /**
+     * Forgets a document whose tab is gone, keeping at least one tab open
+     */
+    private void closed(Document document) {
+        if(!documents.remove(document))
+            return;
+        recent.remove(document);
+        if(document == showing) {
+            showing = null;
+            undo.switchTo(noUndo);
+        }
+        document.close();
+        if(documents.isEmpty())
+            openNew();
+    }
+
+    /**
+     * Brings what the hidden documents hold back under the cap, taking from the ones shown
+     * longest ago first: compressing text before giving anything up
+     */
+    private void trim() {
+        long size = 0;
+        for(Document document : recent)
+            size += document.estimateSize();
+        for(Document document : recent) {
+            if(size <= CAP)
+                return;
+            long before = document.estimateSize();
+            if(document.compress())
+                size += document.estimateSize() - before;
+        }
+        for(Document document : recent) {
+            if(size <= CAP)
+                return;
+            long before = document.estimateSize();
+            if(document.unload())
+                size += document.estimateSize() - before;
+        }
+    }
+}
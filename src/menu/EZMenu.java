@@ -1,12 +1,24 @@
 package menu;
 
+import java.io.File;
 import java.util.HashMap;
+import java.util.List;
+import console.EZConsole;
 import editor.EZEditor;
 import javafx.scene.Scene;
+import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.SeparatorMenuItem;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import metrics.EZMetricsHud;
+import search.EZSearch;
+import status.EZStatusBar;
+import tabs.EZTabs;
+import usages.EZUsages;
 
 /**
  * Creates and styles the menu
@@ -19,13 +31,21 @@ public class EZMenu {
     private HashMap<String, MenuItem> menuItems;
     // The parent scene
     private Scene parentScene;
+    // Defines what the items do
+    private EZMenuController controller;
 
     /**
      * Sets up the Menu and its sub-menus
      * @param parentScene The parent scene that this menu will be applied to
      * @param edit The editArea this menu should apply to (save/open/conversion)
+     * @param status The status bar that reports on file operations
+     * @param console The console programs run against
+     * @param usages The panel listing where symbols are used
+     * @param search The find and replace panel
+     * @param hud The overlay showing editor latencies
+     * @param tabs The tabs documents are opened in
      */
-    public EZMenu(Scene parentScene, EZEditor edit) {
+    public EZMenu(Scene parentScene, EZEditor edit, EZStatusBar status, EZConsole console, EZUsages usages, EZSearch search, EZMetricsHud hud, EZTabs tabs) {
         this.parentScene = parentScene;
         
         menuItems = new HashMap<String, MenuItem>();
@@ -34,11 +54,19 @@ public class EZMenu {
         
         Menu menuFile = new Menu("File");
         Menu menuEdit = new Menu("Edit");
+        Menu menuView = new Menu("View");
+        Menu menuRun = new Menu("Run");
         Menu menuHelp = new Menu("Help");
        
         
+        MenuItem fileNew = new MenuItem("New");
+        fileNew.setAccelerator(new KeyCodeCombination(KeyCode.N, KeyCombination.SHORTCUT_DOWN));
         MenuItem fileOpen = new MenuItem("Open");
+        MenuItem fileOpenFolder = new MenuItem("Open Folder...");
         MenuItem fileSave = new MenuItem("Save");
+        fileSave.setAccelerator(new KeyCodeCombination(KeyCode.S, KeyCombination.SHORTCUT_DOWN));
+        MenuItem fileClose = new MenuItem("Close Tab");
+        fileClose.setAccelerator(new KeyCodeCombination(KeyCode.W, KeyCombination.SHORTCUT_DOWN));
         MenuItem fileQuit = new MenuItem("Quit");
         MenuItem fileConv2bin = new MenuItem("Convert to Binary");
         MenuItem fileConv2hex = new MenuItem("Convert to Hex");
@@ -46,25 +74,93 @@ public class EZMenu {
         MenuItem editCopy = new MenuItem("Copy");
         MenuItem editCut = new MenuItem("Cut");
         MenuItem editPaste = new MenuItem("Paste");
+        MenuItem editDefinition = new MenuItem("Go to Definition");
+        editDefinition.setAccelerator(new KeyCodeCombination(KeyCode.F12));
+        MenuItem editUsages = new MenuItem("Find Usages");
+        editUsages.setAccelerator(new KeyCodeCombination(KeyCode.F12, KeyCombination.SHIFT_DOWN));
+        MenuItem editFind = new MenuItem("Find...");
+        editFind.setAccelerator(new KeyCodeCombination(KeyCode.F, KeyCombination.SHORTCUT_DOWN));
+        MenuItem editFindInFolder = new MenuItem("Find in Folder...");
+        editFindInFolder.setAccelerator(new KeyCodeCombination(KeyCode.F, KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN));
 
+        CheckMenuItem viewMetrics = new CheckMenuItem("Metrics Overlay");
+        viewMetrics.setAccelerator(new KeyCodeCombination(KeyCode.M, KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN));
+        MenuItem viewFold = new MenuItem("Fold / Unfold");
+        viewFold.setAccelerator(new KeyCodeCombination(KeyCode.PERIOD, KeyCombination.SHORTCUT_DOWN));
+        MenuItem viewFoldAll = new MenuItem("Fold All");
+        viewFoldAll.setAccelerator(new KeyCodeCombination(KeyCode.PERIOD, KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN));
+        MenuItem viewUnfoldAll = new MenuItem("Unfold All");
+        viewUnfoldAll.setAccelerator(new KeyCodeCombination(KeyCode.COMMA, KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN));
 
-        menuFile.getItems().addAll(fileOpen, fileSave, new SeparatorMenuItem(), fileConv2bin, fileConv2hex, new SeparatorMenuItem(), fileQuit);
-        menuEdit.getItems().addAll(editCopy, editCut, editPaste);  
-        menu.getMenus().addAll(menuFile, menuEdit, menuHelp);
+        MenuItem runRun = new MenuItem("Run");
+        MenuItem runStop = new MenuItem("Stop");
+        MenuItem runDebug = new MenuItem("Debug / Continue");
+        runDebug.setAccelerator(new KeyCodeCombination(KeyCode.F5));
+        MenuItem runStep = new MenuItem("Step");
+        runStep.setAccelerator(new KeyCodeCombination(KeyCode.F10));
+        MenuItem runStepBack = new MenuItem("Step Back");
+        runStepBack.setAccelerator(new KeyCodeCombination(KeyCode.F10, KeyCombination.SHIFT_DOWN));
+        MenuItem runReverse = new MenuItem("Reverse Continue");
+        runReverse.setAccelerator(new KeyCodeCombination(KeyCode.F5, KeyCombination.SHIFT_DOWN));
+        MenuItem runBreakpoint = new MenuItem("Toggle Breakpoint");
+        runBreakpoint.setAccelerator(new KeyCodeCombination(KeyCode.F9));
+        MenuItem runWatch = new MenuItem("Watch Memory...");
+
+
+        menuFile.getItems().addAll(fileNew, fileOpen, fileOpenFolder, fileSave, fileClose, new SeparatorMenuItem(), fileConv2bin, fileConv2hex, new SeparatorMenuItem(), fileQuit);
+        menuEdit.getItems().addAll(editCopy, editCut, editPaste, new SeparatorMenuItem(), editDefinition, editUsages, new SeparatorMenuItem(), editFind, editFindInFolder);  
+        menuView.getItems().addAll(viewFold, viewFoldAll, viewUnfoldAll, new SeparatorMenuItem(), viewMetrics);
+        menuRun.getItems().addAll(runRun, runStop, new SeparatorMenuItem(), runDebug, runStep, runStepBack, runReverse,
+                        new SeparatorMenuItem(), runBreakpoint, runWatch);
+        menu.getMenus().addAll(menuFile, menuEdit, menuView, menuRun, menuHelp);
      
         
+        menuItems.put("New", fileNew);
         menuItems.put("Save", fileSave);
+        menuItems.put("Close", fileClose);
         menuItems.put("Quit", fileQuit);
         menuItems.put("Open", fileOpen);
+        menuItems.put("OpenFolder", fileOpenFolder);
         menuItems.put("Bin", fileConv2bin);
         menuItems.put("Hex", fileConv2hex);
         menuItems.put("Copy", editCopy);
         menuItems.put("Cut", editCut);
         menuItems.put("Paste", editPaste);
+        menuItems.put("Definition", editDefinition);
+        menuItems.put("Usages", editUsages);
+        menuItems.put("Find", editFind);
+        menuItems.put("FindInFolder", editFindInFolder);
+        menuItems.put("Metrics", viewMetrics);
+        menuItems.put("Fold", viewFold);
+        menuItems.put("FoldAll", viewFoldAll);
+        menuItems.put("UnfoldAll", viewUnfoldAll);
+        menuItems.put("Run", runRun);
+        menuItems.put("Stop", runStop);
+        menuItems.put("Debug", runDebug);
+        menuItems.put("Step", runStep);
+        menuItems.put("StepBack", runStepBack);
+        menuItems.put("Reverse", runReverse);
+        menuItems.put("Breakpoint", runBreakpoint);
+        menuItems.put("Watch", runWatch);
         
         parentScene.getStylesheets().add(getClass().getResource("menu.css").toExternalForm());
         
-        new EZMenuController(this, edit);
+        controller = new EZMenuController(this, edit, status, console, usages, search, hud, tabs);
+    }
+
+    /**
+     * Opens files in tabs, e.g. the ones named on the command line
+     * @param files The files to open
+     */
+    public void open(List<File> files) {
+        controller.open(files);
+    }
+
+    /**
+     * Ends the editing session cleanly, once the application stops
+     */
+    public void close() {
+        controller.close();
     }
 
     /**
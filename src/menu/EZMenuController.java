@@ -1,98 +1,177 @@
 package menu;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.PatternSyntaxException;
 
+import assembler.Assembler;
+import assembler.Assembly;
+import assembler.Diagnostic;
+import assembler.Disassembler;
+import assembler.OutputWriter;
+import console.EZConsole;
 import editor.EZEditor;
+import editor.EditTransaction;
 import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.TextInputDialog;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
+import metrics.EZMetricsHud;
+import org.fxmisc.richtext.CodeArea;
+import org.fxmisc.richtext.model.TwoDimensional.Bias;
+import org.fxmisc.richtext.model.TwoDimensional.Position;
+import search.EZSearch;
+import search.SearchMatch;
+import search.TextSearch;
+import status.EZStatusBar;
+import tabs.EZTabs;
+import usages.EZUsages;
+import workspace.Location;
+import workspace.WorkspaceIndex;
 
 /**
  * Defines the behavior for the menu
  */
 public class EZMenuController {
-    // Location of the saved file
-    private File saveLocation;
 
-    // Binary representation of LC-3 Instructions, will be used to convert from ASM to BIN
-    private final String[] INSTRUCTIONS = new String[]{
-            "0001", "0101", "0000", "1100", "0100", "0100", "0010", "1010", "0110" ,"1110", "1001", "1100",
-            "1000", "0011", "1011", "0111", "1111"
-    };
+    // Most folders under the folder of an opened file for it to become the workspace on its own
+    private static final int IMPLICIT_FOLDERS = Integer.getInteger("lc3ezedit.implicitWorkspaceFolders", 256);
+
+    // The menu, editor and status bar this controller works with
+    private final EZMenu menu;
+    private final EZEditor edit;
+    private final EZStatusBar status;
+    private final EZUsages usages;
+    private final EZSearch search;
+    // The documents open in tabs, sharing the editor
+    private final Documents documents;
+
+    // Symbols of every file in the open folder, or null until a folder is open
+    private WorkspaceIndex workspace;
+    // Repeats the last usages search, so the panel follows changes to the workspace
+    private Runnable lastSearch = () -> {};
+    // The running find or replace, cancelled when the next one starts
+    private TextSearch finding;
+    // Counts changes to the edit area's text, so a replace of text that changed meanwhile is dropped
+    private long revision;
 
     /**
      * Sets up the behavior for a menu.
      * @param menu The menu that this controller will define
      * @param edit The edit area this controller will define
+     * @param status The status bar to report file operations on
+     * @param console The console programs run against
+     * @param usages The panel listing where symbols are used
+     * @param search The find and replace panel
+     * @param hud The overlay showing editor latencies
+     * @param tabs The tabs documents are opened in
      */
-    public EZMenuController(EZMenu menu, EZEditor edit) {
+    public EZMenuController(EZMenu menu, EZEditor edit, EZStatusBar status, EZConsole console, EZUsages usages, EZSearch search, EZMetricsHud hud, EZTabs tabs) {
+        this.menu = menu;
+        this.edit = edit;
+        this.status = status;
+        this.usages = usages;
+        this.search = search;
+
         // Get items from the hash map to add behavior to
         HashMap<String, MenuItem> items = menu.getMenuItems();
+        MenuItem newItem = items.get("New");
+        MenuItem closeItem = items.get("Close");
         MenuItem saveItem = items.get("Save");
         MenuItem openItem = items.get("Open");
+        MenuItem openFolderItem = items.get("OpenFolder");
         MenuItem quitItem = items.get("Quit");
         MenuItem cutItem = items.get("Cut");
         MenuItem copyItem = items.get("Copy");
         MenuItem pasteItem = items.get("Paste");
+        MenuItem definitionItem = items.get("Definition");
+        MenuItem usagesItem = items.get("Usages");
+        MenuItem findItem = items.get("Find");
+        MenuItem findInFolderItem = items.get("FindInFolder");
         MenuItem convToHex = items.get("Hex");
         MenuItem convToBin = items.get("Bin");
+        CheckMenuItem metricsItem = (CheckMenuItem) items.get("Metrics");
+        MenuItem foldItem = items.get("Fold");
+        MenuItem foldAllItem = items.get("FoldAll");
+        MenuItem unfoldAllItem = items.get("UnfoldAll");
+        MenuItem runItem = items.get("Run");
+        MenuItem stopItem = items.get("Stop");
+        MenuItem debugItem = items.get("Debug");
+        MenuItem stepItem = items.get("Step");
+        MenuItem stepBackItem = items.get("StepBack");
+        MenuItem reverseItem = items.get("Reverse");
+        MenuItem breakpointItem = items.get("Breakpoint");
+        MenuItem watchItem = items.get("Watch");
+
+        // Each tab keeps its own text, caret and undo history while the editor shows another
+        documents = new Documents(edit.getEditArea(), tabs, status);
+        // Writes happen in the background, atomically, and only when something changed
+        documents.setOnSaved(path -> {
+            WorkspaceIndex index = workspace;
+            if(index != null)
+                CompletableFuture.runAsync(() -> index.refresh(path));
+        });
+
+        // Opens an empty document in a new tab
+        newItem.setOnAction(e -> {
+            documents.openNew();
+        });
+
+        // Closes the current tab, asking first if it has unsaved changes
+        closeItem.setOnAction(e -> {
+            documents.closeShowing();
+        });
 
         // Open save dialog if file not selected, otherwise just save
         saveItem.setOnAction(e -> {
-            FileChooser fileChooser = new FileChooser();
-            fileChooser.setTitle("Save...");
-            fileChooser.getExtensionFilters().addAll(
-                    new ExtensionFilter("Assembly", "*.asm"),
-                    new ExtensionFilter("All Files", "*.*"));
-
-
-            if(saveLocation == null)
-                saveLocation = fileChooser.showSaveDialog(menu.getParentScene().getWindow());
-            
-            byte[] strToBytes = edit.getEditArea().getText().getBytes();
-            try {
-                if(saveLocation == null) return; // Didn't select a file
-                Files.write(Paths.get(saveLocation.getPath()), strToBytes, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-            } catch (IOException e1) {
-                // TODO Auto-generated catch block
-                e1.printStackTrace();
-            }
+            Document document = documents.getShowing();
+            if(document == null) return; // Still reading the file
+            if(!chooseSaveLocation(document)) return; // Didn't select a file
+            document.saver.save(document.getFile());
         });
 
-        // Open 'open' dialog and read file into edit area
+        // Open 'open' dialog and read the files into tabs in the background
         openItem.setOnAction(e -> {
             FileChooser fileChooser = new FileChooser();
             fileChooser.setTitle("Open...");
             fileChooser.getExtensionFilters().addAll(
-                            new ExtensionFilter("Assembly", "*.asm"));
-            File selectedFile = fileChooser.showOpenDialog(menu.getParentScene().getWindow());
-            saveLocation = selectedFile;
-            
-            String inString = "";
-            Scanner readIn;
-            try {
-                if(selectedFile == null) return; // Didn't select a file
-                readIn = new Scanner(selectedFile);
-                while(readIn.hasNextLine()) {
-                    inString += readIn.nextLine() + "\n";
-                }
-            } catch (FileNotFoundException e1) {
-                // TODO Auto-generated catch block
-                e1.printStackTrace();
-            }
-            edit.getEditArea().insertText(0, inString);
-             
+                            new ExtensionFilter("Assembly", "*.asm"),
+                            new ExtensionFilter("LC-3 Image", "*.obj", "*.hex", "*.bin"));
+            List<File> selectedFiles = fileChooser.showOpenMultipleDialog(menu.getParentScene().getWindow());
+            if(selectedFiles == null || selectedFiles.isEmpty()) return; // Didn't select a file
+            open(selectedFiles);
+        });
+
+        // Indexes every .asm file under a folder for go to definition and find usages
+        openFolderItem.setOnAction(e -> {
+            DirectoryChooser directoryChooser = new DirectoryChooser();
+            directoryChooser.setTitle("Open Folder...");
+            File selectedFolder = directoryChooser.showDialog(menu.getParentScene().getWindow());
+            if(selectedFolder == null) return; // Didn't select a folder
+            openWorkspace(selectedFolder.toPath(), false);
         });
 
+        // Folds the subroutine, block of data or section around the caret, or all of them
+        foldItem.setOnAction(e -> edit.toggleFold());
+        foldAllItem.setOnAction(e -> edit.foldAll());
+        unfoldAllItem.setOnAction(e -> edit.unfoldAll());
+
+        // Shows the p50 / p99 latency of the editor's hot paths over the editor
+        metricsItem.selectedProperty().addListener((obs, wasShown, shown) -> hud.setVisible(shown));
+
         // Exits the javaFX application
         quitItem.setOnAction(e -> {
+            if(workspace != null)
+                workspace.close();
             Platform.exit();
         });
 
@@ -111,27 +190,435 @@ public class EZMenuController {
             edit.getEditArea().paste();
         });
 
-//        convToBin.setOnAction(e -> {
-//            String asm = edit.getEditArea().getText();
-//        });
-//
-//        private String parseAsmToBin(String asm){
-//            StringBuilder binString = new StringBuilder();
-//            String[] lines = asm.split("\n");
-//            ArrayList<String[]> tokens = new ArrayList<>();
-//            for(String line: lines){
-//                tokens.add(line.split(" "));
-//            }
-//            for(String[] lineToken: tokens){
-//                for(String token: lineToken){
-//                    for(int i = 0; i < INSTRUCTIONS.length; i++){
-//                        if(INSTRUCTIONS[i].equals(token)){
-//                            binString.append(INSTRUCTIONS[I])
-//                        }
-//                    }
-//                }
-//            }
-//        }
-    }
-    
+        // Jumps to where the label under the caret, or under a Ctrl + Click, is defined
+        edit.setOnGoToDefinition(this::goToDefinition);
+        definitionItem.setOnAction(e -> {
+            goToDefinition(edit.getEditArea().getCaretPosition());
+        });
+
+        // Lists everywhere the label or TRAP under the caret is used
+        usagesItem.setOnAction(e -> {
+            findUsages(edit.getEditArea().getCaretPosition());
+        });
+        usages.setOnOpen(this::open);
+
+        // Finds text in the open file, starting from the selection if there is one
+        findItem.setOnAction(e -> {
+            String selected = edit.getEditArea().getSelectedText();
+            if(!selected.isEmpty() && selected.indexOf('\n') < 0)
+                search.setQuery(selected);
+            search.focus();
+        });
+
+        // Finds text in every .asm file in a folder
+        findInFolderItem.setOnAction(e -> {
+            findInFolder();
+        });
+        search.setOnFind(this::find);
+        search.setOnFindInFolder(this::findInFolder);
+        search.setOnReplaceAll(this::replaceAll);
+        search.setOnOpen(this::open);
+        edit.getEditArea().plainTextChanges().subscribe(change -> revision++);
+
+        // Assembles the program and writes .obj, .bin, .sym and .lst files next to it
+        convToBin.setOnAction(e -> {
+            convert(false);
+        });
+
+        // Assembles the program and writes .obj, .hex, .sym and .lst files next to it
+        convToHex.setOnAction(e -> {
+            convert(true);
+        });
+
+        // Assembles the program and runs it against the console
+        RunService runner = new RunService(edit.getEditArea(), status, console);
+        runItem.setOnAction(e -> {
+            runner.run();
+        });
+
+        // Stops the running program, and the program being debugged
+        DebugService debugger = new DebugService(edit, status, console);
+        stopItem.setOnAction(e -> {
+            runner.stop();
+            debugger.stop();
+        });
+
+        // Assembles the program and pauses before its first instruction, or runs on to the
+        // next breakpoint or watched store
+        debugItem.setOnAction(e -> {
+            debugger.start();
+        });
+
+        // Executes one instruction
+        stepItem.setOnAction(e -> {
+            debugger.step();
+        });
+
+        // Undoes one instruction
+        stepBackItem.setOnAction(e -> {
+            debugger.stepBack();
+        });
+
+        // Runs backwards to the previous breakpoint or watched store
+        reverseItem.setOnAction(e -> {
+            debugger.reverse();
+        });
+
+        // Sets or clears the breakpoint on the caret's line; clicking a line number does too
+        breakpointItem.setOnAction(e -> {
+            debugger.toggleBreakpoint();
+        });
+
+        // Asks for an address or label to stop after stores to
+        watchItem.setOnAction(e -> {
+            TextInputDialog dialog = new TextInputDialog();
+            dialog.setTitle("Watch Memory");
+            dialog.setHeaderText(null);
+            dialog.setContentText("Address or label:");
+            dialog.showAndWait().ifPresent(target -> status.showMessage(debugger.toggleWatch(target)));
+        });
+    }
+
+    /**
+     * Ends the editing session, keeping the unsaved changes of open documents for the
+     * next start to recover
+     */
+    public void close() {
+        documents.exit();
+    }
+
+    /**
+     * Opens files in tabs. Only the first is read right away, the others once their tab is
+     * shown, and memory images are disassembled into new documents.
+     * @param files The files to open
+     */
+    public void open(List<File> files) {
+        boolean first = true;
+        for(File selectedFile : files) {
+            if(Disassembler.isImage(selectedFile.toPath())) {
+                documents.openImage(selectedFile.toPath());
+            } else if(first) {
+                open(selectedFile, () -> {});
+                first = false;
+            } else {
+                documents.openLater(selectedFile.toPath());
+            }
+        }
+    }
+
+    /**
+     * Shows a file in its tab, reading it in the background if it is not open yet, and
+     * opens its folder as the workspace if no folder is open yet and the folder is small
+     * @param selectedFile The file to open
+     * @param then Run on the FX thread once the file is in the edit area
+     */
+    private void open(File selectedFile, Runnable then) {
+        documents.open(selectedFile.toPath(), then);
+        if(workspace == null && selectedFile.getParentFile() != null)
+            openWorkspace(selectedFile.getParentFile().toPath(), true);
+    }
+
+    /**
+     * Asks where to save a document that was never saved
+     * @param document The document to save
+     * @return false if no file was chosen
+     */
+    private boolean chooseSaveLocation(Document document) {
+        if(document.getFile() != null)
+            return true;
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Save...");
+        fileChooser.setInitialFileName(document.getName());
+        fileChooser.getExtensionFilters().addAll(
+                new ExtensionFilter("Assembly", "*.asm"),
+                new ExtensionFilter("All Files", "*.*"));
+        File saveLocation = fileChooser.showSaveDialog(menu.getParentScene().getWindow());
+        if(saveLocation == null)
+            return false;
+        document.setFile(saveLocation.toPath());
+        return true;
+    }
+
+    /**
+     * Indexes a folder in the background and makes it the workspace, then follows
+     * changes to it
+     * @param folder The folder to index
+     * @param implicit Whether the folder only holds a file that was opened, in which case
+     * it is left alone if it is too large to index and watch, such as a home folder
+     */
+    private void openWorkspace(Path folder, boolean implicit) {
+        Task<WorkspaceIndex> index = new Task<WorkspaceIndex>() {
+            @Override
+            protected WorkspaceIndex call() throws IOException {
+                if(implicit && !WorkspaceIndex.hasAtMostFolders(folder, IMPLICIT_FOLDERS))
+                    return null;
+                WorkspaceIndex opened = WorkspaceIndex.open(folder, Runtime.getRuntime().availableProcessors());
+                opened.watch(() -> Platform.runLater(() -> lastSearch.run()));
+                return opened;
+            }
+        };
+        index.setOnSucceeded(done -> {
+            if(index.getValue() == null) {
+                status.showMessage(folder.getFileName() + " is too large to index; File > Open Folder... indexes it anyway");
+                return;
+            }
+            if(workspace != null)
+                workspace.close();
+            workspace = index.getValue();
+            status.showMessage("Indexed " + workspace.getFileCount() + " files in " + folder.getFileName());
+        });
+        index.setOnFailed(failed -> {
+            status.showMessage("Could not index " + folder.getFileName() + ": " + index.getException().getMessage());
+        });
+
+        Thread indexer = new Thread(index, "workspace-indexer");
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+
+    /**
+     * Jumps to the definition of the label at a position. A label defined more than once
+     * lists every definition in the usages panel.
+     * @param position Text position in the edit area
+     */
+    private void goToDefinition(int position) {
+        Location symbol = symbolAt(position);
+        if(symbol == null || (symbol.getKind() != Location.Kind.DEFINITION && symbol.getKind() != Location.Kind.REFERENCE)) {
+            status.showMessage("No label here");
+            return;
+        }
+        String label = symbol.getName();
+        List<Location> definitions = search(location -> location.getKind() == Location.Kind.DEFINITION
+                        && location.getName().equals(label), index -> index.findDefinitions(label));
+        if(definitions.isEmpty()) {
+            status.showMessage(label + " is not defined" + (workspace == null ? " in this file" : " in " + workspace.getRoot().getFileName()));
+            return;
+        }
+        if(definitions.size() > 1)
+            usages.show("Definitions of " + label, definitions);
+        open(definitions.get(0));
+    }
+
+    /**
+     * Lists everywhere the label or TRAP vector at a position is used
+     * @param position Text position in the edit area
+     */
+    private void findUsages(int position) {
+        Location symbol = symbolAt(position);
+        if(symbol == null || symbol.getKind() == Location.Kind.ORIGIN) {
+            status.showMessage("No label or TRAP here");
+            return;
+        }
+        if(symbol.getKind() == Location.Kind.TRAP) {
+            int vector = symbol.getValue();
+            String heading = String.format("Calls to TRAP x%02X", vector);
+            lastSearch = () -> usages.show(heading, search(location -> location.getKind() == Location.Kind.TRAP
+                            && location.getValue() == vector, index -> index.findTrapCalls(vector)));
+        } else {
+            String label = symbol.getName();
+            lastSearch = () -> usages.show("Usages of " + label, search(location -> location.getKind() != Location.Kind.ORIGIN
+                            && location.getKind() != Location.Kind.TRAP && location.getName().equals(label), index -> {
+                                List<Location> found = new ArrayList<>(index.findDefinitions(label));
+                                found.addAll(index.findReferences(label));
+                                return found;
+                            }));
+        }
+        lastSearch.run();
+    }
+
+    /**
+     * Finds the symbol at a text position of the edit area
+     */
+    private Location symbolAt(int position) {
+        CodeArea area = edit.getEditArea();
+        Position at = area.offsetToPosition(position, Bias.Forward);
+        return WorkspaceIndex.symbolAt(area.getParagraph(at.getMajor()).getText(), at.getMinor());
+    }
+
+    /**
+     * Searches the edit area and the workspace. The edit area is scanned as it is, so
+     * changes that are not saved yet count; other files come from the index.
+     * @param matches Picks the symbols wanted from the edit area
+     * @param indexed Looks the same symbols up in the workspace
+     * @return The edit area's matches first, then those of other files
+     */
+    private List<Location> search(Predicate<Location> matches, Function<WorkspaceIndex, List<Location>> indexed) {
+        Path current = currentFile();
+        List<Location> found = new ArrayList<>();
+        for(Location location : WorkspaceIndex.scan(current, edit.getEditArea().getText())) {
+            if(matches.test(location))
+                found.add(location);
+        }
+        if(workspace != null) {
+            for(Location location : indexed.apply(workspace)) {
+                if(!location.getFile().equals(current))
+                    found.add(location);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Shows a location, opening its file in a tab first if it is not the one being edited
+     * @param location The location to show
+     */
+    private void open(Location location) {
+        if(location.getFile() == null || location.getFile().equals(currentFile())) {
+            edit.goTo(location.getLine(), location.getStart());
+            return;
+        }
+        open(location.getFile().toFile(), () -> edit.goTo(location.getLine(), location.getStart()));
+    }
+
+    /**
+     * Lists the matches of the search panel's query in the open file as they are found
+     */
+    private void find() {
+        Document document = documents.getShowing();
+        if(document == null) return; // Still reading the file
+        TextSearch found = startSearch();
+        if(found == null) return;
+        search.clear("\"" + search.getQuery() + "\" in " + document.getName());
+        found.setOnFound(search::add);
+        found.setOnDone(() -> search.done(found.isLimited()));
+        found.searchText(document.getFile(), edit.getEditArea().getText());
+    }
+
+    /**
+     * Asks for a folder and lists the matches of the search panel's query in every .asm
+     * file in it, as they are on disk, as they are found
+     */
+    private void findInFolder() {
+        if(search.getQuery().isEmpty()) {
+            search.focus();
+            return;
+        }
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle("Find in Folder...");
+        if(workspace != null)
+            directoryChooser.setInitialDirectory(workspace.getRoot().toFile());
+        File selectedFolder = directoryChooser.showDialog(menu.getParentScene().getWindow());
+        if(selectedFolder == null) return; // Didn't select a folder
+        TextSearch found = startSearch();
+        if(found == null) return;
+        search.clear("\"" + search.getQuery() + "\" in " + selectedFolder.getName());
+        found.setOnFound(search::add);
+        found.setOnDone(() -> search.done(found.isLimited()));
+        found.searchFolder(selectedFolder.toPath());
+    }
+
+    /**
+     * Replaces every match of the search panel's query in the open file. The matches are
+     * found in the background and replaced as one edit, which one undo takes back.
+     */
+    private void replaceAll() {
+        Document document = documents.getShowing();
+        if(document == null) return; // Still reading the file
+        TextSearch replacing = startSearch();
+        if(replacing == null) return;
+        CodeArea area = edit.getEditArea();
+        long started = revision;
+        EditTransaction replacements = new EditTransaction(area);
+        replacing.replaceAll(area.getText(), search.getReplacement(), replacements, count -> {
+            if(revision != started) {
+                status.showMessage("The text changed while replacing, nothing was replaced");
+                return;
+            }
+            replacements.commit();
+            status.showMessage("Replaced " + count + (count == 1 ? " match" : " matches"));
+        }, problem -> status.showMessage("Invalid replacement: " + problem));
+    }
+
+    /**
+     * Starts a find or replace with the search panel's query, cancelling the one before
+     * @return The search, or null if the query is empty or not a valid regular expression
+     */
+    private TextSearch startSearch() {
+        if(finding != null)
+            finding.cancel();
+        finding = null;
+        if(search.getQuery().isEmpty()) {
+            search.focus();
+            return null;
+        }
+        try {
+            finding = new TextSearch(search.getQuery(), search.isRegex(), search.isMatchCase());
+        } catch(PatternSyntaxException e) {
+            status.showMessage("Invalid regular expression: " + e.getDescription());
+        }
+        return finding;
+    }
+
+    /**
+     * Opens a match and selects it
+     * @param match The match to open
+     */
+    private void open(SearchMatch match) {
+        if(match.getFile() == null || match.getFile().equals(currentFile())) {
+            edit.select(match.getLine(), match.getColumn(), match.getLength());
+            return;
+        }
+        open(match.getFile().toFile(), () -> edit.select(match.getLine(), match.getColumn(), match.getLength()));
+    }
+
+    /**
+     * @return The file of the document being edited, or null if it was never saved
+     */
+    private Path currentFile() {
+        Document document = documents.getShowing();
+        return document == null ? null : document.getFile();
+    }
+
+    /**
+     * Assembles the editor's text in the background and writes the output files next to
+     * the saved file, asking for a location if the file was never saved. Problems are
+     * reported on the status bar instead of writing anything.
+     * @param hex true to write a .hex text file, false to write a .bin text file
+     */
+    private void convert(boolean hex) {
+        Document document = documents.getShowing();
+        if(document == null) return; // Still reading the file
+        if(!chooseSaveLocation(document)) return; // Didn't select a file
+
+        String source = edit.getEditArea().getText();
+        Path asm = document.getFile();
+        String name = asm.getFileName().toString();
+        String base = name.lastIndexOf('.') > 0 ? name.substring(0, name.lastIndexOf('.')) : name;
+        Path obj = asm.resolveSibling(base + ".obj");
+        Path text = asm.resolveSibling(base + (hex ? ".hex" : ".bin"));
+
+        Task<Assembly> assemble = new Task<Assembly>() {
+            @Override
+            protected Assembly call() throws IOException {
+                Assembly assembly = Assembler.assemble(source);
+                if(assembly.hasErrors())
+                    return assembly;
+                OutputWriter.writeObject(obj, assembly);
+                if(hex)
+                    OutputWriter.writeHex(text, assembly);
+                else
+                    OutputWriter.writeBinary(text, assembly);
+                OutputWriter.writeSymbols(asm.resolveSibling(base + ".sym"), assembly);
+                OutputWriter.writeListing(asm.resolveSibling(base + ".lst"), source, assembly);
+                return assembly;
+            }
+        };
+        assemble.setOnSucceeded(done -> {
+            Assembly assembly = assemble.getValue();
+            List<Diagnostic> problems = assembly.getDiagnostics();
+            if(problems.isEmpty()) {
+                status.showMessage("Assembled " + obj.getFileName() + " and " + text.getFileName());
+            } else {
+                status.showMessage(problems.get(0) + (problems.size() > 1 ? " (and " + (problems.size() - 1) + " more)" : ""));
+            }
+        });
+        assemble.setOnFailed(failed -> {
+            status.showMessage("Assembling " + name + " failed: " + assemble.getException().getMessage());
+        });
+        status.showMessage("Assembling " + name + "...");
+
+        Thread assembler = new Thread(assemble, "assembler");
+        assembler.setDaemon(true);
+        assembler.start();
+    }
 }
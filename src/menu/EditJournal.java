@@ -0,0 +1,681 @@
+package menu;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import file.FileLoader;
+import file.LoadedFile;
+import org.fxmisc.richtext.model.PlainTextChange;
+
+/**
+ * Keeps a document's unsaved changes on disk so they survive a crash, without rewriting
+ * the file. A journal starts from a base, either the file as it was last saved or the
+ * whole text, and every change after that is appended as a compact record of its
+ * position, the length it removed and the text it inserted. Records are buffered on the
+ * FX thread and written by a background thread a few times a second, each batch with a
+ * single fsync. Once a journal grows well past its base the background thread replays it
+ * into a new base, so it stays small.
+ *
+ * Each run of the editor locks a session file next to its journals. Journals whose
+ * session is no longer locked were left by an earlier run, either one that did not shut
+ * down cleanly or one that quit with unsaved changes, and @see #recover replays them.
+ */
+class EditJournal {
+
+    // Where the journals and session locks are kept
+    private static final Path DIRECTORY = Paths.get(System.getProperty("user.home"), ".lc3ezedit", "journal");
+    private static final int MAGIC = 0x4C33_4A4C; // "L3JL"
+    private static final int VERSION = 1;
+    // Record types: a base holding the whole text, a base referring to the saved file, a change
+    private static final byte TEXT = 1;
+    private static final byte FILE = 2;
+    private static final byte EDIT = 3;
+    // Time records are buffered before they are written and synced together
+    private static final long COMMIT_MILLIS = 200;
+    // A journal is compacted once it is over this size and this many times its base
+    private static final long COMPACT_BYTES = 1024 * 1024;
+    private static final int COMPACT_RATIO = 4;
+
+    // Shared background thread that writes, syncs and compacts every journal
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "edit-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Names this run's session lock and journals
+    private static final String SESSION = Long.toString(System.currentTimeMillis(), 36) + Long.toString(ProcessHandle.current().pid(), 36);
+    private static final AtomicInteger JOURNALS = new AtomicInteger();
+    // Held on the session file while the editor runs, only used on the writer thread
+    private static FileChannel sessionFile;
+    private static FileLock sessionLock;
+
+    // The journal file
+    private final Path journal;
+    // What to call the document while it has no file
+    private final String name;
+    // Whether the journal has a base, only used on the FX thread
+    private boolean started;
+
+    // Handed from the FX thread to the writer thread, guarded by this
+    private Base base;
+    private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+    private boolean committing;
+
+    // The open journal, its size and the size of its base, only used on the writer thread
+    private FileChannel channel;
+    private long written;
+    private long baseBytes;
+
+    /**
+     * What a journal starts from, encoded on the writer thread
+     */
+    private static final class Base {
+        final byte type;
+        final Path file;
+        final String name;
+        // The whole text, for a text base
+        final String text;
+        final Charset charset;
+        final boolean bom;
+        final String lineSeparator;
+        // The length of the saved text, for a file base
+        final int length;
+
+        Base(byte type, Path file, String name, String text, Charset charset, boolean bom, String lineSeparator, int length) {
+            this.type = type;
+            this.file = file;
+            this.name = name;
+            this.text = text;
+            this.charset = charset;
+            this.bom = bom;
+            this.lineSeparator = lineSeparator;
+            this.length = length;
+        }
+    }
+
+    /**
+     * A document replayed from a journal left by an earlier run
+     */
+    static final class Recovered {
+        // The journal, and how much of it is intact
+        final Path journal;
+        final long length;
+        // The file the document was saved to, or null if it had none
+        final Path file;
+        // What the document was called while it had no file
+        final String name;
+        // The recovered text, and how to write it back to the file
+        final LoadedFile text;
+        // Why nothing could be recovered, or null if the text was; the journal is then kept
+        final String problem;
+
+        private Recovered(Path journal, long length, Path file, String name, LoadedFile text, String problem) {
+            this.journal = journal;
+            this.length = length;
+            this.file = file;
+            this.name = name;
+            this.text = text;
+            this.problem = problem;
+        }
+    }
+
+    /**
+     * Creates a journal that stays empty until it is started
+     * @param name What to call the document while it has no file
+     */
+    EditJournal(String name) {
+        this.name = name;
+        this.journal = DIRECTORY.resolve(SESSION + "-" + JOURNALS.incrementAndGet() + ".journal");
+    }
+
+    /**
+     * @return true once the journal has a base that changes are recorded against
+     */
+    boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Starts the journal over from the file as it was saved, which is cheap as the text
+     * itself is not written
+     * @param file The saved file
+     * @param length The length of the saved text, to tell whether the file changed since
+     */
+    void startFromFile(Path file, int length) {
+        start(new Base(FILE, file, name, null, null, false, null, length));
+    }
+
+    /**
+     * Starts the journal over from the whole text
+     * @param text The text
+     * @param file The file the document is saved to, or null if it has none
+     * @param charset How the file is encoded
+     * @param bom Whether the file starts with a byte order mark
+     * @param lineSeparator The file's line ending
+     */
+    void startFromText(String text, Path file, Charset charset, boolean bom, String lineSeparator) {
+        start(new Base(TEXT, file, name, text, charset, bom, lineSeparator, text.length()));
+    }
+
+    private void start(Base start) {
+        started = true;
+        synchronized(this) {
+            // Everything recorded so far is part of the new base
+            base = start;
+            records.reset();
+            scheduleCommit();
+        }
+    }
+
+    /**
+     * Records changes, which are written with the next group commit
+     * @param changes Changes made to the text since the base or the last changes
+     */
+    void append(List<PlainTextChange> changes) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        synchronized(this) {
+            for(PlainTextChange change : changes) {
+                payload.reset();
+                payload.write(EDIT);
+                writeVarint(payload, change.getPosition());
+                writeVarint(payload, change.getRemoved().length());
+                writeString(payload, change.getInserted());
+                frame(records, payload);
+            }
+            scheduleCommit();
+        }
+    }
+
+    /**
+     * Continues a journal replayed by @see #recover, which becomes this journal
+     * @param recovered The replayed journal
+     */
+    void adopt(Recovered recovered) {
+        started = true;
+        WRITER.execute(() -> {
+            try {
+                lockSession();
+                move(recovered.journal, journal);
+                channel = FileChannel.open(journal, StandardOpenOption.WRITE);
+                // Drops whatever the crash left half written
+                channel.truncate(recovered.length);
+                channel.position(recovered.length);
+                written = recovered.length;
+                baseBytes = recovered.length;
+            } catch(IOException e) {
+                closeChannel();
+            }
+        });
+    }
+
+    /**
+     * Deletes the journal, once every change is saved or dropped
+     */
+    void discard() {
+        if(!started)
+            return;
+        started = false;
+        synchronized(this) {
+            base = null;
+            records.reset();
+        }
+        WRITER.execute(() -> {
+            closeChannel();
+            try {
+                Files.deleteIfExists(journal);
+            } catch(IOException e) {
+                // Left for the next start, which finds it a copy of what was saved
+            }
+        });
+    }
+
+    /**
+     * Writes what is still buffered and closes the journal, which stays on disk for the
+     * next start to recover, once the editor exits with the change unsaved
+     */
+    void keep() {
+        if(!started)
+            return;
+        started = false;
+        WRITER.execute(() -> {
+            commit();
+            closeChannel();
+        });
+    }
+
+    /**
+     * Ends the session once the editor exits and every journal is discarded or kept, so
+     * the next start recovers the kept ones. Waits briefly for the writer, since the
+     * editor exits right after.
+     */
+    static void endSession() {
+        try {
+            WRITER.submit(() -> {
+                try {
+                    if(sessionLock != null) {
+                        sessionLock.release();
+                        sessionFile.close();
+                        Files.deleteIfExists(lockFile(SESSION));
+                    }
+                } catch(IOException e) {
+                    // A stale lock file only has the next start look for journals
+                }
+            }).get(2, TimeUnit.SECONDS);
+        } catch(Exception e) {
+            // Exiting anyway
+        }
+    }
+
+    /**
+     * Replays the journals left by earlier runs, in time proportional to their size. A
+     * journal that cannot be replayed is never deleted, it is renamed to end in .failed
+     * so it is kept without being tried again.
+     * @return One entry per journal found, in no particular order
+     */
+    static List<Recovered> recover() {
+        List<Recovered> recovered = new ArrayList<>();
+        if(!Files.isDirectory(DIRECTORY))
+            return recovered;
+        List<Path> found = new ArrayList<>();
+        try(DirectoryStream<Path> journals = Files.newDirectoryStream(DIRECTORY, "*.journal")) {
+            for(Path journal : journals)
+                found.add(journal);
+        } catch(IOException e) {
+            return recovered;
+        }
+        for(Path journal : found) {
+            String fileName = journal.getFileName().toString();
+            int dash = fileName.indexOf('-');
+            String session = dash < 0 ? fileName : fileName.substring(0, dash);
+            if(session.equals(SESSION) || isRunning(session))
+                continue;
+            try {
+                recovered.add(replay(journal));
+            } catch(IOException | RuntimeException e) {
+                Path kept = journal.resolveSibling(fileName + ".failed");
+                try {
+                    Files.move(journal, kept);
+                } catch(IOException moveFailed) {
+                    // Left where it is, and tried again next start
+                    kept = journal;
+                }
+                recovered.add(new Recovered(kept, 0, null, fileName, null, e.getMessage()));
+            }
+        }
+        // The sessions that left these are over, their journals are taken over or gone
+        try(DirectoryStream<Path> locks = Files.newDirectoryStream(DIRECTORY, "*.lock")) {
+            for(Path lock : locks) {
+                String fileName = lock.getFileName().toString();
+                String session = fileName.substring(0, fileName.length() - ".lock".length());
+                if(!session.equals(SESSION) && !isRunning(session))
+                    Files.deleteIfExists(lock);
+            }
+        } catch(IOException e) {
+            // Stale lock files are only looked at again next start
+        }
+        return recovered;
+    }
+
+    /**
+     * Makes sure a commit runs soon, so everything recorded meanwhile is written and
+     * synced together. Called holding this.
+     */
+    private void scheduleCommit() {
+        if(!committing) {
+            committing = true;
+            WRITER.schedule(this::commit, COMMIT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes what was recorded since the last commit with a single sync, then compacts
+     * the journal if it grew too large. Runs on the writer thread.
+     */
+    private void commit() {
+        Base start;
+        byte[] appended;
+        synchronized(this) {
+            start = base;
+            base = null;
+            appended = records.toByteArray();
+            records.reset();
+            committing = false;
+        }
+        try {
+            if(start != null)
+                rewrite(start);
+            if(channel == null)
+                return; // Discarded, or the base could not be written
+            ByteBuffer bytes = ByteBuffer.wrap(appended);
+            while(bytes.hasRemaining())
+                written += channel.write(bytes);
+            channel.force(false);
+            if(written > Math.max(COMPACT_BYTES, COMPACT_RATIO * baseBytes))
+                compact();
+        } catch(IOException e) {
+            // Best effort: changes are still saved the normal way
+            closeChannel();
+        }
+    }
+
+    /**
+     * Replaces the journal with one holding only a base. The old journal stays until
+     * the new one is complete and synced.
+     */
+    private void rewrite(Base start) throws IOException {
+        closeChannel();
+        lockSession();
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(start.text == null ? 256 : start.text.length() + 256);
+        payload.write(start.type);
+        writeString(payload, start.file == null ? "" : start.file.toString());
+        writeString(payload, start.name == null ? "" : start.name);
+        if(start.type == FILE) {
+            writeLong(payload, Files.size(start.file));
+            writeLong(payload, Files.getLastModifiedTime(start.file).toMillis());
+            writeVarint(payload, start.length);
+        } else {
+            writeString(payload, start.charset.name());
+            payload.write(start.bom ? 1 : 0);
+            writeString(payload, start.lineSeparator);
+            writeString(payload, start.text);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.size() + 16);
+        writeInt(out, MAGIC);
+        writeInt(out, VERSION);
+        frame(out, payload);
+
+        Path temp = Files.createTempFile(DIRECTORY, journal.getFileName().toString(), ".tmp");
+        try {
+            try(FileChannel fresh = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer bytes = ByteBuffer.wrap(out.toByteArray());
+                while(bytes.hasRemaining())
+                    fresh.write(bytes);
+                fresh.force(false);
+            }
+            move(temp, journal);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        channel = FileChannel.open(journal, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        written = out.size();
+        baseBytes = written;
+    }
+
+    /**
+     * Replays the journal into a new text base. If the saved file it started from
+     * changed, it is left as it is until it grew some more.
+     */
+    private void compact() throws IOException {
+        Recovered replayed;
+        try {
+            replayed = replay(journal);
+        } catch(IOException e) {
+            baseBytes = written;
+            return;
+        }
+        LoadedFile text = replayed.text;
+        rewrite(new Base(TEXT, replayed.file, replayed.name, text.getText(), text.getCharset(), text.hasBom(),
+                        text.getLineSeparator(), text.getText().length()));
+    }
+
+    /**
+     * Reads a journal's base and applies its changes, up to the first record that is
+     * incomplete or damaged
+     */
+    private static Recovered replay(Path journal) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(journal));
+        if(in.remaining() < 8 || in.getInt() != MAGIC || in.getInt() != VERSION)
+            throw new IOException(journal.getFileName() + " is not an edit journal");
+        ByteBuffer record = next(in);
+        if(record == null)
+            throw new IOException(journal.getFileName() + " has no base");
+
+        byte type = record.get();
+        String path = readString(record);
+        Path file = path.isEmpty() ? null : Paths.get(path);
+        String name = readString(record);
+        LoadedFile base;
+        if(type == FILE) {
+            long size = record.getLong();
+            long modified = record.getLong();
+            int length = readVarint(record);
+            if(!Files.isRegularFile(file) || Files.size(file) != size || Files.getLastModifiedTime(file).toMillis() != modified)
+                throw new IOException(file.getFileName() + " changed since its unsaved changes were recorded");
+            base = FileLoader.load(file, null);
+            if(base.getText().length() != length)
+                throw new IOException(file.getFileName() + " changed since its unsaved changes were recorded");
+        } else if(type == TEXT) {
+            Charset charset = Charset.forName(readString(record));
+            boolean bom = record.get() != 0;
+            String lineSeparator = readString(record);
+            base = new LoadedFile(readString(record), charset, bom, lineSeparator);
+        } else {
+            throw new IOException(journal.getFileName() + " has no base");
+        }
+
+        GapBuffer text = new GapBuffer(base.getText());
+        long intact = in.position();
+        while((record = next(in)) != null) {
+            if(record.get() != EDIT)
+                break;
+            int position = readVarint(record);
+            int removed = readVarint(record);
+            String inserted = readString(record);
+            if(position < 0 || removed < 0 || position + removed > text.length())
+                break;
+            text.replace(position, removed, inserted);
+            intact = in.position();
+        }
+        LoadedFile recovered = new LoadedFile(text.toString(), base.getCharset(), base.hasBom(), base.getLineSeparator());
+        return new Recovered(journal, intact, file, name.isEmpty() ? null : name, recovered, null);
+    }
+
+    /**
+     * @return The next record's payload, or null at the end or at a record that is
+     * incomplete or does not match its checksum
+     */
+    private static ByteBuffer next(ByteBuffer in) {
+        if(in.remaining() < 8)
+            return null;
+        int length = in.getInt();
+        int checksum = in.getInt();
+        if(length <= 0 || length > in.remaining())
+            return null;
+        CRC32 crc = new CRC32();
+        crc.update(in.array(), in.position(), length);
+        if((int) crc.getValue() != checksum)
+            return null;
+        ByteBuffer record = ByteBuffer.wrap(in.array(), in.position(), length).slice();
+        in.position(in.position() + length);
+        return record;
+    }
+
+    /**
+     * @return true if the run that owns a session still holds its lock
+     */
+    private static boolean isRunning(String session) {
+        Path lock = lockFile(session);
+        if(!Files.isRegularFile(lock))
+            return false;
+        try(FileChannel file = FileChannel.open(lock, StandardOpenOption.WRITE)) {
+            FileLock held = file.tryLock();
+            if(held == null)
+                return true;
+            held.release();
+            return false;
+        } catch(OverlappingFileLockException e) {
+            return true;
+        } catch(IOException e) {
+            return true; // Leaves alone what cannot be checked
+        }
+    }
+
+    /**
+     * Locks this run's session file before its first journal is written
+     */
+    private static void lockSession() throws IOException {
+        if(sessionLock != null)
+            return;
+        Files.createDirectories(DIRECTORY);
+        sessionFile = FileChannel.open(lockFile(SESSION), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        sessionLock = sessionFile.lock();
+    }
+
+    private static Path lockFile(String session) {
+        return DIRECTORY.resolve(session + ".lock");
+    }
+
+    private void closeChannel() {
+        if(channel == null)
+            return;
+        try {
+            channel.close();
+        } catch(IOException e) {
+            // Nothing left to write
+        }
+        channel = null;
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Appends a payload with its length and checksum, so a torn write at the end of the
+     * journal is recognized
+     */
+    private static void frame(ByteArrayOutputStream out, ByteArrayOutputStream payload) {
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        writeInt(out, bytes.length);
+        writeInt(out, (int) crc.getValue());
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        writeInt(out, (int) (value >>> 32));
+        writeInt(out, (int) value);
+    }
+
+    /**
+     * Writes a non-negative number in as few bytes as it needs, 7 bits each
+     */
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while((value & ~0x7F) != 0) {
+            out.write(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if(b >= 0)
+                return value;
+        }
+        throw new IllegalStateException("Malformed number");
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarint(in);
+        String text = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return text;
+    }
+
+    /**
+     * Text with a gap at the last change, so a run of nearby changes such as typing only
+     * moves the characters between them
+     */
+    private static final class GapBuffer {
+
+        private char[] chars;
+        private int gapStart;
+        private int gapEnd;
+
+        GapBuffer(String text) {
+            chars = new char[text.length() + 1024];
+            text.getChars(0, text.length(), chars, chars.length - text.length());
+            gapEnd = chars.length - text.length();
+        }
+
+        int length() {
+            return chars.length - (gapEnd - gapStart);
+        }
+
+        void replace(int position, int removed, String inserted) {
+            moveGap(position);
+            gapEnd += removed;
+            if(inserted.length() > gapEnd - gapStart) {
+                int after = chars.length - gapEnd;
+                char[] grown = new char[Math.max(2 * chars.length, length() + inserted.length() + 1024)];
+                System.arraycopy(chars, 0, grown, 0, gapStart);
+                System.arraycopy(chars, gapEnd, grown, grown.length - after, after);
+                gapEnd = grown.length - after;
+                chars = grown;
+            }
+            inserted.getChars(0, inserted.length(), chars, gapStart);
+            gapStart += inserted.length();
+        }
+
+        private void moveGap(int position) {
+            if(position < gapStart) {
+                int count = gapStart - position;
+                System.arraycopy(chars, position, chars, gapEnd - count, count);
+                gapStart -= count;
+                gapEnd -= count;
+            } else if(position > gapStart) {
+                int count = position - gapStart;
+                System.arraycopy(chars, gapEnd, chars, gapStart, count);
+                gapStart += count;
+                gapEnd += count;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, gapStart) + new String(chars, gapEnd, chars.length - gapEnd);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package menu;
+
+import assembler.Assembler;
+import assembler.Assembly;
+import console.EZConsole;
+import javafx.application.Platform;
+import org.fxmisc.richtext.CodeArea;
+import simulator.Machine;
+import status.EZStatusBar;
+
+/**
+ * Assembles the edit area and runs the program on a background thread, with the console
+ * as its keyboard and display. Only one program runs at a time. All methods must be
+ * called on the FX thread.
+ */
+class RunService {
+
+    // Instructions run between checks for a stop request
+    private static final long SLICE = 10_000_000;
+
+    private final CodeArea area;
+    private final EZStatusBar status;
+    private final EZConsole console;
+    private final Machine machine;
+
+    // The thread running the current program, or null
+    private Thread runner;
+    // Set when the user asks the running program to stop
+    private volatile boolean stopping;
+
+    /**
+     * @param area The edit area holding the program
+     * @param status The status bar to report on
+     * @param console The console the program reads from and writes to
+     */
+    RunService(CodeArea area, EZStatusBar status, EZConsole console) {
+        this.area = area;
+        this.status = status;
+        this.console = console;
+        this.machine = new Machine(console);
+    }
+
+    /**
+     * Assembles and runs the program, unless one is already running
+     */
+    void run() {
+        if(runner != null) {
+            status.showMessage("A program is already running");
+            return;
+        }
+        String source = area.getText();
+        console.clear();
+        stopping = false;
+        status.showMessage("Assembling...");
+
+        runner = new Thread(() -> {
+            Assembly assembly = Assembler.assemble(source);
+            if(assembly.hasErrors()) {
+                int more = assembly.getDiagnostics().size() - 1;
+                String message = assembly.getDiagnostics().get(0) + (more > 0 ? " (and " + more + " more)" : "");
+                Platform.runLater(() -> finished(message));
+                return;
+            }
+
+            machine.reset();
+            machine.load(assembly.getOrigin(), assembly.getWords());
+            Platform.runLater(() -> status.showMessage("Running..."));
+            long start = System.nanoTime();
+            while(!machine.isHalted() && !stopping)
+                machine.run(SLICE);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long count = machine.getInstructionCount();
+            String summary = String.format("%,d instructions in %.2fs (%,.0f per second)", count, seconds,
+                            seconds > 0 ? count / seconds : 0.0);
+            String message = machine.getError() != null ? machine.getError() + " after " + summary
+                            : machine.isHalted() ? "Halted after " + summary : "Stopped after " + summary;
+            Platform.runLater(() -> finished(message));
+        }, "simulator");
+        runner.setDaemon(true);
+        runner.start();
+    }
+
+    /**
+     * Stops the running program, including one waiting for a key
+     */
+    void stop() {
+        if(runner == null)
+            return;
+        stopping = true;
+        machine.stop();
+        runner.interrupt();
+    }
+
+    private void finished(String message) {
+        runner = null;
+        status.showMessage(message);
+    }
+}
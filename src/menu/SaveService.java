@@ -0,0 +1,249 @@
+package menu;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import file.FileSaver;
+import file.LoadedFile;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import metrics.Metrics;
+import org.fxmisc.richtext.model.PlainTextChange;
+import org.reactfx.EventStream;
+import org.reactfx.Subscription;
+import status.EZStatusBar;
+
+/**
+ * Saves a document in the background. Tracks whether the text changed since the last
+ * save, skips saves that would not change anything and folds saves requested while a
+ * write is still running into a single follow-up write. Until a change is saved it is
+ * kept in an @see EditJournal, so it survives a crash. All methods must be called on the
+ * FX thread.
+ */
+class SaveService {
+
+    // Shared background thread that does the encoding and writing
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "file-saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The document's current text
+    private final Supplier<String> text;
+    private final EZStatusBar status;
+    // Stops counting changes once the document is closed
+    private final Subscription changes;
+    // Keeps the changes that are not saved yet on disk
+    private final EditJournal journal;
+
+    // Incremented on every text change
+    private long version;
+    // The version that is known to be on disk at target, and its length
+    private long savedVersion;
+    private int savedLength;
+    private final ReadOnlyBooleanWrapper dirty = new ReadOnlyBooleanWrapper(false);
+    // Called with the file after every successful write
+    private Consumer<Path> onSaved = path -> {};
+
+    // Where and how the text is saved
+    private Path target;
+    private Charset charset = StandardCharsets.UTF_8;
+    private boolean bom;
+    private String lineSeparator = "\n";
+
+    // A write is running, and whether another save was asked for meanwhile
+    private boolean saving;
+    private boolean saveRequested;
+
+    /**
+     * Starts tracking changes to a document
+     * @param text Supplies the text to save
+     * @param changes Fires on every change to the text
+     * @param journal Where changes are kept until they are saved
+     * @param status The status bar to report progress on
+     */
+    SaveService(Supplier<String> text, EventStream<List<PlainTextChange>> changes, EditJournal journal, EZStatusBar status) {
+        this.text = text;
+        this.journal = journal;
+        this.status = status;
+        this.changes = changes.subscribe(list -> {
+            // The first change since the text was saved starts the journal off the file as
+            // it is on disk; a document that never was saved has to start off its text
+            if(!journal.isStarted()) {
+                if(target != null && savedVersion == version)
+                    journal.startFromFile(target, savedLength);
+                else
+                    journal.startFromText(textBefore(list), target, charset, bom, lineSeparator);
+            }
+            journal.append(list);
+            version++;
+            dirty.set(true);
+        });
+    }
+
+    /**
+     * Records that the document now holds exactly what is on disk in a file, and that
+     * saves should go back to that file with the same encoding and line endings
+     * @param target The file that was opened
+     * @param file How the file was encoded
+     */
+    void opened(Path target, LoadedFile file) {
+        this.target = target;
+        this.charset = file.getCharset();
+        this.bom = file.hasBom();
+        this.lineSeparator = file.getLineSeparator();
+        markSaved(version, file.getText().length());
+    }
+
+    /**
+     * Takes over a document recovered from the journal of an earlier run. Its changes are
+     * unsaved, and the journal keeps them until they are saved.
+     * @param recovered The replayed journal
+     */
+    void recovered(EditJournal.Recovered recovered) {
+        if(recovered.file != null)
+            opened(recovered.file, recovered.text);
+        version++;
+        dirty.set(true);
+        journal.adopt(recovered);
+    }
+
+    /**
+     * Saves the document to a file. Does nothing if the file is already up to date, and
+     * only queues a single follow-up write if a write is already running.
+     * @param destination The file to save to
+     */
+    void save(Path destination) {
+        if(!destination.equals(target)) {
+            target = destination;
+            savedVersion = -1;
+        }
+        if(saving) {
+            saveRequested = true;
+            return;
+        }
+        if(savedVersion == version) {
+            status.showMessage("Saved " + target.getFileName());
+            return;
+        }
+
+        saving = true;
+        long started = Metrics.start();
+        Path path = target;
+        String snapshot = text.get();
+        long snapshotVersion = version;
+        Charset snapshotCharset = charset;
+        boolean snapshotBom = bom;
+        String snapshotSeparator = lineSeparator;
+        status.showMessage("Saving " + path.getFileName() + "...");
+
+        WRITER.execute(() -> {
+            Exception error = null;
+            try {
+                FileSaver.save(path, snapshot, snapshotCharset, snapshotBom, snapshotSeparator);
+                Metrics.record(Metrics.Probe.FILE_SAVE, started, snapshot.length());
+            } catch(Exception e) {
+                error = e;
+            }
+            Exception failure = error;
+            Platform.runLater(() -> finished(path, snapshotVersion, snapshot.length(), failure));
+        });
+    }
+
+    /**
+     * Called on the FX thread once a write completes
+     */
+    private void finished(Path path, long snapshotVersion, int snapshotLength, Exception failure) {
+        saving = false;
+        if(failure != null) {
+            saveRequested = false;
+            status.showMessage("Saving " + path.getFileName() + " failed: " + failure.getMessage());
+            return;
+        }
+        if(path.equals(target))
+            markSaved(snapshotVersion, snapshotLength);
+        status.showMessage("Saved " + path.getFileName());
+        onSaved.accept(path);
+        if(saveRequested) {
+            saveRequested = false;
+            save(target);
+        }
+    }
+
+    private void markSaved(long savedVersion, int savedLength) {
+        this.savedVersion = savedVersion;
+        this.savedLength = savedLength;
+        dirty.set(savedVersion != version);
+        if(!journal.isStarted())
+            return;
+        // Changes made while the file was written are kept against the text, as the file
+        // the journal may have started from is gone
+        if(dirty.get())
+            journal.startFromText(text.get(), target, charset, bom, lineSeparator);
+        else
+            journal.discard();
+    }
+
+    /**
+     * The text as it was before a list of changes, which already are in the text
+     */
+    private String textBefore(List<PlainTextChange> list) {
+        StringBuilder before = new StringBuilder(text.get());
+        for(int i = list.size() - 1; i >= 0; i--) {
+            PlainTextChange change = list.get(i);
+            before.replace(change.getPosition(), change.getInsertionEnd(), change.getRemoved());
+        }
+        return before.toString();
+    }
+
+    /**
+     * Sets what happens after every successful write
+     * @param onSaved Called on the FX thread with the file that was written
+     */
+    void setOnSaved(Consumer<Path> onSaved) {
+        this.onSaved = onSaved;
+    }
+
+    /**
+     * Whether the document has changes that are not saved yet
+     * @return dirty property
+     */
+    ReadOnlyBooleanProperty dirtyProperty() {
+        return dirty.getReadOnlyProperty();
+    }
+
+    /**
+     * Whether a write is running or queued
+     * @return true until the last requested write finished
+     */
+    boolean isSaving() {
+        return saving;
+    }
+
+    /**
+     * Stops tracking changes and deletes the journal, once the document is closed
+     */
+    void close() {
+        changes.unsubscribe();
+        journal.discard();
+    }
+
+    /**
+     * Stops tracking changes once the editor exits. The journal of unsaved changes is
+     * kept, for the next start to open them again, and deleted otherwise.
+     */
+    void exit() {
+        changes.unsubscribe();
+        if(dirty.get())
+            journal.keep();
+        else
+            journal.discard();
+    }
+}
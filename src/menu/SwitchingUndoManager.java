@@ -0,0 +1,118 @@
+package menu;
+
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ObservableBooleanValue;
+import org.fxmisc.undo.UndoManager;
+import org.reactfx.value.Val;
+
+/**
+ * The undo manager of the shared edit area, passing everything on to the undo manager of
+ * whichever document is showing. The edit area closes the undo manager it is given when
+ * it gets another one, so switching documents switches the target here instead.
+ */
+class SwitchingUndoManager implements UndoManager<Object> {
+
+    // The showing document's undo manager
+    private final ObjectProperty<UndoManager<?>> current;
+
+    /**
+     * @param initial The undo manager to pass on to until another is chosen
+     */
+    SwitchingUndoManager(UndoManager<?> initial) {
+        current = new SimpleObjectProperty<>(initial);
+    }
+
+    /**
+     * Passes everything on to another undo manager from now on
+     * @param target The showing document's undo manager
+     */
+    void switchTo(UndoManager<?> target) {
+        current.set(target);
+    }
+
+    @Override
+    public boolean undo() {
+        return current.get().undo();
+    }
+
+    @Override
+    public boolean redo() {
+        return current.get().redo();
+    }
+
+    @Override
+    public Val<Boolean> undoAvailableProperty() {
+        return Val.flatMap(current, UndoManager::undoAvailableProperty);
+    }
+
+    @Override
+    public boolean isUndoAvailable() {
+        return current.get().isUndoAvailable();
+    }
+
+    @Override
+    public Val<Object> nextUndoProperty() {
+        return Val.flatMap(current, target -> target.nextUndoProperty().map(change -> (Object) change));
+    }
+
+    @Override
+    public Val<Object> nextRedoProperty() {
+        return Val.flatMap(current, target -> target.nextRedoProperty().map(change -> (Object) change));
+    }
+
+    @Override
+    public Val<Boolean> redoAvailableProperty() {
+        return Val.flatMap(current, UndoManager::redoAvailableProperty);
+    }
+
+    @Override
+    public boolean isRedoAvailable() {
+        return current.get().isRedoAvailable();
+    }
+
+    @Override
+    public ObservableBooleanValue performingActionProperty() {
+        Val<Boolean> performing = Val.flatMap(current, UndoManager::performingActionProperty);
+        return Bindings.createBooleanBinding(() -> Boolean.TRUE.equals(performing.getValue()), performing);
+    }
+
+    @Override
+    public boolean isPerformingAction() {
+        return current.get().isPerformingAction();
+    }
+
+    @Override
+    public void preventMerge() {
+        current.get().preventMerge();
+    }
+
+    @Override
+    public void forgetHistory() {
+        current.get().forgetHistory();
+    }
+
+    @Override
+    public UndoPosition getCurrentPosition() {
+        return current.get().getCurrentPosition();
+    }
+
+    @Override
+    public ObservableBooleanValue atMarkedPositionProperty() {
+        Val<Boolean> marked = Val.flatMap(current, UndoManager::atMarkedPositionProperty);
+        return Bindings.createBooleanBinding(() -> Boolean.TRUE.equals(marked.getValue()), marked);
+    }
+
+    @Override
+    public boolean isAtMarkedPosition() {
+        return current.get().isAtMarkedPosition();
+    }
+
+    /**
+     * Does nothing, each document closes its own undo manager when it is closed
+     */
+    @Override
+    public void close() {
+    }
+}
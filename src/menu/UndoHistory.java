@@ -0,0 +1,334 @@
+package menu;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.fxmisc.richtext.model.PlainTextChange;
+import org.fxmisc.undo.impl.ChangeQueue;
+
+/**
+ * The undo history of one document, kept under a byte budget set in megabytes with the
+ * lc3ezedit.undoMB system property. Past the budget the oldest steps are forgotten, but
+ * the newest always stays. Every step only keeps the part of the text its changes really
+ * replaced, and large steps are kept deflated, then inflated again when they are undone
+ * or redone. Typing merges into one step per word or line, @see #mergeRun.
+ * @param <C> A step, the List of PlainTextChanges made at once. Undo managers push steps
+ * as Object arrays, so the type cannot be bound here.
+ */
+class UndoHistory<C> implements ChangeQueue<C> {
+
+    // Bytes the history of a document may hold
+    private static final long BUDGET = Long.getLong("lc3ezedit.undoMB", 16) * 1024 * 1024;
+    // Steps with more characters than this are kept deflated
+    private static final int PACK_CHARS = 64 * 1024;
+    // Changes with more characters than this never merge with typing
+    private static final int RUN_CHARS = 1024;
+    // Rough bytes a step and a change cost besides their text
+    private static final int STEP_BYTES = 64;
+    private static final int CHANGE_BYTES = 48;
+
+    // Steps, the undone ones after the current position; steps before first are forgotten
+    private final List<Step> steps = new ArrayList<>();
+    private int first;
+    private int current;
+
+    // Bytes the steps hold
+    private long bytes;
+    // Incremented for every step pushed, and the revision before the oldest step
+    private long revision;
+    private long firstRevision;
+    // Steps forgotten since the history started
+    private long forgotten;
+
+    // The packed step inflated last, as undo looks at the same step more than once
+    private Step inflated;
+    private C inflatedChanges;
+
+    /**
+     * Merges typing into runs: a change merges with the one before it while together
+     * they touch at most one word, and a line break only at one end
+     * @param previous The change before
+     * @param next The change after it
+     * @return The merged change, or empty to start a new step
+     */
+    static Optional<PlainTextChange> mergeRun(PlainTextChange previous, PlainTextChange next) {
+        if(length(previous) > RUN_CHARS || length(next) > RUN_CHARS)
+            return Optional.empty();
+        return previous.mergeWith(next).filter(merged -> {
+            // Typing ends a line with its break, deleting may take the break on either end
+            boolean typed = !merged.getInserted().isEmpty();
+            String text = typed ? merged.getInserted() : merged.getRemoved();
+            int breaks = 0;
+            int words = 0;
+            for(int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if(c == '\n' && (++breaks > 1 || i < text.length() - 1 && (typed || i > 0)))
+                    return false;
+                if(isWord(c) && (i == 0 || !isWord(text.charAt(i - 1))) && ++words > 1)
+                    return false;
+            }
+            return true;
+        });
+    }
+
+    /**
+     * @return Bytes the history holds, roughly
+     */
+    long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return current < steps.size();
+    }
+
+    @Override
+    public boolean hasPrev() {
+        return current > first;
+    }
+
+    @Override
+    public C peekNext() {
+        return changes(steps.get(current));
+    }
+
+    @Override
+    public C peekPrev() {
+        return changes(steps.get(current - 1));
+    }
+
+    @Override
+    public C next() {
+        return changes(steps.get(current++));
+    }
+
+    @Override
+    public C prev() {
+        return changes(steps.get(--current));
+    }
+
+    @Override
+    @SafeVarargs
+    public final void push(C... pushed) {
+        // Pushing drops whatever was undone
+        while(steps.size() > current) {
+            Step dropped = steps.remove(steps.size() - 1);
+            bytes -= dropped.bytes;
+            if(dropped == inflated)
+                inflated = null;
+        }
+        for(C changes : pushed) {
+            @SuppressWarnings("unchecked")
+            Step step = pack((List<PlainTextChange>) changes, ++revision);
+            steps.add(step);
+            bytes += step.bytes;
+            current++;
+        }
+        while(bytes > BUDGET && current - first > 1)
+            forget(first + 1);
+    }
+
+    @Override
+    public QueuePosition getCurrentPosition() {
+        return new Position(forgotten + current - first, revisionAt(current));
+    }
+
+    @Override
+    public void forgetHistory() {
+        forget(current);
+    }
+
+    /**
+     * Forgets the steps before an index, the oldest first
+     */
+    private void forget(int end) {
+        if(end <= first)
+            return;
+        firstRevision = steps.get(end - 1).revision;
+        forgotten += end - first;
+        for(int i = first; i < end; i++) {
+            bytes -= steps.get(i).bytes;
+            steps.set(i, null);
+        }
+        first = end;
+        // Shift the steps down now and then, not on every step forgotten
+        if(first > 1024 && first > steps.size() / 2) {
+            steps.subList(0, first).clear();
+            current -= first;
+            first = 0;
+        }
+        if(inflated != null && inflated.revision <= firstRevision)
+            inflated = null;
+    }
+
+    private long revisionAt(int index) {
+        return index == first ? firstRevision : steps.get(index - 1).revision;
+    }
+
+    @SuppressWarnings("unchecked")
+    private C changes(Step step) {
+        if(step.changes != null)
+            return (C) step.changes;
+        if(inflated != step) {
+            inflatedChanges = (C) unpack(step.packed);
+            inflated = step;
+        }
+        return inflatedChanges;
+    }
+
+    /**
+     * Keeps only what the changes really replaced, deflated if that is a lot of text
+     */
+    private static Step pack(List<PlainTextChange> changes, long revision) {
+        List<PlainTextChange> trimmed = new ArrayList<>(changes.size());
+        long chars = 0;
+        for(PlainTextChange change : changes) {
+            PlainTextChange diff = trim(change);
+            trimmed.add(diff);
+            chars += length(diff);
+        }
+        long overhead = STEP_BYTES + (long) CHANGE_BYTES * trimmed.size();
+        if(chars <= PACK_CHARS)
+            return new Step(revision, Collections.unmodifiableList(trimmed), null, overhead + 2 * chars);
+        byte[] packed = deflate(trimmed);
+        return new Step(revision, null, packed, STEP_BYTES + packed.length);
+    }
+
+    /**
+     * Drops the text a change removes and inserts again unchanged at either end, e.g.
+     * when a replace rewrites a whole block to change a few words in it
+     */
+    private static PlainTextChange trim(PlainTextChange change) {
+        String removed = change.getRemoved();
+        String inserted = change.getInserted();
+        int shorter = Math.min(removed.length(), inserted.length());
+        int prefix = 0;
+        while(prefix < shorter && removed.charAt(prefix) == inserted.charAt(prefix))
+            prefix++;
+        int suffix = 0;
+        while(suffix < shorter - prefix
+                        && removed.charAt(removed.length() - 1 - suffix) == inserted.charAt(inserted.length() - 1 - suffix))
+            suffix++;
+        if(prefix == 0 && suffix == 0)
+            return change;
+        return new PlainTextChange(change.getPosition() + prefix, removed.substring(prefix, removed.length() - suffix),
+                        inserted.substring(prefix, inserted.length() - suffix));
+    }
+
+    private static byte[] deflate(List<PlainTextChange> changes) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try(DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            out.writeInt(changes.size());
+            for(PlainTextChange change : changes) {
+                out.writeInt(change.getPosition());
+                writeText(out, change.getRemoved());
+                writeText(out, change.getInserted());
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<PlainTextChange> unpack(byte[] packed) {
+        try(DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(packed)))) {
+            int count = in.readInt();
+            List<PlainTextChange> changes = new ArrayList<>(count);
+            for(int i = 0; i < count; i++)
+                changes.add(new PlainTextChange(in.readInt(), readText(in), readText(in)));
+            return Collections.unmodifiableList(changes);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeText(DataOutputStream out, String text) throws IOException {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        byte[] utf8 = new byte[in.readInt()];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static int length(PlainTextChange change) {
+        return change.getRemoved().length() + change.getInserted().length();
+    }
+
+    private static boolean isWord(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.';
+    }
+
+    /**
+     * One undo step, its changes kept as they are or deflated
+     */
+    private static final class Step {
+        final long revision;
+        final List<PlainTextChange> changes;
+        final byte[] packed;
+        final long bytes;
+
+        Step(long revision, List<PlainTextChange> changes, byte[] packed, long bytes) {
+            this.revision = revision;
+            this.changes = changes;
+            this.packed = packed;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * A position in the history, which stays valid until the steps before it change
+     */
+    private final class Position implements QueuePosition {
+        // Steps before the position, counting forgotten ones
+        private final long index;
+        // The revision of the step just before the position
+        private final long revision;
+
+        Position(long index, long revision) {
+            this.index = index;
+            this.revision = revision;
+        }
+
+        @Override
+        public boolean isValid() {
+            long at = index - forgotten;
+            return at >= 0 && at <= steps.size() - first && revision == revisionAt(first + (int) at);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if(!(other instanceof UndoHistory.Position))
+                return false;
+            UndoHistory<?>.Position position = (UndoHistory<?>.Position) other;
+            return position.owner() == owner() && position.revision == revision;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(revision);
+        }
+
+        private UndoHistory<C> owner() {
+            return UndoHistory.this;
+        }
+    }
+}
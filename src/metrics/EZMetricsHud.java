@@ -0,0 +1,116 @@
+package metrics;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.geometry.HPos;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.StackPane;
+import javafx.util.Duration;
+import javafx.animation.Timeline;
+
+/**
+ * Creates and styles the overlay showing the p50 and p99 latency of every probe in
+ * @see Metrics. It sits over the content it wraps without taking mouse events, and
+ * only refreshes while it is visible.
+ */
+public class EZMetricsHud {
+
+    // The wrapped content with the overlay on top
+    private StackPane pane;
+    // The overlay itself
+    private GridPane table;
+    // Count, p50, p99 and max cells, one row per probe
+    private Label[][] cells;
+    // Refreshes the cells while the overlay is visible
+    private Timeline refresh;
+
+    /**
+     * Sets up the overlay, hidden
+     * @param parentScene The scene that the overlay will be applied to
+     * @param content What the overlay is drawn over
+     */
+    public EZMetricsHud(Scene parentScene, Node content) {
+        table = new GridPane();
+        table.setId("metricsHud");
+        table.setMouseTransparent(true);
+        table.setMaxSize(GridPane.USE_PREF_SIZE, GridPane.USE_PREF_SIZE);
+        table.setVisible(false);
+
+        String[] headings = {"", "count", "p50", "p99", "max"};
+        for(int column = 0; column < headings.length; column++)
+            table.add(heading(headings[column]), column, 0);
+        Metrics.Probe[] probes = Metrics.Probe.values();
+        cells = new Label[probes.length][4];
+        for(int row = 0; row < probes.length; row++) {
+            table.add(new Label(probes[row].getLabel()), 0, row + 1);
+            for(int column = 0; column < 4; column++) {
+                cells[row][column] = new Label();
+                GridPane.setHalignment(cells[row][column], HPos.RIGHT);
+                table.add(cells[row][column], column + 1, row + 1);
+            }
+        }
+
+        pane = new StackPane(content, table);
+        StackPane.setAlignment(table, Pos.TOP_RIGHT);
+
+        refresh = new Timeline(new KeyFrame(Duration.millis(500), e -> update()));
+        refresh.setCycleCount(Animation.INDEFINITE);
+
+        parentScene.getStylesheets().add(getClass().getResource("hud.css").toExternalForm());
+    }
+
+    /**
+     * Getter for the wrapped content with the overlay on top
+     * @return pane
+     */
+    public StackPane getPane() {
+        return this.pane;
+    }
+
+    /**
+     * Shows or hides the overlay
+     * @param visible true to show it
+     */
+    public void setVisible(boolean visible) {
+        table.setVisible(visible);
+        if(visible) {
+            update();
+            refresh.play();
+        } else {
+            refresh.stop();
+        }
+    }
+
+    private void update() {
+        Metrics.Probe[] probes = Metrics.Probe.values();
+        for(int row = 0; row < probes.length; row++) {
+            cells[row][0].setText(Long.toString(Metrics.count(probes[row])));
+            cells[row][1].setText(format(Metrics.percentile(probes[row], 0.5)));
+            cells[row][2].setText(format(Metrics.percentile(probes[row], 0.99)));
+            cells[row][3].setText(format(Metrics.max(probes[row])));
+        }
+    }
+
+    private static Label heading(String text) {
+        Label label = new Label(text);
+        label.getStyleClass().add("heading");
+        return label;
+    }
+
+    /**
+     * @param micros A duration in microseconds
+     * @return The duration in the unit that keeps it short
+     */
+    private static String format(long micros) {
+        if(micros < 1000)
+            return micros + " us";
+        if(micros < 10_000)
+            return String.format("%.1f ms", micros / 1000.0);
+        return (micros / 1000) + " ms";
+    }
+}
@@ -0,0 +1,106 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size histogram of durations that any thread may record into without locking.
+ * Buckets are log-linear in microseconds: exact below 16 us, then 16 buckets per power
+ * of two, so any percentile is off by at most 1/16 of its value.
+ */
+class Histogram {
+
+    // Buckets per power of two, as a power of two itself
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Enough powers of two for anything up to a day
+    private static final int BUCKETS = SUB_BUCKETS * 34;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    // Sum of the amounts recorded alongside the durations, e.g. spans restyled
+    private final AtomicLong amount = new AtomicLong();
+
+    /**
+     * Records one duration
+     * @param nanos The duration in nanoseconds
+     * @param amount How much work it covered, 0 if that does not apply
+     */
+    void record(long nanos, long amount) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucket(micros));
+        count.incrementAndGet();
+        this.amount.addAndGet(amount);
+        max.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * @param fraction Between 0 and 1, e.g. 0.99
+     * @return The duration that fraction of the recordings did not exceed, in microseconds
+     */
+    long percentile(double fraction) {
+        long total = count.get();
+        if(total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if(seen >= rank)
+                return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Getter for the number of durations recorded
+     * @return count
+     */
+    long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Getter for the longest duration recorded
+     * @return microseconds
+     */
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Getter for the sum of the amounts recorded
+     * @return amount
+     */
+    long getAmount() {
+        return amount.get();
+    }
+
+    /**
+     * Forgets everything recorded so far
+     */
+    void reset() {
+        for(int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+        count.set(0);
+        max.set(0);
+        amount.set(0);
+    }
+
+    static int bucket(long micros) {
+        if(micros < SUB_BUCKETS)
+            return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return Math.min(BUCKETS - 1, (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub);
+    }
+
+    static long upperBound(int bucket) {
+        if(bucket < SUB_BUCKETS)
+            return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+}
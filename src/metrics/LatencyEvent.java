@@ -0,0 +1,32 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one measurement of one of the editor's hot paths. Only
+ * written while a recording is running, e.g. with -XX:StartFlightRecording.
+ */
+@Name("lc3ezedit.Latency")
+@Label("Editor Latency")
+@Category("LC3 EZ Edit")
+@Description("Time spent in one of the editor's hot paths")
+@StackTrace(false)
+class LatencyEvent extends jdk.jfr.Event {
+
+    @Label("Probe")
+    @Description("Which hot path was measured")
+    String probe;
+
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+
+    @Label("Amount")
+    @Description("Work covered: spans, paragraphs or characters, depending on the probe")
+    long amount;
+}
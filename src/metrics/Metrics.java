@@ -0,0 +1,192 @@
+package metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import javafx.scene.Scene;
+import javafx.scene.input.KeyEvent;
+
+/**
+ * Latency counters for the editor's hot paths. Recording is a few atomic increments, so
+ * the probes stay in place in normal use; each measurement also becomes a Flight
+ * Recorder event while a recording is running. The numbers can be watched live in
+ * @see EZMetricsHud or written out as JSON, e.g. at exit with --metrics-out.
+ */
+public final class Metrics {
+
+    /**
+     * The hot paths that are measured
+     */
+    public enum Probe {
+        KEY_HANDLER("Key handler"),
+        KEY_TO_FRAME("Key to frame"),
+        HIGHLIGHT("Highlight"),
+        APPLY_STYLES("Apply styles"),
+        FILE_OPEN("File open"),
+        FILE_SAVE("File save"),
+        PULSE("Frame pulse");
+
+        private final String label;
+
+        Probe(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Getter for the name shown to the user
+         * @return label
+         */
+        public String getLabel() {
+            return this.label;
+        }
+    }
+
+    private static final Probe[] PROBES = Probe.values();
+    private static final Histogram[] HISTOGRAMS = new Histogram[PROBES.length];
+    static {
+        for(int i = 0; i < HISTOGRAMS.length; i++)
+            HISTOGRAMS[i] = new Histogram();
+    }
+
+    // When the oldest key press not yet on screen happened, 0 if there is none
+    private static long pendingKey;
+    // When the current pulse started laying out
+    private static long pulseStart;
+
+    private Metrics() {
+    }
+
+    /**
+     * Measures the scene's pulses, and how long each key press takes to reach a laid
+     * out frame. Call on the FX thread.
+     * @param scene The scene to measure
+     */
+    public static void watch(Scene scene) {
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, e -> {
+            if(pendingKey == 0)
+                pendingKey = start();
+        });
+        scene.addPreLayoutPulseListener(() -> pulseStart = start());
+        scene.addPostLayoutPulseListener(() -> {
+            record(Probe.PULSE, pulseStart);
+            if(pendingKey != 0) {
+                record(Probe.KEY_TO_FRAME, pendingKey);
+                pendingKey = 0;
+            }
+        });
+    }
+
+    /**
+     * Starts a measurement
+     * @return The value to pass to @see record
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Ends a measurement
+     * @param probe What was measured
+     * @param start The value @see start returned
+     */
+    public static void record(Probe probe, long start) {
+        record(probe, start, 0);
+    }
+
+    /**
+     * Ends a measurement
+     * @param probe What was measured
+     * @param start The value @see start returned
+     * @param amount How much work was done, e.g. spans computed
+     */
+    public static void record(Probe probe, long start, long amount) {
+        long duration = System.nanoTime() - start;
+        HISTOGRAMS[probe.ordinal()].record(duration, amount);
+        LatencyEvent event = new LatencyEvent();
+        if(event.isEnabled()) {
+            event.probe = probe.name();
+            event.latency = duration;
+            event.amount = amount;
+            event.commit();
+        }
+    }
+
+    /**
+     * @param probe The probe to ask about
+     * @return How many measurements it has taken
+     */
+    public static long count(Probe probe) {
+        return HISTOGRAMS[probe.ordinal()].getCount();
+    }
+
+    /**
+     * @param probe The probe to ask about
+     * @param fraction Between 0 and 1, e.g. 0.99 for p99
+     * @return The duration that fraction of its measurements did not exceed, in microseconds
+     */
+    public static long percentile(Probe probe, double fraction) {
+        return HISTOGRAMS[probe.ordinal()].percentile(fraction);
+    }
+
+    /**
+     * @param probe The probe to ask about
+     * @return Its longest measurement, in microseconds
+     */
+    public static long max(Probe probe) {
+        return HISTOGRAMS[probe.ordinal()].getMax();
+    }
+
+    /**
+     * Forgets every measurement taken so far
+     */
+    public static void reset() {
+        for(Histogram histogram : HISTOGRAMS)
+            histogram.reset();
+    }
+
+    /**
+     * Writes every probe's latencies as JSON, durations in microseconds
+     * @param file Where to write them
+     * @throws IOException If the file cannot be written
+     */
+    public static void writeJson(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if(parent != null)
+            Files.createDirectories(parent);
+        try(Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("{\n");
+            out.write("  \"java\": \"" + System.getProperty("java.version") + "\",\n");
+            out.write("  \"os\": \"" + System.getProperty("os.name") + " " + System.getProperty("os.arch") + "\",\n");
+            out.write("  \"unit\": \"us\",\n");
+            out.write("  \"probes\": {\n");
+            for(int i = 0; i < PROBES.length; i++) {
+                Histogram histogram = HISTOGRAMS[i];
+                out.write(String.format(Locale.ROOT,
+                        "    \"%s\": {\"count\": %d, \"p50\": %d, \"p90\": %d, \"p99\": %d, \"max\": %d, \"amount\": %d}%s%n",
+                        PROBES[i].name(), histogram.getCount(), histogram.percentile(0.5), histogram.percentile(0.9),
+                        histogram.percentile(0.99), histogram.getMax(), histogram.getAmount(),
+                        i + 1 < PROBES.length ? "," : ""));
+            }
+            out.write("  }\n");
+            out.write("}\n");
+        }
+    }
+
+    /**
+     * Writes the latencies to a file when the application exits
+     * @param file Where to write them
+     */
+    public static void dumpOnExit(Path file) {
+        Thread hook = new Thread(() -> {
+            try {
+                writeJson(file);
+            } catch(IOException e) {
+                System.err.println("Could not write metrics to " + file + ": " + e.getMessage());
+            }
+        }, "metrics-dump");
+        Runtime.getRuntime().addShutdownHook(hook);
+    }
+}
@@ -0,0 +1,129 @@
+package metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+
+/**
+ * Milestones of starting the editor, in milliseconds since the JVM was launched, such as
+ * the first frame and the first keystroke that reached the screen. Written as JSON by
+ * --startup-report so startup can be compared across machines and releases.
+ */
+public final class Startup {
+
+    // When the process was launched, or failing that when this class was loaded
+    private static final long LAUNCHED = ProcessHandle.current().info().startInstant()
+                    .map(Instant::toEpochMilli).orElse(System.currentTimeMillis());
+
+    // Milliseconds since launch of each milestone, in the order they were reached
+    private static final Map<String, Long> MILESTONES = new LinkedHashMap<>();
+    // Set when the startup report could not be written
+    private static volatile boolean failed;
+
+    private Startup() {
+    }
+
+    /**
+     * Records that a milestone was reached, unless it was reached before
+     * @param milestone The milestone's name
+     */
+    public static synchronized void reached(String milestone) {
+        MILESTONES.putIfAbsent(milestone, System.currentTimeMillis() - LAUNCHED);
+    }
+
+    /**
+     * @param milestone The milestone's name
+     * @return Milliseconds from launch until it was reached, or -1 if it was not
+     */
+    public static synchronized long get(String milestone) {
+        return MILESTONES.getOrDefault(milestone, -1L);
+    }
+
+    /**
+     * Runs something on the FX thread once the scene's next frame has been laid out and
+     * painted
+     * @param scene The scene to wait for
+     * @param action What to run after the frame
+     */
+    public static void afterNextFrame(Scene scene, Runnable action) {
+        boolean[] done = new boolean[1];
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            if(done[0])
+                return;
+            done[0] = true;
+            // Listeners may not be removed while the scene runs them
+            Platform.runLater(() -> {
+                scene.removePostLayoutPulseListener(listener[0]);
+                action.run();
+            });
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+        Platform.requestNextPulse();
+    }
+
+    /**
+     * Types a key into a node, records the frame showing it as the firstKeystroke
+     * milestone, writes the milestones and exits; @see #exitStatus tells whether that failed
+     * @param scene The scene the node is in
+     * @param target The node to type into, e.g. the edit area
+     * @param report Where to write the milestones
+     */
+    public static void typeAndReport(Scene scene, Node target, Path report) {
+        target.requestFocus();
+        target.fireEvent(new KeyEvent(KeyEvent.KEY_PRESSED, "", "", KeyCode.A, false, false, false, false));
+        target.fireEvent(new KeyEvent(KeyEvent.KEY_TYPED, "a", "", KeyCode.UNDEFINED, false, false, false, false));
+        target.fireEvent(new KeyEvent(KeyEvent.KEY_RELEASED, "", "", KeyCode.A, false, false, false, false));
+        afterNextFrame(scene, () -> {
+            reached("firstKeystroke");
+            try {
+                writeJson(report);
+            } catch(IOException e) {
+                System.err.println("Could not write startup report to " + report + ": " + e.getMessage());
+                failed = true;
+            }
+            Platform.exit();
+        });
+    }
+
+    /**
+     * @return The status the process should exit with once the editor closed: 1 if the
+     * startup report could not be written, so scripts measuring startup notice, else 0
+     */
+    public static int exitStatus() {
+        return failed ? 1 : 0;
+    }
+
+    /**
+     * Writes every milestone reached so far as JSON
+     * @param file Where to write them
+     * @throws IOException If the file cannot be written
+     */
+    public static synchronized void writeJson(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if(parent != null)
+            Files.createDirectories(parent);
+        try(Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("{\n");
+            out.write("  \"java\": \"" + System.getProperty("java.version") + "\",\n");
+            out.write("  \"unit\": \"ms\",\n");
+            out.write("  \"milestones\": {\n");
+            int i = 0;
+            for(Map.Entry<String, Long> milestone : MILESTONES.entrySet()) {
+                out.write("    \"" + milestone.getKey() + "\": " + milestone.getValue() + (++i < MILESTONES.size() ? ",\n" : "\n"));
+            }
+            out.write("  }\n");
+            out.write("}\n");
+        }
+    }
+}
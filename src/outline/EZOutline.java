@@ -0,0 +1,106 @@
+package outline;
+
+import java.util.List;
+import java.util.function.Consumer;
+import assembler.OutlineEntry;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.BorderPane;
+
+/**
+ * Creates and styles the side panel listing the .ORIG sections, subroutines, blocks of
+ * data and labels of the program being edited. Clicking an entry, or pressing Enter on
+ * it, jumps to it.
+ */
+public class EZOutline {
+
+    // Style classes of the entries, by kind
+    private static final String[] STYLES = {"outline-section", "outline-subroutine", "outline-data", "outline-label"};
+
+    // The panel itself
+    private BorderPane panel;
+    // One entry per section, subroutine, block of data or label
+    private ListView<OutlineEntry> list;
+    // Called with the entry to jump to
+    private Consumer<OutlineEntry> onOpen = entry -> {};
+
+    /**
+     * Sets up the outline panel
+     * @param parentScene The scene that the panel will be applied to
+     */
+    public EZOutline(Scene parentScene) {
+        Label title = new Label("Outline");
+        title.setId("outlineTitle");
+        list = new ListView<>();
+        list.setId("outline");
+        list.setCellFactory(view -> new ListCell<OutlineEntry>() {
+            @Override
+            protected void updateItem(OutlineEntry entry, boolean empty) {
+                super.updateItem(entry, empty);
+                getStyleClass().removeAll(STYLES);
+                if(empty || entry == null) {
+                    setText(null);
+                    return;
+                }
+                setText("  ".repeat(entry.getDepth()) + entry.getName());
+                getStyleClass().add(STYLES[entry.getKind().ordinal()]);
+            }
+        });
+        list.setOnMouseClicked(e -> {
+            if(e.getButton() == MouseButton.PRIMARY)
+                openSelected();
+        });
+        list.setOnKeyPressed(e -> {
+            if(e.getCode() == KeyCode.ENTER)
+                openSelected();
+        });
+
+        panel = new BorderPane(list);
+        panel.setTop(title);
+
+        parentScene.getStylesheets().add(getClass().getResource("outline.css").toExternalForm());
+    }
+
+    /**
+     * Replaces the listed entries, keeping the one selected if it is still there
+     * @param entries The outline, in line order
+     */
+    public void show(List<OutlineEntry> entries) {
+        OutlineEntry selected = list.getSelectionModel().getSelectedItem();
+        list.getItems().setAll(entries);
+        if(selected != null) {
+            for(OutlineEntry entry : entries) {
+                if(entry.getKind() == selected.getKind() && entry.getName().equals(selected.getName())) {
+                    list.getSelectionModel().select(entry);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets what happens when an entry is opened
+     * @param onOpen Called with the entry to jump to
+     */
+    public void setOnOpen(Consumer<OutlineEntry> onOpen) {
+        this.onOpen = onOpen;
+    }
+
+    /**
+     * Getter for the panel node
+     * @return panel
+     */
+    public BorderPane getPanel() {
+        return this.panel;
+    }
+
+    private void openSelected() {
+        OutlineEntry entry = list.getSelectionModel().getSelectedItem();
+        if(entry != null)
+            onOpen.accept(entry);
+    }
+}
@@ -0,0 +1,232 @@
+package search;
+
+import java.util.List;
+import java.util.function.Consumer;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+
+/**
+ * Creates and styles the find and replace panel: what to find and replace it with on
+ * top, and the matches underneath, listed as they stream in. Double clicking a match, or
+ * pressing Enter on it, opens it.
+ */
+public class EZSearch {
+
+    // The panel itself
+    private BorderPane panel;
+    // What to find and what to replace it with
+    private TextField query;
+    private TextField replacement;
+    private CheckBox regex;
+    private CheckBox matchCase;
+    // What the list shows the matches of
+    private Label title;
+    private String heading = "";
+    // One entry per match
+    private ListView<SearchMatch> list;
+    // Called when a search or replace is asked for
+    private Runnable onFind = () -> {};
+    private Runnable onFindInFolder = () -> {};
+    private Runnable onReplaceAll = () -> {};
+    // Called with the match to open
+    private Consumer<SearchMatch> onOpen = match -> {};
+    // Called whenever the panel should come forward
+    private Runnable onShow = () -> {};
+
+    /**
+     * Sets up the search panel
+     * @param parentScene The scene that the panel will be applied to
+     */
+    public EZSearch(Scene parentScene) {
+        query = new TextField();
+        query.setId("searchQuery");
+        query.setPromptText("Find");
+        query.setOnAction(e -> onFind.run());
+        replacement = new TextField();
+        replacement.setId("searchReplacement");
+        replacement.setPromptText("Replace with");
+        replacement.setOnAction(e -> onReplaceAll.run());
+        regex = new CheckBox("Regex");
+        matchCase = new CheckBox("Match Case");
+        Button find = new Button("Find");
+        find.setOnAction(e -> onFind.run());
+        Button findInFolder = new Button("Find in Folder...");
+        findInFolder.setOnAction(e -> onFindInFolder.run());
+        Button replaceAll = new Button("Replace All");
+        replaceAll.setOnAction(e -> onReplaceAll.run());
+        HBox bar = new HBox(query, find, findInFolder, replacement, replaceAll, regex, matchCase);
+        bar.setId("searchBar");
+
+        title = new Label("Find (Ctrl + F) searches the open file, Find in Folder (Ctrl + Shift + F) every .asm file in a folder");
+        title.setId("searchTitle");
+        list = new ListView<>();
+        list.setId("searchResults");
+        list.setCellFactory(view -> new ListCell<SearchMatch>() {
+            @Override
+            protected void updateItem(SearchMatch match, boolean empty) {
+                super.updateItem(match, empty);
+                setText(empty || match == null ? null : describe(match));
+            }
+        });
+        list.setOnMouseClicked(e -> {
+            if(e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2)
+                openSelected();
+        });
+        list.setOnKeyPressed(e -> {
+            if(e.getCode() == KeyCode.ENTER)
+                openSelected();
+        });
+
+        panel = new BorderPane(list);
+        panel.setTop(new VBox(bar, title));
+
+        parentScene.getStylesheets().add(getClass().getResource("search.css").toExternalForm());
+    }
+
+    /**
+     * Brings the panel forward and puts the cursor in the find field
+     */
+    public void focus() {
+        onShow.run();
+        query.requestFocus();
+        query.selectAll();
+    }
+
+    /**
+     * Fills in what to find
+     * @param text The text to find
+     */
+    public void setQuery(String text) {
+        query.setText(text);
+    }
+
+    /**
+     * Getter for what to find
+     * @return query
+     */
+    public String getQuery() {
+        return query.getText();
+    }
+
+    /**
+     * Getter for what to replace the matches with
+     * @return replacement
+     */
+    public String getReplacement() {
+        return replacement.getText();
+    }
+
+    /**
+     * @return true if the query is a regular expression
+     */
+    public boolean isRegex() {
+        return regex.isSelected();
+    }
+
+    /**
+     * @return true if the search tells upper and lower case apart
+     */
+    public boolean isMatchCase() {
+        return matchCase.isSelected();
+    }
+
+    /**
+     * Empties the list for a new search
+     * @param heading What is searched
+     */
+    public void clear(String heading) {
+        this.heading = heading;
+        list.getItems().clear();
+        title.setText(heading + " (searching...)");
+        onShow.run();
+    }
+
+    /**
+     * Lists more matches of the current search
+     * @param matches Matches found since the last call
+     */
+    public void add(List<SearchMatch> matches) {
+        list.getItems().addAll(matches);
+        title.setText(heading + " (" + list.getItems().size() + " results so far...)");
+    }
+
+    /**
+     * Shows that the current search is finished
+     * @param limited true if the search stopped at the most matches it lists
+     */
+    public void done(boolean limited) {
+        int count = list.getItems().size();
+        title.setText(heading + " (" + (limited ? "first " : "") + count + (count == 1 ? " result)" : " results)"));
+    }
+
+    /**
+     * Sets what happens when the find button is pressed, or Enter in the find field
+     * @param onFind Called to search the open file
+     */
+    public void setOnFind(Runnable onFind) {
+        this.onFind = onFind;
+    }
+
+    /**
+     * Sets what happens when the find in folder button is pressed
+     * @param onFindInFolder Called to search a folder
+     */
+    public void setOnFindInFolder(Runnable onFindInFolder) {
+        this.onFindInFolder = onFindInFolder;
+    }
+
+    /**
+     * Sets what happens when the replace all button is pressed, or Enter in the replace
+     * field
+     * @param onReplaceAll Called to replace every match in the open file
+     */
+    public void setOnReplaceAll(Runnable onReplaceAll) {
+        this.onReplaceAll = onReplaceAll;
+    }
+
+    /**
+     * Sets what happens when a match is opened
+     * @param onOpen Called with the match to open
+     */
+    public void setOnOpen(Consumer<SearchMatch> onOpen) {
+        this.onOpen = onOpen;
+    }
+
+    /**
+     * Sets what happens whenever the panel should come forward
+     * @param onShow Called when a search starts or the panel is focused
+     */
+    public void setOnShow(Runnable onShow) {
+        this.onShow = onShow;
+    }
+
+    /**
+     * Getter for the panel node
+     * @return panel
+     */
+    public BorderPane getPanel() {
+        return this.panel;
+    }
+
+    private void openSelected() {
+        SearchMatch match = list.getSelectionModel().getSelectedItem();
+        if(match != null)
+            onOpen.accept(match);
+    }
+
+    private static String describe(SearchMatch match) {
+        String line = (match.getLine() + 1) + ":" + (match.getColumn() + 1);
+        String where = match.getFile() == null ? line : match.getFile().getFileName() + ":" + line;
+        return where + "  " + match.getPreview().trim();
+    }
+}
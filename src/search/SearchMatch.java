@@ -0,0 +1,79 @@
+package search;
+
+import java.nio.file.Path;
+
+/**
+ * One match of a search: where it is and the line it is on.
+ */
+public class SearchMatch {
+
+    // The file searched, null for the text in the editor
+    private final Path file;
+    // Zero based line and column of the start of the match
+    private final int line;
+    private final int column;
+    // Length of the match in characters
+    private final int length;
+    // The text of the line, cut short if it is long
+    private final String preview;
+
+    /**
+     * @param file The file searched, null for the text in the editor
+     * @param line Zero based line the match starts on
+     * @param column Zero based column the match starts at
+     * @param length Length of the match in characters
+     * @param preview The text of the line
+     */
+    public SearchMatch(Path file, int line, int column, int length, String preview) {
+        this.file = file;
+        this.line = line;
+        this.column = column;
+        this.length = length;
+        this.preview = preview;
+    }
+
+    /**
+     * Getter for the file
+     * @return file, or null for the text in the editor
+     */
+    public Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * Getter for the zero based line
+     * @return line
+     */
+    public int getLine() {
+        return this.line;
+    }
+
+    /**
+     * Getter for the zero based column
+     * @return column
+     */
+    public int getColumn() {
+        return this.column;
+    }
+
+    /**
+     * Getter for the length in characters
+     * @return length
+     */
+    public int getLength() {
+        return this.length;
+    }
+
+    /**
+     * Getter for the text of the line
+     * @return preview
+     */
+    public String getPreview() {
+        return this.preview;
+    }
+
+    @Override
+    public String toString() {
+        return (file == null ? "untitled" : file.getFileName()) + ":" + (line + 1) + ":" + (column + 1) + " " + preview;
+    }
+}
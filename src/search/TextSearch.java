@@ -0,0 +1,238 @@
+package search;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import editor.EditTransaction;
+import file.FileLoader;
+import javafx.application.Platform;
+import workspace.WorkspaceIndex;
+
+/**
+ * Searches the editor's text, or every .asm file under a folder, for a word or a regular
+ * expression. The work runs on a shared background pool, one task per file so files are
+ * searched in parallel, and matches are handed to the FX thread in batches as they are
+ * found. The FX thread never scans text itself.
+ */
+public class TextSearch {
+
+    // Most matches handed to the FX thread at once, and most text scanned in between
+    private static final int BATCH = 256;
+    private static final int CHUNK = 256 * 1024;
+    // Most matches listed by one search
+    private static final int LIMIT = 20_000;
+    // Longest line shown with a match
+    private static final int PREVIEW = 160;
+
+    // Shared by every search, one thread per core
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        Thread thread = new Thread(r, "search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Pattern pattern;
+    // Whether replacements may refer to groups as $1
+    private final boolean regex;
+    // Matches found so far, counted against the limit
+    private final AtomicInteger found = new AtomicInteger();
+    // Set once the results are no longer wanted
+    private volatile boolean cancelled;
+    // Called on the FX thread with each batch of matches, and once the search is done
+    private Consumer<List<SearchMatch>> onFound = matches -> {};
+    private Runnable onDone = () -> {};
+
+    /**
+     * Prepares a search
+     * @param query What to look for
+     * @param regex true if the query is a regular expression, false to find it literally
+     * @param matchCase false to ignore case
+     * @throws PatternSyntaxException If the query is not a valid regular expression
+     */
+    public TextSearch(String query, boolean regex, boolean matchCase) {
+        int flags = Pattern.MULTILINE | (regex ? 0 : Pattern.LITERAL)
+                        | (matchCase ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        this.pattern = Pattern.compile(query, flags);
+        this.regex = regex;
+    }
+
+    /**
+     * Sets what happens with the matches as they are found
+     * @param onFound Called on the FX thread with each batch of matches
+     */
+    public void setOnFound(Consumer<List<SearchMatch>> onFound) {
+        this.onFound = onFound;
+    }
+
+    /**
+     * Sets what happens once everything was searched
+     * @param onDone Called on the FX thread after the last batch
+     */
+    public void setOnDone(Runnable onDone) {
+        this.onDone = onDone;
+    }
+
+    /**
+     * @return true if the search stopped at the most matches it lists
+     */
+    public boolean isLimited() {
+        return found.get() > LIMIT;
+    }
+
+    /**
+     * Searches a text in the background
+     * @param file What the matches are reported in, null for the text in the editor
+     * @param text The text, which must not change while it is searched
+     */
+    public void searchText(Path file, CharSequence text) {
+        POOL.execute(() -> {
+            scan(file, text);
+            done();
+        });
+    }
+
+    /**
+     * Searches every .asm file under a folder in the background, as they are on disk
+     * @param folder The folder
+     */
+    public void searchFolder(Path folder) {
+        POOL.execute(() -> {
+            List<Path> sources;
+            try {
+                sources = WorkspaceIndex.findSources(folder);
+            } catch(IOException e) {
+                sources = Collections.emptyList();
+            }
+            if(sources.isEmpty()) {
+                done();
+                return;
+            }
+            AtomicInteger remaining = new AtomicInteger(sources.size());
+            for(Path source : sources) {
+                POOL.execute(() -> {
+                    try {
+                        if(!cancelled && !isLimited())
+                            scan(source, FileLoader.load(source, null).getText());
+                    } catch(IOException e) {
+                        // A file that cannot be read has no matches
+                    } finally {
+                        if(remaining.decrementAndGet() == 0)
+                            done();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Finds every match in a text in the background and buffers its replacement in a
+     * transaction. The transaction is only filled in, the edit area is not touched.
+     * @param text The text, which must not change while it is searched
+     * @param replacement What to replace each match with, $1 and so on refer to groups
+     * of a regular expression
+     * @param into The transaction to buffer the replacements in
+     * @param then Called on the FX thread with the number of matches, once the
+     * transaction is ready to commit
+     * @param failed Called on the FX thread instead, with the reason, if the replacement
+     * refers to a group the expression does not have or ends in a lone backslash
+     */
+    public void replaceAll(CharSequence text, String replacement, EditTransaction into, IntConsumer then, Consumer<String> failed) {
+        POOL.execute(() -> {
+            Matcher matcher = pattern.matcher(text);
+            StringBuilder expanded = new StringBuilder();
+            int count = 0;
+            int previous = 0;
+            while(!cancelled && matcher.find()) {
+                String with = replacement;
+                if(regex) {
+                    // Appends the text since the previous match, then the expanded replacement
+                    expanded.setLength(0);
+                    try {
+                        matcher.appendReplacement(expanded, replacement);
+                    } catch(IllegalArgumentException | IndexOutOfBoundsException e) {
+                        Platform.runLater(() -> {
+                            if(!cancelled)
+                                failed.accept(e.getMessage());
+                        });
+                        return;
+                    }
+                    with = expanded.substring(matcher.start() - previous);
+                    previous = matcher.end();
+                }
+                into.replace(matcher.start(), matcher.end(), with);
+                count++;
+            }
+            int replaced = count;
+            Platform.runLater(() -> {
+                if(!cancelled)
+                    then.accept(replaced);
+            });
+        });
+    }
+
+    /**
+     * Stops the search; nothing more is handed to the FX thread
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Finds the matches in one text, handing them over every batch of matches or chunk
+     * of text
+     */
+    private void scan(Path file, CharSequence text) {
+        Matcher matcher = pattern.matcher(text);
+        List<SearchMatch> batch = new ArrayList<>();
+        int line = 0;
+        int lineStart = 0;
+        int counted = 0;
+        int handed = 0;
+        while(!cancelled && matcher.find()) {
+            if(found.incrementAndGet() > LIMIT)
+                break;
+            int start = matcher.start();
+            for(; counted < start; counted++) {
+                if(text.charAt(counted) == '\n') {
+                    line++;
+                    lineStart = counted + 1;
+                }
+            }
+            int lineEnd = lineStart;
+            while(lineEnd < text.length() && lineEnd - lineStart < PREVIEW && text.charAt(lineEnd) != '\n')
+                lineEnd++;
+            batch.add(new SearchMatch(file, line, start - lineStart, matcher.end() - start, text.subSequence(lineStart, lineEnd).toString()));
+            if(batch.size() >= BATCH || start - handed >= CHUNK) {
+                handOver(batch);
+                batch = new ArrayList<>();
+                handed = start;
+            }
+        }
+        if(!batch.isEmpty())
+            handOver(batch);
+    }
+
+    private void handOver(List<SearchMatch> batch) {
+        Platform.runLater(() -> {
+            if(!cancelled)
+                onFound.accept(batch);
+        });
+    }
+
+    private void done() {
+        Platform.runLater(() -> {
+            if(!cancelled)
+                onDone.run();
+        });
+    }
+}
@@ -0,0 +1,26 @@
+package simulator;
+
+/**
+ * Where a running program's keyboard input comes from and its display output goes to.
+ * Used both by the TRAP service routines and by the memory mapped device registers.
+ */
+public interface Console {
+
+    /**
+     * @return true if a key is waiting to be read
+     */
+    boolean hasInput();
+
+    /**
+     * Reads the next key, waiting for one if none is available
+     * @return The character typed
+     * @throws InterruptedException If the machine is stopped while waiting
+     */
+    char read() throws InterruptedException;
+
+    /**
+     * Writes a character to the display
+     * @param c The character to write
+     */
+    void write(char c);
+}
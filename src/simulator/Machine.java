@@ -0,0 +1,705 @@
+package simulator;
+
+import java.util.Arrays;
+
+/**
+ * An LC-3 machine: 64K words of memory, eight general purpose registers, the PC, IR and
+ * PSR. Instructions are decoded once into a packed int and cached per address, so the
+ * dispatch loop only does a table lookup and a switch per step and never allocates.
+ * Storing to an address drops its cached decoding, which keeps self modifying code
+ * correct.
+ *
+ * TRAP x20-x25 are serviced directly against a @see Console rather than by OS code in
+ * memory. The keyboard and display device registers are mapped onto the same console.
+ *
+ * For debugging, a machine stops before instructions with a breakpoint and after stores
+ * to watched addresses. Breakpoint addresses are never cached, so they are only checked
+ * on the path that decodes a word and cost nothing while none are set. With a trace, each
+ * instruction records what it changes in a @see TraceBuffer, and the machine can step
+ * back and run backwards to the previous breakpoint or watched store.
+ *
+ * Not thread safe: a machine is run by one thread at a time, and only @see #stop may
+ * be called from another.
+ */
+public class Machine {
+
+    // Number of words of memory
+    public static final int MEMORY_SIZE = 0x10000;
+
+    // Where programs start in user mode by convention
+    public static final int USER_START = 0x3000;
+
+    // Memory mapped device registers
+    public static final int KBSR = 0xFE00;
+    public static final int KBDR = 0xFE02;
+    public static final int DSR = 0xFE04;
+    public static final int DDR = 0xFE06;
+    public static final int MCR = 0xFFFE;
+
+    // Packed decoding: opcode in bits 0-3, DR/nzp in 4-6, SR1/BaseR in 7-9, SR2 in
+    // 10-12, the immediate/long form flag in bit 13, bit 14 marks the entry as decoded
+    // and the sign extended immediate, offset or trap vector sits in bits 16-31
+    private static final int DECODED = 1 << 14;
+
+    // Condition codes as stored in the low bits of the PSR
+    private static final int N = 4, Z = 2, P = 1;
+
+    private final char[] memory = new char[MEMORY_SIZE];
+    private final int[] decoded = new int[MEMORY_SIZE];
+    private final int[] registers = new int[8];
+    private int pc;
+    private int ir;
+    // PSR without the condition codes, which live in cc
+    private int psr;
+    private int cc;
+
+    // Where TRAP output goes and input comes from
+    private final Console console;
+
+    private boolean halted;
+    private volatile boolean stopRequested;
+    // Why the machine stopped, if it was not a HALT
+    private String error;
+    // Instructions executed since the last reset
+    private long instructions;
+
+    // Addresses to stop before and addresses to stop after a store to, null while none
+    private boolean[] breakpoints;
+    private boolean[] watchpoints;
+    // Whether the last run stopped at a breakpoint, and the watched address it stored to
+    private boolean atBreakpoint;
+    private int watchpointHit = -1;
+    // What executed instructions changed, null while not recording
+    private TraceBuffer trace;
+
+    /**
+     * Creates a machine with cleared memory
+     * @param console Where TRAP and device input and output go
+     */
+    public Machine(Console console) {
+        this.console = console;
+        reset();
+    }
+
+    /**
+     * Clears memory, registers and state, ready for a new program
+     */
+    public void reset() {
+        Arrays.fill(memory, (char) 0);
+        Arrays.fill(decoded, 0);
+        Arrays.fill(registers, 0);
+        pc = USER_START;
+        ir = 0;
+        psr = 0x8000;
+        cc = Z;
+        halted = false;
+        stopRequested = false;
+        error = null;
+        instructions = 0;
+        atBreakpoint = false;
+        watchpointHit = -1;
+        if(trace != null)
+            trace.clear();
+    }
+
+    /**
+     * Copies a program into memory and points the PC at its first word
+     * @param origin Address of the first word
+     * @param words The program
+     */
+    public void load(int origin, char[] words) {
+        int length = Math.min(words.length, MEMORY_SIZE - origin);
+        System.arraycopy(words, 0, memory, origin, length);
+        Arrays.fill(decoded, origin, origin + length, 0);
+        pc = origin;
+        halted = false;
+        error = null;
+    }
+
+    /**
+     * Runs until the program halts, fails, is stopped or reaches the instruction limit,
+     * or reaches a breakpoint or stores to a watched address. Never stops at the
+     * breakpoint it starts on.
+     * @param limit Most instructions to execute
+     * @return Number of instructions executed
+     */
+    public long run(long limit) {
+        final char[] memory = this.memory;
+        final int[] decoded = this.decoded;
+        final int[] registers = this.registers;
+        final boolean[] breakpoints = this.breakpoints;
+        final TraceBuffer trace = this.trace;
+        stopRequested = false;
+        atBreakpoint = false;
+        watchpointHit = -1;
+        int pc = this.pc;
+        int cc = this.cc;
+        int at = pc;
+        long executed = 0;
+
+        try {
+            while(executed < limit && !halted && !stopRequested) {
+                int d = decoded[pc];
+                if(d == 0) {
+                    // Breakpoint addresses are never cached, so only this path checks them
+                    if(breakpoints != null && breakpoints[pc] && executed > 0) {
+                        atBreakpoint = true;
+                        break;
+                    }
+                    d = decode(pc);
+                }
+                if(trace != null)
+                    remember(trace, pc, d, cc);
+                at = pc;
+                pc = (pc + 1) & 0xFFFF;
+                executed++;
+
+                int dr = (d >> 4) & 7;
+                int sr1 = (d >> 7) & 7;
+                int imm = d >> 16;
+                switch(d & 0xF) {
+                    case 0x0: // BR
+                        if((dr & cc) != 0)
+                            pc = (pc + imm) & 0xFFFF;
+                        break;
+                    case 0x1: { // ADD
+                        int value = (registers[sr1] + ((d & (1 << 13)) != 0 ? imm : registers[(d >> 10) & 7])) & 0xFFFF;
+                        registers[dr] = value;
+                        cc = value == 0 ? Z : (value & 0x8000) != 0 ? N : P;
+                        break;
+                    }
+                    case 0x2: { // LD
+                        int value = read((pc + imm) & 0xFFFF);
+                        registers[dr] = value;
+                        cc = value == 0 ? Z : (value & 0x8000) != 0 ? N : P;
+                        break;
+                    }
+                    case 0x3: // ST
+                        write((pc + imm) & 0xFFFF, registers[dr]);
+                        break;
+                    case 0x4: { // JSR, JSRR
+                        int target = (d & (1 << 13)) != 0 ? (pc + imm) & 0xFFFF : registers[sr1];
+                        registers[7] = pc;
+                        pc = target;
+                        break;
+                    }
+                    case 0x5: { // AND
+                        int value = registers[sr1] & ((d & (1 << 13)) != 0 ? imm & 0xFFFF : registers[(d >> 10) & 7]);
+                        registers[dr] = value;
+                        cc = value == 0 ? Z : (value & 0x8000) != 0 ? N : P;
+                        break;
+                    }
+                    case 0x6: { // LDR
+                        int value = read((registers[sr1] + imm) & 0xFFFF);
+                        registers[dr] = value;
+                        cc = value == 0 ? Z : (value & 0x8000) != 0 ? N : P;
+                        break;
+                    }
+                    case 0x7: // STR
+                        write((registers[sr1] + imm) & 0xFFFF, registers[dr]);
+                        break;
+                    case 0x8: // RTI
+                        if((psr & 0x8000) != 0) {
+                            fail(at, "RTI executed in user mode");
+                            pc = at;
+                        } else {
+                            int sp = registers[6];
+                            pc = memory[sp];
+                            int saved = memory[(sp + 1) & 0xFFFF];
+                            registers[6] = (sp + 2) & 0xFFFF;
+                            psr = saved & ~7;
+                            cc = saved & 7;
+                        }
+                        break;
+                    case 0x9: { // NOT
+                        int value = ~registers[sr1] & 0xFFFF;
+                        registers[dr] = value;
+                        cc = value == 0 ? Z : (value & 0x8000) != 0 ? N : P;
+                        break;
+                    }
+                    case 0xA: { // LDI
+                        int value = read(read((pc + imm) & 0xFFFF));
+                        registers[dr] = value;
+                        cc = value == 0 ? Z : (value & 0x8000) != 0 ? N : P;
+                        break;
+                    }
+                    case 0xB: // STI
+                        write(read((pc + imm) & 0xFFFF), registers[dr]);
+                        break;
+                    case 0xC: // JMP, RET
+                        pc = registers[sr1];
+                        break;
+                    case 0xD: // reserved
+                        fail(at, "Illegal opcode");
+                        pc = at;
+                        break;
+                    case 0xE: { // LEA
+                        registers[dr] = (pc + imm) & 0xFFFF;
+                        break;
+                    }
+                    default: // TRAP
+                        registers[7] = pc;
+                        if(imm >= 0x20 && imm <= 0x25) {
+                            this.cc = cc;
+                            if(!trap(imm)) {
+                                // Interrupted while waiting for a key, run the TRAP again next time
+                                pc = at;
+                                executed--;
+                                stopRequested = true;
+                                if(trace != null) {
+                                    registers[7] = trace.registerValue();
+                                    trace.pop();
+                                }
+                            }
+                            cc = this.cc;
+                        } else {
+                            pc = memory[imm];
+                        }
+                        break;
+                }
+            }
+        } finally {
+            this.pc = pc;
+            this.cc = cc;
+            if(executed > 0)
+                this.ir = memory[at];
+            instructions += executed;
+        }
+        return executed;
+    }
+
+    /**
+     * Executes a single instruction
+     * @return false if the machine is halted
+     */
+    public boolean step() {
+        return run(1) == 1;
+    }
+
+    /**
+     * Undoes the last instruction, if it was recorded. Console input and output are not
+     * taken back.
+     * @return false if there is nothing to undo
+     */
+    public boolean stepBack() {
+        if(trace == null || trace.size() == 0)
+            return false;
+        undo();
+        return true;
+    }
+
+    /**
+     * Runs backwards until the instruction at a breakpoint or the last store to a watched
+     * address is undone, or there is nothing more to undo. Never stops at the breakpoint
+     * it starts on.
+     * @param limit Most instructions to undo
+     * @return Number of instructions undone
+     */
+    public long reverse(long limit) {
+        stopRequested = false;
+        atBreakpoint = false;
+        watchpointHit = -1;
+        long undone = 0;
+        while(undone < limit && trace != null && trace.size() > 0 && !stopRequested) {
+            int stored = trace.kind() == TraceBuffer.MEMORY ? trace.address() : -1;
+            undo();
+            undone++;
+            if(stored >= 0 && watchpoints != null && watchpoints[stored]) {
+                watchpointHit = stored;
+                break;
+            }
+            if(breakpoints != null && breakpoints[pc]) {
+                atBreakpoint = true;
+                break;
+            }
+        }
+        return undone;
+    }
+
+    /**
+     * Records what the instruction at an address is about to change
+     */
+    private void remember(TraceBuffer trace, int at, int d, int cc) {
+        int dr = (d >> 4) & 7;
+        int imm = d >> 16;
+        int next = (at + 1) & 0xFFFF;
+        int address;
+        switch(d & 0xF) {
+            case 0x1: case 0x2: case 0x5: case 0x6: case 0x9: case 0xA: case 0xE:
+                trace.push(at, cc, dr, registers[dr], TraceBuffer.NONE, 0, 0);
+                return;
+            case 0x3: // ST
+                address = (next + imm) & 0xFFFF;
+                break;
+            case 0x7: // STR
+                address = (registers[(d >> 7) & 7] + imm) & 0xFFFF;
+                break;
+            case 0xB: // STI
+                address = memory[(next + imm) & 0xFFFF];
+                break;
+            case 0x4: // JSR, JSRR
+                trace.push(at, cc, 7, registers[7], TraceBuffer.NONE, 0, 0);
+                return;
+            case 0x8: // RTI
+                trace.push(at, cc, 6, registers[6], TraceBuffer.PSR, 0, psr);
+                return;
+            case 0xF: // TRAP, GETC and IN write R0 as well
+                trace.push(at, cc, 7, registers[7], TraceBuffer.R0, 0, registers[0]);
+                return;
+            default: // BR, JMP and reserved only move the PC
+                trace.push(at, cc, -1, 0, TraceBuffer.NONE, 0, 0);
+                return;
+        }
+        trace.push(at, cc, -1, 0, TraceBuffer.MEMORY, address, memory[address]);
+    }
+
+    /**
+     * Restores the state before the newest recorded instruction and forgets it
+     */
+    private void undo() {
+        pc = trace.pc();
+        cc = trace.cc();
+        if(trace.register() >= 0)
+            registers[trace.register()] = trace.registerValue();
+        switch(trace.kind()) {
+            case TraceBuffer.MEMORY:
+                memory[trace.address()] = (char) trace.value();
+                decoded[trace.address()] = 0;
+                break;
+            case TraceBuffer.PSR:
+                psr = trace.value();
+                break;
+            case TraceBuffer.R0:
+                registers[0] = trace.value();
+                break;
+            default:
+                break;
+        }
+        trace.pop();
+        ir = trace.size() > 0 ? memory[trace.pc()] : 0;
+        halted = false;
+        error = null;
+        instructions--;
+    }
+
+    /**
+     * Asks a running machine to stop after the current instruction. Safe to call from
+     * any thread; a thread waiting for a key has to be interrupted as well.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * Decodes the word at an address and caches the result
+     */
+    private int decode(int address) {
+        int word = memory[address];
+        int opcode = word >> 12;
+        int flag = (word >> 5) & 1;
+        int imm;
+        switch(opcode) {
+            case 0x1:
+            case 0x5:
+                imm = signExtend(word, 5);
+                break;
+            case 0x0: case 0x2: case 0x3: case 0xA: case 0xB: case 0xE:
+                imm = signExtend(word, 9);
+                break;
+            case 0x4:
+                flag = (word >> 11) & 1;
+                imm = signExtend(word, 11);
+                break;
+            case 0x6:
+            case 0x7:
+                imm = signExtend(word, 6);
+                break;
+            case 0xF:
+                imm = word & 0xFF;
+                break;
+            default:
+                imm = 0;
+                break;
+        }
+        int d = opcode | ((word >> 9) & 7) << 4 | ((word >> 6) & 7) << 7 | (word & 7) << 10 | flag << 13
+                        | DECODED | imm << 16;
+        if(breakpoints == null || !breakpoints[address])
+            decoded[address] = d;
+        return d;
+    }
+
+    private static int signExtend(int word, int bits) {
+        int shift = 32 - bits;
+        return (word << shift) >> shift;
+    }
+
+    /**
+     * Reads a word, going to the console for device registers
+     */
+    private int read(int address) {
+        if(address < KBSR)
+            return memory[address];
+        switch(address) {
+            case KBSR:
+                return console.hasInput() ? 0x8000 : 0;
+            case KBDR:
+                try {
+                    return console.hasInput() ? console.read() : 0;
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return 0;
+                }
+            case DSR:
+                return 0x8000;
+            default:
+                return memory[address];
+        }
+    }
+
+    /**
+     * Writes a word, dropping any cached decoding of the address and going to the
+     * console for device registers
+     */
+    private void write(int address, int value) {
+        if(address >= KBSR) {
+            if(address == DDR) {
+                console.write((char) (value & 0xFF));
+                return;
+            }
+            if(address == MCR && (value & 0x8000) == 0)
+                halted = true;
+        }
+        memory[address] = (char) value;
+        decoded[address] = 0;
+        if(watchpoints != null && watchpoints[address]) {
+            watchpointHit = address;
+            stopRequested = true;
+        }
+    }
+
+    /**
+     * Services TRAP x20-x25
+     * @return false if interrupted while waiting for a key
+     */
+    private boolean trap(int vector) {
+        try {
+            switch(vector) {
+                case 0x20: // GETC
+                    setResult(console.read());
+                    break;
+                case 0x21: // OUT
+                    console.write((char) (registers[0] & 0xFF));
+                    break;
+                case 0x22: // PUTS
+                    for(int a = registers[0]; memory[a] != 0; a = (a + 1) & 0xFFFF)
+                        console.write((char) (memory[a] & 0xFF));
+                    break;
+                case 0x23: { // IN
+                    for(char c : "Input a character> ".toCharArray())
+                        console.write(c);
+                    char c = console.read();
+                    console.write(c);
+                    console.write('\n');
+                    setResult(c);
+                    break;
+                }
+                case 0x24: // PUTSP
+                    for(int a = registers[0]; memory[a] != 0; a = (a + 1) & 0xFFFF) {
+                        console.write((char) (memory[a] & 0xFF));
+                        if((memory[a] >> 8) == 0)
+                            break;
+                        console.write((char) (memory[a] >> 8));
+                    }
+                    break;
+                default: // HALT
+                    halted = true;
+                    break;
+            }
+            return true;
+        } catch(InterruptedException e) {
+            return false;
+        }
+    }
+
+    private void setResult(int value) {
+        registers[0] = value & 0xFF;
+        cc = registers[0] == 0 ? Z : P;
+    }
+
+    private void fail(int address, String message) {
+        halted = true;
+        error = String.format("%s at x%04X", message, address);
+    }
+
+    /**
+     * @param i Register number, 0-7
+     * @return Value of the register
+     */
+    public int getRegister(int i) {
+        return registers[i];
+    }
+
+    /**
+     * @param i Register number, 0-7
+     * @param value New value of the register
+     */
+    public void setRegister(int i, int value) {
+        registers[i] = value & 0xFFFF;
+    }
+
+    /**
+     * Getter for the program counter
+     * @return pc
+     */
+    public int getPc() {
+        return this.pc;
+    }
+
+    /**
+     * Setter for the program counter
+     * @param pc Address of the next instruction
+     */
+    public void setPc(int pc) {
+        this.pc = pc & 0xFFFF;
+    }
+
+    /**
+     * Getter for the instruction register
+     * @return ir
+     */
+    public int getIr() {
+        return this.ir;
+    }
+
+    /**
+     * Getter for the processor status register, including the condition codes
+     * @return psr
+     */
+    public int getPsr() {
+        return psr | cc;
+    }
+
+    /**
+     * @param address Address to read, device registers are not touched
+     * @return The word in memory
+     */
+    public int getMemory(int address) {
+        return memory[address & 0xFFFF];
+    }
+
+    /**
+     * @param address Address to write, device registers are not touched
+     * @param value The new word
+     */
+    public void setMemory(int address, int value) {
+        memory[address & 0xFFFF] = (char) value;
+        decoded[address & 0xFFFF] = 0;
+    }
+
+    /**
+     * Sets or clears a breakpoint
+     * @param address Address of the instruction to stop before
+     * @param set true to set it, false to clear it
+     */
+    public void setBreakpoint(int address, boolean set) {
+        if(breakpoints == null) {
+            if(!set)
+                return;
+            breakpoints = new boolean[MEMORY_SIZE];
+        }
+        breakpoints[address & 0xFFFF] = set;
+        decoded[address & 0xFFFF] = 0;
+    }
+
+    /**
+     * @param address Address of an instruction
+     * @return true if there is a breakpoint on it
+     */
+    public boolean isBreakpoint(int address) {
+        return breakpoints != null && breakpoints[address & 0xFFFF];
+    }
+
+    /**
+     * Clears every breakpoint, which takes their check out of the dispatch loop
+     */
+    public void clearBreakpoints() {
+        breakpoints = null;
+    }
+
+    /**
+     * Sets or clears a watchpoint
+     * @param address Address to stop after a store to
+     * @param set true to set it, false to clear it
+     */
+    public void setWatchpoint(int address, boolean set) {
+        if(watchpoints == null) {
+            if(!set)
+                return;
+            watchpoints = new boolean[MEMORY_SIZE];
+        }
+        watchpoints[address & 0xFFFF] = set;
+    }
+
+    /**
+     * Clears every watchpoint
+     */
+    public void clearWatchpoints() {
+        watchpoints = null;
+    }
+
+    /**
+     * @return true if the last run stopped before an instruction with a breakpoint
+     */
+    public boolean isAtBreakpoint() {
+        return this.atBreakpoint;
+    }
+
+    /**
+     * Getter for the watched address the last run stopped after storing to
+     * @return address, or -1 if it did not stop at a watchpoint
+     */
+    public int getWatchpointHit() {
+        return this.watchpointHit;
+    }
+
+    /**
+     * Starts or stops recording what each instruction changes, so it can be undone
+     * @param steps Most instructions that can be undone, 0 to stop recording
+     */
+    public void setTraceCapacity(int steps) {
+        if(steps <= 0)
+            trace = null;
+        else if(trace == null || trace.capacity() != steps)
+            trace = new TraceBuffer(steps);
+    }
+
+    /**
+     * @return Number of instructions that can be undone
+     */
+    public int getTraceSize() {
+        return trace == null ? 0 : trace.size();
+    }
+
+    /**
+     * @return true once the program halted or failed
+     */
+    public boolean isHalted() {
+        return this.halted;
+    }
+
+    /**
+     * Getter for why the program failed
+     * @return error, or null if it did not
+     */
+    public String getError() {
+        return this.error;
+    }
+
+    /**
+     * Getter for the number of instructions executed since the last reset
+     * @return instruction count
+     */
+    public long getInstructionCount() {
+        return this.instructions;
+    }
+}
@@ -0,0 +1,131 @@
+package simulator;
+
+/**
+ * Ring buffer of what each executed instruction changed, so a @see Machine can run
+ * backwards. One entry holds the PC and condition codes before the instruction, the old
+ * value of the register it wrote and the old value of one more thing it wrote: a memory
+ * word, the PSR, or R0 for TRAPs. Entries live in parallel primitive arrays, 10 bytes
+ * each, and the oldest are overwritten once the buffer is full.
+ */
+final class TraceBuffer {
+
+    // What the second saved value of an entry is
+    static final int NONE = 0;
+    static final int MEMORY = 1;
+    static final int PSR = 2;
+    static final int R0 = 3;
+
+    // Info bits: the register in 0-2, whether there is one in 3, the condition codes in
+    // 4-6 and the kind of the second value in 7-8
+    private static final int HAS_REGISTER = 1 << 3;
+
+    private final char[] pcs;
+    private final char[] infos;
+    private final char[] registerValues;
+    private final char[] addresses;
+    private final char[] values;
+
+    // Where the next entry goes, and how many entries there are
+    private int next;
+    private int size;
+
+    /**
+     * @param capacity Most instructions that can be undone
+     */
+    TraceBuffer(int capacity) {
+        pcs = new char[capacity];
+        infos = new char[capacity];
+        registerValues = new char[capacity];
+        addresses = new char[capacity];
+        values = new char[capacity];
+    }
+
+    /**
+     * Records the state an instruction is about to change
+     * @param pc Address of the instruction
+     * @param cc Condition codes before it
+     * @param register The register it writes, or -1
+     * @param registerValue The register's old value
+     * @param kind What else it writes: NONE, MEMORY, PSR or R0
+     * @param address The memory address it writes, for MEMORY
+     * @param value The old value of what else it writes
+     */
+    void push(int pc, int cc, int register, int registerValue, int kind, int address, int value) {
+        pcs[next] = (char) pc;
+        infos[next] = (char) ((register >= 0 ? register | HAS_REGISTER : 0) | cc << 4 | kind << 7);
+        registerValues[next] = (char) registerValue;
+        addresses[next] = (char) address;
+        values[next] = (char) value;
+        next = next + 1 == pcs.length ? 0 : next + 1;
+        if(size < pcs.length)
+            size++;
+    }
+
+    /**
+     * Forgets the newest entry
+     */
+    void pop() {
+        next = (next == 0 ? pcs.length : next) - 1;
+        size--;
+    }
+
+    /**
+     * Forgets every entry
+     */
+    void clear() {
+        next = 0;
+        size = 0;
+    }
+
+    /**
+     * @return Number of instructions that can be undone
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return Most instructions that can be undone
+     */
+    int capacity() {
+        return pcs.length;
+    }
+
+    // The newest entry, which must exist
+
+    int pc() {
+        return pcs[newest()];
+    }
+
+    int cc() {
+        return infos[newest()] >> 4 & 7;
+    }
+
+    /**
+     * @return The register the newest instruction wrote, or -1
+     */
+    int register() {
+        int info = infos[newest()];
+        return (info & HAS_REGISTER) != 0 ? info & 7 : -1;
+    }
+
+    int registerValue() {
+        return registerValues[newest()];
+    }
+
+    int kind() {
+        return infos[newest()] >> 7 & 3;
+    }
+
+    int address() {
+        return addresses[newest()];
+    }
+
+    int value() {
+        return values[newest()];
+    }
+
+    private int newest() {
+        return (next == 0 ? pcs.length : next) - 1;
+    }
+}
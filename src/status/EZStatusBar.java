@@ -0,0 +1,70 @@
+package status;
+
+import javafx.beans.value.ObservableDoubleValue;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.HBox;
+
+/**
+ * Creates and styles the status bar along the bottom of the window, used to report
+ * on long running work such as opening and saving files.
+ */
+public class EZStatusBar {
+
+    // The bar itself
+    private HBox bar;
+    // Text describing what is going on
+    private Label message;
+    // Progress of the current long running task, hidden when there is none
+    private ProgressBar progress;
+
+    /**
+     * Sets up the status bar
+     * @param parentScene The scene that the status bar will be applied to
+     */
+    public EZStatusBar(Scene parentScene) {
+        message = new Label();
+        progress = new ProgressBar();
+        progress.setVisible(false);
+        progress.setManaged(false);
+
+        bar = new HBox(message, progress);
+        bar.setId("statusBar");
+        bar.setAlignment(Pos.CENTER_LEFT);
+
+        parentScene.getStylesheets().add(getClass().getResource("status.css").toExternalForm());
+    }
+
+    /**
+     * Shows a message, hiding any progress bar
+     * @param text The message to show
+     */
+    public void showMessage(String text) {
+        progress.progressProperty().unbind();
+        progress.setVisible(false);
+        progress.setManaged(false);
+        message.setText(text);
+    }
+
+    /**
+     * Shows a message alongside a progress bar that follows the given progress
+     * @param text The message to show
+     * @param value Progress between 0 and 1, or negative while unknown
+     */
+    public void showProgress(String text, ObservableDoubleValue value) {
+        message.setText(text);
+        progress.progressProperty().bind(value);
+        progress.setVisible(true);
+        progress.setManaged(true);
+    }
+
+    /**
+     * Getter for the status bar node
+     * @return status bar
+     */
+    public HBox getBar() {
+        return this.bar;
+    }
+}
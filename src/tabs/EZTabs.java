@@ -0,0 +1,74 @@
+package tabs;
+
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
+
+/**
+ * Creates and styles the tab strip above the editor, one tab per open document. There is
+ * only one editor: it moves into whichever tab is selected, and the other tabs are empty.
+ */
+public class EZTabs {
+
+    // The tabs
+    private TabPane pane;
+    // The editor shown in the selected tab
+    private Node editor;
+
+    /**
+     * Sets up the tab strip, with no tabs yet
+     * @param parentScene The scene that the tabs will be applied to
+     * @param editor The editor shown in the selected tab
+     */
+    public EZTabs(Scene parentScene, Node editor) {
+        this.editor = editor;
+        pane = new TabPane();
+        pane.setId("tabs");
+        pane.setTabClosingPolicy(TabPane.TabClosingPolicy.ALL_TABS);
+        pane.getSelectionModel().selectedItemProperty().addListener((obs, previous, selected) -> {
+            if(previous != null)
+                previous.setContent(null);
+            if(selected != null)
+                selected.setContent(this.editor);
+        });
+
+        parentScene.getStylesheets().add(getClass().getResource("tabs.css").toExternalForm());
+    }
+
+    /**
+     * Getter for the tab pane
+     * @return pane
+     */
+    public TabPane getPane() {
+        return this.pane;
+    }
+
+    /**
+     * Adds a tab after the others, without selecting it
+     * @param title The tab's title
+     * @return The new tab
+     */
+    public Tab add(String title) {
+        Tab tab = new Tab(title);
+        pane.getTabs().add(tab);
+        return tab;
+    }
+
+    /**
+     * Selects a tab, moving the editor into it
+     * @param tab The tab to select
+     */
+    public void select(Tab tab) {
+        pane.getSelectionModel().select(tab);
+    }
+
+    /**
+     * The selected tab
+     * @return selected tab property
+     */
+    public ReadOnlyObjectProperty<Tab> selectedTabProperty() {
+        return pane.getSelectionModel().selectedItemProperty();
+    }
+}
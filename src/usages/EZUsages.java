@@ -0,0 +1,114 @@
+package usages;
+
+import java.util.List;
+import java.util.function.Consumer;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.BorderPane;
+import workspace.Location;
+
+/**
+ * Creates and styles the panel listing where a symbol is defined and used across the
+ * workspace. Double clicking an entry, or pressing Enter on it, opens it.
+ */
+public class EZUsages {
+
+    // The panel itself
+    private BorderPane panel;
+    // What the list shows the usages of
+    private Label title;
+    // One entry per location
+    private ListView<Location> list;
+    // Called with the location to open
+    private Consumer<Location> onOpen = location -> {};
+    // Called whenever new locations are listed
+    private Runnable onShow = () -> {};
+
+    /**
+     * Sets up the usages panel
+     * @param parentScene The scene that the panel will be applied to
+     */
+    public EZUsages(Scene parentScene) {
+        title = new Label("Find Usages (Shift + F12) lists where the label under the caret is used");
+        title.setId("usagesTitle");
+        list = new ListView<>();
+        list.setId("usages");
+        list.setCellFactory(view -> new ListCell<Location>() {
+            @Override
+            protected void updateItem(Location location, boolean empty) {
+                super.updateItem(location, empty);
+                setText(empty || location == null ? null : describe(location));
+            }
+        });
+        list.setOnMouseClicked(e -> {
+            if(e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2)
+                openSelected();
+        });
+        list.setOnKeyPressed(e -> {
+            if(e.getCode() == KeyCode.ENTER)
+                openSelected();
+        });
+
+        panel = new BorderPane(list);
+        panel.setTop(title);
+
+        parentScene.getStylesheets().add(getClass().getResource("usages.css").toExternalForm());
+    }
+
+    /**
+     * Replaces the listed locations
+     * @param heading What the locations are usages of
+     * @param locations The locations to list
+     */
+    public void show(String heading, List<Location> locations) {
+        title.setText(heading + " (" + locations.size() + (locations.size() == 1 ? " result)" : " results)"));
+        list.getItems().setAll(locations);
+        onShow.run();
+    }
+
+    /**
+     * Sets what happens when an entry is opened
+     * @param onOpen Called with the location to open
+     */
+    public void setOnOpen(Consumer<Location> onOpen) {
+        this.onOpen = onOpen;
+    }
+
+    /**
+     * Sets what happens whenever new locations are listed, such as bringing the panel
+     * forward
+     * @param onShow Called after the list is filled in
+     */
+    public void setOnShow(Runnable onShow) {
+        this.onShow = onShow;
+    }
+
+    /**
+     * Getter for the panel node
+     * @return panel
+     */
+    public BorderPane getPanel() {
+        return this.panel;
+    }
+
+    private void openSelected() {
+        Location location = list.getSelectionModel().getSelectedItem();
+        if(location != null)
+            onOpen.accept(location);
+    }
+
+    private static String describe(Location location) {
+        String kind;
+        switch(location.getKind()) {
+            case DEFINITION: kind = "definition"; break;
+            case TRAP:       kind = location.getName(); break;
+            default:         kind = "usage"; break;
+        }
+        String file = location.getFile() == null ? "untitled" : location.getFile().getFileName().toString();
+        return file + ":" + (location.getLine() + 1) + "  " + kind;
+    }
+}
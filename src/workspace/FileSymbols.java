@@ -0,0 +1,33 @@
+package workspace;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Everything the index knows about one file, along with the modification time, size
+ * and content hash used to tell whether the file has to be scanned again.
+ */
+class FileSymbols {
+
+    final Path file;
+    final long modified;
+    final long size;
+    final long hash;
+    final List<Location> locations;
+
+    FileSymbols(Path file, long modified, long size, long hash, List<Location> locations) {
+        this.file = file;
+        this.modified = modified;
+        this.size = size;
+        this.hash = hash;
+        this.locations = locations;
+    }
+
+    /**
+     * The same symbols under a new modification time, for a file that was touched but
+     * not changed
+     */
+    FileSymbols touched(long modified, long size) {
+        return new FileSymbols(file, modified, size, hash, locations);
+    }
+}
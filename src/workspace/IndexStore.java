@@ -0,0 +1,145 @@
+package workspace;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Reads and writes the index of a workspace as a compact binary file. Every distinct
+ * name is stored once in a table and symbols refer to it by number; paths are stored
+ * relative to the workspace so a moved workspace keeps its index.
+ */
+final class IndexStore {
+
+    private static final int MAGIC = 0x4C33_4958; // "L3IX"
+    private static final int VERSION = 2;
+    private static final Location.Kind[] KINDS = Location.Kind.values();
+
+    private IndexStore() {
+    }
+
+    /**
+     * Reads a stored index
+     * @param index The file to read
+     * @param root The workspace the index belongs to
+     * @param names Returns one shared instance of each name
+     * @return Symbols by file, empty if there is no usable index
+     */
+    static Map<Path, FileSymbols> read(Path index, Path root, UnaryOperator<String> names) {
+        Map<Path, FileSymbols> files = new HashMap<>();
+        if(!Files.isRegularFile(index))
+            return files;
+        try {
+            // One read of the whole file, then plain array access instead of stream calls
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(index));
+            if(in.getInt() != MAGIC || in.getInt() != VERSION)
+                return files;
+            String[] table = new String[in.getInt()];
+            for(int i = 0; i < table.length; i++)
+                table[i] = names.apply(readString(in));
+
+            int fileCount = in.getInt();
+            for(int f = 0; f < fileCount; f++) {
+                Path file = root.resolve(readString(in));
+                long modified = in.getLong();
+                long size = in.getLong();
+                long hash = in.getLong();
+                int count = in.getInt();
+                List<Location> locations = new ArrayList<>(count);
+                for(int i = 0; i < count; i++) {
+                    Location.Kind kind = KINDS[in.get()];
+                    String name = table[in.getInt()];
+                    int line = in.getInt();
+                    int start = in.getInt();
+                    int end = in.getInt();
+                    int value = in.getInt();
+                    locations.add(new Location(file, kind, name, line, start, end, value));
+                }
+                files.put(file, new FileSymbols(file, modified, size, hash, locations));
+            }
+            return files;
+        } catch(IOException | RuntimeException e) {
+            // A damaged index is only a cache, start over
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * Writes an index, replacing the old one only once the new one is complete
+     * @param index The file to write
+     * @param root The workspace the index belongs to
+     * @param files Symbols of every file
+     * @throws IOException If the index cannot be written
+     */
+    static void write(Path index, Path root, Collection<FileSymbols> files) throws IOException {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> table = new ArrayList<>();
+        for(FileSymbols symbols : files) {
+            for(Location location : symbols.locations) {
+                if(ids.putIfAbsent(location.getName(), table.size()) == null)
+                    table.add(location.getName());
+            }
+        }
+
+        Files.createDirectories(index.getParent());
+        Path temp = Files.createTempFile(index.getParent(), index.getFileName().toString(), ".tmp");
+        try {
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(table.size());
+                for(String name : table)
+                    writeString(out, name);
+
+                out.writeInt(files.size());
+                for(FileSymbols symbols : files) {
+                    writeString(out, root.relativize(symbols.file).toString().replace('\\', '/'));
+                    out.writeLong(symbols.modified);
+                    out.writeLong(symbols.size);
+                    out.writeLong(symbols.hash);
+                    out.writeInt(symbols.locations.size());
+                    for(Location location : symbols.locations) {
+                        out.writeByte(location.getKind().ordinal());
+                        out.writeInt(ids.get(location.getName()));
+                        out.writeInt(location.getLine());
+                        out.writeInt(location.getStart());
+                        out.writeInt(location.getEnd());
+                        out.writeInt(location.getValue());
+                    }
+                }
+            }
+            try {
+                Files.move(temp, index, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch(AtomicMoveNotSupportedException e) {
+                Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        String text = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return text;
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
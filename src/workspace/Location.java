@@ -0,0 +1,108 @@
+package workspace;
+
+import java.nio.file.Path;
+
+/**
+ * One place a symbol appears in the workspace: where a label is defined or used, where
+ * a .ORIG block starts or where a TRAP is called.
+ */
+public class Location {
+
+    /**
+     * What appears at a location
+     */
+    public enum Kind {
+        DEFINITION, REFERENCE, ORIGIN, TRAP
+    }
+
+    private final Path file;
+    private final Kind kind;
+    // Label name, or the mnemonic for ORIGIN and TRAP
+    private final String name;
+    // Zero based line and the columns the name covers
+    private final int line;
+    private final int start;
+    private final int end;
+    // Address for ORIGIN, vector for TRAP, 0 otherwise
+    private final int value;
+
+    /**
+     * @param file File the symbol is in
+     * @param kind What appears here
+     * @param name Label name, or the mnemonic for ORIGIN and TRAP
+     * @param line Zero based line
+     * @param start First column (inclusive)
+     * @param end Last column (exclusive)
+     * @param value Address for ORIGIN, vector for TRAP, 0 otherwise
+     */
+    public Location(Path file, Kind kind, String name, int line, int start, int end, int value) {
+        this.file = file;
+        this.kind = kind;
+        this.name = name;
+        this.line = line;
+        this.start = start;
+        this.end = end;
+        this.value = value;
+    }
+
+    /**
+     * Getter for the file
+     * @return file
+     */
+    public Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * Getter for what appears here
+     * @return kind
+     */
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Getter for the label name, or the mnemonic for ORIGIN and TRAP
+     * @return name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Getter for the zero based line
+     * @return line
+     */
+    public int getLine() {
+        return this.line;
+    }
+
+    /**
+     * Getter for the first column
+     * @return start column
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * Getter for the column just past the name
+     * @return end column
+     */
+    public int getEnd() {
+        return this.end;
+    }
+
+    /**
+     * Getter for the address of a .ORIG or the vector of a TRAP
+     * @return value
+     */
+    public int getValue() {
+        return this.value;
+    }
+
+    @Override
+    public String toString() {
+        return (file == null ? "untitled" : file.getFileName()) + ":" + (line + 1) + ":" + (start + 1) + " " + kind.name().toLowerCase() + " " + name;
+    }
+}
@@ -0,0 +1,60 @@
+package workspace;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+import assembler.Parser;
+import assembler.Statement;
+import lexer.Mnemonic;
+import lexer.TokenType;
+
+/**
+ * Finds the label definitions, label references, .ORIG blocks and TRAP calls in a
+ * file, reading every token once with the assembler's @see Parser.
+ */
+final class SymbolScanner {
+
+    private SymbolScanner() {
+    }
+
+    /**
+     * @param file The file the text came from
+     * @param text The file's text
+     * @param names Returns one shared instance of each name
+     * @return Every symbol in the text, in order
+     */
+    static List<Location> scan(Path file, CharSequence text, UnaryOperator<String> names) {
+        List<Location> locations = new ArrayList<>();
+        Parser parser = new Parser(text);
+        Statement statement = new Statement();
+        while(parser.parseLine(statement)) {
+            int line = statement.getLine();
+            if(statement.getLabel() != null) {
+                locations.add(new Location(file, Location.Kind.DEFINITION, names.apply(statement.getLabel()), line,
+                                statement.getLabelStart(), statement.getLabelEnd(), 0));
+            }
+            for(int i = 0; i < statement.getOperandCount(); i++) {
+                if(statement.getOperandType(i) == TokenType.LABEL) {
+                    locations.add(new Location(file, Location.Kind.REFERENCE, names.apply(statement.getOperandText(i)),
+                                    line, statement.getOperandStart(i), statement.getOperandEnd(i), 0));
+                }
+            }
+
+            Mnemonic mnemonic = statement.getMnemonic();
+            if(mnemonic == null)
+                continue;
+            boolean number = statement.getOperandCount() > 0 && statement.getOperandType(0) == TokenType.NUMBER;
+            if(mnemonic == Mnemonic.ORIG && number) {
+                locations.add(new Location(file, Location.Kind.ORIGIN, mnemonic.getText(), line,
+                                statement.getMnemonicStart(), statement.getMnemonicEnd(),
+                                statement.getOperandValue(0) & 0xFFFF));
+            } else if(mnemonic.isTrapAlias() || (mnemonic == Mnemonic.TRAP && number)) {
+                int vector = mnemonic == Mnemonic.TRAP ? statement.getOperandValue(0) & 0xFF : mnemonic.getTrapVector();
+                locations.add(new Location(file, Location.Kind.TRAP, mnemonic.getText(), line,
+                                statement.getMnemonicStart(), statement.getMnemonicEnd(), vector));
+            }
+        }
+        return locations;
+    }
+}
@@ -0,0 +1,485 @@
+package workspace;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import file.FileLoader;
+
+/**
+ * Index of every label, .ORIG block and TRAP call in the .asm files under a directory.
+ * Lookups by label name or trap vector are a single hash map access.
+ *
+ * Opening a workspace reads the index saved last time and only scans files whose
+ * modification time or size changed, and of those only the ones whose content hash
+ * changed too. Files are scanned in parallel. Afterwards the index follows saves
+ * through @see #refresh and outside changes through @see #watch, and is written back
+ * to disk a moment after it changes.
+ *
+ * All methods are thread safe.
+ */
+public class WorkspaceIndex {
+
+    // How long to wait after a change before writing the index to disk
+    private static final long SAVE_DELAY_MILLIS = 2000;
+
+    // Shared background thread that writes indexes to disk
+    private static final ScheduledExecutorService STORE = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "workspace-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path root;
+    // Where the index is saved between sessions
+    private final Path store;
+
+    // Symbols of every file, and the lookup tables built from them, guarded by this
+    private final Map<Path, FileSymbols> files = new HashMap<>();
+    private final Map<String, List<Location>> definitions = new HashMap<>();
+    private final Map<String, List<Location>> references = new HashMap<>();
+    private final Map<Integer, List<Location>> traps = new HashMap<>();
+
+    // One shared instance of every name, used by the parallel scans
+    private final Map<String, String> names = new ConcurrentHashMap<>();
+
+    // Whether a write of the index is already scheduled, guarded by this
+    private boolean saveScheduled;
+    private WorkspaceWatcher watcher;
+
+    private WorkspaceIndex(Path root) {
+        this.root = root;
+        this.store = Paths.get(System.getProperty("user.home"), ".lc3ezedit", "index",
+                        Integer.toHexString(root.toString().hashCode()) + "-" + root.getFileName() + ".bin");
+    }
+
+    /**
+     * Opens the workspace under a directory, scanning only what changed since its index
+     * was last saved. Blocks until the index is ready.
+     * @param directory The workspace directory
+     * @param jobs Number of files to scan at once
+     * @return The index
+     * @throws IOException If the directory cannot be read
+     */
+    public static WorkspaceIndex open(Path directory, int jobs) throws IOException {
+        WorkspaceIndex index = new WorkspaceIndex(directory.toAbsolutePath().normalize());
+        Map<Path, FileSymbols> stored = IndexStore.read(index.store, index.root, index::intern);
+        synchronized(index) {
+            for(FileSymbols symbols : stored.values())
+                index.add(symbols);
+        }
+        index.rescan(jobs);
+        return index;
+    }
+
+    /**
+     * Brings the whole index up to date with the directory
+     * @param jobs Number of files to scan at once
+     * @throws IOException If the directory cannot be read
+     */
+    public void rescan(int jobs) throws IOException {
+        List<Path> sources = findSources(root);
+        Map<Path, FileSymbols> known;
+        synchronized(this) {
+            known = new HashMap<>(files);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(jobs);
+        List<FileSymbols> scanned = new ArrayList<>(sources.size());
+        try {
+            List<ForkJoinTask<FileSymbols>> tasks = new ArrayList<>(sources.size());
+            for(Path source : sources)
+                tasks.add(pool.submit(() -> load(source, known.get(source))));
+            for(ForkJoinTask<FileSymbols> task : tasks)
+                scanned.add(task.join());
+        } finally {
+            pool.shutdown();
+        }
+
+        boolean changed = false;
+        synchronized(this) {
+            Set<Path> present = new HashSet<>(sources);
+            for(Path file : new ArrayList<>(files.keySet())) {
+                if(!present.contains(file)) {
+                    remove(file);
+                    changed = true;
+                }
+            }
+            for(FileSymbols symbols : scanned) {
+                if(symbols == null)
+                    continue;
+                if(files.get(symbols.file) != symbols) {
+                    remove(symbols.file);
+                    add(symbols);
+                    changed = true;
+                }
+            }
+            if(changed)
+                saveLater();
+        }
+    }
+
+    /**
+     * Brings one file up to date, for example after it was saved, created or deleted. A
+     * folder that was deleted or renamed takes every file under it out of the index.
+     * @param file The file that changed
+     * @return true if its symbols changed
+     */
+    public boolean refresh(Path file) {
+        file = file.toAbsolutePath().normalize();
+        if(!file.startsWith(root))
+            return false;
+        if(!Files.exists(file) && removeUnder(file))
+            return true;
+        if(!isSource(file) || Files.isDirectory(file))
+            return false;
+        FileSymbols known;
+        synchronized(this) {
+            known = files.get(file);
+        }
+        FileSymbols symbols = Files.isRegularFile(file) ? load(file, known) : null;
+        synchronized(this) {
+            if(symbols == files.get(file))
+                return false;
+            remove(file);
+            if(symbols != null)
+                add(symbols);
+            saveLater();
+            return true;
+        }
+    }
+
+    /**
+     * Starts following changes made to the workspace outside the editor
+     * @param onChange Run on a background thread whenever the index changed
+     * @throws IOException If the directory cannot be watched
+     */
+    public synchronized void watch(Runnable onChange) throws IOException {
+        if(watcher == null)
+            watcher = new WorkspaceWatcher(this, root, onChange);
+    }
+
+    /**
+     * Stops watching the workspace and writes the index if it changed
+     */
+    public void close() {
+        WorkspaceWatcher stopping;
+        List<FileSymbols> snapshot = null;
+        synchronized(this) {
+            stopping = watcher;
+            watcher = null;
+            if(saveScheduled)
+                snapshot = new ArrayList<>(files.values());
+        }
+        if(stopping != null)
+            stopping.close();
+        if(snapshot != null) {
+            try {
+                IndexStore.write(store, root, snapshot);
+            } catch(IOException e) {
+                // The index is only a cache, it is rebuilt next time
+            }
+        }
+    }
+
+    /**
+     * @param label A label name
+     * @return Every place the label is defined
+     */
+    public synchronized List<Location> findDefinitions(String label) {
+        return List.copyOf(definitions.getOrDefault(label, List.of()));
+    }
+
+    /**
+     * @param label A label name
+     * @return Every place the label is used as an operand
+     */
+    public synchronized List<Location> findReferences(String label) {
+        return List.copyOf(references.getOrDefault(label, List.of()));
+    }
+
+    /**
+     * @param vector A trap vector
+     * @return Every TRAP call to the vector, including the aliases such as HALT
+     */
+    public synchronized List<Location> findTrapCalls(int vector) {
+        return List.copyOf(traps.getOrDefault(vector, List.of()));
+    }
+
+    /**
+     * @param file A file in the workspace
+     * @return The .ORIG blocks in the file
+     */
+    public synchronized List<Location> findOrigins(Path file) {
+        List<Location> origins = new ArrayList<>();
+        FileSymbols symbols = files.get(file.toAbsolutePath().normalize());
+        if(symbols != null) {
+            for(Location location : symbols.locations) {
+                if(location.getKind() == Location.Kind.ORIGIN)
+                    origins.add(location);
+            }
+        }
+        return origins;
+    }
+
+    /**
+     * Finds every symbol in a text without indexing it, for example an editor buffer
+     * with changes that are not saved yet
+     * @param file The file the text belongs to, or null
+     * @param text The text to scan
+     * @return Every symbol in the text, in order
+     */
+    public static List<Location> scan(Path file, CharSequence text) {
+        return SymbolScanner.scan(file, text, name -> name);
+    }
+
+    /**
+     * Finds the symbol under a column of a single line of source, such as the label
+     * under the caret
+     * @param line Text of the line
+     * @param column Column within the line
+     * @return A DEFINITION, REFERENCE, ORIGIN or TRAP location with no file, or null
+     */
+    public static Location symbolAt(CharSequence line, int column) {
+        for(Location location : SymbolScanner.scan(null, line, name -> name)) {
+            if(location.getStart() <= column && column <= location.getEnd())
+                return location;
+        }
+        return null;
+    }
+
+    /**
+     * Getter for the workspace directory
+     * @return root
+     */
+    public Path getRoot() {
+        return this.root;
+    }
+
+    /**
+     * @return Number of files indexed
+     */
+    public synchronized int getFileCount() {
+        return files.size();
+    }
+
+    /**
+     * @return Number of distinct labels defined
+     */
+    public synchronized int getLabelCount() {
+        return definitions.size();
+    }
+
+    /**
+     * Reads a file and scans it, unless the known symbols are still current
+     * @param file The file to load
+     * @param known What the index has for the file, or null
+     * @return Current symbols, the known instance itself if nothing changed, or null if
+     * the file could not be read
+     */
+    private FileSymbols load(Path file, FileSymbols known) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            long modified = attributes.lastModifiedTime().toMillis();
+            long size = attributes.size();
+            if(known != null && known.modified == modified && known.size == size)
+                return known;
+
+            String text = FileLoader.load(file, null).getText();
+            long hash = hash(text);
+            if(known != null && known.hash == hash)
+                return known.touched(modified, size);
+            return new FileSymbols(file, modified, size, hash, SymbolScanner.scan(file, text, this::intern));
+        } catch(NoSuchFileException e) {
+            return null;
+        } catch(IOException e) {
+            return known;
+        }
+    }
+
+    /**
+     * Adds a file's symbols to the lookup tables. Caller holds the lock.
+     */
+    private void add(FileSymbols symbols) {
+        files.put(symbols.file, symbols);
+        for(Location location : symbols.locations) {
+            switch(location.getKind()) {
+                case DEFINITION:
+                    definitions.computeIfAbsent(location.getName(), k -> new ArrayList<>(1)).add(location);
+                    break;
+                case REFERENCE:
+                    references.computeIfAbsent(location.getName(), k -> new ArrayList<>()).add(location);
+                    break;
+                case TRAP:
+                    traps.computeIfAbsent(location.getValue(), k -> new ArrayList<>()).add(location);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Removes a file's symbols from the lookup tables. Caller holds the lock.
+     */
+    /**
+     * Takes every file under a folder that is gone out of the index
+     * @return true if there were any
+     */
+    private synchronized boolean removeUnder(Path folder) {
+        boolean removed = false;
+        for(Path file : new ArrayList<>(files.keySet())) {
+            if(file.startsWith(folder) && !file.equals(folder)) {
+                remove(file);
+                removed = true;
+            }
+        }
+        if(removed)
+            saveLater();
+        return removed;
+    }
+
+    private void remove(Path file) {
+        FileSymbols symbols = files.remove(file);
+        if(symbols == null)
+            return;
+        Set<String> labels = new HashSet<>();
+        Set<Integer> vectors = new HashSet<>();
+        for(Location location : symbols.locations) {
+            if(location.getKind() == Location.Kind.TRAP)
+                vectors.add(location.getValue());
+            else if(location.getKind() != Location.Kind.ORIGIN)
+                labels.add(location.getName());
+        }
+        for(String label : labels) {
+            removeFile(definitions, label, file);
+            removeFile(references, label, file);
+        }
+        for(int vector : vectors)
+            removeFile(traps, vector, file);
+    }
+
+    private static <K> void removeFile(Map<K, List<Location>> table, K key, Path file) {
+        List<Location> locations = table.get(key);
+        if(locations == null)
+            return;
+        locations.removeIf(location -> location.getFile().equals(file));
+        if(locations.isEmpty())
+            table.remove(key);
+    }
+
+    /**
+     * Schedules a write of the index, unless one is already scheduled. Caller holds the lock.
+     */
+    private void saveLater() {
+        if(saveScheduled)
+            return;
+        saveScheduled = true;
+        STORE.schedule(() -> {
+            List<FileSymbols> snapshot;
+            synchronized(this) {
+                saveScheduled = false;
+                snapshot = new ArrayList<>(files.values());
+            }
+            try {
+                IndexStore.write(store, root, snapshot);
+            } catch(IOException e) {
+                // The index is only a cache, it is rebuilt next time
+            }
+        }, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private String intern(String name) {
+        String shared = names.putIfAbsent(name, name);
+        return shared == null ? name : shared;
+    }
+
+    /**
+     * Every .asm file under a directory, skipping hidden directories
+     * @param root The directory
+     * @return The files
+     * @throws IOException If the directory cannot be read
+     */
+    public static List<Path> findSources(Path root) throws IOException {
+        List<Path> sources = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                boolean hidden = !dir.equals(root) && dir.getFileName().toString().startsWith(".");
+                return hidden ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if(attributes.isRegularFile() && isSource(file))
+                    sources.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return sources;
+    }
+
+    /**
+     * Tells whether a directory has few enough directories under it to index and watch,
+     * without walking more of it than that
+     * @param root The directory
+     * @param limit Most directories allowed, counting the directory itself
+     * @return true if there are no more than limit, skipping hidden ones
+     * @throws IOException If the directory cannot be read
+     */
+    public static boolean hasAtMostFolders(Path root, int limit) throws IOException {
+        int[] folders = {0};
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                if(!dir.equals(root) && dir.getFileName().toString().startsWith("."))
+                    return FileVisitResult.SKIP_SUBTREE;
+                return ++folders[0] > limit ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return folders[0] <= limit;
+    }
+
+    static boolean isSource(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".asm");
+    }
+
+    /**
+     * 64 bit FNV-1a hash of a file's text
+     */
+    private static long hash(String text) {
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,141 @@
+package workspace;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows changes made to a workspace outside the editor. Events are collected until
+ * the file system has been quiet for a moment, so a tool rewriting many files causes one
+ * update of the index rather than one per event.
+ */
+class WorkspaceWatcher implements Runnable {
+
+    // How long the file system has to be quiet before collected events are applied
+    private static final long QUIET_MILLIS = 200;
+
+    private final WorkspaceIndex index;
+    private final Path root;
+    private final Runnable onChange;
+    private final WatchService service;
+    private final Thread thread;
+
+    WorkspaceWatcher(WorkspaceIndex index, Path root, Runnable onChange) throws IOException {
+        this.index = index;
+        this.root = root;
+        this.onChange = onChange;
+        this.service = FileSystems.getDefault().newWatchService();
+        register(root);
+        this.thread = new Thread(this, "workspace-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stops watching
+     */
+    void close() {
+        try {
+            service.close();
+        } catch(IOException e) {
+            // Nothing left to watch either way
+        }
+        thread.interrupt();
+    }
+
+    @Override
+    public void run() {
+        Set<Path> changed = new LinkedHashSet<>();
+        boolean overflow = false;
+        try {
+            while(true) {
+                WatchKey key = changed.isEmpty() && !overflow ? service.take()
+                                : service.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                if(key == null) {
+                    apply(changed, overflow);
+                    changed.clear();
+                    overflow = false;
+                    continue;
+                }
+                Path dir = (Path) key.watchable();
+                for(WatchEvent<?> event : key.pollEvents()) {
+                    if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                        continue;
+                    }
+                    Path path = dir.resolve((Path) event.context());
+                    if(event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                        // Files may have been created before the directory was registered
+                        try {
+                            register(path);
+                            changed.addAll(WorkspaceIndex.findSources(path));
+                        } catch(IOException e) {
+                            // Gone again, or only partly watched: a rescan tells what is there
+                            overflow = true;
+                        }
+                    } else {
+                        changed.add(path);
+                    }
+                }
+                key.reset();
+            }
+        } catch(InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    /**
+     * Applies the collected events to the index. A batch that fails leaves the index as
+     * it is, and the watcher goes on with the next one.
+     */
+    private void apply(Set<Path> changed, boolean overflow) {
+        boolean updated = false;
+        if(overflow) {
+            // Events were lost, only a full rescan can tell what changed
+            try {
+                index.rescan(Runtime.getRuntime().availableProcessors());
+                updated = true;
+            } catch(IOException e) {
+                System.err.println("Could not rescan " + root + ": " + e.getMessage());
+            }
+        } else {
+            for(Path path : changed)
+                updated |= index.refresh(path);
+        }
+        if(updated)
+            onChange.run();
+    }
+
+    /**
+     * Watches a directory and every directory under it, skipping hidden ones
+     */
+    private void register(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                if(!dir.equals(root) && dir.getFileName().toString().startsWith("."))
+                    return FileVisitResult.SKIP_SUBTREE;
+                dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                                StandardWatchEventKinds.ENTRY_MODIFY);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
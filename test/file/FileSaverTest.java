@@ -0,0 +1,73 @@
+package file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Saving replaces a file through a temporary one; what the file was apart from its text
+ * has to survive that.
+ */
+class FileSaverTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void keepsPermissions() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Path file = folder.resolve("program.asm");
+        Files.writeString(file, "old\n");
+        Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-r--r--"));
+
+        FileSaver.save(file, "new\n", StandardCharsets.UTF_8, false, "\n");
+
+        assertEquals("new\n", Files.readString(file));
+        assertEquals("rw-r--r--", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+    }
+
+    @Test
+    void savesThroughSymbolicLink() throws IOException {
+        Path real = Files.createDirectory(folder.resolve("real")).resolve("program.asm");
+        Files.writeString(real, "old\n");
+        Path link = folder.resolve("link.asm");
+        try {
+            Files.createSymbolicLink(link, real);
+        } catch(UnsupportedOperationException | IOException e) {
+            assumeTrue(false, "Symbolic links are not supported here");
+        }
+
+        FileSaver.save(link, "new\n", StandardCharsets.UTF_8, false, "\n");
+
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals(real, Files.readSymbolicLink(link));
+        assertEquals("new\n", Files.readString(real));
+        // No temporary file left next to the link either
+        try(var files = Files.list(folder)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    void createsNewFile() throws IOException {
+        Path file = folder.resolve("new.asm");
+
+        FileSaver.save(file, "a\nb", StandardCharsets.UTF_8, false, "\r\n");
+
+        assertEquals("a\r\nb", Files.readString(file));
+        if(FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            // The same permissions as any other new file, whatever the umask
+            Path written = Files.writeString(folder.resolve("written.asm"), "");
+            assertEquals(Files.getPosixFilePermissions(written), Files.getPosixFilePermissions(file));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package menu;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import file.FileLoader;
+import org.fxmisc.richtext.model.PlainTextChange;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.reactfx.EventSource;
+
+/**
+ * Unsaved changes have to outlive quitting the editor as well as a crash. Every start of
+ * the editor is a session of its own, so each runs in a process of its own here, with
+ * its home folder in a temporary folder.
+ */
+class EditJournalTest {
+
+    @TempDir
+    Path home;
+
+    @Test
+    void recoversUnsavedChangesAfterQuitting() throws Exception {
+        Path file = home.resolve("program.asm");
+        Files.writeString(file, ".ORIG x3000\n.END\n");
+
+        assertEquals("", start("quit", file.toString()));
+        String recovered = start("recover");
+
+        assertEquals(file + "\n.ORIG x3000\nADD R1, R1, #1\n.END\n|\n", recovered);
+        // Closed without saving this time, so there is nothing left to recover
+        assertEquals("", start("recover"));
+    }
+
+    @Test
+    void keepsJournalThatCannotBeReplayed() throws Exception {
+        Path folder = Files.createDirectories(home.resolve(".lc3ezedit").resolve("journal"));
+        Path journal = Files.write(folder.resolve("old-1.journal"), new byte[] {1, 2, 3});
+        Path kept = folder.resolve("old-1.journal.failed");
+
+        assertEquals("failed " + kept + "\n", start("recover"));
+        assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(kept));
+        assertFalse(Files.exists(journal));
+        // Kept aside, so it is not reported again
+        assertEquals("", start("recover"));
+        assertTrue(Files.exists(kept));
+    }
+
+    /**
+     * Starts a session in a new process
+     * @return What it printed
+     */
+    private String start(String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Duser.home=" + home);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(EditJournalTest.class.getName());
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        process.waitFor(60, TimeUnit.SECONDS);
+        assertEquals(0, process.exitValue(), output);
+        return output;
+    }
+
+    /**
+     * A session: "quit" edits two documents, closes one without saving and quits with
+     * the other unsaved; "recover" prints what the journals of earlier sessions hold, or
+     * where a journal that could not be replayed was kept, then closes the recovered
+     * documents without saving
+     * @param args The session, and for "quit" the file to edit
+     */
+    public static void main(String[] args) throws IOException {
+        if(args[0].equals("quit")) {
+            Path file = Paths.get(args[1]);
+            StringBuilder text = new StringBuilder(Files.readString(file));
+            EventSource<List<PlainTextChange>> changes = new EventSource<>();
+            SaveService saver = new SaveService(text::toString, changes, new EditJournal(null), null);
+            saver.opened(file, FileLoader.load(file, null));
+            type(text, changes, 12, "ADD R1, R1, #1\n");
+
+            StringBuilder dropped = new StringBuilder();
+            EventSource<List<PlainTextChange>> droppedChanges = new EventSource<>();
+            SaveService closed = new SaveService(dropped::toString, droppedChanges, new EditJournal("untitled"), null);
+            type(dropped, droppedChanges, 0, "HALT\n");
+            closed.close();
+
+            // What Documents.exit does on quitting
+            saver.exit();
+            EditJournal.endSession();
+        } else {
+            for(EditJournal.Recovered recovered : EditJournal.recover()) {
+                if(recovered.problem != null) {
+                    System.out.print("failed " + recovered.journal + "\n");
+                    continue;
+                }
+                System.out.print(recovered.file + "\n" + recovered.text.getText() + "|\n");
+                StringBuilder text = new StringBuilder(recovered.text.getText());
+                SaveService saver = new SaveService(text::toString, new EventSource<>(), new EditJournal(recovered.name), null);
+                saver.recovered(recovered);
+                saver.close();
+            }
+            EditJournal.endSession();
+        }
+    }
+
+    private static void type(StringBuilder text, EventSource<List<PlainTextChange>> changes, int position, String typed) {
+        text.insert(position, typed);
+        changes.push(List.of(new PlainTextChange(position, "", typed)));
+    }
+}